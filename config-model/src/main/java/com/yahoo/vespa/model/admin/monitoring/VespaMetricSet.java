@@ -61,6 +61,8 @@ public class VespaMetricSet {
         metrics.add(new Metric("jrt.transport.client.tls-connections-established"));
         metrics.add(new Metric("jrt.transport.server.unencrypted-connections-established"));
         metrics.add(new Metric("jrt.transport.client.unencrypted-connections-established"));
+        metrics.add(new Metric("jrt.transport.buffer-pool-hits"));
+        metrics.add(new Metric("jrt.transport.buffer-pool-misses"));
 
         // C++ TLS metrics
         metrics.add(new Metric("vds.server.network.tls-handshakes-failed"));
@@ -89,6 +91,11 @@ public class VespaMetricSet {
         metrics.add(new Metric("configserver.latency.average")); // TODO: Remove in Vespa 8
         metrics.add(new Metric("configserver.cacheConfigElems.last"));
         metrics.add(new Metric("configserver.cacheChecksumElems.last"));
+        metrics.add(new Metric("configserver.cacheHits.count"));
+        metrics.add(new Metric("configserver.cacheMisses.count"));
+        metrics.add(new Metric("configserver.cachePayloads.last"));
+        metrics.add(new Metric("configserver.cachePayloadBytes.last"));
+        metrics.add(new Metric("configserver.cacheEvictions.last"));
         metrics.add(new Metric("configserver.hosts.last"));
         metrics.add(new Metric("configserver.delayedResponses.count"));
         metrics.add(new Metric("configserver.sessionChangeErrors.count"));
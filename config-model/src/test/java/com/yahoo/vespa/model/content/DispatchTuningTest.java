@@ -5,7 +5,6 @@ import org.junit.Test;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNull;
-import static org.junit.Assert.assertTrue;
 
 /**
  * @author Simon Thoresen Hult
@@ -23,14 +22,14 @@ public class DispatchTuningTest {
         assertEquals(69, dispatch.getMaxHitsPerPartition().intValue());
         assertEquals(7.5, dispatch.getMinGroupCoverage().doubleValue(), 0.0);
         assertEquals(12.5, dispatch.getMinActiveDocsCoverage().doubleValue(), 0.0);
-        assertTrue(DispatchTuning.DispatchPolicy.ROUNDROBIN == dispatch.getDispatchPolicy());
+        assertEquals(DispatchTuning.DispatchPolicy.ROUNDROBIN, dispatch.getDispatchPolicy());
     }
     @Test
     public void requireThatRandomDispatchWork() {
         DispatchTuning dispatch = new DispatchTuning.Builder()
                 .setDispatchPolicy("random")
                 .build();
-        assertTrue(DispatchTuning.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
+        assertEquals(DispatchTuning.DispatchPolicy.ADAPTIVE, dispatch.getDispatchPolicy());
         assertNull(dispatch.getMinGroupCoverage());
         assertNull(dispatch.getMinActiveDocsCoverage());
     }
@@ -40,11 +39,19 @@ public class DispatchTuningTest {
         DispatchTuning dispatch = new DispatchTuning.Builder()
                 .setDispatchPolicy("adaptive")
                 .build();
-        assertTrue(DispatchTuning.DispatchPolicy.ADAPTIVE == dispatch.getDispatchPolicy());
+        assertEquals(DispatchTuning.DispatchPolicy.ADAPTIVE, dispatch.getDispatchPolicy());
         assertNull(dispatch.getMinGroupCoverage());
         assertNull(dispatch.getMinActiveDocsCoverage());
     }
 
+    @Test
+    public void requireThatBestOfRandom2DispatchWork() {
+        DispatchTuning dispatch = new DispatchTuning.Builder()
+                .setDispatchPolicy("best-of-random-2")
+                .build();
+        assertEquals(DispatchTuning.DispatchPolicy.BEST_OF_RANDOM_2, dispatch.getDispatchPolicy());
+    }
+
     @Test
     public void requireThatDefaultsAreNull() {
         DispatchTuning dispatch = new DispatchTuning.Builder().build();
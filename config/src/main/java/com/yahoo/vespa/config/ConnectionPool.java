@@ -3,6 +3,8 @@ package com.yahoo.vespa.config;
 
 import com.yahoo.jrt.Supervisor;
 
+import java.util.List;
+
 /**
  * @author hmusum
  */
@@ -19,4 +21,11 @@ public interface ConnectionPool {
     int getSize();
 
     Supervisor getSupervisor();
+
+    /** Returns all connections in this pool. This default implementation returns the current connection only. */
+    default List<? extends Connection> getConnections() {
+        Connection current = getCurrent();
+        return current == null ? List.of() : List.of(current);
+    }
+
 }
@@ -78,6 +78,11 @@ public class JRTConnectionPool implements ConnectionPool {
         return currentConnection;
     }
 
+    @Override
+    public List<JRTConnection> getConnections() {
+        return getSources();
+    }
+
     List<JRTConnection> getSources() {
         List<JRTConnection> ret;
         synchronized (connections) {
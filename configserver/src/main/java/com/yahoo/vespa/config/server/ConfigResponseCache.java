@@ -0,0 +1,197 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.config.server;
+
+import com.google.inject.Inject;
+import com.yahoo.component.AbstractComponent;
+import com.yahoo.text.Utf8Array;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A cache of the (typically compressed) payloads of config responses, shared by the {@link ServerCache}s
+ * of all applications and application generations, such that a payload is stored once however many
+ * configs, applications and generations have it.
+ *
+ * The cache is bounded by the total size of its payloads: When it grows beyond its max size,
+ * the least recently used payloads are evicted until it is below 90% of the max size.
+ *
+ * A single instance is injected as a component, and shared by all applications in a config server.
+ * This is thread safe.
+ */
+public class ConfigResponseCache extends AbstractComponent {
+
+    /** The approximate number of bytes used by an entry in addition to its payload */
+    static final int entryOverhead = 200;
+
+    private final long maxBytes;
+    private final Map<Key, Entry> entries = new ConcurrentHashMap<>();
+    private final AtomicLong bytes = new AtomicLong();
+    private final AtomicLong clock = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final Object evictionLock = new Object();
+
+    /** Creates a cache which may use 1/8 of the heap */
+    @Inject
+    public ConfigResponseCache() {
+        this(Runtime.getRuntime().maxMemory() / 8);
+    }
+
+    public ConfigResponseCache(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /** Returns the payload with the given config md5 and compression, or null if it is not cached */
+    Payload get(String configMd5, CompressionType compression) {
+        Entry entry = entries.get(new Key(configMd5, compression));
+        if (entry == null) {
+            misses.increment();
+            return null;
+        }
+        entry.lastUsed = clock.incrementAndGet();
+        hits.increment();
+        return entry.payload;
+    }
+
+    /** Records a lookup of a config whose payload is not known to this */
+    void recordMiss() {
+        misses.increment();
+    }
+
+    /**
+     * Adds the given payload, if a payload with the same config md5 and compression is not already cached,
+     * and returns the cached payload, or the given one if it is too large to be cached.
+     */
+    Payload put(String configMd5, Utf8Array payload, CompressionInfo compressionInfo) {
+        Payload added = new Payload(payload, compressionInfo);
+        if (added.size() > maxBytes) return added;
+
+        Entry entry = entries.computeIfAbsent(new Key(configMd5, compressionInfo.getCompressionType()), __ -> {
+            bytes.addAndGet(added.size());
+            return new Entry(added);
+        });
+        entry.lastUsed = clock.incrementAndGet();
+        if (bytes.get() > maxBytes)
+            evict();
+        return entry.payload;
+    }
+
+    private void evict() {
+        synchronized (evictionLock) {
+            if (bytes.get() <= maxBytes) return;
+
+            // Snapshot the last use of each entry, as it may change while sorting
+            List<Candidate> candidates = new ArrayList<>(entries.size());
+            entries.forEach((key, entry) -> candidates.add(new Candidate(key, entry, entry.lastUsed)));
+            candidates.sort(Comparator.comparingLong(candidate -> candidate.lastUsed));
+            long target = maxBytes / 10 * 9;
+            for (Candidate candidate : candidates) {
+                if (bytes.get() <= target) break;
+                if (entries.remove(candidate.key, candidate.entry)) {
+                    bytes.addAndGet(-candidate.entry.payload.size());
+                    evictions.increment();
+                }
+            }
+        }
+    }
+
+    /** Returns the number of payloads in this */
+    public int size() { return entries.size(); }
+
+    /** Returns the approximate number of bytes used by the payloads in this */
+    public long bytes() { return bytes.get(); }
+
+    public long maxBytes() { return maxBytes; }
+
+    /** Returns the number of lookups which found a payload since this was created */
+    public long hits() { return hits.sum(); }
+
+    /** Returns the number of lookups which did not find a payload since this was created */
+    public long misses() { return misses.sum(); }
+
+    /** Returns the number of payloads evicted since this was created */
+    public long evictions() { return evictions.sum(); }
+
+    @Override
+    public String toString() {
+        return "config response cache with " + size() + " payloads using " + bytes() + " of max " + maxBytes + " bytes";
+    }
+
+    /** A cached payload */
+    static class Payload {
+
+        private final Utf8Array payload;
+        private final CompressionInfo compressionInfo;
+
+        Payload(Utf8Array payload, CompressionInfo compressionInfo) {
+            this.payload = payload;
+            this.compressionInfo = compressionInfo;
+        }
+
+        Utf8Array payload() { return payload; }
+        CompressionInfo compressionInfo() { return compressionInfo; }
+        long size() { return payload.getByteLength() + entryOverhead; }
+
+    }
+
+    private static class Entry {
+
+        private final Payload payload;
+        private volatile long lastUsed;
+
+        Entry(Payload payload) {
+            this.payload = payload;
+        }
+
+    }
+
+    private static class Candidate {
+
+        private final Key key;
+        private final Entry entry;
+        private final long lastUsed;
+
+        Candidate(Key key, Entry entry, long lastUsed) {
+            this.key = key;
+            this.entry = entry;
+            this.lastUsed = lastUsed;
+        }
+
+    }
+
+    private static class Key {
+
+        private final String configMd5;
+        private final CompressionType compression;
+
+        Key(String configMd5, CompressionType compression) {
+            this.configMd5 = configMd5;
+            this.compression = compression;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key) o;
+            return configMd5.equals(other.configMd5) && compression == other.compression;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(configMd5, compression);
+        }
+
+    }
+
+}
@@ -32,6 +32,7 @@ public interface GlobalComponentRegistry {
     Curator getCurator();
     ConfigCurator getConfigCurator();
     Metrics getMetrics();
+    ConfigResponseCache getConfigResponseCache();
     SessionPreparer getSessionPreparer();
     ConfigserverConfig getConfigserverConfig();
     TenantListener getTenantListener();
@@ -38,6 +38,7 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
     private final Curator curator;
     private final ConfigCurator configCurator;
     private final Metrics metrics;
+    private final ConfigResponseCache configResponseCache;
     private final ModelFactoryRegistry modelFactoryRegistry;
     private final SessionPreparer sessionPreparer;
     private final RpcServer rpcServer;
@@ -58,6 +59,7 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
     public InjectedGlobalComponentRegistry(Curator curator,
                                            ConfigCurator configCurator,
                                            Metrics metrics,
+                                           ConfigResponseCache configResponseCache,
                                            ModelFactoryRegistry modelFactoryRegistry,
                                            SessionPreparer sessionPreparer,
                                            RpcServer rpcServer,
@@ -74,6 +76,7 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
         this.curator = curator;
         this.configCurator = configCurator;
         this.metrics = metrics;
+        this.configResponseCache = configResponseCache;
         this.modelFactoryRegistry = modelFactoryRegistry;
         this.sessionPreparer = sessionPreparer;
         this.rpcServer = rpcServer;
@@ -97,6 +100,8 @@ public class InjectedGlobalComponentRegistry implements GlobalComponentRegistry
     @Override
     public Metrics getMetrics() { return metrics; }
     @Override
+    public ConfigResponseCache getConfigResponseCache() { return configResponseCache; }
+    @Override
     public SessionPreparer getSessionPreparer() { return sessionPreparer; }
     @Override
     public ConfigserverConfig getConfigserverConfig() { return configserverConfig; }
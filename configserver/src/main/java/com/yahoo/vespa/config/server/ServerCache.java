@@ -5,7 +5,9 @@ import com.yahoo.config.model.api.ConfigDefinitionRepo;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.config.buildergen.ConfigDefinition;
+import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
+import com.yahoo.vespa.config.protocol.SlimeConfigResponse;
 
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
@@ -13,6 +15,10 @@ import java.util.concurrent.ConcurrentHashMap;
 /**
  * Cache that holds configs and config definitions (builtin and user config definitions).
  *
+ * The payloads of configs are held in a {@link ConfigResponseCache} shared with other applications and
+ * generations, which is bounded in size. A config may therefore be evicted, in which case it must be
+ * resolved and put again.
+ *
  * @author vegardh
  */
 public class ServerCache {
@@ -21,29 +27,52 @@ public class ServerCache {
     private final ConfigDefinitionRepo userConfigDefinitions;
 
     // NOTE: The reason we do a double mapping here is to de-dupe configs that have the same md5.
-    private final Map<ConfigCacheKey, String> md5Sums = new ConcurrentHashMap<>();
-    private final Map<String, ConfigResponse> md5ToConfig = new ConcurrentHashMap<>();
-
+    private final Map<ConfigCacheKey, CachedConfig> md5Sums = new ConcurrentHashMap<>();
+    // The number of keys mapping to each config md5, such that md5s no longer in use are removed
+    private final Map<String, Integer> configMd5s = new ConcurrentHashMap<>();
+    private final ConfigResponseCache payloads;
 
-    public ServerCache(ConfigDefinitionRepo builtinConfigDefinitions, ConfigDefinitionRepo userConfigDefinitions) {
+    public ServerCache(ConfigDefinitionRepo builtinConfigDefinitions, ConfigDefinitionRepo userConfigDefinitions,
+                       ConfigResponseCache payloads) {
         this.builtinConfigDefinitions = builtinConfigDefinitions;
         this.userConfigDefinitions = userConfigDefinitions;
+        this.payloads = payloads;
     }
 
     // For testing only
     public ServerCache() {
-        this(new StaticConfigDefinitionRepo(), new UserConfigDefinitionRepo());
+        this(new StaticConfigDefinitionRepo(), new UserConfigDefinitionRepo(), new ConfigResponseCache());
     }
 
     public void put(ConfigCacheKey key, ConfigResponse config, String configMd5) {
-        md5Sums.put(key, configMd5);
-        md5ToConfig.put(configMd5, config);
+        payloads.put(configMd5, config.getPayload(), config.getCompressionInfo());
+        CachedConfig previous = md5Sums.put(key, new CachedConfig(configMd5, config));
+        if (previous != null && previous.md5.equals(configMd5)) return;
+
+        configMd5s.merge(configMd5, 1, Integer::sum);
+        if (previous != null)
+            release(previous.md5);
     }
 
+    /** Returns the cached config for the given key, or null if it is not cached, or has been evicted */
     public ConfigResponse get(ConfigCacheKey key) {
-        String md5 = md5Sums.get(key);
-        if (md5 == null) return null;
-        return md5ToConfig.get(md5);
+        CachedConfig config = md5Sums.get(key);
+        if (config == null) {
+            payloads.recordMiss();
+            return null;
+        }
+        ConfigResponseCache.Payload payload = payloads.get(config.md5, config.compression);
+        if (payload == null) { // evicted: Forget it until it is put again
+            if (md5Sums.remove(key, config))
+                release(config.md5);
+            return null;
+        }
+        return new SlimeConfigResponse(payload.payload(), config.generation, config.internalRedeploy, config.md5,
+                                       payload.compressionInfo());
+    }
+
+    private void release(String configMd5) {
+        configMd5s.computeIfPresent(configMd5, (md5, count) -> count == 1 ? null : count - 1);
     }
 
     @Override
@@ -53,7 +82,8 @@ public class ServerCache {
         sb.append("builtin defs: ").append(builtinConfigDefinitions.getConfigDefinitions().size()).append("\n");
         sb.append("user defs:    ").append(userConfigDefinitions.getConfigDefinitions().size()).append("\n");
         sb.append("md5sums:      ").append(md5Sums.size()).append("\n");
-        sb.append("md5ToConfig:  ").append(md5ToConfig.size()).append("\n");
+        sb.append("md5ToConfig:  ").append(configMd5s.size()).append("\n");
+        sb.append("payloads:     ").append(payloads).append("\n");
 
         return sb.toString();
     }
@@ -62,13 +92,16 @@ public class ServerCache {
         ConfigDefinition def = userConfigDefinitions.get(defKey);
         return (def != null) ? def : builtinConfigDefinitions.getConfigDefinitions().get(defKey);
     }
+
+    /** Returns the cache of config payloads used by this */
+    public ConfigResponseCache payloads() { return payloads; }
     
     /**
      * The number of different {@link ConfigResponse} elements
      * @return elems
      */
     public int configElems() {
-        return md5ToConfig.size();
+        return configMd5s.size();
     }
     
     /**
@@ -79,4 +112,21 @@ public class ServerCache {
         return md5Sums.size();
     }
 
+    /** What is needed to recreate a config response from its cached payload */
+    private static class CachedConfig {
+
+        private final String md5;
+        private final CompressionType compression;
+        private final long generation;
+        private final boolean internalRedeploy;
+
+        CachedConfig(String md5, ConfigResponse config) {
+            this.md5 = md5;
+            this.compression = config.getCompressionInfo().getCompressionType();
+            this.generation = config.getGeneration();
+            this.internalRedeploy = config.isInternalRedeploy();
+        }
+
+    }
+
 }
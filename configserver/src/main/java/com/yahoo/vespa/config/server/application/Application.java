@@ -115,9 +115,11 @@ public class Application implements ModelResult {
                 if (logDebug()) {
                     debug("Found config " + cacheKey + " in cache");
                 }
+                metricUpdater.incrementCacheHits();
                 metricUpdater.incrementProcTime(System.currentTimeMillis() - start);
                 return config;
             }
+            metricUpdater.incrementCacheMisses();
         }
 
         ConfigDefinition def = getTargetDef(req);
@@ -69,6 +69,9 @@ public class FileServer {
 
     public interface Receiver {
         void receive(FileReferenceData fileData, ReplayStatus status);
+
+        /** Returns the compression to use when sending a directory as an archive to this */
+        default CompressedFileReference.Format archiveFormat() { return CompressedFileReference.Format.gzip; }
     }
 
     @SuppressWarnings("WeakerAccess") // Created by dependency injection
@@ -122,7 +125,7 @@ public class FileServer {
         String errorDescription = "OK";
         FileReferenceData fileData = FileReferenceDataBlob.empty(reference, file.getName());
         try {
-            fileData = readFileReferenceData(reference);
+            fileData = readFileReferenceData(reference, target.archiveFormat());
             success = true;
         } catch (IOException e) {
             errorDescription = "For file reference '" + reference.value() + "': failed reading file '" + file.getAbsolutePath() + "'";
@@ -139,12 +142,12 @@ public class FileServer {
         }
     }
 
-    private FileReferenceData readFileReferenceData(FileReference reference) throws IOException {
+    private FileReferenceData readFileReferenceData(FileReference reference, CompressedFileReference.Format format) throws IOException {
         File file = root.getFile(reference);
 
         if (file.isDirectory()) {
             //TODO Here we should compress to file, but then we have to clean up too. Pending.
-            byte [] blob = CompressedFileReference.compress(file.getParentFile());
+            byte [] blob = CompressedFileReference.compress(file.getParentFile(), format);
             return new FileReferenceDataBlob(reference, file.getName(), FileReferenceData.Type.compressed, blob);
         } else {
             return new LazyFileReferenceData(reference, file.getName(), FileReferenceData.Type.file, file);
@@ -15,6 +15,7 @@ import com.yahoo.config.provision.HostName;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.container.jdisc.secretstore.SecretStore;
 import com.yahoo.log.LogLevel;
+import com.yahoo.vespa.config.server.ConfigResponseCache;
 import com.yahoo.vespa.config.server.ConfigServerSpec;
 import com.yahoo.vespa.config.server.GlobalComponentRegistry;
 import com.yahoo.vespa.config.server.ServerCache;
@@ -54,6 +55,7 @@ public class ActivatedModelsBuilder extends ModelsBuilder<Application> {
     private final PermanentApplicationPackage permanentApplicationPackage;
     private final ConfigDefinitionRepo configDefinitionRepo;
     private final Metrics metrics;
+    private final ConfigResponseCache configResponseCache;
     private final Curator curator;
     private final DeployLogger logger;
     private final FlagSource flagSource;
@@ -73,6 +75,7 @@ public class ActivatedModelsBuilder extends ModelsBuilder<Application> {
         this.permanentApplicationPackage = globalComponentRegistry.getPermanentApplicationPackage();
         this.configDefinitionRepo = globalComponentRegistry.getStaticConfigDefinitionRepo();
         this.metrics = globalComponentRegistry.getMetrics();
+        this.configResponseCache = globalComponentRegistry.getConfigResponseCache();
         this.curator = globalComponentRegistry.getCurator();
         this.logger = new SilentDeployLogger();
         this.flagSource = globalComponentRegistry.getFlagSource();
@@ -102,7 +105,7 @@ public class ActivatedModelsBuilder extends ModelsBuilder<Application> {
                 modelFactory.version(),
                 wantedNodeVespaVersion);
         MetricUpdater applicationMetricUpdater = metrics.getOrCreateMetricUpdater(Metrics.createDimensions(applicationId));
-        ServerCache serverCache = new ServerCache(configDefinitionRepo, zkClient.getUserConfigDefinitions());
+        ServerCache serverCache = new ServerCache(configDefinitionRepo, zkClient.getUserConfigDefinitions(), configResponseCache);
         return new Application(modelFactory.createModel(modelContext),
                                serverCache,
                                appGeneration,
@@ -13,6 +13,7 @@ import com.yahoo.jdisc.Metric;
 import com.yahoo.log.LogLevel;
 import com.yahoo.statistics.Statistics;
 import com.yahoo.statistics.Counter;
+import com.yahoo.vespa.config.server.ConfigResponseCache;
 
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
@@ -33,25 +34,31 @@ public class Metrics extends AbstractComponent implements MetricUpdaterFactory,
     private static final String METRIC_FAILED_REQUESTS = getMetricName("failedRequests");
     private static final String METRIC_FREE_MEMORY = getMetricName("freeMemory");
     private static final String METRIC_LATENCY = getMetricName("latency");
+    private static final String METRIC_CACHE_PAYLOADS = getMetricName("cachePayloads");
+    private static final String METRIC_CACHE_PAYLOAD_BYTES = getMetricName("cachePayloadBytes");
+    private static final String METRIC_CACHE_EVICTIONS = getMetricName("cacheEvictions");
 
     private final Counter requests;
     private final Counter failedRequests;
     private final Counter procTimeCounter;
     private final Metric metric;
     private final Optional<ZKMetricUpdater> zkMetricUpdater;
+    private final ConfigResponseCache configResponseCache;
 
     // TODO The map is the key for now
     private final Map<Map<String, String>, MetricUpdater> metricUpdaters = new ConcurrentHashMap<>();
     private final Optional<ScheduledExecutorService> executorService;
 
     @Inject
-    public Metrics(Metric metric, Statistics statistics, HealthMonitorConfig healthMonitorConfig, ZookeeperServerConfig zkServerConfig) {
-        this(metric, statistics, healthMonitorConfig, zkServerConfig, true);
+    public Metrics(Metric metric, Statistics statistics, HealthMonitorConfig healthMonitorConfig, ZookeeperServerConfig zkServerConfig,
+                   ConfigResponseCache configResponseCache) {
+        this(metric, statistics, healthMonitorConfig, zkServerConfig, configResponseCache, true);
     }
 
     private Metrics(Metric metric, Statistics statistics, HealthMonitorConfig healthMonitorConfig,
-                    ZookeeperServerConfig zkServerConfig, boolean createZkMetricUpdater) {
+                    ZookeeperServerConfig zkServerConfig, ConfigResponseCache configResponseCache, boolean createZkMetricUpdater) {
         this.metric = metric;
+        this.configResponseCache = configResponseCache;
         requests = createCounter(METRIC_REQUESTS, statistics);
         failedRequests = createCounter(METRIC_FAILED_REQUESTS, statistics);
         procTimeCounter = createCounter("procTime", statistics);
@@ -74,7 +81,8 @@ public class Metrics extends AbstractComponent implements MetricUpdaterFactory,
         HealthMonitorConfig.Builder builder = new HealthMonitorConfig.Builder();
         builder.snapshot_interval(60.0);
         ZookeeperServerConfig.Builder zkBuilder = new ZookeeperServerConfig.Builder().myid(1);
-        return new Metrics(metric, statistics, new HealthMonitorConfig(builder), new ZookeeperServerConfig(zkBuilder), false);
+        return new Metrics(metric, statistics, new HealthMonitorConfig(builder), new ZookeeperServerConfig(zkBuilder),
+                           new ConfigResponseCache(), false);
     }
 
     private Counter createCounter(String name, Statistics statistics) {
@@ -151,6 +159,9 @@ public class Metrics extends AbstractComponent implements MetricUpdaterFactory,
 
     private void setRegularMetrics() {
         metric.set(METRIC_FREE_MEMORY, Runtime.getRuntime().freeMemory(), null);
+        metric.set(METRIC_CACHE_PAYLOADS, configResponseCache.size(), null);
+        metric.set(METRIC_CACHE_PAYLOAD_BYTES, configResponseCache.bytes(), null);
+        metric.set(METRIC_CACHE_EVICTIONS, configResponseCache.evictions(), null);
     }
 
     void increment(String metricName, Metric.Context context) {
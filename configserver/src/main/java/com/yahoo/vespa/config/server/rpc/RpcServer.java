@@ -42,12 +42,16 @@ import com.yahoo.vespa.config.server.rpc.security.RpcAuthorizer;
 import com.yahoo.vespa.config.server.tenant.TenantHandlerProvider;
 import com.yahoo.vespa.config.server.tenant.TenantListener;
 import com.yahoo.vespa.config.server.tenant.TenantRepository;
+import com.yahoo.vespa.filedistribution.CompressedFileReference;
 import com.yahoo.vespa.filedistribution.FileDownloader;
 import com.yahoo.vespa.filedistribution.FileReceiver;
 import com.yahoo.vespa.filedistribution.FileReferenceData;
 import com.yahoo.vespa.filedistribution.FileReferenceDownload;
+import com.yahoo.vespa.filedistribution.FileReferenceDownloader;
 
 import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.List;
@@ -127,7 +131,6 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                      RpcRequestHandlerProvider handlerProvider) {
         this.superModelRequestHandler = superModelRequestHandler;
         metricUpdaterFactory = metrics;
-        supervisor.setMaxOutputBufferSize(config.maxoutputbuffersize());
         this.metrics = metrics.getOrCreateMetricUpdater(Collections.emptyMap());
         this.hostLivenessTracker = hostLivenessTracker;
         BlockingQueue<Runnable> workQueue = new LinkedBlockingQueue<>(config.maxgetconfigclients());
@@ -224,6 +227,14 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                                   .methodDesc("printStatistics")
                                   .returnDesc(0, "statistics", "Statistics for server"));
         getSupervisor().addMethod(new Method("filedistribution.serveFile", "si", "is", this::serveFile));
+        getSupervisor().addMethod(new Method(FileReferenceDownloader.SERVE_FILE_CHUNKS_METHOD, "siii", "is", this::serveFileChunks)
+                                     .methodDesc("serve a share of the chunks of a file, while other sources serve the rest")
+                                     .paramDesc(0, "file reference", "file reference to serve")
+                                     .paramDesc(1, "flag", "0 to download the file from another source if not found")
+                                     .paramDesc(2, "share", "serve the chunks with index modulo shares equal to this")
+                                     .paramDesc(3, "shares", "the number of shares the chunks are divided into")
+                                     .returnDesc(0, "ret", "0 if success, 1 if not found")
+                                     .returnDesc(1, "description", "description of the return code"));
         getSupervisor().addMethod(new Method("filedistribution.setFileReferencesToDownload", "S", "i", this::setFileReferencesToDownload)
                                      .methodDesc("set which file references to download")
                                      .paramDesc(0, "file references", "file reference to download")
@@ -520,10 +531,13 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
             }
         }
         private void sendEof(int session, FileReferenceData fileData, FileServer.ReplayStatus status) {
+            sendEof(session, fileData, fileData.xxhash(), status);
+        }
+        void sendEof(int session, FileReferenceData fileData, long xxhash, FileServer.ReplayStatus status) {
             Request request = new Request(FileReceiver.RECEIVE_EOF_METHOD);
             request.parameters().add(new StringValue(fileData.fileReference().value()));
             request.parameters().add(new Int32Value(session));
-            request.parameters().add(new Int64Value(fileData.xxhash()));
+            request.parameters().add(new Int64Value(xxhash));
             request.parameters().add(new Int32Value(status.getCode()));
             request.parameters().add(new StringValue(status.getDescription()));
             invokeRpcIfValidConnection(request);
@@ -537,7 +551,7 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
             }
         }
 
-        private void invokeRpcIfValidConnection(Request request) {
+        void invokeRpcIfValidConnection(Request request) {
             if (target.isValid()) {
                 target.invokeSync(request, 600);
             } else {
@@ -546,6 +560,71 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
         }
     }
 
+    /**
+     * Sends the chunks of a file in a given share, which the target has not already received, to a target which
+     * receives the other shares from other sources. Directories are sent as LZ4 compressed archives, which are
+     * identical on all sources.
+     */
+    class ChunkShareFileReceiver extends ChunkedFileReceiver {
+
+        private static final int chunkSize = 0x100000;
+
+        private final int share;
+        private final int shares;
+
+        ChunkShareFileReceiver(Target target, int share, int shares) {
+            super(target);
+            if (share < 0 || share >= shares) throw new IllegalArgumentException("Share " + share + " is not in [0, " + shares + ")");
+            this.share = share;
+            this.shares = shares;
+        }
+
+        @Override
+        public CompressedFileReference.Format archiveFormat() { return CompressedFileReference.Format.lz4; }
+
+        @Override
+        public void receive(FileReferenceData fileData, FileServer.ReplayStatus status) {
+            Request meta = new Request(FileReceiver.RECEIVE_CHUNKED_META_METHOD);
+            meta.parameters().add(new StringValue(fileData.fileReference().value()));
+            meta.parameters().add(new StringValue(fileData.filename()));
+            meta.parameters().add(new StringValue(fileData.type().name()));
+            meta.parameters().add(new Int64Value(fileData.size()));
+            meta.parameters().add(new Int32Value(chunkSize));
+            invokeAndVerify(meta, fileData.fileReference());
+            int session = meta.returnValues().get(1).asInt32();
+            BitSet received = BitSet.valueOf(meta.returnValues().get(2).asData());
+
+            // All chunks are read to compute the hash of the file, which is the hash of the hashes of all chunks
+            long[] hashes = new long[(int) ((fileData.size() + chunkSize - 1) / chunkSize)];
+            ByteBuffer bb = ByteBuffer.allocate(chunkSize);
+            for (int index = 0; index < hashes.length; index++) {
+                bb.clear();
+                while (bb.hasRemaining() && fileData.nextContent(bb) >= 0) { }
+                hashes[index] = FileReceiver.chunkHash(bb.array(), 0, bb.position());
+                if (index % shares != share || received.get(index)) continue;
+
+                Request chunk = new Request(FileReceiver.RECEIVE_CHUNK_METHOD);
+                chunk.parameters().add(new StringValue(fileData.fileReference().value()));
+                chunk.parameters().add(new Int32Value(session));
+                chunk.parameters().add(new Int32Value(index));
+                chunk.parameters().add(new Int64Value(hashes[index]));
+                chunk.parameters().add(new DataValue(Arrays.copyOf(bb.array(), bb.position())));
+                invokeAndVerify(chunk, fileData.fileReference());
+            }
+            sendEof(session, fileData, FileReceiver.chunkedFileHash(hashes), status);
+        }
+
+        private void invokeAndVerify(Request request, FileReference reference) {
+            invokeRpcIfValidConnection(request);
+            if (request.isError())
+                throw new IllegalArgumentException("Failed delivering reference '" + reference.value() + "' to " +
+                                                   target.toString() + " with error: '" + request.errorMessage() + "'.");
+            if (request.returnValues().get(0).asInt32() != 0)
+                throw new IllegalArgumentException("Unknown error from target '" + target.toString() + "' during rpc call " + request.methodName());
+        }
+
+    }
+
     private void serveFile(Request request) {
         request.detach();
         rpcAuthorizer.authorizeFileRequest(request)
@@ -555,6 +634,17 @@ public class RpcServer implements Runnable, ReloadListener, TenantListener {
                 });
     }
 
+    private void serveFileChunks(Request request) {
+        request.detach();
+        rpcAuthorizer.authorizeFileRequest(request)
+                .thenRun(() -> { // okay to do in authorizer thread as serveFile is async
+                    FileServer.Receiver receiver = new ChunkShareFileReceiver(request.target(),
+                                                                              request.parameters().get(2).asInt32(),
+                                                                              request.parameters().get(3).asInt32());
+                    fileServer.serveFile(request.parameters().get(0).asString(), request.parameters().get(1).asInt32() == 0, request, receiver);
+                });
+    }
+
     private void setFileReferencesToDownload(Request req) {
         req.detach();
         rpcAuthorizer.authorizeFileRequest(req)
@@ -42,6 +42,7 @@ public class InjectedGlobalComponentRegistryTest {
 
     private Curator curator;
     private Metrics metrics;
+    private ConfigResponseCache configResponseCache;
     private SessionPreparer sessionPreparer;
     private ConfigserverConfig configserverConfig;
     private RpcServer rpcServer;
@@ -60,6 +61,7 @@ public class InjectedGlobalComponentRegistryTest {
         curator = new MockCurator();
         ConfigCurator configCurator = ConfigCurator.create(curator);
         metrics = Metrics.createTestMetrics();
+        configResponseCache = new ConfigResponseCache();
         modelFactoryRegistry = new ModelFactoryRegistry(Collections.singletonList(new VespaModelFactory(new NullConfigModelRegistry())));
         configserverConfig = new ConfigserverConfig(
                 new ConfigserverConfig.Builder()
@@ -77,7 +79,7 @@ public class InjectedGlobalComponentRegistryTest {
         HostProvisionerProvider hostProvisionerProvider = HostProvisionerProvider.withProvisioner(new SessionHandlerTest.MockProvisioner());
         zone = Zone.defaultZone();
         globalComponentRegistry =
-                new InjectedGlobalComponentRegistry(curator, configCurator, metrics, modelFactoryRegistry, sessionPreparer, rpcServer, configserverConfig,
+                new InjectedGlobalComponentRegistry(curator, configCurator, metrics, configResponseCache, modelFactoryRegistry, sessionPreparer, rpcServer, configserverConfig,
                                                     generationCounter, defRepo, permanentApplicationPackage, hostRegistries, hostProvisionerProvider, zone,
                                                     new ConfigServerDB(configserverConfig), new InMemoryFlagSource(), new MockSecretStore());
     }
@@ -87,6 +89,7 @@ public class InjectedGlobalComponentRegistryTest {
         assertThat(globalComponentRegistry.getModelFactoryRegistry(), is(modelFactoryRegistry));
         assertThat(globalComponentRegistry.getSessionPreparer(), is(sessionPreparer));
         assertThat(globalComponentRegistry.getMetrics(), is(metrics));
+        assertThat(globalComponentRegistry.getConfigResponseCache(), is(configResponseCache));
         assertThat(globalComponentRegistry.getCurator(), is(curator));
         assertThat(globalComponentRegistry.getConfigserverConfig(), is(configserverConfig));
         assertThat(globalComponentRegistry.getReloadListener().hashCode(), is(rpcServer.hashCode()));
@@ -1,18 +1,32 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.config.server;
 
+import com.yahoo.text.Utf8Array;
 import com.yahoo.vespa.config.ConfigCacheKey;
 import com.yahoo.vespa.config.ConfigDefinitionKey;
 import com.yahoo.vespa.config.ConfigKey;
 import com.yahoo.vespa.config.ConfigPayload;
 import com.yahoo.vespa.config.buildergen.ConfigDefinition;
+import com.yahoo.vespa.config.protocol.CompressionInfo;
+import com.yahoo.vespa.config.protocol.CompressionType;
 import com.yahoo.vespa.config.protocol.ConfigResponse;
 import com.yahoo.vespa.config.protocol.SlimeConfigResponse;
 import org.junit.Before;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
 import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertThat;
 import static org.junit.Assert.assertTrue;
 
@@ -46,7 +60,7 @@ public class ServerCacheTest {
         userConfigDefinitionRepo.add(fooBazDefKey, new com.yahoo.vespa.config.buildergen.ConfigDefinition("baz", new String[0]));
         userConfigDefinitionRepo.add(fooBimDefKey, new ConfigDefinition("mynode", new String[0]));
 
-        cache = new ServerCache(new TestConfigDefinitionRepo(), userConfigDefinitionRepo);
+        cache = new ServerCache(new TestConfigDefinitionRepo(), userConfigDefinitionRepo, new ConfigResponseCache());
 
         cache.put(fooBarCacheKey, SlimeConfigResponse.fromConfigPayload(ConfigPayload.empty(), 2, false, configMd5), configMd5);
         cache.put(bazQuuxCacheKey, SlimeConfigResponse.fromConfigPayload(ConfigPayload.empty(), 2, false, configMd5), configMd5);
@@ -73,6 +87,139 @@ public class ServerCacheTest {
 
     @Test
     public void testThatCacheWorksWithDifferentKeySameMd5() {
-        assertTrue(cache.get(fooBarCacheKey) == cache.get(bazQuuxCacheKey));
+        assertSame(cache.get(fooBarCacheKey).getPayload(), cache.get(bazQuuxCacheKey).getPayload());
+    }
+
+    @Test
+    public void testThatPayloadsAreSharedBetweenGenerations() {
+        ConfigResponseCache payloads = new ConfigResponseCache(1000000);
+        ServerCache generation2 = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), payloads);
+        ServerCache generation3 = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), payloads);
+        generation2.put(fooBarCacheKey, response(2, configMd5, 100), configMd5);
+        generation3.put(fooBarCacheKey, response(3, configMd5, 100), configMd5);
+
+        assertEquals(1, payloads.size());
+        assertSame(generation2.get(fooBarCacheKey).getPayload(), generation3.get(fooBarCacheKey).getPayload());
+        assertEquals(2, generation2.get(fooBarCacheKey).getGeneration());
+        assertEquals(3, generation3.get(fooBarCacheKey).getGeneration());
+        assertEquals(configMd5, generation3.get(fooBarCacheKey).getConfigMd5());
+    }
+
+    @Test
+    public void testThatLeastRecentlyUsedPayloadsAreEvicted() {
+        long entrySize = 1000 + ConfigResponseCache.entryOverhead;
+        ConfigResponseCache payloads = new ConfigResponseCache(10 * entrySize);
+        ServerCache serverCache = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), payloads);
+        for (int i = 0; i < 10; i++)
+            serverCache.put(cacheKey(i), response(2, "md5-" + i, 1000), "md5-" + i);
+        assertEquals(10, payloads.size());
+        assertNotNull(serverCache.get(cacheKey(0))); // Now more recently used than 1
+
+        serverCache.put(cacheKey(10), response(2, "md5-10", 1000), "md5-10");
+        assertTrue(payloads.bytes() <= payloads.maxBytes());
+        assertEquals(9 * entrySize, payloads.bytes());
+        assertEquals(2, payloads.evictions());
+        assertNotNull(serverCache.get(cacheKey(0)));
+        assertNull(serverCache.get(cacheKey(1)));
+        assertNull(serverCache.get(cacheKey(2)));
+        assertNotNull(serverCache.get(cacheKey(10)));
+        assertNull(serverCache.get(cacheKey(11)));
+        assertEquals(3, payloads.hits());
+        assertEquals(3, payloads.misses());
+        assertEquals("Evicted configs are forgotten when looked up", 9, serverCache.checkSumElems());
+        assertEquals(9, serverCache.configElems());
+    }
+
+    @Test
+    public void testThatReplacedConfigMd5sAreForgotten() {
+        ServerCache serverCache = new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), new ConfigResponseCache());
+        serverCache.put(cacheKey(0), response(2, "md5-0", 100), "md5-0");
+        serverCache.put(cacheKey(1), response(2, "md5-0", 100), "md5-0");
+        assertEquals(1, serverCache.configElems());
+
+        serverCache.put(cacheKey(0), response(2, "md5-1", 100), "md5-1");
+        assertEquals(2, serverCache.configElems());
+        serverCache.put(cacheKey(1), response(2, "md5-1", 100), "md5-1");
+        assertEquals(1, serverCache.configElems());
+        assertEquals(2, serverCache.checkSumElems());
+    }
+
+    /** Simulates 200 subscribers of 10 applications over 2 generations, with a cache holding three quarters of the configs */
+    @Test
+    public void testCacheUnderLoad() throws Exception {
+        int applications = 10, subscribers = 200;
+        ConfigResponseCache payloads = payloadCache(applications);
+        simulateSubscribers(applications, subscribers, 4, payloads);
+
+        assertTrue(payloads.bytes() <= payloads.maxBytes());
+        assertEquals(subscribers * requestsPerSubscriber, payloads.hits() + payloads.misses());
+        assertTrue(payloads.evictions() > 0);
+    }
+
+    static final int configsPerApplication = 50, sharedConfigs = 10, requestsPerSubscriber = 20, payloadSize = 2000;
+
+    /** Returns a payload cache which can hold three quarters of the distinct configs of the given number of applications */
+    static ConfigResponseCache payloadCache(int applications) {
+        int distinctConfigs = applications * (configsPerApplication - sharedConfigs) + sharedConfigs;
+        return new ConfigResponseCache(distinctConfigs * 3 / 4 * (payloadSize + ConfigResponseCache.entryOverhead));
+    }
+
+    /**
+     * Lets the given number of subscribers, spread evenly over the given applications, request random configs
+     * of two generations from the given number of threads, and returns the number of configs which had to be resolved
+     */
+    static int simulateSubscribers(int applications, int subscribers, int threads, ConfigResponseCache payloads) throws Exception {
+        List<ServerCache> caches = new ArrayList<>();
+        for (int i = 0; i < applications * 2; i++)
+            caches.add(new ServerCache(new TestConfigDefinitionRepo(), new UserConfigDefinitionRepo(), payloads));
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<Integer>> results = new ArrayList<>();
+            for (int subscriber = 0; subscriber < subscribers; subscriber++) {
+                int application = subscriber % applications;
+                Random random = new Random(subscriber);
+                results.add(executor.submit(() -> {
+                    int resolved = 0;
+                    for (int request = 0; request < requestsPerSubscriber; request++) {
+                        int generation = request < requestsPerSubscriber / 2 ? 0 : 1;
+                        ServerCache serverCache = caches.get(application * 2 + generation);
+                        int config = random.nextInt(configsPerApplication);
+                        // The first configs of all applications are identical
+                        String md5 = config < sharedConfigs ? "shared-" + config : "app-" + application + "-" + config;
+                        ConfigCacheKey key = cacheKey(config);
+                        ConfigResponse response = serverCache.get(key);
+                        if (response == null) {
+                            serverCache.put(key, response(generation, md5, payloadSize), md5);
+                            resolved++;
+                        }
+                        else {
+                            assertEquals(md5, response.getConfigMd5());
+                            assertEquals(generation, response.getGeneration());
+                        }
+                    }
+                    return resolved;
+                }));
+            }
+            int resolved = 0;
+            for (Future<Integer> result : results)
+                resolved += result.get();
+            return resolved;
+        }
+        finally {
+            executor.shutdown();
+        }
+    }
+
+    private static ConfigCacheKey cacheKey(int config) {
+        return new ConfigCacheKey(new ConfigKey<>("foo", "id" + config, "bar"), defMd5);
     }
+
+    private static ConfigResponse response(long generation, String md5, int payloadSize) {
+        byte[] payload = new byte[payloadSize];
+        Arrays.fill(payload, (byte) 'a');
+        return new SlimeConfigResponse(new Utf8Array(payload), generation, false, md5,
+                                       CompressionInfo.create(CompressionType.LZ4, payloadSize * 10));
+    }
+
 }
@@ -43,6 +43,7 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
     private final Curator curator;
     private final ConfigCurator configCurator;
     private final Metrics metrics;
+    private final ConfigResponseCache configResponseCache = new ConfigResponseCache();
     private final SessionPreparer sessionPreparer;
     private final ConfigserverConfig configserverConfig;
     private final ConfigDefinitionRepo defRepo;
@@ -181,6 +182,8 @@ public class TestComponentRegistry implements GlobalComponentRegistry {
     @Override
     public Metrics getMetrics() { return metrics; }
     @Override
+    public ConfigResponseCache getConfigResponseCache() { return configResponseCache; }
+    @Override
     public SessionPreparer getSessionPreparer() { return sessionPreparer; }
     @Override
     public ConfigserverConfig getConfigserverConfig() { return configserverConfig; }
@@ -23,6 +23,7 @@ import com.yahoo.vespa.config.protocol.JRTClientConfigRequestV3;
 import com.yahoo.vespa.config.protocol.JRTServerConfigRequestV3;
 import com.yahoo.vespa.config.protocol.Trace;
 import com.yahoo.vespa.config.server.ModelStub;
+import com.yahoo.vespa.config.server.ConfigResponseCache;
 import com.yahoo.vespa.config.server.ServerCache;
 import com.yahoo.vespa.config.server.TestConfigDefinitionRepo;
 import com.yahoo.vespa.config.server.UnknownConfigDefinitionException;
@@ -96,7 +97,7 @@ public class ApplicationTest {
         com.yahoo.vespa.config.buildergen.ConfigDefinition def3 = getDef(key3, LogdConfig.CONFIG_DEF_SCHEMA);
         userDefs.add(key3, def3);
 
-        return new ServerCache(new TestConfigDefinitionRepo(), userDefs);
+        return new ServerCache(new TestConfigDefinitionRepo(), userDefs, new ConfigResponseCache());
     }
 
     private static com.yahoo.vespa.config.buildergen.ConfigDefinition getDef(ConfigDefinitionKey key, String[] schema) {
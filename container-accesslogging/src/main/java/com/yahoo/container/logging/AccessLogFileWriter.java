@@ -0,0 +1,328 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import com.yahoo.io.NativeIO;
+import com.yahoo.log.LogFileDb;
+import net.jpountz.lz4.LZ4FrameOutputStream;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+/**
+ * Writes access log entries to rotating files without going through java.util.logging.
+ *
+ * Threads logging an entry claim a slot in a fixed size ring, encode the entry directly into the
+ * reusable byte buffer of the slot and publish it, without taking any lock. A single writer thread
+ * copies published entries in order into a direct buffer which is written to the file channel when
+ * full or when there is nothing more to write, so the file is written in large batches.
+ * The writer thread parks when there is nothing to write, and is only unparked by a logging thread
+ * publishing an entry while it is parked. Logging threads only wait when the writer thread is a full ring behind.
+ *
+ * If compression is enabled, files are written as LZ4 frames as entries are written, rather than
+ * compressed after rotation, with the ".lz4" suffix added to the file name.
+ */
+class AccessLogFileWriter {
+
+    /** Encodes a single log entry, including any trailing newline */
+    interface Encoder {
+        void encode(OutputStream out) throws IOException;
+    }
+
+    private static final Logger logger = Logger.getLogger(AccessLogFileWriter.class.getName());
+
+    static final int DEFAULT_RING_SIZE = 1 << 14;
+    private static final int BATCH_SIZE = 256 * 1024;
+    private static final long DRAIN_WAIT_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long FULL_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(100);
+    private static final long COMPRESSED_FLUSH_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    private final String filePattern;
+    private final long[] rotationTimes;
+    private final String symlinkName;
+    private final boolean compress;
+
+    private final Slot[] slots;
+    private final int mask;
+    /** The sequence number of the next entry to claim by a logging thread */
+    private final AtomicLong claimed = new AtomicLong(0);
+    /** The number of entries consumed by the writer thread, which frees their slots for reuse */
+    private volatile long consumed = 0;
+    /** The number of entries written and flushed to the current file */
+    private volatile long flushed = 0;
+    private volatile boolean flushRequested = false;
+    private volatile boolean rotateRequested = false;
+    private volatile boolean running = true;
+    /** Whether the writer thread is about to park or parked, waiting for the next entry to be published */
+    private volatile boolean writerWaiting = false;
+    private final Thread writerThread;
+
+    // Owned by the writer thread
+    private final NativeIO nativeIO = new NativeIO();
+    private final ByteBuffer batch = ByteBuffer.allocateDirect(BATCH_SIZE);
+    private volatile String fileName;
+    private FileOutputStream file = null;
+    private FileChannel channel = null;
+    private OutputStream compressor = null;
+    private long lastDropPosition = 0;
+    private long nextRotationTime = 0;
+    private long lastFlushNanos = 0;
+
+    AccessLogFileWriter(String filePattern, String rotationTimes, String symlinkName, boolean compress) {
+        this(filePattern, LogFileHandler.calcTimesMinutes(rotationTimes), symlinkName, compress, DEFAULT_RING_SIZE);
+    }
+
+    AccessLogFileWriter(String filePattern, long[] rotationTimes, String symlinkName, boolean compress, int ringSize) {
+        if (Integer.bitCount(ringSize) != 1)
+            throw new IllegalArgumentException("Ring size must be a power of two, but was " + ringSize);
+        this.filePattern = filePattern;
+        this.rotationTimes = rotationTimes;
+        this.symlinkName = symlinkName;
+        this.compress = compress;
+        this.slots = new Slot[ringSize];
+        for (int i = 0; i < ringSize; i++)
+            slots[i] = new Slot();
+        this.mask = ringSize - 1;
+        this.writerThread = new Thread(this::run, "AccessLogWriter");
+        writerThread.setDaemon(true);
+        writerThread.start();
+    }
+
+    /**
+     * Encodes an entry by the given encoder and queues it for writing.
+     * This waits only if the ring of entries not yet written is full.
+     */
+    void write(Encoder encoder) {
+        long sequence = claimed.getAndIncrement();
+        Slot slot = slots[(int)(sequence & mask)];
+        while (sequence - consumed >= slots.length)
+            LockSupport.parkNanos(FULL_WAIT_NANOS);
+
+        slot.length = 0;
+        boolean encoded = false;
+        try {
+            encoder.encode(slot);
+            encoded = true;
+        } catch (IOException | RuntimeException e) {
+            logger.log(Level.WARNING, "Failed encoding access log entry", e);
+        } finally {
+            // The slot must be published regardless, also on errors, to not block the ring
+            if ( ! encoded)
+                slot.length = 0;
+            slot.sequence = sequence;
+            if (writerWaiting)
+                LockSupport.unpark(writerThread);
+        }
+    }
+
+    /** Makes the writer thread switch to a new file before writing any more entries */
+    void rotateNow() {
+        rotateRequested = true;
+        LockSupport.unpark(writerThread);
+    }
+
+    /** Waits until all entries written before this call are written and flushed to the current file */
+    void waitDrained() {
+        long target = claimed.get();
+        while (flushed < target && writerThread.isAlive()) {
+            flushRequested = true;
+            LockSupport.unpark(writerThread);
+            LockSupport.parkNanos(DRAIN_WAIT_NANOS);
+        }
+    }
+
+    /** Writes all entries written before this call, closes the current file and stops the writer thread */
+    void shutdown() {
+        running = false;
+        LockSupport.unpark(writerThread);
+        try {
+            writerThread.join();
+        }
+        catch (InterruptedException e) {
+        }
+    }
+
+    /** Returns the name of the file currently written to, or null if none is opened yet */
+    String getFileName() {
+        return fileName;
+    }
+
+    private void run() {
+        try {
+            long next = 0;
+            while (running || next < claimed.get()) {
+                if (rotateRequested) {
+                    rotateRequested = false;
+                    rotate(next);
+                }
+                Slot slot = slots[(int)(next & mask)];
+                if (slot.sequence == next) {
+                    append(slot);
+                    slot.release();
+                    consumed = ++next;
+                }
+                else {
+                    idle(next);
+                }
+            }
+            flush(next);
+            close();
+        } catch (Exception e) {
+            com.yahoo.protect.Process.logAndDie("Failed writing access log", e);
+        }
+    }
+
+    private void append(Slot slot) throws IOException {
+        long now = System.currentTimeMillis();
+        if (nextRotationTime <= 0)
+            nextRotationTime = LogFileHandler.nextRotationTime(now, rotationTimes);
+        if (now > nextRotationTime || channel == null)
+            rotate(consumed);
+
+        if (compress) {
+            compressor.write(slot.bytes, 0, slot.length);
+            return;
+        }
+        if (slot.length > batch.remaining())
+            writeBatch();
+        if (slot.length > batch.capacity())
+            writeFully(ByteBuffer.wrap(slot.bytes, 0, slot.length));
+        else
+            batch.put(slot.bytes, 0, slot.length);
+    }
+
+    /**
+     * Called when the next entry is not yet published: Writes what we have if appropriate, or else parks until
+     * the next entry is published, or until it is time to flush compressed entries.
+     */
+    private void idle(long next) throws IOException {
+        long sinceFlushNanos = System.nanoTime() - lastFlushNanos;
+        boolean unflushed = flushed < next;
+        if (unflushed && (flushRequested || ! compress || sinceFlushNanos >= COMPRESSED_FLUSH_INTERVAL_NANOS)) {
+            flush(next);
+            return;
+        }
+
+        writerWaiting = true;
+        // Check again after announcing that we are waiting, as the entry may have been published without unparking us
+        if (slots[(int)(next & mask)].sequence != next && running && ! rotateRequested) {
+            if (unflushed)
+                LockSupport.parkNanos(COMPRESSED_FLUSH_INTERVAL_NANOS - sinceFlushNanos);
+            else
+                LockSupport.park();
+        }
+        writerWaiting = false;
+    }
+
+    private void flush(long next) throws IOException {
+        flushRequested = false;
+        if (channel != null) {
+            if (compress)
+                compressor.flush();
+            else
+                writeBatch();
+            long position = channel.position();
+            nativeIO.dropPartialFileFromCache(file.getFD(), lastDropPosition, position, true);
+            lastDropPosition = position;
+        }
+        lastFlushNanos = System.nanoTime();
+        flushed = next;
+    }
+
+    private void writeBatch() throws IOException {
+        batch.flip();
+        writeFully(batch);
+        batch.clear();
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining())
+            channel.write(buffer);
+    }
+
+    private void rotate(long next) throws IOException {
+        String oldFileName = fileName;
+        close();
+        fileName = LogFormatter.insertDate(filePattern, System.currentTimeMillis()) + (compress ? ".lz4" : "");
+        LogFileHandler.checkAndCreateDir(fileName);
+        file = new FileOutputStream(fileName, true); // append mode, for safety
+        channel = file.getChannel();
+        lastDropPosition = 0;
+        if (compress)
+            compressor = new LZ4FrameOutputStream(Channels.newOutputStream(channel), LZ4FrameOutputStream.BLOCKSIZE.SIZE_256KB);
+        LogFileDb.nowLoggingTo(fileName);
+        LogFileHandler.createSymlinkToCurrentFile(fileName, symlinkName);
+        nextRotationTime = 0;
+        flushed = next;
+
+        if (oldFileName != null) {
+            File oldFile = new File(oldFileName);
+            if (oldFile.exists())
+                nativeIO.dropFileFromCache(oldFile);
+        }
+    }
+
+    private void close() throws IOException {
+        if (channel == null) return;
+        if (compress) {
+            compressor.close(); // Writes the frame end mark and closes the channel
+            compressor = null;
+        }
+        else {
+            writeBatch();
+        }
+        file.close();
+        file = null;
+        channel = null;
+    }
+
+    /** A reusable buffer in the ring, holding a single encoded entry when published */
+    private static final class Slot extends OutputStream {
+
+        private static final int INITIAL_SIZE = 512;
+        private static final int MAX_RETAINED_SIZE = 64 * 1024;
+
+        /** The sequence number of the entry held in this, set when the entry is published */
+        volatile long sequence = -1;
+        byte[] bytes = new byte[INITIAL_SIZE];
+        int length = 0;
+
+        @Override
+        public void write(int b) {
+            ensureCapacity(length + 1);
+            bytes[length++] = (byte)b;
+        }
+
+        @Override
+        public void write(byte[] b, int offset, int count) {
+            ensureCapacity(length + count);
+            System.arraycopy(b, offset, bytes, length, count);
+            length += count;
+        }
+
+        private void ensureCapacity(int capacity) {
+            if (capacity <= bytes.length) return;
+            byte[] grown = new byte[Math.max(capacity, bytes.length * 2)];
+            System.arraycopy(bytes, 0, grown, 0, length);
+            bytes = grown;
+        }
+
+        /** Called by the writer thread when this entry is written, before the slot is made available for reuse */
+        void release() {
+            length = 0;
+            if (bytes.length > MAX_RETAINED_SIZE)
+                bytes = new byte[INITIAL_SIZE];
+        }
+
+    }
+
+}
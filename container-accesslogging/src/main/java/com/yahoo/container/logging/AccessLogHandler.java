@@ -2,7 +2,9 @@
 package com.yahoo.container.logging;
 
 import com.yahoo.container.core.AccessLogConfig;
+import com.yahoo.text.Utf8;
 
+import java.util.logging.Level;
 import java.util.logging.Logger;
 
 /**
@@ -12,10 +14,18 @@ class AccessLogHandler {
 
     public Logger access = Logger.getAnonymousLogger();
     private LogFileHandler logFileHandler;
+    private AccessLogFileWriter fileWriter;
 
     public AccessLogHandler(AccessLogConfig.FileHandler config) {
         access.setUseParentHandlers(false);
 
+        if (config.bufferedWriter()) {
+            fileWriter = new AccessLogFileWriter(config.pattern(), config.rotation(),
+                                                 config.symlink().isEmpty() ? null : config.symlink(),
+                                                 config.compressOnRotation());
+            return;
+        }
+
         logFileHandler = new LogFileHandler(config.compressOnRotation());
 
         logFileHandler.setFilePattern(config.pattern());
@@ -34,7 +44,35 @@ class AccessLogHandler {
             handler.setSymlinkName(config.symlink());
     }
 
+    /** Returns whether entries are written by the buffered writer, such that they should be logged by an encoder */
+    boolean isBuffered() {
+        return fileWriter != null;
+    }
+
+    /** Logs the given entry, which must include any trailing newline */
+    void log(String entry) {
+        if (fileWriter != null)
+            fileWriter.write(out -> out.write(Utf8.toBytes(entry)));
+        else
+            access.log(Level.INFO, entry);
+    }
+
+    /**
+     * Logs the entry written by the given encoder, which must include any trailing newline.
+     * This must only be used if this is buffered.
+     */
+    void log(AccessLogFileWriter.Encoder encoder) {
+        if (fileWriter == null)
+            throw new IllegalStateException("Logging by encoder requires a buffered writer");
+        fileWriter.write(encoder);
+    }
+
     public void shutdown() {
+        if (fileWriter != null) {
+            fileWriter.shutdown();
+            return;
+        }
+
         logFileHandler.close();
         access.removeHandler(logFileHandler);
 
@@ -43,6 +81,10 @@ class AccessLogHandler {
     }
 
     void rotateNow() {
-        logFileHandler.rotateNow();
+        if (fileWriter != null)
+            fileWriter.rotateNow();
+        else
+            logFileHandler.rotateNow();
     }
+
 }
@@ -181,6 +181,11 @@ public class LogFileHandler extends StreamHandler {
      * @return the next rotation time
      */
     long getNextRotationTime (long now) {
+        return nextRotationTime(now, rotationTimes);
+    }
+
+    /** Returns the first of the given rotation times (in millis from midnight) after the given time */
+    static long nextRotationTime(long now, long[] rotationTimes) {
         if (now <= 0) {
             now = System.currentTimeMillis();
         }
@@ -209,7 +214,7 @@ public class LogFileHandler extends StreamHandler {
         flush();
     }
 
-    private void checkAndCreateDir(String pathname) {
+    static void checkAndCreateDir(String pathname) {
       int lastSlash = pathname.lastIndexOf("/");
       if (lastSlash > -1) {
           String pathExcludingFilename = pathname.substring(0, lastSlash);
@@ -251,7 +256,7 @@ public class LogFileHandler extends StreamHandler {
             throw new RuntimeException("Couldn't open log file '" + fileName + "'", e);
         }
 
-        createSymlinkToCurrentFile();
+        createSymlinkToCurrentFile(fileName, symlinkName);
 
         nextRotationTime = 0; //figure it out later (lazy evaluation)
         if ((oldFileName != null)) {
@@ -292,7 +297,7 @@ public class LogFileHandler extends StreamHandler {
     }
 
     /** Name files by date - create a symlink with a constant name to the newest file */
-    private void createSymlinkToCurrentFile() {
+    static void createSymlinkToCurrentFile(String fileName, String symlinkName) {
         if (symlinkName == null) return;
         File f = new File(fileName);
         File f2 = new File(f.getParent(), symlinkName);
@@ -320,7 +325,7 @@ public class LogFileHandler extends StreamHandler {
      * Calculate rotation times array, given times in minutes, as "0 60 ..."
      *
      */
-    private static long[] calcTimesMinutes(String times) {
+    static long[] calcTimesMinutes(String times) {
         ArrayList<Long> list = new ArrayList<>(50);
         int i = 0;
         boolean etc = false;
@@ -0,0 +1,188 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.container.logging;
+
+import com.yahoo.io.IOUtils;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.Assert.fail;
+
+public class AccessLogFileWriterTestCase {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void entries_from_concurrent_threads_are_written_whole() throws IOException, InterruptedException {
+        File root = temporaryFolder.newFolder("concurrent");
+        // A small ring makes the logging threads wrap around it and wait for the writer many times
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S",
+                                                             new long[] { 0 }, null, false, 8);
+        int threads = 8, entriesPerThread = 2000;
+        List<Thread> loggers = new ArrayList<>();
+        for (int t = 0; t < threads; t++) {
+            int thread = t;
+            loggers.add(new Thread(() -> {
+                for (int i = 0; i < entriesPerThread; i++)
+                    writeLine(writer, "thread " + thread + " entry " + i);
+            }));
+        }
+        loggers.forEach(Thread::start);
+        for (Thread logger : loggers)
+            logger.join();
+        writer.waitDrained();
+
+        String[] lines = IOUtils.readFile(new File(writer.getFileName())).split("\n");
+        assertThat(lines).hasSize(threads * entriesPerThread);
+        assertThat(new HashSet<>(Arrays.asList(lines))).hasSize(threads * entriesPerThread);
+        for (String line : lines)
+            assertThat(line).matches("thread \\d entry \\d+");
+        writer.shutdown();
+    }
+
+    @Test
+    public void entries_larger_than_the_batch_buffer_are_written() throws IOException {
+        File root = temporaryFolder.newFolder("large");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S",
+                                                             "0 60 ...", null, false);
+        StringBuilder large = new StringBuilder();
+        for (int i = 0; i < 100000; i++)
+            large.append((char)('a' + i % 26));
+        writeLine(writer, "small");
+        writeLine(writer, large.toString());
+        writeLine(writer, "small again");
+        writer.waitDrained();
+
+        assertThat(IOUtils.readFile(new File(writer.getFileName()))).isEqualTo("small\n" + large + "\nsmall again\n");
+        writer.shutdown();
+    }
+
+    @Test
+    public void files_are_compressed_while_written() throws IOException {
+        File root = temporaryFolder.newFolder("compressed");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S%s",
+                                                             "0 60 ...", null, true);
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            writeLine(writer, "entry " + i);
+            expected.append("entry ").append(i).append('\n');
+        }
+        writer.waitDrained();
+        String fileName = writer.getFileName();
+        assertThat(fileName).endsWith(".lz4");
+        writer.shutdown();
+
+        File file = new File(fileName);
+        assertThat(file.length()).isLessThan(expected.length());
+        assertThat(readCompressed(file)).isEqualTo(expected.toString());
+    }
+
+    @Test
+    public void rotation_switches_file_and_symlink() throws IOException, InterruptedException {
+        File root = temporaryFolder.newFolder("rotation");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S%s",
+                                                             "0 60 ...", "symlink", false);
+        writeLine(writer, "first");
+        writer.waitDrained();
+        String first = writer.getFileName();
+
+        Thread.sleep(2); // Ensure the next file gets a different name
+        writer.rotateNow();
+        writeLine(writer, "second");
+        writer.waitDrained();
+        String second = writer.getFileName();
+        writer.shutdown();
+
+        assertThat(second).isNotEqualTo(first);
+        assertThat(IOUtils.readFile(new File(first))).isEqualTo("first\n");
+        assertThat(IOUtils.readFile(new File(second))).isEqualTo("second\n");
+        assertThat(IOUtils.readFile(new File(root, "symlink"))).isEqualTo("second\n");
+    }
+
+    @Test
+    public void failing_encoder_does_not_block_later_entries() throws IOException {
+        File root = temporaryFolder.newFolder("failing");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S",
+                                                             new long[] { 0 }, null, false, 2);
+        for (int i = 0; i < 5; i++) {
+            writer.write(out -> {
+                out.write("partial".getBytes(StandardCharsets.UTF_8));
+                throw new IOException("Failed");
+            });
+        }
+        writeLine(writer, "ok");
+        writer.waitDrained();
+
+        assertThat(IOUtils.readFile(new File(writer.getFileName()))).isEqualTo("ok\n");
+        writer.shutdown();
+    }
+
+    @Test
+    public void encoder_throwing_an_error_does_not_block_later_entries() throws IOException {
+        File root = temporaryFolder.newFolder("error");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S",
+                                                             new long[] { 0 }, null, false, 2);
+        for (int i = 0; i < 5; i++) {
+            try {
+                writer.write(out -> {
+                    out.write("partial".getBytes(StandardCharsets.UTF_8));
+                    throw new AssertionError("Failed");
+                });
+                fail("Expected the error to propagate");
+            } catch (AssertionError e) {
+                assertThat(e.getMessage()).isEqualTo("Failed");
+            }
+        }
+        writeLine(writer, "ok");
+        writer.waitDrained();
+
+        assertThat(IOUtils.readFile(new File(writer.getFileName()))).isEqualTo("ok\n");
+        writer.shutdown();
+    }
+
+    @Test
+    public void entries_written_while_the_writer_thread_is_parked_are_written() throws IOException, InterruptedException {
+        File root = temporaryFolder.newFolder("parked");
+        AccessLogFileWriter writer = new AccessLogFileWriter(root.getAbsolutePath() + "/access.%Y%m%d%H%M%S",
+                                                             "0 60 ...", null, false);
+        writeLine(writer, "first");
+        writer.waitDrained();
+        Thread.sleep(100); // Let the writer thread park, as there is nothing more to write
+
+        // Not using waitDrained, as that also unparks the writer thread
+        writeLine(writer, "second");
+        File file = new File(writer.getFileName());
+        long deadline = System.currentTimeMillis() + 60_000;
+        while ( ! IOUtils.readFile(file).equals("first\nsecond\n") && System.currentTimeMillis() < deadline)
+            Thread.sleep(1);
+        assertThat(IOUtils.readFile(file)).isEqualTo("first\nsecond\n");
+        writer.shutdown();
+    }
+
+    private static void writeLine(AccessLogFileWriter writer, String line) {
+        byte[] bytes = (line + "\n").getBytes(StandardCharsets.UTF_8);
+        writer.write(out -> out.write(bytes));
+    }
+
+    private static String readCompressed(File file) throws IOException {
+        try (InputStreamReader reader = new InputStreamReader(new LZ4FrameInputStream(new FileInputStream(file)),
+                                                              StandardCharsets.UTF_8)) {
+            return IOUtils.readAll(reader);
+        }
+    }
+
+}
@@ -1,6 +1,8 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.container.handler;
 
+import com.yahoo.compress.LogBlockReader;
+import com.yahoo.compress.LogBlockWriter;
 import com.yahoo.vespa.defaults.Defaults;
 
 import java.io.BufferedReader;
@@ -56,6 +58,15 @@ class LogReader {
             List<Path> logs = getMatchingFiles(from, to);
             for (int i = 0; i < logs.size(); i++) {
                 Path log = logs.get(i);
+
+                // Block compressed logs are filtered by only reading the blocks in the time range.
+                if (log.toString().endsWith(LogBlockWriter.FILE_SUFFIX)) {
+                    if ( ! (outputStream instanceof GZIPOutputStream))
+                        outputStream = new GZIPOutputStream(outputStream);
+                    LogBlockReader.writeMatching(log, new LogBlockReader.Query(from, to, null, null), outputStream);
+                    continue;
+                }
+
                 boolean zipped = log.toString().endsWith(".gz");
                 try (InputStream in = Files.newInputStream(log)) {
                     InputStream inProxy;
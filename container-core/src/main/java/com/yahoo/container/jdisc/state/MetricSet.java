@@ -39,11 +39,19 @@ public final class MetricSet implements Iterable<Map.Entry<String, MetricValue>>
     }
 
     void add(String key, Number val) {
-        add(key, CountMetric.newSingleValue(val));
+        MetricValue existingValue = data.get(key);
+        if (existingValue instanceof CountMetric)
+            existingValue.add(val);
+        else
+            add(key, CountMetric.newSingleValue(val));
     }
 
     void set(String key, Number val) {
-        add(key, GaugeMetric.newSingleValue(val));
+        MetricValue existingValue = data.get(key);
+        if (existingValue instanceof GaugeMetric)
+            existingValue.add(val);
+        else
+            add(key, GaugeMetric.newSingleValue(val));
     }
 
     void add(MetricSet metricSet) {
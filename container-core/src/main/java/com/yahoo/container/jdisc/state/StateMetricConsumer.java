@@ -1,25 +1,32 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.container.jdisc.state;
 
+import com.yahoo.concurrent.ThreadLocalDirectory;
 import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.application.MetricConsumer;
 
 import java.util.Map;
 
 /**
+ * A metric consumer which accumulates metrics in a snapshot per updating thread, such that threads
+ * reporting metrics do not contend with each other. The per-thread snapshots are collected and merged
+ * by the {@link StateMonitor} owning the directory they are written to.
+ *
  * @author Simon Thoresen Hult
  */
 final class StateMetricConsumer implements MetricConsumer {
 
     final static Metric.Context NULL_CONTEXT = StateMetricContext.newInstance(null);
-    private final Object lock = new Object();
-    private MetricSnapshot metricSnapshot = new MetricSnapshot();
+
+    private final ThreadLocalDirectory<MetricSnapshot, Update> metricUpdates;
+
+    StateMetricConsumer(ThreadLocalDirectory<MetricSnapshot, Update> metricUpdates) {
+        this.metricUpdates = metricUpdates;
+    }
 
     @Override
     public void set(String key, Number val, Metric.Context ctx) {
-        synchronized (lock) {
-            metricSnapshot.set(dimensionsOrDefault(ctx), key, val);
-        }
+        metricUpdates.update(new Update(dimensionsOrDefault(ctx), key, val, true));
     }
 
     private MetricDimensions dimensionsOrDefault(Metric.Context ctx) {
@@ -28,9 +35,7 @@ final class StateMetricConsumer implements MetricConsumer {
 
     @Override
     public void add(String key, Number val, Metric.Context ctx) {
-        synchronized (lock) {
-            metricSnapshot.add(dimensionsOrDefault(ctx), key, val);
-        }
+        metricUpdates.update(new Update(dimensionsOrDefault(ctx), key, val, false));
     }
 
     @Override
@@ -38,13 +43,45 @@ final class StateMetricConsumer implements MetricConsumer {
         return StateMetricContext.newInstance(properties);
     }
 
-    MetricSnapshot createSnapshot() {
-        MetricSnapshot metricSnapshot;
-        synchronized (lock) {
-            metricSnapshot = this.metricSnapshot;
-            this.metricSnapshot = this.metricSnapshot.createSnapshot();
+    /** Returns a directory of per-thread metric snapshots which can be shared by consumers */
+    static ThreadLocalDirectory<MetricSnapshot, Update> newMetricUpdates() {
+        return new ThreadLocalDirectory<>(new SnapshotUpdater());
+    }
+
+    /** A single set or add of a metric */
+    static final class Update {
+
+        private final MetricDimensions dimensions;
+        private final String key;
+        private final Number value;
+        private final boolean isGauge;
+
+        Update(MetricDimensions dimensions, String key, Number value, boolean isGauge) {
+            this.dimensions = dimensions;
+            this.key = key;
+            this.value = value;
+            this.isGauge = isGauge;
         }
-        return metricSnapshot;
+
+    }
+
+    private static class SnapshotUpdater implements ThreadLocalDirectory.Updater<MetricSnapshot, Update> {
+
+        @Override
+        public MetricSnapshot createGenerationInstance(MetricSnapshot previous) {
+            // Gauge values are carried over between snapshots by the state monitor
+            return new MetricSnapshot();
+        }
+
+        @Override
+        public MetricSnapshot update(MetricSnapshot current, Update update) {
+            if (update.isGauge)
+                current.set(update.dimensions, update.key, update.value);
+            else
+                current.add(update.dimensions, update.key, update.value);
+            return current;
+        }
+
     }
 
 }
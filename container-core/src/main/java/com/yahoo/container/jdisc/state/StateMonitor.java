@@ -3,6 +3,7 @@ package com.yahoo.container.jdisc.state;
 
 import com.google.inject.Inject;
 import com.yahoo.component.AbstractComponent;
+import com.yahoo.concurrent.ThreadLocalDirectory;
 import com.yahoo.container.jdisc.config.HealthMonitorConfig;
 import com.yahoo.jdisc.Timer;
 import com.yahoo.jdisc.application.MetricConsumer;
@@ -11,7 +12,6 @@ import com.yahoo.log.LogLevel;
 
 import java.util.Map;
 import java.util.TreeSet;
-import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -30,7 +30,10 @@ public class StateMonitor extends AbstractComponent {
 
     public enum Status {up, down, initializing}
 
-    private final CopyOnWriteArrayList<StateMetricConsumer> consumers = new CopyOnWriteArrayList<>();
+    private final ThreadLocalDirectory<MetricSnapshot, StateMetricConsumer.Update> metricUpdates =
+            StateMetricConsumer.newMetricUpdates();
+    /** The gauges of the last snapshot, with their last values, to which metric updates are added. Accessed in checkTime only. */
+    private MetricSnapshot gauges = new MetricSnapshot();
     private final Thread thread;
     private final Timer timer;
     private final long snapshotIntervalMs;
@@ -69,11 +72,12 @@ public class StateMonitor extends AbstractComponent {
         thread.start();
     }
 
-    /** Returns a metric consumer for jDisc which will write metrics back to this */
+    /**
+     * Returns a metric consumer for jDisc which will write metrics back to this.
+     * Metrics are accumulated per updating thread, and merged when a snapshot is taken.
+     */
     public MetricConsumer newMetricConsumer() {
-        StateMetricConsumer consumer = new StateMetricConsumer();
-        consumers.add(consumer);
-        return consumer;
+        return new StateMetricConsumer(metricUpdates);
     }
 
     public void status(Status status) {
@@ -118,10 +122,14 @@ public class StateMonitor extends AbstractComponent {
     }
 
     private MetricSnapshot createSnapshot(long fromMillis, long toMillis) {
-        MetricSnapshot snapshot = new MetricSnapshot(fromMillis, toMillis, TimeUnit.MILLISECONDS);
-        for (StateMetricConsumer consumer : consumers) {
-            snapshot.add(consumer.createSnapshot());
+        MetricSnapshot metrics = gauges;
+        for (MetricSnapshot threadMetrics : metricUpdates.fetch()) {
+            metrics.add(threadMetrics);
         }
+        gauges = metrics.createSnapshot();
+
+        MetricSnapshot snapshot = new MetricSnapshot(fromMillis, toMillis, TimeUnit.MILLISECONDS);
+        snapshot.add(metrics);
         updateNames(snapshot);
         return snapshot;
     }
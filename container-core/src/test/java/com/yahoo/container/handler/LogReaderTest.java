@@ -1,6 +1,7 @@
 // Copyright 2018 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.container.handler;
 
+import com.yahoo.compress.LogBlockWriter;
 import com.yahoo.vespa.test.file.TestFileSystem;
 import org.junit.Before;
 import org.junit.Test;
@@ -69,6 +70,24 @@ public class LogReaderTest {
         assertEquals(log1 + log2, decompress(zippedBaos.toByteArray()));
     }
 
+    @Test
+    public void testBlockCompressedLogsAreFilteredOnTime() throws IOException {
+        String log3 = "0.4\thost\t5480\tcontainer\tstdout\tinfo\tmessage at 0.4\n";
+        String log4 = "0.5\thost\t5480\tcontainer\tstdout\tinfo\tmessage at 0.5\n";
+        Path log = logDirectory.resolve("log3.log" + LogBlockWriter.FILE_SUFFIX);
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(log))) {
+            writer.write(log3);
+            writer.write(log4);
+        }
+        Files.setLastModifiedTime(log, FileTime.from(Instant.ofEpochMilli(500)));
+
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        LogReader logReader = new LogReader(logDirectory, Pattern.compile(".*3\\.log.*"));
+        logReader.writeLogs(baos, Instant.ofEpochMilli(450), Instant.ofEpochMilli(600));
+
+        assertEquals(log4, decompress(baos.toByteArray()));
+    }
+
     private byte[] compress(String input) throws IOException {
         ByteArrayOutputStream baos = new ByteArrayOutputStream();
         OutputStream zip = new GZIPOutputStream(baos);
@@ -110,6 +110,31 @@ public class StateHandlerTest extends StateHandlerTestBase {
                      json.get("metrics").get("values").get(0).get("values").get("count").asDouble(), 0.001);
     }
 
+    @Test
+    public void testAggregationOfMetricsFromMultipleThreads() throws Exception {
+        Thread[] threads = new Thread[4];
+        for (int i = 0; i < threads.length; i++) {
+            threads[i] = new Thread(() -> {
+                for (int j = 0; j < 100; j++) {
+                    metric.add("foo", 1, null);
+                    metric.set("bar", 10, null);
+                }
+            });
+            threads[i].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        metric.add("foo", 1, null);
+        incrementCurrentTimeAndAssertSnapshot(SNAPSHOT_INTERVAL);
+        JsonNode json = requestAsJson("http://localhost/state/v1/all");
+        assertEquals(json.toString(), 2, json.get("metrics").get("values").size());
+        assertEquals(json.toString(), 401,
+                     getMetricValuesByName(json, "foo").get("count").asDouble(), 0.001);
+        assertEquals(json.toString(), 400,
+                     getMetricValuesByName(json, "bar").get("count").asDouble(), 0.001);
+    }
+
     @Test
     public void testReadabilityOfJsonReport() throws Exception {
         metric.add("foo", 1, null);
@@ -256,6 +281,15 @@ public class StateHandlerTest extends StateHandlerTestBase {
         assertEquals(json.toString(), 0, metricValues.get("count").asInt());
     }
 
+    private JsonNode getMetricValuesByName(JsonNode root, String name) {
+        for (JsonNode metric : root.get("metrics").get("values")) {
+            if (metric.get("name").asText().equals(name)) {
+                return metric.get("values");
+            }
+        }
+        throw new AssertionError("No metric '" + name + "' in " + root);
+    }
+
     private JsonNode getFirstMetricValueNode(JsonNode root) {
         assertEquals(root.toString(), 1, root.get("metrics").get("values").size());
         JsonNode metricValues = root.get("metrics").get("values").get(0).get("values");
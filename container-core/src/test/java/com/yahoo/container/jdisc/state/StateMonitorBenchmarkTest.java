@@ -27,7 +27,7 @@ import static org.junit.Assert.assertTrue;
  */
 public class StateMonitorBenchmarkTest {
 
-    private final static int NUM_THREADS = 32;
+    private final static int NUM_THREADS = 64;
     private final static int NUM_UPDATES = 1000;//0000;
 
     @Test
@@ -35,15 +35,22 @@ public class StateMonitorBenchmarkTest {
         StateMonitor monitor = new StateMonitor(new HealthMonitorConfig(new HealthMonitorConfig.Builder()),
                                                 new SystemTimer());
         Provider<MetricConsumer> provider = MetricConsumerProviders.wrap(monitor);
+        MetricConsumer sharedConsumer = monitor.newMetricConsumer();
+        Provider<MetricConsumer> sharedProvider = () -> sharedConsumer;
         performUpdates(provider, 8);
         for (int i = 1; i <= NUM_THREADS; i *= 2) {
             long millis = performUpdates(provider, i);
-            System.err.format("%2d threads, %5d millis => %9d ups\n",
-                              i, millis, (int)((i * NUM_UPDATES) / (millis / 1000.0)));
+            long sharedMillis = performUpdates(sharedProvider, i);
+            System.err.format("%2d threads, %5d millis => %9d ups, shared consumer: %5d millis => %9d ups\n",
+                              i, millis, updatesPerSecond(i, millis), sharedMillis, updatesPerSecond(i, sharedMillis));
         }
         monitor.deconstruct();
     }
 
+    private static int updatesPerSecond(int numThreads, long millis) {
+        return (int)((numThreads * NUM_UPDATES) / (Math.max(1, millis) / 1000.0));
+    }
+
     private long performUpdates(Provider<MetricConsumer> metricProvider, int numThreads) throws Exception {
         ThreadFactory threadFactory = new ContainerThread.Factory(metricProvider);
         ExecutorService executor = Executors.newFixedThreadPool(numThreads, threadFactory);
@@ -73,6 +80,7 @@ public class StateMonitorBenchmarkTest {
             Metric.Context ctx = metric.createContext(Collections.<String, Object>emptyMap());
             for (int i = 0; i < NUM_UPDATES; ++i) {
                 metric.add("foo", 69L, ctx);
+                metric.set("bar", i, ctx);
             }
             return true;
         }
@@ -232,6 +232,8 @@ public abstract class CompositeItem extends Item {
     }
 
     private void fixConnexity(CompositeItem copy) {
+        if ( ! hasConnectivity(this)) return; // nothing to fix, which is the common case
+
         List<Item> flatland = new ArrayList<>();
         List<Item> flatCopy = new ArrayList<>();
         taggingFlatten(this, flatland);
@@ -247,6 +249,17 @@ public abstract class CompositeItem extends Item {
         }
     }
 
+    /** Returns whether any of the items which would be returned by taggingFlatten is connected to another item */
+    private static boolean hasConnectivity(Item tree) {
+        if (tree.hasUniqueID()) return tree.connectedItem != null;
+        if ( ! (tree instanceof CompositeItem)) return false;
+        List<Item> subitems = ((CompositeItem)tree).subitems;
+        for (int i = 0; i < subitems.size(); i++) {
+            if (hasConnectivity(subitems.get(i))) return true;
+        }
+        return false;
+    }
+
     private void taggingFlatten(Item tree, List<Item> container) {
         if (tree.hasUniqueID()) {
             container.add(tree);
@@ -976,7 +976,12 @@ public class Query extends com.yahoo.processing.Request implements Cloneable {
         return true;
     }
 
-    /** Returns a clone of this query */
+    /**
+     * Returns a clone of this query.
+     * The query tree and the properties are deep copied, such that the clone may be modified freely,
+     * while the rank features and rank properties, which hold immutable values only, are shared
+     * with the clone until either of them is modified.
+     */
     @Override
     public Query clone() {
         Query clone = (Query) super.clone();
@@ -45,6 +45,9 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     private final Set<Integer> alreadyFailedNodes;
     private Query query;
 
+    /** The sorted lean hits received from each node, in the order they were received */
+    private final List<List<LeanHit>> partialHits = new ArrayList<>();
+
     private boolean adaptiveTimeoutCalculated = false;
     private long adaptiveTimeoutMin = 0;
     private long adaptiveTimeoutMax = 0;
@@ -71,10 +74,11 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
     /**
      * Sends search queries to the contained {@link SearchInvoker} sub-invokers. If the search
      * query has an offset other than zero, it will be reset to zero and the expected hit amount
-     * will be adjusted accordingly.
+     * will be adjusted accordingly. The request is created once and shared by the sub-invokers
+     * where possible.
      */
     @Override
-    protected void sendSearchRequest(Query query) throws IOException {
+    protected Object sendSearchRequest(Query query, Object unusedContext) throws IOException {
         this.query = query;
         invokers.forEach(invoker -> invoker.setMonitor(this));
         deadline = currentTime() + query.getTimeLeft();
@@ -84,19 +88,20 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         query.setHits(query.getHits() + query.getOffset());
         query.setOffset(0);
 
+        Object context = null;
         for (SearchInvoker invoker : invokers) {
-            invoker.sendSearchRequest(query);
+            context = invoker.sendSearchRequest(query, context);
             askedNodes++;
         }
 
         query.setHits(originalHits);
         query.setOffset(originalOffset);
+        return null;
     }
 
     @Override
     protected InvokerResult getSearchResult(Execution execution) throws IOException {
         InvokerResult result = new InvokerResult(query, query.getHits());
-        List<LeanHit> merged = Collections.emptyList();
         long nextTimeout = query.getTimeLeft();
         try {
             while (!invokers.isEmpty() && nextTimeout >= 0) {
@@ -105,7 +110,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                     log.fine(() -> "Search timed out with " + askedNodes + " requests made, " + answeredNodes + " responses received");
                     break;
                 } else {
-                    merged = mergeResult(result.getResult(), invoker.getSearchResult(execution), merged);
+                    mergeResult(result.getResult(), invoker.getSearchResult(execution));
                     ejectInvoker(invoker);
                 }
                 nextTimeout = nextTimeout();
@@ -116,10 +121,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
 
         insertNetworkErrors(result.getResult());
         result.getResult().setCoverage(createCoverage());
-        int needed = query.getOffset() + query.getHits();
-        for (int index = query.getOffset(); (index < merged.size()) && (index < needed); index++) {
-            result.getLeanHits().add(merged.get(index));
-        }
+        mergeLeanHits(partialHits, query.getOffset(), query.getOffset() + query.getHits(), result.getLeanHits());
         query.setOffset(0);  // Now we are all trimmed down
         return result;
     }
@@ -190,7 +192,7 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
         return nextAdaptive;
     }
 
-    private List<LeanHit> mergeResult(Result result, InvokerResult partialResult, List<LeanHit> current) {
+    private void mergeResult(Result result, InvokerResult partialResult) {
         collectCoverage(partialResult.getResult().getCoverage(true));
 
         result.mergeWith(partialResult.getResult());
@@ -200,42 +202,95 @@ public class InterleavedSearchInvoker extends SearchInvoker implements ResponseM
                 result.hits().add(hit);
             }
         }
-        if (current.isEmpty() ) {
-            return partialResult.getLeanHits();
+        if ( ! partialResult.getLeanHits().isEmpty()) {
+            partialHits.add(partialResult.getLeanHits());
         }
-        List<LeanHit> partial = partialResult.getLeanHits();
-        if (partial.isEmpty()) {
-            return current;
+    }
+
+    /**
+     * Merges the given sorted lists of hits into the given target list, using a heap over a cursor into each list.
+     * Only the hits in the range [offset, needed) of the merged list are added. A hit which is equal to the previous
+     * one is a duplicate returned by another node, and is dropped, such that the hit from the earliest list is kept.
+     */
+    static void mergeLeanHits(List<List<LeanHit>> lists, int offset, int needed, List<LeanHit> target) {
+        if (lists.size() == 1) {
+            List<LeanHit> hits = lists.get(0);
+            for (int index = offset; (index < hits.size()) && (index < needed); index++) {
+                target.add(hits.get(index));
+            }
+            return;
         }
 
-        int needed = query.getOffset() + query.getHits();
-        List<LeanHit> merged = new ArrayList<>(needed);
-        int indexCurrent = 0;
-        int indexPartial = 0;
-        while (indexCurrent < current.size() && indexPartial < partial.size() && merged.size() < needed) {
-            LeanHit incommingHit = partial.get(indexPartial);
-            LeanHit currentHit = current.get(indexCurrent);
-
-            int cmpRes = currentHit.compareTo(incommingHit);
-            if (cmpRes < 0) {
-                merged.add(currentHit);
-                indexCurrent++;
-            } else if (cmpRes > 0) {
-                merged.add(incommingHit);
-                indexPartial++;
-            } else { // Duplicates
-                merged.add(currentHit);
-                indexCurrent++;
-                indexPartial++;
+        Cursor[] heap = new Cursor[lists.size()];
+        int heapSize = 0;
+        for (int i = 0; i < lists.size(); i++) {
+            if ( ! lists.get(i).isEmpty()) {
+                heap[heapSize++] = new Cursor(lists.get(i), i);
             }
         }
-        while ((indexCurrent < current.size()) && (merged.size() < needed)) {
-            merged.add(current.get(indexCurrent++));
+        for (int i = heapSize / 2 - 1; i >= 0; i--) {
+            siftDown(heap, heapSize, i);
         }
-        while ((indexPartial < partial.size()) && (merged.size() < needed)) {
-            merged.add(partial.get(indexPartial++));
+
+        LeanHit previous = null;
+        int index = 0;
+        while (heapSize > 0 && index < needed) {
+            Cursor top = heap[0];
+            LeanHit hit = top.hit();
+            if (previous == null || previous.compareTo(hit) != 0) {
+                if (index >= offset) {
+                    target.add(hit);
+                }
+                index++;
+                previous = hit;
+            }
+            if ( ! top.advance()) {
+                heap[0] = heap[--heapSize];
+            }
+            siftDown(heap, heapSize, 0);
         }
-        return merged;
+    }
+
+    private static void siftDown(Cursor[] heap, int heapSize, int index) {
+        Cursor cursor = heap[index];
+        while (true) {
+            int child = 2 * index + 1;
+            if (child >= heapSize) break;
+            if (child + 1 < heapSize && heap[child + 1].compareTo(heap[child]) < 0) {
+                child++;
+            }
+            if (cursor.compareTo(heap[child]) <= 0) break;
+            heap[index] = heap[child];
+            index = child;
+        }
+        heap[index] = cursor;
+    }
+
+    /** A position in a sorted list of hits, ordered by the hit at the position, and then by the order of the list */
+    private static final class Cursor implements Comparable<Cursor> {
+
+        private final List<LeanHit> hits;
+        private final int order;
+        private int position = 0;
+
+        Cursor(List<LeanHit> hits, int order) {
+            this.hits = hits;
+            this.order = order;
+        }
+
+        LeanHit hit() { return hits.get(position); }
+
+        /** Moves to the next hit and returns true, or returns false if there are no more hits */
+        boolean advance() {
+            return ++position < hits.size();
+        }
+
+        @Override
+        public int compareTo(Cursor other) {
+            int result = hit().compareTo(other.hit());
+            return result != 0 ? result : Integer.compare(order, other.order);
+        }
+
     }
 
     private void collectCoverage(Coverage source) {
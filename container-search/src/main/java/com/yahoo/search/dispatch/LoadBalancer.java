@@ -3,12 +3,19 @@ package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
+
+import com.google.common.collect.ImmutableMap;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Random;
 import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
 import java.util.logging.Logger;
 
 /**
@@ -28,15 +35,26 @@ public class LoadBalancer {
     private static final double MIN_QUERY_TIME = 0.001;
 
     private final List<GroupStatus> scoreboard;
+    private final Map<Integer, GroupStatus> scoreboardByGroupId;
     private final GroupScheduler scheduler;
 
     public LoadBalancer(SearchCluster searchCluster, boolean roundRobin) {
+        this(searchCluster, roundRobin ? DispatchConfig.DistributionPolicy.ROUNDROBIN : DispatchConfig.DistributionPolicy.ADAPTIVE);
+    }
+
+    public LoadBalancer(SearchCluster searchCluster, DispatchConfig.DistributionPolicy.Enum policy) {
         this.scoreboard = new ArrayList<>(searchCluster.groups().size());
+        ImmutableMap.Builder<Integer, GroupStatus> byGroupId = ImmutableMap.builder();
         for (Group group : searchCluster.orderedGroups()) {
-            scoreboard.add(new GroupStatus(group));
+            GroupStatus groupStatus = new GroupStatus(group);
+            scoreboard.add(groupStatus);
+            byGroupId.put(group.id(), groupStatus);
         }
-        if (roundRobin || scoreboard.size() == 1) {
+        this.scoreboardByGroupId = byGroupId.build();
+        if (policy == DispatchConfig.DistributionPolicy.ROUNDROBIN || scoreboard.size() == 1) {
             this.scheduler = new RoundRobinScheduler(scoreboard);
+        } else if (policy == DispatchConfig.DistributionPolicy.BEST_OF_RANDOM_2) {
+            this.scheduler = new BestOfRandom2Scheduler(ThreadLocalRandom::current, scoreboard);
         } else {
             this.scheduler = new AdaptiveScheduler(new Random(), scoreboard);
         }
@@ -50,18 +68,14 @@ public class LoadBalancer {
      * @return the node group to target, or <i>empty</i> if the internal dispatch logic cannot be used
      */
     public Optional<Group> takeGroup(Set<Integer> rejectedGroups) {
-        synchronized (this) {
-            Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
-
-            if (best.isPresent()) {
-                GroupStatus gs = best.get();
-                gs.allocate();
-                Group ret = gs.group;
-                log.fine(() -> "Offering <" + ret + "> for query connection");
-                return Optional.of(ret);
-            } else {
-                return Optional.empty();
-            }
+        Optional<GroupStatus> best = scheduler.takeNextGroup(rejectedGroups);
+
+        if (best.isPresent()) {
+            Group ret = best.get().group;
+            log.fine(() -> "Offering <" + ret + "> for query connection");
+            return Optional.of(ret);
+        } else {
+            return Optional.empty();
         }
     }
 
@@ -73,44 +87,49 @@ public class LoadBalancer {
      * @param searchTimeMs query execution time in milliseconds, used for adaptive load balancing
      */
     public void releaseGroup(Group group, boolean success, double searchTimeMs) {
-        synchronized (this) {
-            for (GroupStatus sched : scoreboard) {
-                if (sched.group.id() == group.id()) {
-                    sched.release(success, (double) searchTimeMs / 1000.0);
-                    break;
-                }
-            }
+        GroupStatus sched = scoreboardByGroupId.get(group.id());
+        if (sched != null) {
+            sched.release(success, searchTimeMs / 1000.0);
         }
     }
 
+    /**
+     * The load statistics of a single group. Allocations are counted atomically and the search time average
+     * is guarded by the monitor of this, so concurrent updates to different groups never contend.
+     */
     static class GroupStatus {
         private final Group group;
-        private int allocations = 0;
+        private final AtomicInteger allocations = new AtomicInteger(0);
         private long queries = 0;
-        private double averageSearchTime = INITIAL_QUERY_TIME;
+        private volatile double averageSearchTime = INITIAL_QUERY_TIME;
 
         GroupStatus(Group group) {
             this.group = group;
         }
 
         void allocate() {
-            allocations++;
+            allocations.incrementAndGet();
         }
 
         void release(boolean success, double searchTime) {
-            allocations--;
-            if (allocations < 0) {
+            int previous = allocations.getAndUpdate(current -> current > 0 ? current - 1 : 0);
+            if (previous <= 0) {
                 log.warning("Double free of query target group detected");
-                allocations = 0;
             }
             if (success) {
                 searchTime = Math.max(searchTime, MIN_QUERY_TIME);
-                double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
-                averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
-                queries++;
+                synchronized (this) {
+                    double decayRate = Math.min(queries + MIN_LATENCY_DECAY_RATE, DEFAULT_LATENCY_DECAY_RATE);
+                    averageSearchTime = (searchTime + (decayRate - 1) * averageSearchTime) / decayRate;
+                    queries++;
+                }
             }
         }
 
+        int allocations() {
+            return allocations.get();
+        }
+
         double averageSearchTime() {
             return averageSearchTime;
         }
@@ -123,13 +142,14 @@ public class LoadBalancer {
             return group.id();
         }
 
-        void setQueryStatistics(long queries, double averageSearchTime) {
+        synchronized void setQueryStatistics(long queries, double averageSearchTime) {
             this.queries = queries;
             this.averageSearchTime = averageSearchTime;
         }
     }
 
     private interface GroupScheduler {
+        /** Selects the next group and allocates it, atomically with respect to the selection state of this */
         Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups);
     }
 
@@ -142,7 +162,7 @@ public class LoadBalancer {
         }
 
         @Override
-        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+        public synchronized Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
             GroupStatus bestCandidate = null;
             int bestIndex = needle;
 
@@ -159,6 +179,9 @@ public class LoadBalancer {
                 index = nextScoreboardIndex(index);
             }
             needle = nextScoreboardIndex(bestIndex);
+            if (bestCandidate != null) {
+                bestCandidate.allocate();
+            }
             return Optional.ofNullable(bestCandidate);
         }
 
@@ -241,14 +264,69 @@ public class LoadBalancer {
         }
 
         @Override
-        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+        public synchronized Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
             double needle = random.nextDouble();
             Optional<GroupStatus> gs = selectGroup(needle, true, rejectedGroups);
-            if (gs.isPresent()) {
+            if (gs.isEmpty()) {
+                // fallback - any coverage better than none
+                gs = selectGroup(needle, false, rejectedGroups);
+            }
+            gs.ifPresent(GroupStatus::allocate);
+            return gs;
+        }
+    }
+
+    /**
+     * Picks two groups at random and selects the one with the lowest expected wait, estimated as
+     * the queries in flight times the average search time. Keeps no shared mutable state of its own,
+     * so concurrent callers never block each other. The allocation is counted right after selection,
+     * so concurrent callers may occasionally pick the same group from the same counts, which the random
+     * choice of candidates keeps from turning into herding.
+     */
+    static class BestOfRandom2Scheduler implements GroupScheduler {
+        private final Supplier<Random> random;
+        private final List<GroupStatus> scoreboard;
+
+        public BestOfRandom2Scheduler(Supplier<Random> random, List<GroupStatus> scoreboard) {
+            this.random = random;
+            this.scoreboard = scoreboard;
+        }
+
+        @Override
+        public Optional<GroupStatus> takeNextGroup(Set<Integer> rejectedGroups) {
+            Random random = this.random.get();
+            int first = random.nextInt(scoreboard.size());
+            int second = random.nextInt(scoreboard.size());
+            GroupStatus best = leastLoaded(candidate(first, true, rejectedGroups), candidate(second, true, rejectedGroups));
+            if (best == null) {
+                // fallback - any coverage better than none
+                best = leastLoaded(candidate(first, false, rejectedGroups), candidate(second, false, rejectedGroups));
+            }
+            if (best != null) {
+                best.allocate();
+            }
+            return Optional.ofNullable(best);
+        }
+
+        /** Returns the first acceptable group at or after the given scoreboard index, or null if there is none */
+        private GroupStatus candidate(int start, boolean requireCoverage, Set<Integer> rejected) {
+            for (int i = 0; i < scoreboard.size(); i++) {
+                GroupStatus gs = scoreboard.get((start + i) % scoreboard.size());
+                if (rejected != null && rejected.contains(gs.group.id())) continue;
+                if (requireCoverage && ! gs.group.hasSufficientCoverage()) continue;
                 return gs;
             }
-            // fallback - any coverage better than none
-            return selectGroup(needle, false, rejectedGroups);
+            return null;
+        }
+
+        private static GroupStatus leastLoaded(GroupStatus first, GroupStatus second) {
+            if (second == null) return first;
+            if (first == null) return second;
+            return expectedWait(second) < expectedWait(first) ? second : first;
+        }
+
+        private static double expectedWait(GroupStatus gs) {
+            return (gs.allocations() + 1) * gs.averageSearchTime();
         }
     }
 }
@@ -35,11 +35,12 @@ public class SearchErrorInvoker extends SearchInvoker {
     }
 
     @Override
-    protected void sendSearchRequest(Query query) throws IOException {
+    protected Object sendSearchRequest(Query query, Object context) throws IOException {
         this.query = query;
         if(monitor != null) {
             monitor.responseAvailable(this);
         }
+        return context;
     }
 
     @Override
@@ -32,14 +32,23 @@ public abstract class SearchInvoker extends CloseableInvoker {
      * for correct result windowing.
      */
     public Result search(Query query, Execution execution) throws IOException {
-        sendSearchRequest(query);
+        sendSearchRequest(query, null);
         InvokerResult result = getSearchResult(execution);
         setFinalStatus(result.getResult().hits().getError() == null);
         result.complete();
         return result.getResult();
     }
 
-    protected abstract void sendSearchRequest(Query query) throws IOException;
+    /**
+     * Sends the search request of the given query.
+     *
+     * @param query the query to send
+     * @param context null, or the context returned by sending the same query with another invoker.
+     *                This allows invokers sending the same query to many nodes to share the work
+     *                of creating the request.
+     * @return the context to pass when sending this query with the next invoker
+     */
+    protected abstract Object sendSearchRequest(Query query, Object context) throws IOException;
 
     protected abstract InvokerResult getSearchResult(Execution execution) throws IOException;
 
@@ -45,21 +45,34 @@ public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseRe
     }
 
     @Override
-    protected void sendSearchRequest(Query query) {
+    protected Object sendSearchRequest(Query query, Object incomingContext) {
         this.query = query;
 
         Client.NodeConnection nodeConnection = resourcePool.getConnection(node.key());
         if (nodeConnection == null) {
             responses.add(Client.ResponseOrError.fromError("Could not send search to unknown node " + node.key()));
             responseAvailable();
-            return;
+            return incomingContext;
         }
         query.trace(false, 5, "Sending search request with jrt/protobuf to node with dist key ", node.key());
 
-        var payload = ProtobufSerialization.serializeSearchRequest(query, Math.min(query.getHits(), maxHits), searcher.getServerId());
+        RpcContext context = getContext(incomingContext);
         double timeoutSeconds = ((double) query.getTimeLeft() - 3.0) / 1000.0;
-        Compressor.Compression compressionResult = resourcePool.compress(query, payload);
-        nodeConnection.request(RPC_METHOD, compressionResult.type(), payload.length, compressionResult.data(), this, timeoutSeconds);
+        Compressor.Compression payload = context.compressedPayload;
+        nodeConnection.request(RPC_METHOD, payload.type(), payload.uncompressedSize(), payload.data(), this, timeoutSeconds);
+        return context;
+    }
+
+    /** Returns the given context if it has the request this would send, or a new context with the request otherwise */
+    private RpcContext getContext(Object incomingContext) {
+        int hits = Math.min(query.getHits(), maxHits);
+        if (incomingContext instanceof RpcContext) {
+            RpcContext context = (RpcContext) incomingContext;
+            if (context.isFor(query, hits, searcher, resourcePool))
+                return context;
+        }
+        var payload = ProtobufSerialization.serializeSearchRequest(query, hits, searcher.getServerId());
+        return new RpcContext(query, hits, searcher, resourcePool, resourcePool.compress(query, payload));
     }
 
     @Override
@@ -106,4 +119,29 @@ public class RpcSearchInvoker extends SearchInvoker implements Client.ResponseRe
         return searcher.getName();
     }
 
+    /** A compressed search request, which is immutable and shared by the invokers sending the same query */
+    static class RpcContext {
+
+        private final Query query;
+        private final int hits;
+        private final VespaBackEndSearcher searcher;
+        private final RpcResourcePool resourcePool;
+        final Compressor.Compression compressedPayload;
+
+        RpcContext(Query query, int hits, VespaBackEndSearcher searcher, RpcResourcePool resourcePool,
+                   Compressor.Compression compressedPayload) {
+            this.query = query;
+            this.hits = hits;
+            this.searcher = searcher;
+            this.resourcePool = resourcePool;
+            this.compressedPayload = compressedPayload;
+        }
+
+        /** Returns whether this is the request an invoker with these arguments would send */
+        boolean isFor(Query query, int hits, VespaBackEndSearcher searcher, RpcResourcePool resourcePool) {
+            return this.query == query && this.hits == hits && this.searcher == searcher && this.resourcePool == resourcePool;
+        }
+
+    }
+
 }
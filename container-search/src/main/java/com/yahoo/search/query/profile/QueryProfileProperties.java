@@ -294,6 +294,8 @@ public class QueryProfileProperties extends Properties {
         QueryProfileProperties clone = (QueryProfileProperties)super.clone();
         if (this.values != null)
             clone.values = PropertyMap.cloneMap(this.values);
+        if (this.references != null)
+            clone.references = new ArrayList<>(this.references);
         return clone;
     }
 
@@ -78,6 +78,20 @@ public class Binding implements Comparable<Binding> {
     /** Returns true only if this binding is null (contains no values for its dimensions (if any) */
     public boolean isNull() { return dimensions.length == 0; }
 
+    /** Returns the dimensions which have values in this. The returned array must not be modified. */
+    String[] dimensions() { return dimensions; }
+
+    /** Returns the values of the dimensions returned by {@link #dimensions}. The returned array must not be modified. */
+    String[] dimensionValues() { return dimensionValues; }
+
+    /** Returns the value of the given dimension in this, or null if it has no value */
+    String valueOf(String dimension) {
+        for (int i = 0; i < dimensions.length; i++) {
+            if (dimensions[i].equals(dimension)) return dimensionValues[i];
+        }
+        return null;
+    }
+
     @Override
     public String toString() {
         StringBuilder b = new StringBuilder("Binding[");
@@ -9,9 +9,16 @@ import com.yahoo.search.query.profile.QueryProfileProperties;
 import com.yahoo.search.query.profile.SubstituteString;
 import com.yahoo.search.query.profile.types.QueryProfileType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -24,6 +31,17 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
 
     private static final Pattern namePattern = Pattern.compile("[$a-zA-Z_/][-$a-zA-Z0-9_/()]*");
 
+    /** The max number of distinct contexts to keep resolved values for */
+    private static final int maxResolvedContexts = 1000;
+
+    /**
+     * The max total number of resolved entries to keep over all contexts. A resolved entry is a hash map entry
+     * referencing a name and value shared with the entries of this, which costs about 50 bytes, so this
+     * bounds the memory used to hold resolved entries to about 5 Mb per query profile.
+     * Profiles with many entries therefore keep fewer contexts resolved.
+     */
+    private static final int maxResolvedEntries = 100_000;
+
     private final CompiledQueryProfileRegistry registry;
 
     /** The type of this, or null if none */
@@ -41,6 +59,21 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
     /** Values which are not overridable in this. Used as a set. */
     private final DimensionalMap<CompoundName, Object> unoverridables;
 
+    /** The dimensions having a value in some variant of the entries of this */
+    private final String[] dimensions;
+
+    /** The values the dimensions at the same index have in some variant */
+    private final List<Set<String>> dimensionValues;
+
+    /**
+     * The entries of this resolved for each context looked up,
+     * keyed by the values of the context in {@link #dimensions} which have some variant
+     */
+    private final Map<List<String>, Map<CompoundName, ValueWithSource>> resolvedEntries = new ConcurrentHashMap<>();
+
+    /** The total number of entries in resolvedEntries */
+    private final AtomicInteger resolvedEntryCount = new AtomicInteger(0);
+
     /**
      * Creates a new query profile from an id.
      */
@@ -60,6 +93,13 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         this.types = types;
         this.references = references;
         this.unoverridables = unoverridables;
+
+        Map<String, Set<String>> dimensionValues = new TreeMap<>();
+        for (var entry : entries.entrySet())
+            entry.getValue().addDimensionValuesTo(dimensionValues);
+        this.dimensions = dimensionValues.keySet().toArray(new String[0]);
+        this.dimensionValues = new ArrayList<>(dimensionValues.values());
+
         if ( ! id.isAnonymous())
             validateName(id.getName());
     }
@@ -177,11 +217,49 @@ public class CompiledQueryProfile extends AbstractComponent implements Cloneable
         return get(new CompoundName(name), context, substitution);
     }
     public final Object get(CompoundName name, Map<String, String> context, Properties substitution) {
-        ValueWithSource value = entries.get(name, context);
+        ValueWithSource value = getValue(name, context);
         if (value == null) return null;
         return substitute(value.value(), context, substitution);
     }
 
+    /**
+     * Returns the value of the given name in the given context, from the entries resolved for the context
+     * if this has variants, such that variants are only resolved once for each distinct context.
+     */
+    private ValueWithSource getValue(CompoundName name, Map<String, String> context) {
+        if (dimensions.length == 0) return entries.get(name, context);
+        if (context == null)
+            context = Collections.emptyMap();
+
+        List<String> contextKey = contextKey(context);
+        Map<CompoundName, ValueWithSource> resolved = resolvedEntries.get(contextKey);
+        if (resolved == null) {
+            if (resolvedEntries.size() >= maxResolvedContexts || resolvedEntryCount.get() >= maxResolvedEntries)
+                return entries.get(name, context);
+            resolved = entries.resolve(context);
+            Map<CompoundName, ValueWithSource> previous = resolvedEntries.putIfAbsent(contextKey, resolved);
+            if (previous == null)
+                resolvedEntryCount.addAndGet(resolved.size());
+            else
+                resolved = previous;
+        }
+        return resolved.get(name);
+    }
+
+    /**
+     * Returns the values of the dimensions of this in the given context, where values which are not
+     * used by any variant are replaced by null, as they resolve to the same values as no value.
+     */
+    private List<String> contextKey(Map<String, String> context) {
+        String[] key = new String[dimensions.length];
+        for (int i = 0; i < dimensions.length; i++) {
+            String value = context.get(dimensions[i]);
+            if (value != null && dimensionValues.get(i).contains(value))
+                key[i] = value;
+        }
+        return Arrays.asList(key);
+    }
+
     private Object substitute(Object value, Map<String, String> context, Properties substitution) {
         if (value == null) return value;
         if (substitution == null) return value;
@@ -31,6 +31,17 @@ public class DimensionalMap<KEY, VALUE> {
         return variants.get(context);
     }
 
+    /** Returns the values of all the keys of this matching a context, excluding keys having no value in it */
+    public Map<KEY, VALUE> resolve(Map<String, String> context) {
+        Map<KEY, VALUE> resolved = new HashMap<>(values.size() * 2);
+        for (Map.Entry<KEY, DimensionalValue<VALUE>> entry : values.entrySet()) {
+            VALUE value = entry.getValue().get(context);
+            if (value != null)
+                resolved.put(entry.getKey(), value);
+        }
+        return resolved;
+    }
+
     /** Returns the set of dimensional entries across all contexts. */
     public Set<Map.Entry<KEY, DimensionalValue<VALUE>>> entrySet() {
         return values.entrySet();
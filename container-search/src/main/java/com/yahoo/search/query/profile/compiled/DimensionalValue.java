@@ -6,6 +6,7 @@ import com.yahoo.search.query.profile.DimensionBinding;
 import com.yahoo.search.query.profile.SubstituteString;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -16,24 +17,39 @@ import java.util.Set;
 /**
  * Contains the values a given key in a DimensionalMap may take for different dimensional contexts.
  *
+ * Multiple variants are compiled into a decision trie over the dimension values of their bindings,
+ * such that a lookup inspects each relevant dimension of the context at most once instead of matching
+ * every variant in turn. Identical subtries are shared, and if the trie would still grow too large
+ * compared to the number of variants, the variants are matched in turn instead.
+ *
  * @author bratseth
  */
 public class DimensionalValue<VALUE> {
 
+    /** The max number of trie nodes per variant, beyond which variants are matched in turn instead */
+    private static final int maxTrieNodesPerVariant = 100;
+
+    /** The variants of this, in the order they should be matched: Most specific first */
     private final List<Value<VALUE>> values;
 
+    /** The trie resolving the values of this, or null if this has a single variant or too many trie nodes */
+    private final Node<VALUE> trie;
+
     /** Create a set of variants which is a single value regardless of dimensions */
     public DimensionalValue(Value<VALUE> value) {
         this.values = Collections.singletonList(value);
+        this.trie = null;
     }
 
     public DimensionalValue(List<Value<VALUE>> valueVariants) {
         if (valueVariants.size() == 1) { // special cased for efficiency
             this.values = Collections.singletonList(valueVariants.get(0));
+            this.trie = null;
         }
         else {
             this.values = new ArrayList<>(valueVariants);
             Collections.sort(this.values);
+            this.trie = new TrieBuilder<VALUE>(maxTrieNodesPerVariant * this.values.size()).build(this.values, Collections.emptySet());
         }
     }
 
@@ -41,6 +57,13 @@ public class DimensionalValue<VALUE> {
     public VALUE get(Map<String, String> context) {
         if (context == null)
             context = Collections.emptyMap();
+        if (trie != null)
+            return trie.get(context);
+        return getMatching(context);
+    }
+
+    /** Returns the value of the first variant matching this context, without using the trie, or null if none */
+    VALUE getMatching(Map<String, String> context) {
         for (Value<VALUE> value : values) {
             if (value.matches(context))
                 return value.value();
@@ -50,6 +73,16 @@ public class DimensionalValue<VALUE> {
 
     public boolean isEmpty() { return values.isEmpty(); }
 
+    /** Adds the dimensions which have values in some variant of this, and those values, to the given map */
+    void addDimensionValuesTo(Map<String, Set<String>> dimensionValues) {
+        for (Value<VALUE> value : values) {
+            String[] dimensions = value.binding().dimensions();
+            String[] values = value.binding().dimensionValues();
+            for (int i = 0; i < dimensions.length; i++)
+                dimensionValues.computeIfAbsent(dimensions[i], __ -> new HashSet<>()).add(values[i]);
+        }
+    }
+
     @Override
     public String toString() {
         return values.toString();
@@ -90,6 +123,128 @@ public class DimensionalValue<VALUE> {
 
     }
 
+    /** A node in a decision trie resolving the value for a context */
+    private static abstract class Node<VALUE> {
+
+        /** Returns the value of the most specific variant below this matching the context, or null if none */
+        abstract VALUE get(Map<String, String> context);
+
+    }
+
+    /** Builds a trie, sharing identical subtries, with a bounded number of nodes */
+    private static class TrieBuilder<VALUE> {
+
+        /** The subtries built so far, by their variants and matched dimensions */
+        private final Map<List<Object>, Node<VALUE>> built = new HashMap<>();
+
+        /** The number of nodes and branch entries which may still be created */
+        private int remainingNodes;
+
+        TrieBuilder(int maxNodes) {
+            this.remainingNodes = maxNodes;
+        }
+
+        /**
+         * Returns the trie of the given variants, which are ordered most specific first,
+         * and which are known to match all the given dimensions of the context,
+         * or null if building it would exceed the max number of nodes of this.
+         */
+        Node<VALUE> build(List<Value<VALUE>> variants, Set<String> matchedDimensions) {
+            List<Object> key = Arrays.asList(variants, matchedDimensions);
+            Node<VALUE> node = built.get(key);
+            if (node != null) return node;
+            if (--remainingNodes < 0) return null;
+
+            node = buildNode(variants, matchedDimensions);
+            if (node != null)
+                built.put(key, node);
+            return node;
+        }
+
+        private Node<VALUE> buildNode(List<Value<VALUE>> variants, Set<String> matchedDimensions) {
+            if (variants.isEmpty()) return new Leaf<>(null);
+
+            // The first variant is the result if all its dimensions are matched, otherwise branch on one of them
+            String dimension = null;
+            for (String candidate : variants.get(0).binding().dimensions()) {
+                if ( ! matchedDimensions.contains(candidate)) {
+                    dimension = candidate;
+                    break;
+                }
+            }
+            if (dimension == null) return new Leaf<>(variants.get(0).value());
+
+            Set<String> branchValues = new HashSet<>();
+            List<Value<VALUE>> unbound = new ArrayList<>();
+            for (Value<VALUE> variant : variants) {
+                String value = variant.binding().valueOf(dimension);
+                if (value == null)
+                    unbound.add(variant);
+                else
+                    branchValues.add(value);
+            }
+            remainingNodes -= branchValues.size();
+            if (remainingNodes < 0) return null;
+
+            Set<String> branchMatchedDimensions = new HashSet<>(matchedDimensions);
+            branchMatchedDimensions.add(dimension);
+            Map<String, Node<VALUE>> children = new HashMap<>();
+            for (String branchValue : branchValues) {
+                List<Value<VALUE>> matching = new ArrayList<>();
+                for (Value<VALUE> variant : variants) {
+                    String value = variant.binding().valueOf(dimension);
+                    if (value == null || value.equals(branchValue))
+                        matching.add(variant);
+                }
+                Node<VALUE> child = build(matching, branchMatchedDimensions);
+                if (child == null) return null;
+                children.put(branchValue, child);
+            }
+            Node<VALUE> unboundChild = build(unbound, branchMatchedDimensions);
+            if (unboundChild == null) return null;
+            return new Branch<>(dimension, children, unboundChild);
+        }
+
+    }
+
+    private static class Leaf<VALUE> extends Node<VALUE> {
+
+        private final VALUE value;
+
+        Leaf(VALUE value) {
+            this.value = value;
+        }
+
+        @Override
+        VALUE get(Map<String, String> context) { return value; }
+
+    }
+
+    private static class Branch<VALUE> extends Node<VALUE> {
+
+        private final String dimension;
+
+        /** The subtries of the variants which either have or do not bind a given value of the dimension */
+        private final Map<String, Node<VALUE>> children;
+
+        /** The subtrie of the variants which does not bind the dimension */
+        private final Node<VALUE> unbound;
+
+        Branch(String dimension, Map<String, Node<VALUE>> children, Node<VALUE> unbound) {
+            this.dimension = dimension;
+            this.children = children;
+            this.unbound = unbound;
+        }
+
+        @Override
+        VALUE get(Map<String, String> context) {
+            String value = context.get(dimension);
+            Node<VALUE> child = value == null ? null : children.get(value);
+            return child != null ? child.get(context) : unbound.get(context);
+        }
+
+    }
+
     /** A value for a particular binding */
     private static class Value<VALUE> implements Comparable<Value> {
 
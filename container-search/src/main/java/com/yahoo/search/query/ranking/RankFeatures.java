@@ -15,12 +15,21 @@ import java.util.OptionalDouble;
 
 /**
  * Contains the rank features of a query.
+ * <p>
+ * Clones of this share the feature map until either is modified, at which point the modified instance
+ * copies the map. Once the map has been returned by {@link #asMap} it is copied eagerly on cloning instead.
  *
  * @author bratseth
  */
 public class RankFeatures implements Cloneable {
 
-    private final Map<String, Object> features;
+    private Map<String, Object> features;
+
+    /** Whether the features map may be referenced by another instance, such that it must be copied before modification */
+    private boolean shared = false;
+
+    /** Whether the features map has been returned by asMap, such that it may be modified without notice */
+    private boolean exposed = false;
 
     public RankFeatures() {
         this(new LinkedHashMap<>());
@@ -32,12 +41,12 @@ public class RankFeatures implements Cloneable {
 
     /** Sets a double rank feature */
     public void put(String name, double value) {
-        features.put(name, value);
+        writableFeatures().put(name, value);
     }
 
     /** Sets a tensor rank feature */
     public void put(String name, Tensor value) {
-        features.put(name, value);
+        writableFeatures().put(name, value);
     }
 
     /**
@@ -47,7 +56,7 @@ public class RankFeatures implements Cloneable {
      */
     @Deprecated // TODO: Remove on Vespa 8
     public void put(String name, String value) {
-        features.put(name, value);
+        writableFeatures().put(name, value);
     }
 
     /**
@@ -96,7 +105,10 @@ public class RankFeatures implements Cloneable {
      * Returns the map holding the features of this.
      * This map may be modified to change the rank features of the query.
      */
-    public Map<String, Object> asMap() { return features; }
+    public Map<String, Object> asMap() {
+        exposed = true;
+        return writableFeatures();
+    }
 
     public boolean isEmpty() {
         return features.isEmpty();
@@ -125,7 +137,7 @@ public class RankFeatures implements Cloneable {
             }
         }
         for (int i = 0; i < featuresToRemove.size(); ++i) {
-            rankProperties.put(propertiesToInsert.get(i), features.remove(featuresToRemove.get(i)));
+            rankProperties.put(propertiesToInsert.get(i), writableFeatures().remove(featuresToRemove.get(i)));
         }
     }
 
@@ -148,7 +160,21 @@ public class RankFeatures implements Cloneable {
 
     @Override
     public RankFeatures clone() {
-        return new RankFeatures(new LinkedHashMap<>(features));
+        if (exposed)
+            return new RankFeatures(new LinkedHashMap<>(features));
+
+        RankFeatures clone = new RankFeatures(features);
+        clone.shared = true;
+        this.shared = true;
+        return clone;
+    }
+
+    private Map<String, Object> writableFeatures() {
+        if (shared) {
+            features = new LinkedHashMap<>(features);
+            shared = false;
+        }
+        return features;
     }
 
     @Override
@@ -15,6 +15,9 @@ import java.util.Map;
 /**
  * Contains the properties properties of a query.
  * This is a multimap: Multiple properties may be set for the same key.
+ * <p>
+ * Clones of this share the properties until either is modified, at which point the modified instance
+ * copies them. Once the map has been returned by {@link #asMap} it is copied eagerly on cloning instead.
  *
  * @author bratseth
  */
@@ -22,6 +25,12 @@ public class RankProperties implements Cloneable {
 
     private Map<String, List<Object>> properties;
 
+    /** Whether the properties may be referenced by another instance, such that they must be copied before modification */
+    private boolean shared = false;
+
+    /** Whether the properties map has been returned by asMap, such that it may be modified without notice */
+    private boolean exposed = false;
+
     public RankProperties() {
         this(new LinkedHashMap<>());
     }
@@ -36,7 +45,7 @@ public class RankProperties implements Cloneable {
 
     /** Adds a property by full name to a value */
     public void put(String name, Object value) {
-        List<Object> list = properties.get(name);
+        List<Object> list = writableProperties().get(name);
         if (list == null) {
             list = new ArrayList<>();
             properties.put(name, list);
@@ -63,7 +72,7 @@ public class RankProperties implements Cloneable {
 
     /** Removes all properties properties for a given name */
     public void remove(String name) {
-        properties.remove(name);
+        writableProperties().remove(name);
     }
 
     public boolean isEmpty() {
@@ -71,7 +80,10 @@ public class RankProperties implements Cloneable {
     }
 
     /** Returns a modifiable map of the properties of this */
-    public Map<String, List<Object>> asMap() { return properties; }
+    public Map<String, List<Object>> asMap() {
+        exposed = true;
+        return writableProperties();
+    }
 
     /** Encodes this in a binary internal representation and returns the number of property maps encoded (0 or 1) */
     public int encode(ByteBuffer buffer, boolean encodeQueryData) {
@@ -100,10 +112,28 @@ public class RankProperties implements Cloneable {
 
     @Override
     public RankProperties clone() {
-        Map<String, List<Object>> clone = new LinkedHashMap<>();
+        if (exposed)
+            return new RankProperties(copy(properties));
+
+        RankProperties clone = new RankProperties(properties);
+        clone.shared = true;
+        this.shared = true;
+        return clone;
+    }
+
+    private Map<String, List<Object>> writableProperties() {
+        if (shared) {
+            properties = copy(properties);
+            shared = false;
+        }
+        return properties;
+    }
+
+    private static Map<String, List<Object>> copy(Map<String, List<Object>> properties) {
+        Map<String, List<Object>> copy = new LinkedHashMap<>();
         for (Map.Entry<String, List<Object>> entry : properties.entrySet())
-            clone.put(entry.getKey(), new ArrayList<>(entry.getValue()));
-        return new RankProperties(clone);
+            copy.put(entry.getKey(), new ArrayList<>(entry.getValue()));
+        return copy;
     }
 
     @Override
@@ -0,0 +1,273 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers;
+
+import com.google.inject.Inject;
+import com.yahoo.container.core.ApplicationMetadataConfig;
+import com.yahoo.metrics.simple.Counter;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.query.Ranking;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.yolean.chain.Provides;
+
+import java.time.Clock;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+/**
+ * A cache of results in the container, which is useful when the same queries are repeated often,
+ * such as for popular queries or when users page back and forth in results.
+ * <p>
+ * Results are cached with their hits filled with the summary requested by the query, such that
+ * cached results can be returned without accessing the content nodes at all.
+ * Results are cached by the query tree, filter, ranking, presentation, offset and hits of the query,
+ * and by the properties for collapsing and dispatch, but not by other query properties, so this should be placed
+ * after any searcher which changes the query from such properties. A result is not cached if it has errors or
+ * degraded coverage, or if the query requests grouping, sets noCache, or sets any streaming property, as
+ * streaming queries may search the documents of a single user.
+ * <p>
+ * A cached result is returned until it expires, after the configured ttl, or until it is evicted
+ * to make room for other results, as the least recently used result once the configured number of
+ * results is exceeded. The cache is emptied on every deployment of the application, as rank profiles
+ * and schemas may have changed. As content nodes may activate a deployment a little later than this,
+ * a result cached in between is returned until it expires.
+ * <p>
+ * Metrics: This will emit the count metrics resultCacheHits, resultCacheMisses and resultCacheEvictions.
+ * <p>
+ * Ordering: This searcher Provides resultCache
+ */
+@Provides(ResultCacheSearcher.RESULT_CACHE)
+public class ResultCacheSearcher extends Searcher {
+
+    /** Constant containing the name this Provides - "resultCache", for ordering constraints */
+    public static final String RESULT_CACHE = "resultCache";
+
+    private static final String hitsMetricName = "resultCacheHits";
+    private static final String missesMetricName = "resultCacheMisses";
+    private static final String evictionsMetricName = "resultCacheEvictions";
+
+    private static final CompoundName streaming = new CompoundName("streaming");
+    private static final CompoundName dispatch = new CompoundName("dispatch");
+    private static final CompoundName collapsefield = new CompoundName("collapsefield");
+    private static final CompoundName collapsesize = new CompoundName("collapsesize");
+    private static final CompoundName collapseSummary = new CompoundName("collapse.summary");
+
+    private final Cache cache;
+    private final Duration ttl;
+    private final Clock clock;
+
+    private final Counter hitsCounter;
+    private final Counter missesCounter;
+    private final Counter evictionsCounter;
+
+    /**
+     * Creates a result cache searcher. The application metadata config is not used, but its generation
+     * changes on every deployment, so injecting it ensures that this, and therefore the cache, is recreated
+     * on every deployment, also when only rank profiles change.
+     */
+    @Inject
+    public ResultCacheSearcher(ResultCacheConfig resultCacheConfig, ApplicationMetadataConfig applicationMetadataConfig,
+                               MetricReceiver metric) {
+        this(resultCacheConfig, metric, Clock.systemUTC());
+    }
+
+    /** For testing - allows injection of a timer to avoid depending on the system clock */
+    public ResultCacheSearcher(ResultCacheConfig resultCacheConfig, MetricReceiver metric, Clock clock) {
+        this.cache = new Cache(resultCacheConfig.maxEntries());
+        this.ttl = Duration.ofMillis((long)(resultCacheConfig.ttl() * 1000));
+        this.clock = clock;
+
+        this.hitsCounter = metric.declareCounter(hitsMetricName);
+        this.missesCounter = metric.declareCounter(missesMetricName);
+        this.evictionsCounter = metric.declareCounter(evictionsMetricName);
+    }
+
+    @Override
+    public Result search(Query query, Execution execution) {
+        if (query.getNoCache() || ! query.getSelect().getGrouping().isEmpty()
+            || ! query.properties().listProperties(streaming).isEmpty()) {
+            query.trace(false, 6, "Not using the result cache for this query");
+            return execution.search(query);
+        }
+
+        Key key = new Key(query);
+        Instant now = clock.instant();
+        Entry entry = cache.get(key);
+        if (entry != null && now.isBefore(entry.expiry)) {
+            hitsCounter.add(1);
+            query.trace(false, 3, "Returning the result from the result cache");
+            return copy(entry.result, query);
+        }
+        missesCounter.add(1);
+
+        key = key.detached(); // as the query may be changed by the searchers below
+        Result result = execution.search(query);
+        execution.fill(result, query.getPresentation().getSummary());
+        if (isCacheable(result))
+            cache.put(key, new Entry(copy(result, result.getQuery()), now.plus(ttl)));
+        return result;
+    }
+
+    private boolean isCacheable(Result result) {
+        if (result.hits().getError() != null) return false;
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null && coverage.isDegraded()) return false;
+        return true;
+    }
+
+    /**
+     * Returns a copy of the given result for the given query, such that the cached result is never
+     * referenced from, and therefore never modified through, the results returned from this.
+     */
+    private static Result copy(Result result, Query query) {
+        Result copy = new Result(query, result.hits().clone());
+        copy.setTotalHitCount(result.getTotalHitCount());
+        Coverage coverage = result.getCoverage(false);
+        if (coverage != null)
+            copy.setCoverage(new Coverage(coverage.getDocs(), coverage.getActive(), coverage.getNodes(), coverage.getResultSets())
+                                     .setSoonActive(coverage.getSoonActive())
+                                     .setNodesTried(coverage.getNodesTried()));
+        return copy;
+    }
+
+    /** The part of a query which determines its result */
+    private static final class Key {
+
+        private final Query query;
+        private final Set<String> summaryFields;
+        /** The values determining the result which are not compared by Query.equals */
+        private final List<Object> properties;
+        private final int hashCode;
+
+        /** Creates a key which references the given query, for lookup */
+        Key(Query query) {
+            this(query, new TreeSet<>(query.getPresentation().getSummaryFields()), properties(query));
+        }
+
+        private Key(Query query, Set<String> summaryFields, List<Object> properties) {
+            this.query = query;
+            this.summaryFields = summaryFields;
+            this.properties = properties;
+            this.hashCode = 31 * (31 * query.hashCode() + summaryFields.hashCode()) + properties.hashCode();
+        }
+
+        private static List<Object> properties(Query query) {
+            Ranking ranking = query.getRanking();
+            return Arrays.asList(ranking.getMatchPhase(),
+                                 ranking.getSoftTimeout(),
+                                 ranking.getMatching(),
+                                 ranking.getListFeatures(),
+                                 query.properties().getString(collapsefield),
+                                 query.properties().getString(collapsesize),
+                                 query.properties().getString(collapseSummary),
+                                 new TreeMap<>(query.properties().listProperties(dispatch)));
+        }
+
+        /** Returns an equal key which does not reference the query of this, for storing */
+        Key detached() {
+            Query clone = query.clone();
+            return new Key(clone, summaryFields, properties(clone));
+        }
+
+        @Override
+        public int hashCode() { return hashCode; }
+
+        @Override
+        public boolean equals(Object o) {
+            if (o == this) return true;
+            if ( ! (o instanceof Key)) return false;
+            Key other = (Key)o;
+            if (this.hashCode != other.hashCode) return false;
+            if ( ! this.query.equals(other.query)) return false;
+            if ( ! this.summaryFields.equals(other.summaryFields)) return false;
+            if ( ! this.properties.equals(other.properties)) return false;
+            return true;
+        }
+
+    }
+
+    private static final class Entry {
+
+        final Result result;
+        final Instant expiry;
+
+        Entry(Result result, Instant expiry) {
+            this.result = result;
+            this.expiry = expiry;
+        }
+
+    }
+
+    /**
+     * A size bounded map of entries which evicts the least recently used entry when full.
+     * Large caches are split into segments by key hash, each with its own lock and least recently used order,
+     * such that concurrent queries are not serialized on a single lock.
+     */
+    private final class Cache {
+
+        /** The least number of entries in a segment, such that small caches have exact least recently used order */
+        private static final int minSegmentSize = 64;
+        private static final int maxSegments = 16;
+
+        private final Segment[] segments;
+
+        Cache(int maxEntries) {
+            int segmentCount = Math.max(1, Math.min(maxSegments, maxEntries / minSegmentSize));
+            segments = new Segment[segmentCount];
+            for (int i = 0; i < segmentCount; i++)
+                segments[i] = new Segment(maxEntries / segmentCount + (i < maxEntries % segmentCount ? 1 : 0));
+        }
+
+        Entry get(Key key) {
+            return segmentOf(key).get(key);
+        }
+
+        void put(Key key, Entry entry) {
+            segmentOf(key).put(key, entry);
+        }
+
+        private Segment segmentOf(Key key) {
+            int hash = key.hashCode();
+            return segments[Math.floorMod(hash ^ (hash >>> 16), segments.length)];
+        }
+
+    }
+
+    private final class Segment {
+
+        private final Map<Key, Entry> entries;
+
+        Segment(int maxEntries) {
+            entries = new LinkedHashMap<>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Key, Entry> eldest) {
+                    if (size() <= maxEntries) return false;
+                    evictionsCounter.add(1);
+                    return true;
+                }
+            };
+        }
+
+        synchronized Entry get(Key key) {
+            return entries.get(key);
+        }
+
+        synchronized void put(Key key, Entry entry) {
+            entries.put(key, entry);
+        }
+
+    }
+
+}
@@ -0,0 +1,39 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Prints the time used to merge the hits of a deep paging query with a heap and pairwise.
+ */
+public class InterleavedSearchInvokerBenchmark {
+
+    public static void main(String[] args) {
+        Random random = new Random(1);
+        int nodes = 50;
+        int needed = 5000;
+        List<List<LeanHit>> lists = InterleavedSearchInvokerTest.randomLeanHits(random, nodes, needed, false);
+        for (int round = 0; round < 5; round++) {
+            int merges = 20;
+            long hitCount = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < merges; i++)
+                hitCount += InterleavedSearchInvokerTest.pairwiseMerge(lists, 0, needed).size();
+            long pairwiseTime = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int i = 0; i < merges; i++) {
+                List<LeanHit> merged = new ArrayList<>(needed);
+                InterleavedSearchInvoker.mergeLeanHits(lists, 0, needed, merged);
+                hitCount -= merged.size();
+            }
+            long heapTime = System.nanoTime() - startTime;
+            if (hitCount != 0)
+                throw new IllegalStateException("Pairwise and heap merge returned different numbers of hits");
+            System.out.println(String.format("Merging %d hits from %d nodes: %d us pairwise, %d us with heap",
+                                             needed, nodes, pairwiseTime / merges / 1000, heapTime / merges / 1000));
+        }
+    }
+
+}
@@ -25,8 +25,10 @@ import java.util.Collections;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Optional;
+import java.util.Random;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 import java.util.stream.StreamSupport;
 
 import static com.yahoo.container.handler.Coverage.DEGRADED_BY_MATCH_PHASE;
@@ -270,6 +272,105 @@ public class InterleavedSearchInvokerTest {
         assertEquals(3, result.getQuery().getHits());
     }
 
+    @Test
+    public void requireThatMergeOfLeanHitsDropsDuplicatesAndObeysOffset() {
+        List<List<LeanHit>> lists = List.of(leanHits(0, 9, 7, 5, 3),
+                                            leanHits(1, 8, 7, 4),
+                                            leanHits(2, 10, 7, 1));
+        List<LeanHit> merged = new ArrayList<>();
+        InterleavedSearchInvoker.mergeLeanHits(lists, 0, 100, merged);
+        assertEquals(List.of(10.0, 9.0, 8.0, 7.0, 5.0, 4.0, 3.0, 1.0), relevances(merged));
+        assertEquals("The duplicate from the first list is kept", 0, merged.get(3).getDistributionKey());
+
+        merged.clear();
+        InterleavedSearchInvoker.mergeLeanHits(lists, 2, 5, merged);
+        assertEquals(List.of(8.0, 7.0, 5.0), relevances(merged));
+
+        merged.clear();
+        InterleavedSearchInvoker.mergeLeanHits(List.of(leanHits(0, 3, 2, 1)), 1, 2, merged);
+        assertEquals(List.of(2.0), relevances(merged));
+    }
+
+    @Test
+    public void requireThatMergeOfLeanHitsWithSortDataEqualsPairwiseMerge() {
+        Random random = new Random(1);
+        for (int round = 0; round < 100; round++) {
+            List<List<LeanHit>> lists = randomLeanHits(random, 1 + random.nextInt(10), random.nextInt(20), true);
+            int offset = random.nextInt(10);
+            int needed = offset + random.nextInt(100);
+            List<LeanHit> merged = new ArrayList<>();
+            InterleavedSearchInvoker.mergeLeanHits(lists, offset, needed, merged);
+            assertEquals(pairwiseMerge(lists, offset, needed), merged);
+        }
+    }
+
+    private static List<LeanHit> leanHits(int distributionKey, double ... relevances) {
+        List<LeanHit> hits = new ArrayList<>();
+        for (double relevance : relevances)
+            hits.add(new LeanHit(new GlobalId(IdString.createIdString("id:test:test::" + relevance)).getRawId(), 0, distributionKey, relevance));
+        return hits;
+    }
+
+    private static List<Double> relevances(List<LeanHit> hits) {
+        return hits.stream().map(LeanHit::getRelevance).collect(Collectors.toList());
+    }
+
+    /** Returns lists of unique hits, where hits with sort data may also be returned in other lists */
+    static List<List<LeanHit>> randomLeanHits(Random random, int lists, int hitsPerList, boolean sortData) {
+        List<List<LeanHit>> result = new ArrayList<>();
+        for (int i = 0; i < lists; i++) {
+            List<Integer> ids = new ArrayList<>();
+            for (int id = 0; id < hitsPerList * 4; id++)
+                ids.add(sortData ? id : i * hitsPerList * 4 + id);
+            Collections.shuffle(ids, random);
+            List<LeanHit> hits = new ArrayList<>();
+            for (int id : ids.subList(0, hitsPerList)) {
+                byte[] gid = new byte[] { 0, 0, 0, 0, 0, 0, 0, 0, (byte)(id >> 24), (byte)(id >> 16), (byte)(id >> 8), (byte)id };
+                if (sortData)
+                    hits.add(new LeanHit(gid, 0, i, new byte[] { (byte)(id % 4) }));
+                else
+                    hits.add(new LeanHit(gid, 0, i, random.nextInt(100000)));
+            }
+            Collections.sort(hits);
+            result.add(hits);
+        }
+        return result;
+    }
+
+    /** The merge done when each response is received before the heap merge was introduced */
+    static List<LeanHit> pairwiseMerge(List<List<LeanHit>> lists, int offset, int needed) {
+        List<LeanHit> current = Collections.emptyList();
+        for (List<LeanHit> partial : lists) {
+            if (current.isEmpty()) {
+                current = partial;
+                continue;
+            }
+            List<LeanHit> merged = new ArrayList<>(needed);
+            int indexCurrent = 0;
+            int indexPartial = 0;
+            while (indexCurrent < current.size() && indexPartial < partial.size() && merged.size() < needed) {
+                int cmpRes = current.get(indexCurrent).compareTo(partial.get(indexPartial));
+                if (cmpRes < 0) {
+                    merged.add(current.get(indexCurrent++));
+                } else if (cmpRes > 0) {
+                    merged.add(partial.get(indexPartial++));
+                } else {
+                    merged.add(current.get(indexCurrent++));
+                    indexPartial++;
+                }
+            }
+            while ((indexCurrent < current.size()) && (merged.size() < needed))
+                merged.add(current.get(indexCurrent++));
+            while ((indexPartial < partial.size()) && (merged.size() < needed))
+                merged.add(partial.get(indexPartial++));
+            current = merged;
+        }
+        List<LeanHit> result = new ArrayList<>();
+        for (int index = offset; (index < current.size()) && (index < needed); index++)
+            result.add(current.get(index));
+        return result;
+    }
+
     private static InterleavedSearchInvoker createInterLeavedTestInvoker(List<Double> a, List<Double> b) {
         SearchCluster cluster = new MockSearchCluster("!", 1, 2);
         List<SearchInvoker> invokers = new ArrayList<>();
@@ -0,0 +1,57 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch;
+
+import com.yahoo.search.dispatch.searchcluster.Group;
+import com.yahoo.vespa.config.search.DispatchConfig;
+
+import java.util.Locale;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Measures the throughput of taking and releasing groups in the load balancer with an increasing number
+ * of threads, to expose contention in the different scheduling policies.
+ */
+public class LoadBalancerBenchmark {
+
+    private static final int groups = 24;
+    private static final int operationsPerThread = 1000000;
+
+    private static void run(DispatchConfig.DistributionPolicy.Enum policy, int threadCount) throws InterruptedException {
+        LoadBalancer loadBalancer = new LoadBalancer(new MockSearchCluster("bench", groups, 1), policy);
+        CountDownLatch start = new CountDownLatch(1);
+        Thread[] threads = new Thread[threadCount];
+        for (int i = 0; i < threadCount; i++) {
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                }
+                catch (InterruptedException e) {
+                    return;
+                }
+                for (int j = 0; j < operationsPerThread; j++) {
+                    Group group = loadBalancer.takeGroup(null).get();
+                    loadBalancer.releaseGroup(group, true, ThreadLocalRandom.current().nextInt(1, 20));
+                }
+            });
+            threads[i].start();
+        }
+        long startTime = System.nanoTime();
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        long elapsedNanos = System.nanoTime() - startTime;
+        double operationsPerSecond = (double)operationsPerThread * threadCount * 1_000_000_000 / elapsedNanos;
+        System.out.println(String.format(Locale.ENGLISH, "%1$-18s threads: %2$3d  take+release/s: %3$14.0f",
+                                         policy, threadCount, operationsPerSecond));
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        for (DispatchConfig.DistributionPolicy.Enum policy : DispatchConfig.DistributionPolicy.Enum.values()) {
+            run(policy, 1); // warmup
+            for (int threads = 1; threads <= 64; threads *= 2)
+                run(policy, threads);
+        }
+    }
+
+}
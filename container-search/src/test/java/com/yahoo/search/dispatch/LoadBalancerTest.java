@@ -2,10 +2,12 @@
 package com.yahoo.search.dispatch;
 
 import com.yahoo.search.dispatch.LoadBalancer.AdaptiveScheduler;
+import com.yahoo.search.dispatch.LoadBalancer.BestOfRandom2Scheduler;
 import com.yahoo.search.dispatch.LoadBalancer.GroupStatus;
 import com.yahoo.search.dispatch.searchcluster.Group;
 import com.yahoo.search.dispatch.searchcluster.Node;
 import com.yahoo.search.dispatch.searchcluster.SearchCluster;
+import com.yahoo.vespa.config.search.DispatchConfig;
 import junit.framework.AssertionFailedError;
 import org.junit.Test;
 
@@ -14,6 +16,7 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
 import java.util.Random;
+import java.util.Set;
 
 import static com.yahoo.search.dispatch.MockSearchCluster.createDispatchConfig;
 import static org.hamcrest.Matchers.closeTo;
@@ -156,6 +159,86 @@ public class LoadBalancerTest {
         assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(4));
     }
 
+    @Test
+    public void requireThatBestOfRandom2SchedulerPrefersLeastLoadedGroup() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            GroupStatus gs = newGroupStatus(i);
+            gs.setQueryStatistics(1, 0.1);
+            scoreboard.add(gs);
+        }
+        scoreboard.get(0).allocate();
+        scoreboard.get(0).allocate();
+        scoreboard.get(1).allocate();
+        Random seq = intSequence(0, 1, 1, 2, 2, 0, 0, 0);
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(() -> seq, scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(2));
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(2));
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(0));
+    }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerWeighsInSearchTime() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            scoreboard.add(newGroupStatus(i));
+        }
+        scoreboard.get(0).setQueryStatistics(1, 1.0);
+        scoreboard.get(1).setQueryStatistics(1, 0.1);
+        scoreboard.get(1).allocate();
+        Random seq = intSequence(0, 1);
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(() -> seq, scoreboard);
+
+        assertThat(sched.takeNextGroup(null).get().groupId(), equalTo(1));
+    }
+
+    @Test
+    public void requireThatBestOfRandom2SchedulerSkipsRejectedGroups() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            scoreboard.add(newGroupStatus(i));
+        }
+        Random seq = intSequence(0, 0);
+        BestOfRandom2Scheduler sched = new BestOfRandom2Scheduler(() -> seq, scoreboard);
+
+        assertThat(sched.takeNextGroup(Set.of(0)).get().groupId(), equalTo(1));
+        assertThat(sched.takeNextGroup(Set.of(0, 1)).get().groupId(), equalTo(2));
+        assertThat(sched.takeNextGroup(Set.of(0, 1, 2)).isPresent(), is(false));
+    }
+
+    @Test
+    public void requireThatSchedulersAllocateTheGroupTheyTake() {
+        List<GroupStatus> scoreboard = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            scoreboard.add(newGroupStatus(i));
+        }
+        AdaptiveScheduler adaptive = new AdaptiveScheduler(sequence(0.1, 0.9), scoreboard);
+        assertThat(adaptive.takeNextGroup(null).get().allocations(), equalTo(1));
+        assertThat(adaptive.takeNextGroup(null).get().allocations(), equalTo(1));
+
+        Random seq = intSequence(0, 0);
+        BestOfRandom2Scheduler bestOf2 = new BestOfRandom2Scheduler(() -> seq, scoreboard);
+        assertThat(bestOf2.takeNextGroup(null).get().allocations(), equalTo(2));
+        assertThat(scoreboard.get(1).allocations(), equalTo(1));
+    }
+
+    @Test
+    public void requireThatLoadBalancerServesMultiGroupSetupsWithBestOfRandom2() {
+        Node n1 = new Node(0, "test-node1", 0);
+        Node n2 = new Node(1, "test-node2", 1);
+        SearchCluster cluster = new SearchCluster("a", createDispatchConfig(n1, n2), null, null);
+        LoadBalancer lb = new LoadBalancer(cluster, DispatchConfig.DistributionPolicy.BEST_OF_RANDOM_2);
+
+        Group first = lb.takeGroup(null).get();
+        Group second = lb.takeGroup(Set.of(first.id())).get();
+        assertThat(second.id(), not(equalTo(first.id())));
+        assertThat(lb.takeGroup(Set.of(first.id(), second.id())).isPresent(), is(false));
+        lb.releaseGroup(first, true, 1.0);
+        lb.releaseGroup(second, true, 1.0);
+    }
+
     private static void updateSearchTime(GroupStatus gs, double time) {
         gs.allocate();
         gs.release(true, time);
@@ -171,6 +254,22 @@ public class LoadBalancerTest {
         return new GroupStatus(dummyGroup);
     }
 
+    private Random intSequence(int... values) {
+        return new Random() {
+            private int index = 0;
+
+            @Override
+            public int nextInt(int bound) {
+                int retv = values[index];
+                index++;
+                if (index >= values.length) {
+                    index = 0;
+                }
+                return retv;
+            }
+        };
+    }
+
     private Random sequence(double... values) {
         return new Random() {
             private int index = 0;
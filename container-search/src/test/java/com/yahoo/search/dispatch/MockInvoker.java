@@ -33,8 +33,9 @@ class MockInvoker extends SearchInvoker {
     }
 
     @Override
-    protected void sendSearchRequest(Query query) throws IOException {
+    protected Object sendSearchRequest(Query query, Object context) throws IOException {
         this.query = query;
+        return context;
     }
 
     @Override
@@ -0,0 +1,54 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.dispatch.rpc;
+
+import com.google.common.collect.ImmutableMap;
+import com.yahoo.search.Query;
+import com.yahoo.search.dispatch.searchcluster.Node;
+
+import java.util.ArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+/**
+ * Prints the time used to send a query to groups of various sizes with and without sharing the request.
+ */
+public class RpcSearchInvokerBenchmark {
+
+    public static void main(String[] args) {
+        var mockClient = RpcSearchInvokerTest.parameterCollectorClient(new AtomicReference<>(), new AtomicReference<>(), new AtomicInteger());
+        var connections = new ImmutableMap.Builder<Integer, Client.NodeConnection>();
+        for (int i = 0; i < 32; i++)
+            connections.put(i, mockClient.createConnection("node" + i, 123));
+        var mockPool = new RpcResourcePool(connections.build());
+        var searcher = RpcSearchInvokerTest.mockSearcher();
+        var invokers = new ArrayList<RpcSearchInvoker>();
+        for (int i = 0; i < 32; i++)
+            invokers.add(new RpcSearchInvoker(searcher, new Node(i, "node" + i, 1), mockPool, 1000));
+        String terms = IntStream.range(0, 200).mapToObj(i -> "term" + i).collect(Collectors.joining("+"));
+        Query query = new Query("search/?type=any&hits=10&query=" + terms);
+
+        for (int round = 0; round < 3; round++) {
+            for (int groupSize : new int[] { 1, 8, 32 }) {
+                int queries = 500;
+                long startTime = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    for (int node = 0; node < groupSize; node++)
+                        invokers.get(node).sendSearchRequest(query, null);
+                }
+                long unsharedTime = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                for (int i = 0; i < queries; i++) {
+                    Object context = null;
+                    for (int node = 0; node < groupSize; node++)
+                        context = invokers.get(node).sendSearchRequest(query, context);
+                }
+                long sharedTime = System.nanoTime() - startTime;
+                System.out.println(String.format("Group size %2d: %6d us per query unshared, %6d us per query shared",
+                                                 groupSize, unsharedTime / queries / 1000, sharedTime / queries / 1000));
+            }
+        }
+    }
+
+}
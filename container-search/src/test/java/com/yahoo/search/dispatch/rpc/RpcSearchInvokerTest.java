@@ -20,6 +20,8 @@ import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -38,7 +40,7 @@ public class RpcSearchInvokerTest {
         var invoker = new RpcSearchInvoker(mockSearcher(), new Node(7, "seven", 1), mockPool, 1000);
 
         Query q = new Query("search/?query=test&hits=10&offset=3");
-        invoker.sendSearchRequest(q);
+        invoker.sendSearchRequest(q, null);
 
         var bytes = mockPool.compressor().decompress(payloadHolder.get(), compressionTypeHolder.get(), lengthHolder.get());
         var request = SearchProtocol.SearchRequest.newBuilder().mergeFrom(bytes).build();
@@ -59,7 +61,7 @@ public class RpcSearchInvokerTest {
         var invoker = new RpcSearchInvoker(mockSearcher(), new Node(7, "seven", 1), mockPool, maxHits);
 
         Query q = new Query("search/?query=test&hits=10&offset=3");
-        invoker.sendSearchRequest(q);
+        invoker.sendSearchRequest(q, null);
 
         var bytes = mockPool.compressor().decompress(payloadHolder.get(), compressionTypeHolder.get(), lengthHolder.get());
         var request = SearchProtocol.SearchRequest.newBuilder().mergeFrom(bytes).build();
@@ -67,7 +69,33 @@ public class RpcSearchInvokerTest {
         assertEquals(maxHits, request.getHits());
     }
 
-    private Client parameterCollectorClient(AtomicReference<CompressionType> compressionTypeHolder, AtomicReference<byte[]> payloadHolder,
+    @Test
+    public void testRequestIsSharedByInvokersOfTheSameQuery() throws IOException {
+        var payloadHolder = new AtomicReference<byte[]>();
+        var mockClient = parameterCollectorClient(new AtomicReference<>(), payloadHolder, new AtomicInteger());
+        var mockPool = new RpcResourcePool(ImmutableMap.of(7, mockClient.createConnection("foo", 123),
+                                                           8, mockClient.createConnection("foo", 124),
+                                                           9, mockClient.createConnection("foo", 125)));
+        var searcher = mockSearcher();
+        var invoker1 = new RpcSearchInvoker(searcher, new Node(7, "seven", 1), mockPool, 1000);
+        var invoker2 = new RpcSearchInvoker(searcher, new Node(8, "eight", 1), mockPool, 1000);
+        var invoker3 = new RpcSearchInvoker(searcher, new Node(9, "nine", 1), mockPool, 5);
+
+        Query q = new Query("search/?query=test&hits=10&offset=3");
+        Object context = invoker1.sendSearchRequest(q, null);
+        byte[] payload1 = payloadHolder.get();
+        assertSame(context, invoker2.sendSearchRequest(q, context));
+        assertSame(payload1, payloadHolder.get());
+
+        // A different number of hits requires a different request
+        assertNotSame(context, invoker3.sendSearchRequest(q, context));
+        assertNotSame(payload1, payloadHolder.get());
+
+        // ... as does a different query
+        assertNotSame(context, invoker1.sendSearchRequest(new Query("search/?query=test&hits=10&offset=3"), context));
+    }
+
+    static Client parameterCollectorClient(AtomicReference<CompressionType> compressionTypeHolder, AtomicReference<byte[]> payloadHolder,
             AtomicInteger lengthHolder) {
         return new Client() {
             @Override
@@ -95,7 +123,7 @@ public class RpcSearchInvokerTest {
         };
     }
 
-    private VespaBackEndSearcher mockSearcher() {
+    static VespaBackEndSearcher mockSearcher() {
         return new VespaBackEndSearcher() {
             @Override
             protected Result doSearch2(Query query, Execution execution) {
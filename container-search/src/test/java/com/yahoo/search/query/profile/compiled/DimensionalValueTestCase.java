@@ -0,0 +1,95 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.compiled;
+
+import com.yahoo.search.query.profile.DimensionBinding;
+import com.yahoo.search.query.profile.DimensionValues;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class DimensionalValueTestCase {
+
+    private static final List<String> dimensions = Arrays.asList("d0", "d1", "d2", "d3", "d4");
+
+    @Test
+    public void testTrieResolvesAsMatchingInOrder() {
+        Random random = new Random(7);
+        DimensionalMap.Builder<String, String> builder = new DimensionalMap.Builder<>();
+        for (int key = 0; key < 10; key++)
+            builder.put("key" + key, DimensionBinding.nullBinding, "default" + key);
+        for (int i = 0; i < 500; i++)
+            builder.put("key" + random.nextInt(10), binding(randomValues(random, 4, true)), "variant" + i);
+        builder.put("precedence", binding(new String[] { "d0v0" }), "variant-d0");
+        builder.put("precedence", binding(new String[] { null, null, null, null, "d4v0" }), "variant-d4");
+        DimensionalMap<String, String> map = builder.build();
+
+        Map<String, String> context = context(new String[] { "d0v0", null, null, null, "d4v0" });
+        assertEquals("Earlier dimensions take precedence", "variant-d0", map.get("precedence", context));
+
+        for (int i = 0; i < 10000; i++) {
+            context = context(randomValues(random, 5, false));
+            for (Map.Entry<String, DimensionalValue<String>> entry : map.entrySet())
+                assertEquals("Looking up " + entry.getKey() + " in " + context,
+                             entry.getValue().getMatching(context), entry.getValue().get(context));
+        }
+    }
+
+    @Test
+    public void testManyValuesPerDimension() {
+        // Variants binding all combinations of values of the three last dimensions, and variants binding a
+        // value of the first, which are more specific. As all the former are also candidates for each value of the
+        // first dimension, a trie copying them into each branch would have about 100 * 8000 nodes
+        Random random = new Random(7);
+        DimensionalMap.Builder<String, String> builder = new DimensionalMap.Builder<>();
+        builder.put("key", DimensionBinding.nullBinding, "default");
+        for (int v = 0; v < 100; v++)
+            builder.put("key", binding(new String[] { "d0v" + v, "d1v" + random.nextInt(20), "d2v" + random.nextInt(20), "d3v" + random.nextInt(20) }),
+                        "d0-" + v);
+        for (int v1 = 0; v1 < 20; v1++)
+            for (int v2 = 0; v2 < 20; v2++)
+                for (int v3 = 0; v3 < 20; v3++)
+                    builder.put("key", binding(new String[] { null, "d1v" + v1, "d2v" + v2, "d3v" + v3 }),
+                                "d1-" + v1 + "-d2-" + v2 + "-d3-" + v3);
+        DimensionalValue<String> value = builder.build().entrySet().iterator().next().getValue();
+
+        assertEquals("d1-3-d2-4-d3-5", value.get(context(new String[] { null, "d1v3", "d2v4", "d3v5" })));
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> context = context(randomValues(random, 100, true));
+            assertEquals("Looking up " + context, value.getMatching(context), value.get(context));
+        }
+        for (int i = 0; i < 1000; i++) {
+            Map<String, String> context = context(randomValues(random, 20, false));
+            assertEquals("Looking up " + context, value.getMatching(context), value.get(context));
+        }
+    }
+
+    /** Returns random values of all the dimensions, or null, drawing values from the given number of values */
+    private String[] randomValues(Random random, int valueCount, boolean nulls) {
+        String[] values = new String[dimensions.size()];
+        for (int d = 0; d < values.length; d++) {
+            if ( ! nulls || random.nextBoolean())
+                values[d] = "d" + d + "v" + random.nextInt(valueCount);
+        }
+        return values;
+    }
+
+    private DimensionBinding binding(String[] values) {
+        return DimensionBinding.createFrom(dimensions, DimensionValues.createFrom(values));
+    }
+
+    private Map<String, String> context(String[] values) {
+        Map<String, String> context = new HashMap<>();
+        for (int d = 0; d < values.length; d++) {
+            if (values[d] != null)
+                context.put(dimensions.get(d), values[d]);
+        }
+        return context;
+    }
+
+}
@@ -0,0 +1,107 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.query.profile.test;
+
+import com.yahoo.processing.request.CompoundName;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileProperties;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Measures getting values from a compiled query profile having many variants in many dimensions.
+ */
+public class QueryProfileVariantsMicroBenchmark {
+
+    private static final int propertyCount = 50;
+    private static final int dimensionCount = 6;
+    private static final int valuesPerDimension = 5;
+
+    private final String description;
+    private final int variantCount;
+
+    public QueryProfileVariantsMicroBenchmark(String description, int variantCount) {
+        this.description = description;
+        this.variantCount = variantCount;
+    }
+
+    public void benchmark(int count) {
+        Random random = new Random(42);
+        QueryProfile profile = createProfile(propertyCount, dimensionCount, valuesPerDimension, variantCount, random);
+        CompiledQueryProfile cprofile = profile.compile(null);
+        List<Map<String, String>> contexts = createContexts(profile, 100, random);
+        CompoundName[] names = new CompoundName[propertyCount];
+        for (int i = 0; i < propertyCount; i++)
+            names[i] = new CompoundName("p" + i);
+
+        getValues(count / 10, cprofile, names, contexts); // warm-up
+        System.out.println(description);
+        long startTime = System.currentTimeMillis();
+        getValues(count, cprofile, names, contexts);
+        long totalTime = System.currentTimeMillis() - startTime;
+        System.out.println("Done in " + totalTime + " ms (" + ((float)totalTime * 1000 / count + " microsecond per get)"));
+    }
+
+    private void getValues(int count, CompiledQueryProfile cprofile, CompoundName[] names, List<Map<String, String>> contexts) {
+        QueryProfileProperties substitution = new QueryProfileProperties(cprofile);
+        int found = 0;
+        for (int i = 0; i < count; i++) {
+            if (cprofile.get(names[i % names.length], contexts.get(i % contexts.size()), substitution) != null)
+                found++;
+        }
+        if (found == 0)
+            throw new RuntimeException("Expected values");
+    }
+
+    /**
+     * Creates a profile of properties named p0, p1, ..., which has a default value and the given number of
+     * variants spread randomly across the properties, binding a random subset of the dimensions d0, d1, ...
+     * to one of the values dNv0, dNv1, ....
+     */
+    static QueryProfile createProfile(int propertyCount, int dimensionCount, int valuesPerDimension, int variantCount,
+                                      Random random) {
+        QueryProfile profile = new QueryProfile("test");
+        String[] dimensions = new String[dimensionCount];
+        for (int d = 0; d < dimensionCount; d++)
+            dimensions[d] = "d" + d;
+        profile.setDimensions(dimensions);
+
+        for (int p = 0; p < propertyCount; p++)
+            profile.set("p" + p, "default", null);
+        for (int i = 0; i < variantCount; i++) {
+            String[] dimensionValues = new String[dimensionCount];
+            for (int d = 0; d < dimensionCount; d++) {
+                if (random.nextBoolean())
+                    dimensionValues[d] = "d" + d + "v" + random.nextInt(valuesPerDimension);
+            }
+            profile.set("p" + random.nextInt(propertyCount), "variant" + i, dimensionValues, null);
+        }
+        profile.freeze();
+        return profile;
+    }
+
+    private static List<Map<String, String>> createContexts(QueryProfile profile, int count, Random random) {
+        List<Map<String, String>> contexts = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            String[] dimensionValues = new String[dimensionCount];
+            for (int d = 0; d < dimensionCount; d++)
+                dimensionValues[d] = "d" + d + "v" + random.nextInt(valuesPerDimension + 1);
+            contexts.add(QueryProfileVariantsTestCase.toMap(profile, dimensionValues));
+        }
+        return contexts;
+    }
+
+    public static void main(String[] args) {
+        int count = 10000000;
+        new QueryProfileVariantsMicroBenchmark("Getting values with 100 variants  ", 100).benchmark(count);
+        System.out.println("");
+        new QueryProfileVariantsMicroBenchmark("Getting values with 1000 variants ", 1000).benchmark(count);
+        System.out.println("");
+        new QueryProfileVariantsMicroBenchmark("Getting values with 10000 variants", 10000).benchmark(count);
+        System.out.println("");
+    }
+
+}
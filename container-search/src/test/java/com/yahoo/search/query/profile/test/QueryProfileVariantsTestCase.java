@@ -21,6 +21,7 @@ import java.util.Arrays;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Random;
 import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
@@ -1249,6 +1250,28 @@ public class QueryProfileVariantsTestCase {
         assertEquals("yahoo/alerts", cAlert.get("vertical.custid", toMap("entry=alert", "intl=us", "lang=en-US")));
     }
 
+    @Test
+    public void testManyVariants() {
+        Random random = new Random(13);
+        QueryProfile profile = QueryProfileVariantsMicroBenchmark.createProfile(8, 5, 4, 300, random);
+        CompiledQueryProfile cprofile = profile.compile(null);
+
+        for (int i = 0; i < 1000; i++) {
+            String[] dimensionValues = new String[5];
+            for (int d = 0; d < dimensionValues.length; d++) {
+                int value = random.nextInt(6); // Including values not in any variant, and no value
+                dimensionValues[d] = value < 5 ? "d" + d + "v" + value : null;
+            }
+            Map<String, String> context = toMap(profile, dimensionValues);
+            Map<String, Object> values = cprofile.listValues("", context);
+            for (int p = 0; p < 8; p++) {
+                String name = "p" + p;
+                assertEquals("Looking up '" + name + "' for '" + Arrays.toString(dimensionValues) + "'",
+                             values.get(name), cprofile.get(name, context));
+            }
+        }
+    }
+
     private void assertGet(String expectedValue, String parameter, String[] dimensionValues, QueryProfile profile, CompiledQueryProfile cprofile) {
         Map<String,String> context=toMap(profile,dimensionValues);
         assertEquals("Looking up '" + parameter + "' for '" + Arrays.toString(dimensionValues) + "'",expectedValue,cprofile.get(parameter,context));
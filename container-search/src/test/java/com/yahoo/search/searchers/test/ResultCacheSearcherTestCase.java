@@ -0,0 +1,232 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.searchers.test;
+
+import com.yahoo.component.chain.Chain;
+import com.yahoo.metrics.simple.Bucket;
+import com.yahoo.metrics.simple.MetricReceiver;
+import com.yahoo.metrics.simple.Point;
+import com.yahoo.metrics.simple.UntypedMetric;
+import com.yahoo.search.Query;
+import com.yahoo.search.Result;
+import com.yahoo.search.Searcher;
+import com.yahoo.search.config.ResultCacheConfig;
+import com.yahoo.search.grouping.GroupingRequest;
+import com.yahoo.search.result.Coverage;
+import com.yahoo.search.result.ErrorMessage;
+import com.yahoo.search.result.Hit;
+import com.yahoo.search.searchchain.Execution;
+import com.yahoo.search.searchers.ResultCacheSearcher;
+import com.yahoo.test.ManualClock;
+import org.junit.Test;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+
+/**
+ * Unit tests for ResultCacheSearcher
+ */
+public class ResultCacheSearcherTestCase {
+
+    private final ManualClock clock = new ManualClock();
+    private final MetricReceiver.MockReceiver metric = new MetricReceiver.MockReceiver();
+    private final BackendSearcher backend = new BackendSearcher();
+
+    @Test
+    public void testCaching() {
+        Chain<Searcher> chain = chain(10, 60);
+
+        Result result = search("?query=foo", chain);
+        assertEquals(1, backend.searches);
+        assertEquals(3, result.hits().size());
+        assertEquals("summary of hit:1", result.hits().get(1).getField("summary"));
+
+        Result cached = search("?query=foo", chain);
+        assertEquals("Returned from the cache", 1, backend.searches);
+        assertEquals(1, backend.fills);
+        assertEquals(3, cached.hits().size());
+        assertEquals(3, cached.getTotalHitCount());
+        assertEquals("summary of hit:1", cached.hits().get(1).getField("summary"));
+        assertEquals(100, cached.getCoverage(false).getResultPercentage());
+
+        cached.hits().remove(0);
+        assertEquals("Modifying a returned result does not modify the cached result",
+                     3, search("?query=foo", chain).hits().size());
+        assertNotSame(search("?query=foo", chain), search("?query=foo", chain));
+        assertEquals(1, backend.searches);
+
+        search("?query=bar", chain);
+        search("?query=foo&offset=1", chain);
+        search("?query=foo&hits=2", chain);
+        search("?query=foo&ranking=other", chain);
+        search("?query=foo&summary=other", chain);
+        search("?query=foo&filter=%2Bbar", chain);
+        assertEquals("Other queries are not returned from the cache", 7, backend.searches);
+
+        Bucket metrics = metric.getSnapshot();
+        assertEquals(4, count("resultCacheHits", metrics));
+        assertEquals(7, count("resultCacheMisses", metrics));
+    }
+
+    @Test
+    public void testNotCaching() {
+        Chain<Searcher> chain = chain(10, 60);
+
+        search("?query=foo&nocache", chain);
+        search("?query=foo&nocache", chain);
+        assertEquals("noCache is honored", 2, backend.searches);
+
+        search("?query=foo&degraded=true", chain);
+        search("?query=foo&degraded=true", chain);
+        assertEquals("Degraded results are not cached", 4, backend.searches);
+
+        search("?query=foo&error=true", chain);
+        search("?query=foo&error=true", chain);
+        assertEquals("Results with errors are not cached", 6, backend.searches);
+
+        Query query = new Query("?query=foo");
+        GroupingRequest.newInstance(query);
+        new Execution(chain, Execution.Context.createContextStub()).search(query);
+        assertEquals("Grouping queries are not cached", 7, backend.searches);
+    }
+
+    @Test
+    public void testStreamingQueriesAreNotCached() {
+        Chain<Searcher> chain = chain(10, 60);
+
+        search("?query=foo&streaming.userid=1", chain);
+        search("?query=foo&streaming.userid=2", chain);
+        search("?query=foo&streaming.userid=2", chain);
+        assertEquals(3, backend.searches);
+        search("?query=foo&streaming.groupname=a", chain);
+        search("?query=foo&streaming.groupname=a", chain);
+        search("?query=foo&streaming.selection=id.user%3D%3D1", chain);
+        search("?query=foo&streaming.selection=id.user%3D%3D1", chain);
+        assertEquals(7, backend.searches);
+    }
+
+    @Test
+    public void testResultAffectingPropertiesAreCacheKeys() {
+        Chain<Searcher> chain = chain(10, 60);
+
+        String[] requests = { "?query=foo",
+                              "?query=foo&collapsefield=a",
+                              "?query=foo&collapsefield=b",
+                              "?query=foo&collapsefield=b&collapsesize=2",
+                              "?query=foo&collapsefield=b&collapse.summary=other",
+                              "?query=foo&ranking.matchPhase.maxHits=100",
+                              "?query=foo&ranking.matchPhase.maxHits=100&ranking.matchPhase.attribute=a",
+                              "?query=foo&ranking.softtimeout.enable=false",
+                              "?query=foo&ranking.matching.numthreadspersearch=1",
+                              "?query=foo&ranking.listFeatures=true",
+                              "?query=foo&dispatch.summaries=true" };
+        for (String request : requests)
+            search(request, chain);
+        assertEquals(requests.length, backend.searches);
+        for (String request : requests)
+            search(request, chain);
+        assertEquals("Each distinct query is returned from the cache", requests.length, backend.searches);
+    }
+
+    @Test
+    public void testExpiry() {
+        Chain<Searcher> chain = chain(10, 60);
+
+        search("?query=foo", chain);
+        clock.advance(Duration.ofSeconds(59));
+        search("?query=foo", chain);
+        assertEquals(1, backend.searches);
+        clock.advance(Duration.ofSeconds(1));
+        search("?query=foo", chain);
+        assertEquals("Expired", 2, backend.searches);
+        search("?query=foo", chain);
+        assertEquals("Cached again", 2, backend.searches);
+    }
+
+    @Test
+    public void testEviction() {
+        Chain<Searcher> chain = chain(2, 60);
+
+        search("?query=a", chain);
+        search("?query=b", chain);
+        search("?query=a", chain);
+        search("?query=c", chain); // evicts b, the least recently used
+        assertEquals(3, backend.searches);
+        search("?query=a", chain);
+        search("?query=c", chain);
+        assertEquals(3, backend.searches);
+        search("?query=b", chain);
+        assertEquals("Evicted", 4, backend.searches);
+
+        assertEquals(2, count("resultCacheEvictions", metric.getSnapshot()));
+    }
+
+    @Test
+    public void testSegmentedCache() {
+        Chain<Searcher> chain = chain(10000, 60);
+
+        for (int i = 0; i < 500; i++)
+            search("?query=term" + i, chain);
+        for (int i = 0; i < 500; i++)
+            assertEquals("summary of hit:1", search("?query=term" + i, chain).hits().get(1).getField("summary"));
+        assertEquals("All results are cached", 500, backend.searches);
+        assertEquals(0, count("resultCacheEvictions", metric.getSnapshot()));
+    }
+
+    private Chain<Searcher> chain(int maxEntries, double ttl) {
+        ResultCacheConfig.Builder config = new ResultCacheConfig.Builder();
+        config.maxEntries(maxEntries);
+        config.ttl(ttl);
+        return new Chain<>("test", new ResultCacheSearcher(new ResultCacheConfig(config), metric, clock), backend);
+    }
+
+    private Result search(String request, Chain<Searcher> chain) {
+        Query query = new Query(request.replace("&nocache", "&noCache=true"));
+        return new Execution(chain, Execution.Context.createContextStub()).search(query);
+    }
+
+    private long count(String name, Bucket metrics) {
+        Map<Point, UntypedMetric> map = metrics.getMapForMetric(name);
+        if (map == null) return 0;
+        return map.values().stream().mapToLong(UntypedMetric::getCount).sum();
+    }
+
+    private static class BackendSearcher extends Searcher {
+
+        int searches = 0;
+        int fills = 0;
+
+        @Override
+        public Result search(Query query, Execution execution) {
+            searches++;
+            if (query.properties().get("error") != null)
+                return new Result(query, ErrorMessage.createBackendCommunicationError("Failed"));
+
+            Result result = new Result(query);
+            for (int i = 0; i < 3; i++) {
+                Hit hit = new Hit("hit:" + i, 1.0 / (i + 1));
+                hit.setFillable();
+                result.hits().add(hit);
+            }
+            result.setTotalHitCount(3);
+            if (query.properties().get("degraded") != null)
+                result.setCoverage(new Coverage(50, 100, 1, 1).setDegradedReason(Coverage.DEGRADED_BY_TIMEOUT));
+            else
+                result.setCoverage(new Coverage(100, 100, 1, 1));
+            return result;
+        }
+
+        @Override
+        public void fill(Result result, String summaryClass, Execution execution) {
+            fills++;
+            for (Hit hit : result.hits()) {
+                hit.setField("summary", "summary of " + hit.getId());
+                hit.setFilled(summaryClass);
+            }
+        }
+
+    }
+
+}
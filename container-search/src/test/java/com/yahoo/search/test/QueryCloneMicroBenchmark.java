@@ -0,0 +1,90 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.search.test;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.jdisc.http.HttpRequest.Method;
+import com.yahoo.search.Query;
+import com.yahoo.search.query.profile.QueryProfile;
+import com.yahoo.search.query.profile.QueryProfileRegistry;
+import com.yahoo.search.query.profile.compiled.CompiledQueryProfile;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the time and memory allocated cloning realistic queries, the way federation and multi-pass
+ * grouping does, where each clone is then mutated a little.
+ */
+public class QueryCloneMicroBenchmark {
+
+    private final String description;
+    private final int targets;
+    private final int terms;
+
+    public QueryCloneMicroBenchmark(String description, int targets, int terms) {
+        this.description = description;
+        this.targets = targets;
+        this.terms = terms;
+    }
+
+    public void benchmark(int count) {
+        Query query = createQuery();
+        cloneAndMutate(count / 10, query); // warm-up
+        System.out.println(description);
+        long startBytes = allocatedBytes();
+        long startTime = System.currentTimeMillis();
+        cloneAndMutate(count, query);
+        long totalTime = System.currentTimeMillis() - startTime;
+        long totalBytes = allocatedBytes() - startBytes;
+        System.out.println("Done in " + totalTime + " ms (" + ((float)totalTime * 1000 / count + " microsecond and " +
+                           totalBytes / count + " bytes per query)"));
+    }
+
+    private void cloneAndMutate(int count, Query query) {
+        for (int i = 0; i < count; i++) {
+            for (int target = 0; target < targets; target++) {
+                Query clone = query.clone();
+                clone.getModel().setSources("source" + target);
+                clone.properties().set("target.id", target);
+                clone.setHits(target + 10);
+            }
+        }
+    }
+
+    private Query createQuery() {
+        QueryProfileRegistry registry = new QueryProfileRegistry();
+        QueryProfile profile = new QueryProfile("test");
+        for (int i = 0; i < 20; i++)
+            profile.set("profile.property" + i, "value" + i, registry);
+        registry.register(profile);
+        CompiledQueryProfile compiled = registry.compile().findQueryProfile("test");
+
+        StringBuilder request = new StringBuilder("?query=");
+        for (int i = 0; i < terms; i++)
+            request.append(i % 5 == 0 ? "%2B" : "").append("term").append(i).append(i < terms - 1 ? "+" : "");
+        request.append("&filter=%2Bcategory:books");
+        for (int i = 0; i < 10; i++)
+            request.append("&ranking.features.query(weight").append(i).append(")=").append(i * 0.1);
+        for (int i = 0; i < 5; i++)
+            request.append("&rankproperty.property").append(i).append("=value").append(i);
+        for (int i = 0; i < 20; i++)
+            request.append("&custom.parameter").append(i).append("=value").append(i);
+        Query query = new Query(HttpRequest.createTestRequest(request.toString(), Method.GET), compiled);
+        for (int i = 0; i < 10; i++)
+            query.properties().set("runtime.property" + i, "value" + i);
+        query.getModel().getQueryTree(); // parse
+        return query;
+    }
+
+    private static long allocatedBytes() {
+        return ((com.sun.management.ThreadMXBean)ManagementFactory.getThreadMXBean()).getThreadAllocatedBytes(Thread.currentThread().getId());
+    }
+
+    public static void main(String[] args) {
+        int count = 100000;
+        new QueryCloneMicroBenchmark("Federating a query with 10 terms to 10 targets ", 10, 10).benchmark(count);
+        System.out.println("");
+        new QueryCloneMicroBenchmark("Federating a query with 100 terms to 10 targets", 10, 100).benchmark(count / 10);
+        System.out.println("");
+    }
+
+}
@@ -141,6 +141,47 @@ public class QueryTestCase {
         System.out.println(l);
     }
 
+    @Test
+    public void testClonesAreIndependent() {
+        Query original = new Query("?query=test&ranking.features.query(a)=1.0&rankproperty.p=v&custom=original");
+        original.properties().set("list", new ArrayList<>(List.of("original")));
+        Query clone = original.clone();
+
+        assertEquals("original", clone.properties().get("custom"));
+        assertEquals(1.0, clone.getRanking().getFeatures().getDouble("query(a)").getAsDouble(), 0.0);
+        assertEquals(List.of("v"), clone.getRanking().getProperties().get("p"));
+
+        clone.properties().set("custom", "clone");
+        clone.getRanking().getFeatures().put("query(a)", 2.0);
+        clone.getRanking().getProperties().put("p", "clone");
+        ((List<String>)clone.properties().get("list")).add("clone");
+        assertEquals("original", original.properties().get("custom"));
+        assertEquals(1.0, original.getRanking().getFeatures().getDouble("query(a)").getAsDouble(), 0.0);
+        assertEquals(List.of("v"), original.getRanking().getProperties().get("p"));
+        assertEquals(List.of("original"), original.properties().get("list"));
+
+        Query secondClone = original.clone();
+        original.properties().set("custom", "modified");
+        original.getRanking().getFeatures().put("query(a)", 3.0);
+        original.getRanking().getProperties().put("p", "modified");
+        ((List<String>)original.properties().get("list")).add("modified");
+        assertEquals("original", secondClone.properties().get("custom"));
+        assertEquals(1.0, secondClone.getRanking().getFeatures().getDouble("query(a)").getAsDouble(), 0.0);
+        assertEquals(List.of("v"), secondClone.getRanking().getProperties().get("p"));
+        assertEquals(List.of("original"), secondClone.properties().get("list"));
+
+        Map<String, Object> features = original.getRanking().getFeatures().asMap();
+        Query thirdClone = original.clone();
+        features.put("query(b)", 4.0);
+        assertTrue(thirdClone.getRanking().getFeatures().getDouble("query(b)").isEmpty());
+        assertEquals(3.0, thirdClone.getRanking().getFeatures().getDouble("query(a)").getAsDouble(), 0.0);
+
+        List<String> list = (List<String>)original.properties().get("list");
+        Query fourthClone = original.clone();
+        list.add("after cloning");
+        assertFalse(((List<?>)fourthClone.properties().get("list")).contains("after cloning"));
+    }
+
     @Test
     public void testCloneWithConnectivity() {
         List<String> l = new ArrayList();
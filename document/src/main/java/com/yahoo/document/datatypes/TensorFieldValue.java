@@ -6,13 +6,18 @@ import com.yahoo.document.TensorDataType;
 import com.yahoo.document.serialization.FieldReader;
 import com.yahoo.document.serialization.FieldWriter;
 import com.yahoo.document.serialization.XmlStream;
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
 
 import java.util.Optional;
 
 /**
  * Field value class that wraps a tensor.
+ * A tensor read from the binary format is kept in that format and only decoded when it is accessed,
+ * such that tensors which are not accessed, e.g., by document processors, are written back without being
+ * decoded and encoded again.
  *
  * @author geirst
  */
@@ -20,6 +25,9 @@ public class TensorFieldValue extends FieldValue {
 
     private Optional<Tensor> tensor;
 
+    /** The tensor in binary format, or null if not known. Set when the tensor is present and this is not modified. */
+    private byte[] serializedTensor = null;
+
     private final TensorDataType dataType;
 
     /** Create an empty tensor field value */
@@ -35,9 +43,33 @@ public class TensorFieldValue extends FieldValue {
     }
 
     public Optional<Tensor> getTensor() {
+        if (tensor.isEmpty() && serializedTensor != null)
+            tensor = Optional.of(TypedBinaryFormat.decode(Optional.of(dataType.getTensorType()),
+                                                          GrowableByteBuffer.wrap(serializedTensor)));
         return tensor;
     }
 
+    /** Returns whether this contains a tensor, without decoding it */
+    public boolean isPresent() {
+        return serializedTensor != null || tensor.isPresent();
+    }
+
+    /** Returns the tensor of this in binary format, or empty if this contains no tensor. The returned array must not be modified. */
+    public Optional<byte[]> getSerializedTensor() {
+        if (serializedTensor == null && tensor.isPresent())
+            serializedTensor = TypedBinaryFormat.encode(tensor.get());
+        return Optional.ofNullable(serializedTensor);
+    }
+
+    /**
+     * Assigns a tensor in binary format to this. The tensor is decoded when it is first accessed.
+     * The given array is owned by this after this call.
+     */
+    public void assignSerializedTensor(byte[] serializedTensor) {
+        this.tensor = Optional.empty();
+        this.serializedTensor = serializedTensor;
+    }
+
     @Override
     public TensorDataType getDataType() {
         return dataType;
@@ -45,8 +77,8 @@ public class TensorFieldValue extends FieldValue {
 
     @Override
     public String toString() {
-        if (tensor.isPresent()) {
-            return tensor.get().toString();
+        if (isPresent()) {
+            return getTensor().get().toString();
         } else {
             return "null";
         }
@@ -60,6 +92,7 @@ public class TensorFieldValue extends FieldValue {
     @Override
     public void clear() {
         tensor = Optional.empty();
+        serializedTensor = null;
     }
 
     @Override
@@ -69,7 +102,12 @@ public class TensorFieldValue extends FieldValue {
         } else if (o instanceof Tensor) {
             assignTensor(Optional.of((Tensor)o));
         } else if (o instanceof TensorFieldValue) {
-            assignTensor(((TensorFieldValue)o).getTensor());
+            TensorFieldValue other = (TensorFieldValue)o;
+            if (other.tensor.isEmpty() && other.serializedTensor != null
+                && other.dataType.getTensorType().isAssignableTo(dataType.getTensorType()))
+                assignSerializedTensor(other.serializedTensor);
+            else
+                assignTensor(other.getTensor());
         } else {
             throw new IllegalArgumentException("Expected class '" + getClass().getName() + "', got '" +
                                                o.getClass().getName() + "'.");
@@ -81,6 +119,7 @@ public class TensorFieldValue extends FieldValue {
             throw new IllegalArgumentException("Type mismatch: Cannot assign tensor of type " + tensor.get().type() +
                                                " to field of type " + dataType.getTensorType());
         this.tensor = tensor;
+        this.serializedTensor = null;
     }
 
     @Override
@@ -100,13 +139,13 @@ public class TensorFieldValue extends FieldValue {
 
         TensorFieldValue other = (TensorFieldValue)o;
         if ( ! dataType.getTensorType().equals(other.dataType.getTensorType())) return false;
-        if ( ! tensor.equals(other.tensor)) return false;
+        if ( ! getTensor().equals(other.getTensor())) return false;
         return true;
     }
 
     @Override
     public Object getWrappedValue() {
-        return tensor.orElse(null);
+        return getTensor().orElse(null);
     }
 
 }
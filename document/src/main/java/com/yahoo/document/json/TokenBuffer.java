@@ -2,9 +2,8 @@
 package com.yahoo.document.json;
 
 import java.io.IOException;
-import java.util.ArrayDeque;
-import java.util.Deque;
-import java.util.Iterator;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
 
 import com.fasterxml.jackson.core.JsonParser;
 import com.fasterxml.jackson.core.JsonToken;
@@ -13,6 +12,10 @@ import com.google.common.base.Preconditions;
 /**
  * Helper class to enable lookahead in the token stream.
  *
+ * Tokens are stored in parallel arrays rather than as token objects, and the text of tokens which
+ * always have the same text (such as structure starts and ends) is not stored, to avoid allocating
+ * objects per token when parsing large documents. Prefetched elements are views of the same arrays.
+ *
  * @author Steinar Knutsen
  */
 public class TokenBuffer {
@@ -29,17 +32,36 @@ public class TokenBuffer {
         }
     }
 
-    private Deque<Token> buffer;
+    private JsonToken[] tokens;
+    private String[] names;
+
+    /** The text of each token, or null if it is always the same for the token type */
+    private String[] texts;
+
+    /** The index of the current token */
+    private int position;
+
+    /** The index after the last token */
+    private int end;
+
+    /** Whether the arrays of this are shared with another buffer, such that they must be copied before adding */
+    private boolean shared;
+
     private int nesting = 0;
 
     public TokenBuffer() {
-        this(new ArrayDeque<>());
-    }
-
-    private TokenBuffer(Deque<Token> buffer) {
-        this.buffer = buffer;
-        if (buffer.size() > 0) {
-            updateNesting(buffer.peekFirst().token);
+        this(new JsonToken[16], new String[16], new String[16], 0, 0, false);
+    }
+
+    private TokenBuffer(JsonToken[] tokens, String[] names, String[] texts, int position, int end, boolean shared) {
+        this.tokens = tokens;
+        this.names = names;
+        this.texts = texts;
+        this.position = position;
+        this.end = end;
+        this.shared = shared;
+        if (size() > 0) {
+            updateNesting(tokens[position]);
         }
     }
 
@@ -47,42 +69,56 @@ public class TokenBuffer {
     public boolean isEmpty() { return size() == 0; }
 
     public JsonToken next() {
-        buffer.removeFirst();
-        Token t = buffer.peekFirst();
-        if (t == null) {
+        if (isEmpty()) throw new NoSuchElementException();
+        position++;
+        if (isEmpty()) {
             return null;
         }
-        updateNesting(t.token);
-        return t.token;
+        JsonToken t = tokens[position];
+        updateNesting(t);
+        return t;
     }
 
     /** Returns the current token without changing position, or null if none */
     public JsonToken currentToken() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.token;
+        if (isEmpty()) return null;
+        return tokens[position];
     }
 
     /** Returns the current token name without changing position, or null if none */
     public String currentName() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.name;
+        if (isEmpty()) return null;
+        return names[position];
     }
 
     /** Returns the current token text without changing position, or null if none */
     public String currentText() {
-        Token token = buffer.peekFirst();
-        if (token == null) return null;
-        return token.text;
+        if (isEmpty()) return null;
+        return text(position);
     }
 
     public int size() {
-        return buffer.size();
+        return end - position;
+    }
+
+    private String text(int index) {
+        return texts[index] != null ? texts[index] : tokens[index].asString();
     }
 
     private void add(JsonToken token, String name, String text) {
-        buffer.addLast(new Token(token, name, text));
+        if (shared || end == tokens.length) {
+            int capacity = Math.max(16, size() * 2);
+            tokens = Arrays.copyOfRange(tokens, position, position + capacity);
+            names = Arrays.copyOfRange(names, position, position + capacity);
+            texts = Arrays.copyOfRange(texts, position, position + capacity);
+            end -= position;
+            position = 0;
+            shared = false;
+        }
+        tokens[end] = token;
+        names[end] = name;
+        texts[end] = text;
+        end++;
     }
 
     public void bufferObject(JsonToken first, JsonParser tokens) {
@@ -126,7 +162,7 @@ public class TokenBuffer {
 
     private void addFromParser(JsonToken t, JsonParser tokens) {
         try {
-            add(t, tokens.getCurrentName(), tokens.getText());
+            add(t, tokens.getCurrentName(), t.asString() != null ? null : tokens.getText());
         } catch (IOException e) {
             // TODO something sane
             throw new RuntimeException(e);
@@ -153,8 +189,8 @@ public class TokenBuffer {
     public String dumpContents() {
         StringBuilder b = new StringBuilder();
         b.append("[nesting: ").append(nesting()).append("\n");
-        for (Token t : buffer) {
-            b.append("(").append(t.token).append(", \"").append(t.name).append("\", \"").append(t.text).append("\")\n");
+        for (int i = position; i < end; i++) {
+            b.append("(").append(tokens[i]).append(", \"").append(names[i]).append("\", \"").append(text(i)).append("\")\n");
         }
         b.append("]\n");
         return b.toString();
@@ -167,50 +203,52 @@ public class TokenBuffer {
         }
     }
 
+    /** Returns a buffer of the current element, and any remaining tokens until the end of the enclosing element */
     public TokenBuffer prefetchCurrentElement() {
-        Deque<Token> copy = new ArrayDeque<>();
-
+        int elementEnd;
         if (currentToken().isScalarValue()) {
-            copy.add(buffer.peekFirst());
+            elementEnd = position + 1;
         } else {
             int localNesting = nesting();
             int nestingBarrier = localNesting;
-            for (Token t : buffer) {
-                copy.add(t);
-                localNesting += nestingOffset(t.token);
+            elementEnd = end;
+            for (int i = position; i < end; i++) {
+                localNesting += nestingOffset(tokens[i]);
                 if (localNesting < nestingBarrier) {
+                    elementEnd = i + 1;
                     break;
                 }
             }
         }
-        return new TokenBuffer(copy);
+        shared = true;
+        return new TokenBuffer(tokens, names, texts, position, elementEnd, true);
     }
 
     public Token prefetchScalar(String name) {
         int localNesting = nesting();
         int nestingBarrier = localNesting;
-        Token toReturn = null;
-        Iterator<Token> i;
 
         if (name.equals(currentName()) && currentToken().isScalarValue()) {
-            toReturn = buffer.peekFirst();
+            return token(position);
         } else {
-            i = buffer.iterator();
-            i.next(); // just ignore the first value, as we know it's not what
-                      // we're looking for, and it's nesting effect is already
-                      // included
-            while (i.hasNext()) {
-                Token t = i.next();
-                if (localNesting == nestingBarrier && name.equals(t.name) && t.token.isScalarValue()) {
-                    toReturn = t;
-                    break;
+            // just ignore the first value, as we know it's not what
+            // we're looking for, and it's nesting effect is already
+            // included
+            for (int i = position + 1; i < end; i++) {
+                if (localNesting == nestingBarrier && name.equals(names[i]) && tokens[i].isScalarValue()) {
+                    return token(i);
                 }
-                localNesting += nestingOffset(t.token);
+                localNesting += nestingOffset(tokens[i]);
                 if (localNesting < nestingBarrier) {
                     break;
                 }
             }
         }
-        return toReturn;
+        return null;
+    }
+
+    private Token token(int index) {
+        return new Token(tokens[index], names[index], text(index));
     }
+
 }
@@ -6,6 +6,7 @@ import com.yahoo.document.select.parser.ParseException;
 import com.yahoo.document.select.parser.SelectInput;
 import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.select.rule.CompiledExpression;
 import com.yahoo.document.select.rule.ExpressionNode;
 
 /**
@@ -13,6 +14,9 @@ import com.yahoo.document.select.rule.ExpressionNode;
  * based on their type and content. A document selector has a textual
  * representation which is called the <i>Document Selection Language</i></p>
  *
+ * <p>The selection is compiled when the selector is created, such that documents are accepted or rejected
+ * without interpreting the parsed expression where possible, see {@link CompiledExpression}.</p>
+ *
  * <p>Document selectors are multithread safe.</p>
  *
  * @author bratseth
@@ -20,6 +24,7 @@ import com.yahoo.document.select.rule.ExpressionNode;
 public class DocumentSelector {
 
     private ExpressionNode expression;
+    private final CompiledExpression compiled;
 
     /**
      * Creates a document selector from a Document Selection Language string
@@ -40,6 +45,7 @@ public class DocumentSelector {
             throw (ParseException)t.initCause(e instanceof ParseException ?
                                               new ParseException(input.formatException(e.getMessage())) : e);
         }
+        compiled = CompiledExpression.compile(expression);
     }
 
     /**
@@ -61,6 +67,12 @@ public class DocumentSelector {
      * @throws RuntimeException if the evaluation enters an illegal state
      */
     public Result accepts(Context context) {
+        Result result = compiled.evaluate(context);
+        return result != null ? result : interpret(context);
+    }
+
+    /** Returns the result of interpreting the expression of this in the given context, without compiling it */
+    Result interpret(Context context) {
         return Result.toResult(expression.evaluate(context));
     }
 
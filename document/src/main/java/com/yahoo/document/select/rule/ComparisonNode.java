@@ -240,7 +240,7 @@ public class ComparisonNode implements ExpressionNode {
      * @param rhs Right hand side of operation.
      * @return The evaluation result.
      */
-    private Result evaluateBool(Object lhs, Object rhs) {
+    Result evaluateBool(Object lhs, Object rhs) {
         if (operator.equals("==")) {
             return evaluateEquals(lhs, rhs);
         } else if (operator.equals("!=")) {
@@ -261,7 +261,7 @@ public class ComparisonNode implements ExpressionNode {
      * @param rhs Right hand side of operation.
      * @return Wether or not the two operands are equal.
      */
-    private Result evaluateEquals(Object lhs, Object rhs) {
+    Result evaluateEquals(Object lhs, Object rhs) {
         if (lhs == null || rhs == null) {
             return Result.toResult(lhs == rhs);
         }
@@ -331,7 +331,7 @@ public class ComparisonNode implements ExpressionNode {
      * @param glob The glob pattern.
      * @return The regex string.
      */
-    private String globToRegex(String glob) {
+    static String globToRegex(String glob) {
         StringBuilder ret = new StringBuilder();
         ret.append("^");
         for (int i = 0; i < glob.length(); i++) {
@@ -348,7 +348,7 @@ public class ComparisonNode implements ExpressionNode {
      * @param glob The glob character.
      * @return The regex string.
      */
-    private String globToRegex(char glob) {
+    private static String globToRegex(char glob) {
         switch (glob) {
             case'*':
                 return ".*";
@@ -0,0 +1,484 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select.rule;
+
+import com.yahoo.document.Document;
+import com.yahoo.document.DocumentGet;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentRemove;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentUpdate;
+import com.yahoo.document.Field;
+import com.yahoo.document.datatypes.CompositeFieldValue;
+import com.yahoo.document.datatypes.FieldValue;
+import com.yahoo.document.select.Context;
+import com.yahoo.document.select.Result;
+import com.yahoo.document.select.ResultList;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.regex.Pattern;
+import java.util.regex.PatternSyntaxException;
+
+/**
+ * An expression compiled for fast, repeated evaluation of whether documents are accepted by it.
+ *
+ * Document fields are resolved once per document type, constant sub-expressions are evaluated once,
+ * patterns are compiled once, and logic is evaluated with short-circuiting directly to results,
+ * without creating result lists. Values which have variables or multiple values, such as collection
+ * elements, must be combined by the interpreter: When such a value is encountered, evaluation
+ * returns null, and the expression must be interpreted instead.
+ *
+ * The expression must not be modified after it is compiled. This is multithread safe.
+ */
+public final class CompiledExpression {
+
+    /** Returned by values which must be interpreted */
+    private static final Object unresolved = new Object();
+
+    private final Condition condition;
+
+    private CompiledExpression(Condition condition) {
+        this.condition = condition;
+    }
+
+    /** Compiles the given expression */
+    public static CompiledExpression compile(ExpressionNode expression) {
+        return new CompiledExpression(condition(expression));
+    }
+
+    /**
+     * Returns the result of evaluating this in the given context, which is always the same as that of
+     * interpreting the expression, or null if the expression must be interpreted to find the result
+     */
+    public Result evaluate(Context context) {
+        return condition.evaluate(context);
+    }
+
+    private static Condition condition(ExpressionNode node) {
+        if (node instanceof EmbracedNode)
+            return condition(((EmbracedNode)node).getNode());
+        if (node instanceof LogicNode)
+            return logic((LogicNode)node);
+        if (node instanceof NegationNode)
+            return negation((NegationNode)node);
+        if (node instanceof ComparisonNode)
+            return comparison((ComparisonNode)node);
+        if (isConstant(node))
+            return constant(node, new ValueCondition(node));
+        return new ValueCondition(node);
+    }
+
+    /** Builds the logic tree with the same precedence as {@link LogicNode#evaluate} */
+    private static Condition logic(LogicNode node) {
+        Deque<LogicItem> stack = new ArrayDeque<>();
+        for (LogicNode.NodeItem item : node.getItems()) {
+            if (stack.size() > 1) {
+                while (stack.peek().operator >= item.getOperator())
+                    combine(stack);
+            }
+            stack.push(new LogicItem(item.getOperator(), condition(item.getNode())));
+        }
+        while (stack.size() > 1)
+            combine(stack);
+        return stack.pop().condition;
+    }
+
+    private static void combine(Deque<LogicItem> stack) {
+        LogicItem rhs = stack.pop();
+        LogicItem lhs = stack.pop();
+        switch (rhs.operator) {
+            case LogicNode.AND:
+                stack.push(new LogicItem(lhs.operator, and(lhs.condition, rhs.condition)));
+                break;
+            case LogicNode.OR:
+                stack.push(new LogicItem(lhs.operator, or(lhs.condition, rhs.condition)));
+                break;
+            default:
+                throw new IllegalStateException("Logical operator " + rhs.operator + " not supported.");
+        }
+    }
+
+    private static Condition and(Condition lhs, Condition rhs) {
+        if (lhs instanceof Constant) {
+            if (((Constant)lhs).result == Result.FALSE) return lhs;
+            if (((Constant)lhs).result == Result.TRUE) return rhs;
+        }
+        return new And(lhs, rhs);
+    }
+
+    private static Condition or(Condition lhs, Condition rhs) {
+        if (lhs instanceof Constant) {
+            if (((Constant)lhs).result == Result.TRUE) return lhs;
+            if (((Constant)lhs).result == Result.FALSE) return rhs;
+        }
+        return new Or(lhs, rhs);
+    }
+
+    private static Condition negation(NegationNode node) {
+        Condition condition = condition(node.getNode());
+        if (condition instanceof Constant)
+            return new Constant(Result.invert(((Constant)condition).result));
+        return new Not(condition);
+    }
+
+    private static Condition comparison(ComparisonNode node) {
+        Value lhs = value(node.getLHS());
+        Value rhs = value(node.getRHS());
+        Comparison comparison = new Comparison(node, lhs, rhs);
+        if (lhs instanceof ConstantValue && rhs instanceof ConstantValue)
+            return constant(node, comparison);
+        return comparison;
+    }
+
+    /** Returns the constant result of the given node, or the given condition if it cannot be evaluated without a context */
+    private static Condition constant(ExpressionNode node, Condition condition) {
+        try {
+            Result result = toResult(node.evaluate(null));
+            return result != null ? new Constant(result) : condition;
+        }
+        catch (RuntimeException e) { // Leave it to evaluation
+            return condition;
+        }
+    }
+
+    private static Value value(ExpressionNode node) {
+        if (node instanceof EmbracedNode)
+            return value(((EmbracedNode)node).getNode());
+        if (isConstant(node)) {
+            try {
+                return new ConstantValue(node.evaluate(null));
+            }
+            catch (RuntimeException e) { // Leave it to evaluation
+                return new InterpretedValue(node);
+            }
+        }
+        if (node instanceof AttributeNode) {
+            AttributeNode attribute = (AttributeNode)node;
+            if (attribute.getValue() instanceof DocumentNode && attribute.getItems().size() == 1) {
+                AttributeNode.Item item = attribute.getItems().get(0);
+                if (item.getType() == AttributeNode.Item.ATTRIBUTE && isFieldName(item.getName()))
+                    return new FieldReference(attribute, (DocumentNode)attribute.getValue(), item.getName());
+            }
+        }
+        return new InterpretedValue(node);
+    }
+
+    /** Returns whether the given node evaluates to the same value in any context */
+    private static boolean isConstant(ExpressionNode node) {
+        if (node instanceof LiteralNode) return true;
+        if (node instanceof EmbracedNode) return isConstant(((EmbracedNode)node).getNode());
+        if (node instanceof ArithmeticNode) {
+            for (ArithmeticNode.NodeItem item : ((ArithmeticNode)node).getItems())
+                if ( ! isConstant(item.getNode())) return false;
+            return true;
+        }
+        return false;
+    }
+
+    /** Returns whether the given field path is just a field name */
+    private static boolean isFieldName(String path) {
+        for (int i = 0; i < path.length(); i++) {
+            char c = path.charAt(i);
+            if (c == '.' || c == '{' || c == '[') return false;
+        }
+        return true;
+    }
+
+    /** Returns the result of the given value, or null if it has variables or multiple values */
+    private static Result toResult(Object value) {
+        if (value instanceof ResultList) {
+            List<ResultList.ResultPair> results = ((ResultList)value).getResults();
+            if (results.size() != 1 || ! results.get(0).getVariables().isEmpty()) return null;
+            return results.get(0).getResult();
+        }
+        if (value instanceof AttributeNode.VariableValueList)
+            return singleValue(value) == unresolved ? null : Result.TRUE;
+        return Result.toResult(value);
+    }
+
+    /** Returns the single value of the given value list, or unresolved if it has variables or multiple values */
+    private static Object singleValue(Object list) {
+        AttributeNode.VariableValueList values = (AttributeNode.VariableValueList)list;
+        if (values.size() != 1 || ! values.get(0).getVariables().isEmpty()) return unresolved;
+        return values.get(0).getValue();
+    }
+
+    private interface Condition {
+
+        /** Returns the result of this in the given context, or null if it must be interpreted */
+        Result evaluate(Context context);
+
+    }
+
+    private static final class LogicItem {
+
+        private final int operator;
+        private final Condition condition;
+
+        LogicItem(int operator, Condition condition) {
+            this.operator = operator;
+            this.condition = condition;
+        }
+
+    }
+
+    private static final class Constant implements Condition {
+
+        private final Result result;
+
+        Constant(Result result) {
+            this.result = result;
+        }
+
+        @Override
+        public Result evaluate(Context context) { return result; }
+
+    }
+
+    private static final class And implements Condition {
+
+        private final Condition lhs, rhs;
+
+        And(Condition lhs, Condition rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public Result evaluate(Context context) {
+            Result left = lhs.evaluate(context);
+            if (left == null) return null;
+            if (left == Result.FALSE) return Result.FALSE;
+            Result right = rhs.evaluate(context);
+            if (right == null) return null;
+            if (right == Result.FALSE) return Result.FALSE;
+            if (left == Result.TRUE && right == Result.TRUE) return Result.TRUE;
+            return Result.INVALID;
+        }
+
+    }
+
+    private static final class Or implements Condition {
+
+        private final Condition lhs, rhs;
+
+        Or(Condition lhs, Condition rhs) {
+            this.lhs = lhs;
+            this.rhs = rhs;
+        }
+
+        @Override
+        public Result evaluate(Context context) {
+            Result left = lhs.evaluate(context);
+            if (left == null) return null;
+            if (left == Result.TRUE) return Result.TRUE;
+            Result right = rhs.evaluate(context);
+            if (right == null) return null;
+            if (right == Result.TRUE) return Result.TRUE;
+            if (left == Result.FALSE && right == Result.FALSE) return Result.FALSE;
+            return Result.INVALID;
+        }
+
+    }
+
+    private static final class Not implements Condition {
+
+        private final Condition condition;
+
+        Not(Condition condition) {
+            this.condition = condition;
+        }
+
+        @Override
+        public Result evaluate(Context context) {
+            Result result = condition.evaluate(context);
+            return result == null ? null : Result.invert(result);
+        }
+
+    }
+
+    /** A node which is not a condition, such as a document type, evaluated to a result */
+    private static final class ValueCondition implements Condition {
+
+        private final ExpressionNode node;
+
+        ValueCondition(ExpressionNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public Result evaluate(Context context) {
+            return toResult(node.evaluate(context));
+        }
+
+    }
+
+    private static final class Comparison implements Condition {
+
+        private final ComparisonNode node;
+        private final Value lhs, rhs;
+        private final String operator;
+
+        /** The compiled pattern of a regex or glob comparison with a constant right hand side, or null */
+        private final Pattern pattern;
+
+        Comparison(ComparisonNode node, Value lhs, Value rhs) {
+            this.node = node;
+            this.lhs = lhs;
+            this.rhs = rhs;
+            this.operator = node.getOperator();
+            this.pattern = compilePattern(operator, rhs);
+        }
+
+        private static Pattern compilePattern(String operator, Value rhs) {
+            if ( ! (rhs instanceof ConstantValue)) return null;
+            Object value = ((ConstantValue)rhs).value;
+            if (value == null || value == Result.INVALID) return null;
+            try {
+                if (operator.equals("=~"))
+                    return Pattern.compile("" + value);
+                if (operator.equals("="))
+                    return Pattern.compile(ComparisonNode.globToRegex("" + value));
+                return null;
+            }
+            catch (PatternSyntaxException e) { // Leave it to evaluation
+                return null;
+            }
+        }
+
+        @Override
+        public Result evaluate(Context context) {
+            Object left = lhs.evaluate(context);
+            if (left == unresolved) return null;
+            Object right = rhs.evaluate(context);
+            if (right == unresolved) return null;
+
+            if (left == null || right == null) {
+                if (operator.equals("==") || operator.equals("=")) return Result.toResult(left == right);
+                if (operator.equals("!=")) return Result.toResult(left != right);
+                return Result.INVALID;
+            }
+            if (left == Result.INVALID || right == Result.INVALID) return Result.INVALID;
+
+            boolean leftIsList = lhs.isList(left);
+            boolean rightIsList = rhs.isList(right);
+            if (left instanceof AttributeNode.VariableValueList && (left = singleValue(left)) == unresolved) return null;
+            if (right instanceof AttributeNode.VariableValueList && (right = singleValue(right)) == unresolved) return null;
+
+            if (leftIsList && rightIsList) {
+                if (operator.equals("==")) return node.evaluateEquals(left, right);
+                if (operator.equals("!=")) return Result.invert(node.evaluateEquals(left, right));
+                return Result.INVALID;
+            }
+            if (pattern != null)
+                return Result.toResult(pattern.matcher("" + left).find());
+            return node.evaluateBool(left, right);
+        }
+
+    }
+
+    private interface Value {
+
+        /** Returns the value of this in the given context, or unresolved if it must be interpreted */
+        Object evaluate(Context context);
+
+        /** Returns whether the given value of this is a list of values, in which case it is compared as such */
+        default boolean isList(Object value) {
+            return value instanceof AttributeNode.VariableValueList;
+        }
+
+    }
+
+    private static final class ConstantValue implements Value {
+
+        private final Object value;
+
+        ConstantValue(Object value) {
+            this.value = value;
+        }
+
+        @Override
+        public Object evaluate(Context context) { return value; }
+
+    }
+
+    private static final class InterpretedValue implements Value {
+
+        private final ExpressionNode node;
+
+        InterpretedValue(ExpressionNode node) {
+            this.node = node;
+        }
+
+        @Override
+        public Object evaluate(Context context) { return node.evaluate(context); }
+
+    }
+
+    /**
+     * A reference to a field in a document. The value of a field which is not a collection or struct is
+     * returned as itself rather than as a list of a single value.
+     */
+    private static final class FieldReference implements Value {
+
+        private final AttributeNode node;
+        private final DocumentNode document;
+        private final String name;
+
+        /** The field resolved in the last document type encountered */
+        private volatile ResolvedField resolved = null;
+
+        FieldReference(AttributeNode node, DocumentNode document, String name) {
+            this.node = node;
+            this.document = document;
+            this.name = name;
+        }
+
+        @Override
+        public Object evaluate(Context context) {
+            Object operation = document.evaluate(context.getDocumentOperation());
+            if (operation instanceof DocumentUpdate || operation instanceof DocumentRemove || operation instanceof DocumentGet)
+                return Result.INVALID;
+            if ( ! (operation instanceof DocumentPut))
+                return Result.FALSE;
+
+            Document document = ((DocumentPut)operation).getDocument();
+            ResolvedField field = resolve(document.getDataType());
+            if (field.imported) return null; // Only known in the backend, see AttributeNode
+            if (field.field == null) return node.evaluate(context); // Fails as the interpreter does
+
+            FieldValue value = document.getFieldValue(field.field);
+            if (value instanceof CompositeFieldValue) return node.evaluate(context);
+            return value;
+        }
+
+        @Override
+        public boolean isList(Object value) {
+            return value instanceof FieldValue || value instanceof AttributeNode.VariableValueList;
+        }
+
+        private ResolvedField resolve(DocumentType type) {
+            ResolvedField resolved = this.resolved;
+            if (resolved == null || resolved.type != type)
+                this.resolved = resolved = new ResolvedField(type, type.hasImportedField(name), type.getField(name));
+            return resolved;
+        }
+
+    }
+
+    private static final class ResolvedField {
+
+        private final DocumentType type;
+        private final boolean imported;
+        private final Field field;
+
+        ResolvedField(DocumentType type, boolean imported, Field field) {
+            this.type = type;
+            this.imported = imported;
+            this.field = field;
+        }
+
+    }
+
+}
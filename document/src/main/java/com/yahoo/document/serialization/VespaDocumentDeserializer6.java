@@ -58,7 +58,6 @@ import com.yahoo.document.update.RemoveValueUpdate;
 import com.yahoo.document.update.ValueUpdate;
 import com.yahoo.document.WeightedSetDataType;
 import com.yahoo.io.GrowableByteBuffer;
-import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.text.Utf8;
 import com.yahoo.text.Utf8Array;
 import com.yahoo.text.Utf8String;
@@ -244,9 +243,7 @@ public class VespaDocumentDeserializer6 extends BufferSerializer implements Docu
     public void read(FieldBase field, TensorFieldValue value) {
         int encodedTensorLength = buf.getInt1_4Bytes();
         if (encodedTensorLength > 0) {
-            byte[] encodedTensor = getBytes(null, encodedTensorLength);
-            value.assign(TypedBinaryFormat.decode(Optional.of(value.getDataType().getTensorType()), 
-                                                  GrowableByteBuffer.wrap(encodedTensor)));
+            value.assignSerializedTensor(getBytes(null, encodedTensorLength));
         } else {
             value.clear();
         }
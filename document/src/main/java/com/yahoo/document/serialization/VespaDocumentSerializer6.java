@@ -53,7 +53,6 @@ import com.yahoo.document.update.TensorModifyUpdate;
 import com.yahoo.document.update.TensorRemoveUpdate;
 import com.yahoo.document.update.ValueUpdate;
 import com.yahoo.io.GrowableByteBuffer;
-import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import com.yahoo.vespa.objects.BufferSerializer;
 import com.yahoo.vespa.objects.FieldBase;
 
@@ -297,8 +296,8 @@ public class VespaDocumentSerializer6 extends BufferSerializer implements Docume
 
     @Override
     public void write(FieldBase field, TensorFieldValue value) {
-        if (value.getTensor().isPresent()) {
-            byte[] encodedTensor = TypedBinaryFormat.encode(value.getTensor().get());
+        if (value.isPresent()) {
+            byte[] encodedTensor = value.getSerializedTensor().get();
             buf.putInt1_4Bytes(encodedTensor.length);
             buf.put(encodedTensor);
         } else {
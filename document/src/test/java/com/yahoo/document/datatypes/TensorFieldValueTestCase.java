@@ -1,12 +1,18 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.document.datatypes;
 
+import com.yahoo.io.GrowableByteBuffer;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.serialization.TypedBinaryFormat;
 import org.junit.Test;
 
+import java.util.Optional;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 import static org.junit.Assert.assertTrue;
 
 
@@ -56,4 +62,27 @@ public class TensorFieldValueTestCase {
         TensorFieldValue field2 = new TensorFieldValue(TensorType.fromSpec("tensor(x{})"));
         assertEquals("null", field2.toString());
     }
+
+    @Test
+    public void requireThatSerializedTensorIsOnlyDecodedWhenAccessed() {
+        Tensor tensor = Tensor.from("tensor(x{}):{{x:0}:2.0}");
+        byte[] serialized = TypedBinaryFormat.encode(tensor);
+        TensorFieldValue field = new TensorFieldValue(tensor.type());
+        field.assignSerializedTensor(serialized);
+        assertTrue(field.isPresent());
+        assertSame(serialized, field.getSerializedTensor().get());
+        assertEquals(tensor, field.getTensor().get());
+        assertSame(serialized, field.getSerializedTensor().get());
+
+        Tensor modified = Tensor.from("tensor(x{}):{{x:0}:3.0}");
+        field.assign(modified);
+        assertNotSame(serialized, field.getSerializedTensor().get());
+        assertEquals(modified, TypedBinaryFormat.decode(Optional.of(modified.type()),
+                                                        GrowableByteBuffer.wrap(field.getSerializedTensor().get())));
+
+        field.clear();
+        assertFalse(field.isPresent());
+        assertFalse(field.getSerializedTensor().isPresent());
+    }
+
 }
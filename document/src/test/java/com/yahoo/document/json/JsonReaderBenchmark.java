@@ -0,0 +1,77 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.yahoo.document.ArrayDataType;
+import com.yahoo.document.DataType;
+import com.yahoo.document.DocumentPut;
+import com.yahoo.document.DocumentType;
+import com.yahoo.document.DocumentTypeManager;
+import com.yahoo.document.Field;
+import com.yahoo.document.MapDataType;
+import com.yahoo.document.TensorDataType;
+import com.yahoo.document.datatypes.TensorFieldValue;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.text.Utf8;
+
+import java.io.ByteArrayInputStream;
+
+/**
+ * Prints the throughput of parsing a representative feed of documents with text, arrays, maps and tensors.
+ */
+public class JsonReaderBenchmark {
+
+    public static void main(String[] args) {
+        DocumentTypeManager types = new DocumentTypeManager();
+        DocumentType type = new DocumentType("music");
+        type.addField(new Field("title", DataType.STRING));
+        type.addField(new Field("body", DataType.STRING));
+        type.addField(new Field("year", DataType.INT));
+        type.addField(new Field("tags", new ArrayDataType(DataType.STRING)));
+        type.addField(new Field("counts", new MapDataType(DataType.STRING, DataType.INT)));
+        type.addField(new Field("embedding", new TensorDataType(TensorType.fromSpec("tensor<float>(x[128])"))));
+        type.addField(new Field("features", new TensorDataType(TensorType.fromSpec("tensor(key{})"))));
+        types.registerDocumentType(type);
+
+        int documents = 2000;
+        byte[] feed = Utf8.toBytes(feed(documents));
+        JsonFactory jsonFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+        for (int round = 0; round < 5; round++) {
+            long startTime = System.nanoTime();
+            JsonReader reader = new JsonReader(types, new ByteArrayInputStream(feed), jsonFactory);
+            int parsed = 0;
+            for (DocumentPut put; (put = (DocumentPut) reader.next()) != null; parsed++) {
+                if (((TensorFieldValue) put.getDocument().getFieldValue("embedding")).getTensor().get().size() != 128)
+                    throw new IllegalStateException("Expected 128 cells in the embedding of " + put.getId());
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            if (parsed != documents)
+                throw new IllegalStateException("Expected " + documents + " documents, but parsed " + parsed);
+            System.out.println(String.format("Parsed %d documents of %d bytes in total at %.0f documents/s",
+                                             parsed, feed.length, parsed / seconds));
+        }
+    }
+
+    private static String feed(int documents) {
+        StringBuilder feed = new StringBuilder("[");
+        for (int i = 0; i < documents; i++) {
+            if (i > 0) feed.append(",");
+            feed.append("{\"put\": \"id:test:music::").append(i).append("\", \"fields\": {")
+                .append("\"title\": \"Title of document ").append(i).append("\", ")
+                .append("\"body\": \"").append("Some body text which is long enough to be realistic. ".repeat(10)).append("\", ")
+                .append("\"year\": ").append(1950 + i % 70).append(", ")
+                .append("\"tags\": [\"rock\", \"pop\", \"tag").append(i % 100).append("\"], ")
+                .append("\"counts\": {\"plays\": ").append(i).append(", \"likes\": ").append(i / 2).append("}, ")
+                .append("\"embedding\": {\"values\": [");
+            for (int x = 0; x < 128; x++)
+                feed.append(x > 0 ? "," : "").append((x * i % 1000) / 1000.0);
+            feed.append("]}, \"features\": {\"cells\": [");
+            for (int key = 0; key < 16; key++)
+                feed.append(key > 0 ? "," : "").append("{\"address\": {\"key\": \"k").append(key).append("\"}, \"value\": ").append(key + 0.5).append("}");
+            feed.append("]}}}");
+        }
+        feed.append("]");
+        return feed.toString();
+    }
+
+}
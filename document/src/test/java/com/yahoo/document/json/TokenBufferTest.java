@@ -0,0 +1,94 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.json;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TokenBufferTest {
+
+    private static final JsonFactory jsonFactory = new JsonFactory().disable(JsonFactory.Feature.CANONICALIZE_FIELD_NAMES);
+
+    @Test
+    public void testBufferingAndPrefetching() throws IOException {
+        TokenBuffer buffer = buffer("{ \"a\": { \"b\": [1, 2.5, \"three\"], \"c\": null }, \"d\": true, \"e\": \"f\" }");
+        assertEquals(JsonToken.START_OBJECT, buffer.currentToken());
+        assertEquals("{", buffer.currentText());
+        assertEquals(1, buffer.nesting());
+
+        assertEquals(JsonToken.START_OBJECT, buffer.next());
+        assertEquals("a", buffer.currentName());
+        TokenBuffer.Token c = buffer.prefetchScalar("c");
+        assertEquals(JsonToken.VALUE_NULL, c.token);
+        assertEquals("null", c.text);
+        assertNull(buffer.prefetchScalar("d")); // Not in the current object
+
+        TokenBuffer a = buffer.prefetchCurrentElement();
+        assertEquals(2, buffer.nesting());
+        assertEquals(1, a.nesting());
+        assertEquals(JsonToken.START_ARRAY, a.next());
+        assertEquals("b", a.currentName());
+        assertEquals(JsonToken.VALUE_NUMBER_INT, a.next());
+        assertEquals("1", a.currentText());
+        assertEquals(JsonToken.VALUE_NUMBER_FLOAT, a.next());
+        assertEquals("2.5", a.currentText());
+        assertEquals(JsonToken.VALUE_STRING, a.next());
+        assertEquals("three", a.currentText());
+        assertEquals(JsonToken.END_ARRAY, a.next());
+        assertEquals(JsonToken.VALUE_NULL, a.next());
+        assertEquals("null", a.currentText());
+        assertEquals(JsonToken.END_OBJECT, a.next());
+        // The prefetched element includes the rest of the enclosing object
+        assertEquals(JsonToken.VALUE_TRUE, a.next());
+        assertEquals(JsonToken.VALUE_STRING, a.next());
+        assertEquals(JsonToken.END_OBJECT, a.next());
+        assertNull(a.next());
+        assertTrue(a.isEmpty());
+
+        // Prefetching does not change the buffer prefetched from
+        assertEquals("a", buffer.currentName());
+        assertEquals(11, buffer.size());
+        buffer.fastForwardToEndObject();
+        assertEquals(4, buffer.size());
+        assertEquals(JsonToken.VALUE_TRUE, buffer.next());
+        assertEquals("d", buffer.currentName());
+    }
+
+    @Test
+    public void testAddingToPrefetchedBufferDoesNotChangeTheOriginal() throws IOException {
+        TokenBuffer buffer = buffer("[1, 2, 3]");
+        buffer.next();
+        TokenBuffer scalar = buffer.prefetchCurrentElement();
+        assertEquals(1, scalar.size());
+
+        JsonParser parser = jsonFactory.createParser("{\"x\": 4}");
+        scalar.bufferObject(parser.nextToken(), parser);
+        assertEquals(4, scalar.size());
+        assertEquals("1", scalar.currentText());
+        assertEquals(JsonToken.START_OBJECT, scalar.next());
+
+        assertEquals(4, buffer.size());
+        assertEquals("1", buffer.currentText());
+        assertEquals(JsonToken.VALUE_NUMBER_INT, buffer.next());
+        assertEquals("2", buffer.currentText());
+    }
+
+    private static TokenBuffer buffer(String json) throws IOException {
+        JsonParser parser = jsonFactory.createParser(json);
+        TokenBuffer buffer = new TokenBuffer();
+        JsonToken first = parser.nextToken();
+        if (first == JsonToken.START_OBJECT)
+            buffer.bufferObject(first, parser);
+        else
+            buffer.bufferArray(first, parser);
+        return buffer;
+    }
+
+}
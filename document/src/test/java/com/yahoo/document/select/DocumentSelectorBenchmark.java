@@ -0,0 +1,34 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.document.select;
+
+import com.yahoo.document.select.parser.ParseException;
+
+/**
+ * Prints the time used to evaluate a selection with and without compiling it.
+ */
+public class DocumentSelectorBenchmark {
+
+    public static void main(String[] args) throws ParseException {
+        DocumentSelectorTestCase test = new DocumentSelectorTestCase();
+        test.setUp();
+        var contexts = test.createDocs().stream().map(Context::new).toArray(Context[]::new);
+        var selector = new DocumentSelector("test and (test.hint > 14 and test.hstring = \"ba*\" or test.hfloat < 1.5) and id.namespace == \"myspace\"");
+        for (int round = 0; round < 5; round++) {
+            int evaluations = 200000;
+            long accepted = 0;
+            long startTime = System.nanoTime();
+            for (int i = 0; i < evaluations; i++)
+                if (selector.interpret(contexts[i % contexts.length]) == Result.TRUE) accepted++;
+            long interpretedTime = System.nanoTime() - startTime;
+            startTime = System.nanoTime();
+            for (int i = 0; i < evaluations; i++)
+                if (selector.accepts(contexts[i % contexts.length]) == Result.TRUE) accepted--;
+            long compiledTime = System.nanoTime() - startTime;
+            if (accepted != 0)
+                throw new IllegalStateException("Interpreted and compiled evaluation accepted different documents");
+            System.out.println(String.format("%d evaluations: Interpreted in %d ms, compiled in %d ms",
+                                             evaluations, interpretedTime / 1000000, compiledTime / 1000000));
+        }
+    }
+
+}
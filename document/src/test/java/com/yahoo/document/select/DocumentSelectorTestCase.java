@@ -5,7 +5,10 @@ import com.yahoo.document.*;
 import com.yahoo.document.datatypes.*;
 import com.yahoo.document.select.convert.SelectionExpressionConverter;
 import com.yahoo.document.select.parser.ParseException;
+import com.yahoo.document.select.parser.SelectInput;
+import com.yahoo.document.select.parser.SelectParser;
 import com.yahoo.document.select.parser.TokenMgrException;
+import com.yahoo.document.select.rule.CompiledExpression;
 import com.yahoo.yolean.Exceptions;
 import org.junit.Before;
 import org.junit.Rule;
@@ -745,6 +748,24 @@ public class DocumentSelectorTestCase {
         evaluate("test.my_imported_field.foo", documents.get(0));
     }
 
+    @Test
+    public void testCompiledEvaluation() throws ParseException {
+        var documents = createDocs();
+        assertEquals(Result.TRUE, evaluateCompiled("test.hint > 20 and test.hstring = \"f*\" and not test.content == 'foo'", documents.get(0)));
+        assertEquals(Result.FALSE, evaluateCompiled("test.hint > 20 and test.hstring =~ \"^ba\"", documents.get(0)));
+        assertEquals(Result.TRUE, evaluateCompiled("test.hint < 20 or id.namespace == \"myspace\"", documents.get(0)));
+        assertEquals(Result.INVALID, evaluateCompiled("test.hint > 20 and test.hint < 'foo'", documents.get(0)));
+        assertEquals(Result.TRUE, evaluateCompiled("test.hint == null and test.hstring == null", documents.get(6)));
+        assertEquals(Result.TRUE, evaluateCompiled("test.hfloat != test.hint", documents.get(0)));
+        assertEquals(Result.FALSE, evaluateCompiled("1 + 2 == 4 and test.hint.foo", documents.get(0)));
+        assertEquals(Result.TRUE, evaluateCompiled("1 + 2 == 3 or test.hint.foo", documents.get(0)));
+        assertEquals(Result.INVALID, evaluateCompiled("test.hint > 20", new DocumentUpdate(manager.getDocumentType("test"), "id:ns:test::1")));
+
+        // Values with multiple elements are left to the interpreter
+        assertEquals(null, evaluateCompiled("test.intarray > 50", documents.get(0)));
+        assertEquals(Result.TRUE, evaluate("test.intarray > 50", documents.get(0)));
+    }
+
     @Test
     public void testTicket1769674() {
         assertParseError("music.uri=\"junk",
@@ -868,7 +889,15 @@ public class DocumentSelectorTestCase {
     }
 
     private static Result evaluate(String expressionString, DocumentOperation op) throws ParseException {
-        return new DocumentSelector(expressionString).accepts(op);
+        DocumentSelector selector = new DocumentSelector(expressionString);
+        Result result = selector.accepts(op);
+        assertEquals("Compiled evaluation of '" + expressionString + "' is the same as interpreting it",
+                     selector.interpret(new Context(op)), result);
+        return result;
+    }
+
+    private static Result evaluateCompiled(String expressionString, DocumentOperation op) throws ParseException {
+        return CompiledExpression.compile(new SelectParser(new SelectInput(expressionString)).expression()).evaluate(new Context(op));
     }
 
     private static void assertError(String expressionString, DocumentOperation op, String expectedError) {
@@ -0,0 +1,284 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.filedistribution;
+
+import com.yahoo.config.FileReference;
+import com.yahoo.io.IOUtils;
+import com.yahoo.log.LogLevel;
+import net.jpountz.xxhash.XXHash64;
+import net.jpountz.xxhash.XXHashFactory;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.util.BitSet;
+import java.util.logging.Logger;
+
+/**
+ * A file being received as fixed size chunks, which may arrive in any order and from several sources at once.
+ * Each chunk is verified against its xxhash64 before it is written at its position in the file,
+ * and the index and hash of each written chunk is recorded in a state file next to it, such that an interrupted
+ * download is resumed from the chunks already written, also after a restart.
+ * The hash of the complete file is the xxhash64 of the hashes of its chunks.
+ *
+ * This is thread safe.
+ */
+final class ChunkedFile {
+
+    private static final Logger log = Logger.getLogger(ChunkedFile.class.getName());
+    private static final XXHash64 hasher = XXHashFactory.fastestInstance().hash64();
+
+    private final FileReference reference;
+    private final String fileName;
+    private final FileReferenceData.Type type;
+    private final long size;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final File directory;
+    private final File file;
+    private final File stateFile;
+
+    private final BitSet received;
+    private final long[] hashes;
+    private final RandomAccessFile content;
+    private final DataOutputStream state;
+    private boolean finished = false;
+
+    /** Creates a chunked file in a subdirectory of the given directory, or resumes it if it exists with the same parameters */
+    ChunkedFile(File tmpDirectory, FileReference reference, String fileName, FileReferenceData.Type type, long size, int chunkSize) {
+        if (chunkSize <= 0) throw new IllegalArgumentException("Chunk size must be positive, but was " + chunkSize);
+        if (size < 0) throw new IllegalArgumentException("Size cannot be negative, but was " + size);
+        long chunks = (size + chunkSize - 1) / chunkSize;
+        if (chunks > Integer.MAX_VALUE) throw new IllegalArgumentException(size + " bytes is too many chunks of size " + chunkSize);
+
+        this.reference = reference;
+        this.fileName = fileName;
+        this.type = type;
+        this.size = size;
+        this.chunkSize = chunkSize;
+        this.chunkCount = (int) chunks;
+        this.directory = new File(tmpDirectory, reference.value() + ".chunked");
+        this.file = new File(directory, "content");
+        this.stateFile = new File(directory, "chunks");
+        this.received = new BitSet(chunkCount);
+        this.hashes = new long[chunkCount];
+        try {
+            long stateLength = readState();
+            boolean resume = stateLength >= 0;
+            if ( ! resume) {
+                IOUtils.recursiveDeleteDir(directory);
+                Files.createDirectories(directory.toPath());
+            }
+            content = new RandomAccessFile(file, "rw");
+            content.setLength(size);
+            FileOutputStream stateOut = new FileOutputStream(stateFile, resume);
+            if (resume) // Drop any partially written record, so records appended now are aligned
+                stateOut.getChannel().truncate(stateLength);
+            state = new DataOutputStream(stateOut);
+            if (resume)
+                verifyReceived();
+            else
+                writeStateHeader();
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed creating chunked file for " + reference.value() + " in " + directory, e);
+        }
+    }
+
+    FileReference reference() { return reference; }
+    String fileName() { return fileName; }
+    FileReferenceData.Type type() { return type; }
+    long size() { return size; }
+    int chunkSize() { return chunkSize; }
+    int chunkCount() { return chunkCount; }
+
+    /** Returns the file this is written to */
+    File file() { return file; }
+
+    /** Returns whether this is a file with the given parameters */
+    boolean matches(String fileName, FileReferenceData.Type type, long size, int chunkSize) {
+        return this.fileName.equals(fileName) && this.type == type && this.size == size && this.chunkSize == chunkSize;
+    }
+
+    /** Returns a copy of the set of chunks received so far */
+    synchronized BitSet received() {
+        return (BitSet) received.clone();
+    }
+
+    synchronized boolean isComplete() {
+        return received.cardinality() == chunkCount;
+    }
+
+    synchronized double fractionReceived() {
+        return chunkCount == 0 ? 1 : (double) received.cardinality() / chunkCount;
+    }
+
+    /**
+     * Adds a chunk to this, given as the remaining bytes of the given buffer, which is not modified.
+     * Adding a chunk which is already received has no effect.
+     *
+     * @return true if the chunk was written, false if it was already received
+     * @throws IllegalArgumentException if the chunk has the wrong size or does not match the given hash
+     */
+    boolean addChunk(int index, long hash, ByteBuffer data) {
+        if (index < 0 || index >= chunkCount)
+            throw new IllegalArgumentException("Chunk " + index + " is out of range for " + this);
+        if (data.remaining() != chunkSize(index))
+            throw new IllegalArgumentException("Chunk " + index + " of " + this + " should have size " + chunkSize(index) +
+                                               ", but has size " + data.remaining());
+        if (hasher.hash(data, 0) != hash)
+            throw new IllegalArgumentException("Chunk " + index + " of " + this + " does not match its xxhash " + hash);
+
+        synchronized (this) {
+            if (received.get(index)) return false;
+            if (finished) throw new IllegalStateException(this + " is already finished");
+        }
+        try {
+            FileChannel channel = content.getChannel();
+            ByteBuffer buffer = data.duplicate();
+            long offset = (long) index * chunkSize - buffer.position();
+            while (buffer.hasRemaining())
+                channel.write(buffer, offset + buffer.position());
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Failed writing chunk " + index + " of " + this, e);
+        }
+        synchronized (this) {
+            if (received.get(index)) return false;
+            try {
+                state.writeInt(index);
+                state.writeLong(hash);
+                state.flush();
+            }
+            catch (IOException e) {
+                throw new UncheckedIOException("Failed recording chunk " + index + " of " + this, e);
+            }
+            received.set(index);
+            hashes[index] = hash;
+            return true;
+        }
+    }
+
+    /** Returns the hash of the complete file. This is only valid when this is complete. */
+    synchronized long hash() {
+        return hashOf(hashes);
+    }
+
+    /**
+     * Marks this as finished and closes the underlying files, if it is complete and not already finished.
+     *
+     * @return true if this was finished by this call
+     */
+    synchronized boolean finish() {
+        if (finished || ! isComplete()) return false;
+        close();
+        return true;
+    }
+
+    /**
+     * Closes the underlying files of this, such that no more chunks can be added to it.
+     * The chunks received are kept, such that a new instance for the same file resumes from them.
+     */
+    synchronized void close() {
+        finished = true;
+        closeFiles();
+    }
+
+    /** Closes and deletes this and any state stored for it */
+    synchronized void delete() {
+        close();
+        IOUtils.recursiveDeleteDir(directory);
+    }
+
+    private void closeFiles() {
+        try {
+            content.close();
+            state.close();
+        }
+        catch (IOException e) {
+            log.log(LogLevel.WARNING, "Failed closing " + this, e);
+        }
+    }
+
+    /** Returns the xxhash64 of a chunk, as used by this */
+    static long hashOf(byte[] data, int offset, int length) {
+        return hasher.hash(data, offset, length, 0);
+    }
+
+    /** Returns the xxhash64 of a file with the given chunk hashes, as used by this */
+    static long hashOf(long[] chunkHashes) {
+        ByteBuffer buffer = ByteBuffer.allocate(chunkHashes.length * Long.BYTES);
+        for (long hash : chunkHashes)
+            buffer.putLong(hash);
+        return hasher.hash(buffer.array(), 0, buffer.capacity(), 0);
+    }
+
+    private int chunkSize(int index) {
+        return index < chunkCount - 1 ? chunkSize : (int) (size - (long) index * chunkSize);
+    }
+
+    private void writeStateHeader() throws IOException {
+        state.writeUTF(fileName);
+        state.writeUTF(type.name());
+        state.writeLong(size);
+        state.writeInt(chunkSize);
+        state.flush();
+    }
+
+    /**
+     * Reads the chunks recorded in an existing state file, and returns the length of its complete header and records,
+     * or -1 if it does not exist or is not for this file
+     */
+    private long readState() throws IOException {
+        if ( ! stateFile.exists() || ! file.exists()) return -1;
+
+        byte[] bytes = Files.readAllBytes(stateFile.toPath());
+        ByteArrayInputStream bytesIn = new ByteArrayInputStream(bytes);
+        DataInputStream in = new DataInputStream(bytesIn);
+        try {
+            if ( ! in.readUTF().equals(fileName) || ! in.readUTF().equals(type.name())
+                 || in.readLong() != size || in.readInt() != chunkSize)
+                return -1;
+        }
+        catch (EOFException e) { // The header was partially written
+            return -1;
+        }
+        while (bytesIn.available() >= Integer.BYTES + Long.BYTES) {
+            int index = in.readInt();
+            long hash = in.readLong();
+            if (index < 0 || index >= chunkCount) return -1;
+            received.set(index);
+            hashes[index] = hash;
+        }
+        return bytes.length - bytesIn.available(); // Excludes a record which was partially written
+    }
+
+    /** Verifies the chunks recorded as received, as their content may not have been written to disk before a crash */
+    private void verifyReceived() throws IOException {
+        byte[] data = new byte[chunkSize];
+        for (int index = received.nextSetBit(0); index >= 0; index = received.nextSetBit(index + 1)) {
+            int length = chunkSize(index);
+            content.seek((long) index * chunkSize);
+            content.readFully(data, 0, length);
+            if (hashOf(data, 0, length) != hashes[index]) {
+                received.clear(index);
+                hashes[index] = 0;
+            }
+        }
+        log.log(LogLevel.DEBUG, () -> "Resuming " + this + " with " + received.cardinality() + " of " + chunkCount + " chunks received");
+    }
+
+    @Override
+    public String toString() {
+        return "file '" + fileName + "' of reference '" + reference.value() + "'";
+    }
+
+}
@@ -6,17 +6,24 @@ import com.yahoo.log.LogLevel;
 import org.apache.commons.compress.archivers.ArchiveEntry;
 import org.apache.commons.compress.archivers.ArchiveInputStream;
 import org.apache.commons.compress.archivers.ArchiveOutputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
 import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
 import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import net.jpountz.lz4.LZ4FrameInputStream;
+import net.jpountz.lz4.LZ4FrameOutputStream;
 
+import java.io.BufferedInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Comparator;
 import java.util.List;
 import java.util.logging.Logger;
 import java.util.stream.Collectors;
@@ -24,17 +31,28 @@ import java.util.zip.GZIPInputStream;
 import java.util.zip.GZIPOutputStream;
 
 /**
- * Utility class for compressing and decompressing files used in a file reference
+ * Utility class for compressing and decompressing files used in a file reference.
+ *
+ * Files are archived as tar, compressed by gzip or LZ4. The archive for given files is always the same,
+ * such that parts of it may be fetched from different servers. Decompression detects the compression used.
  *
  * @author hmusum
  */
 public class CompressedFileReference {
 
+    /** The compression of an archive */
+    public enum Format { gzip, lz4 }
+
     private static final Logger log = Logger.getLogger(CompressedFileReference.class.getName());
     private static final int recurseDepth = 100;
+    private static final int lz4Magic = 0x184D2204;
 
     public static File compress(File baseDir, List<File> inputFiles, File outputFile) throws IOException {
-        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new GZIPOutputStream(new FileOutputStream(outputFile)));
+        return compress(baseDir, inputFiles, outputFile, Format.gzip);
+    }
+
+    public static File compress(File baseDir, List<File> inputFiles, File outputFile, Format format) throws IOException {
+        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(compressing(new FileOutputStream(outputFile), format));
         archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
         createArchiveFile(archiveOutputStream, baseDir, inputFiles);
         return outputFile;
@@ -48,29 +66,56 @@ public class CompressedFileReference {
     }
 
     public static byte[] compress(File directory) throws IOException {
+        return compress(directory, Format.gzip);
+    }
+
+    public static byte[] compress(File directory, Format format) throws IOException {
         return compress(directory, Files.find(Paths.get(directory.getAbsolutePath()),
                                               recurseDepth,
                                               (p, basicFileAttributes) -> basicFileAttributes.isRegularFile())
-                .map(Path::toFile).collect(Collectors.toList()));
+                .map(Path::toFile).collect(Collectors.toList()), format);
     }
 
     public static byte[] compress(File baseDir, List<File> inputFiles) throws IOException {
+        return compress(baseDir, inputFiles, Format.gzip);
+    }
+
+    public static byte[] compress(File baseDir, List<File> inputFiles, Format format) throws IOException {
         ByteArrayOutputStream out = new ByteArrayOutputStream();
-        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(new GZIPOutputStream(out));
+        TarArchiveOutputStream archiveOutputStream = new TarArchiveOutputStream(compressing(out, format));
         archiveOutputStream.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
         createArchiveFile(archiveOutputStream, baseDir, inputFiles);
         return out.toByteArray();
     }
 
+    private static OutputStream compressing(OutputStream out, Format format) throws IOException {
+        switch (format) {
+            case gzip: return new GZIPOutputStream(out);
+            case lz4: return new LZ4FrameOutputStream(out);
+            default: throw new IllegalArgumentException("Unknown format " + format);
+        }
+    }
+
     static void decompress(File inputFile, File outputDir) throws IOException {
         log.log(LogLevel.DEBUG, () -> "Decompressing '" + inputFile + "' into '" + outputDir + "'");
-        try (ArchiveInputStream ais = new TarArchiveInputStream(new GZIPInputStream(new FileInputStream(inputFile)))) {
+        try (ArchiveInputStream ais = new TarArchiveInputStream(decompressing(new FileInputStream(inputFile)))) {
             decompress(ais, outputDir);
         } catch (IllegalArgumentException e) {
             throw new RuntimeException("Unable to decompress '" + inputFile.getAbsolutePath() + "': " + e.getMessage());
         }
     }
 
+    /** Returns a stream decompressing the given stream by the compression given by its first bytes */
+    private static InputStream decompressing(InputStream in) throws IOException {
+        InputStream buffered = new BufferedInputStream(in);
+        buffered.mark(4);
+        byte[] magic = buffered.readNBytes(4);
+        buffered.reset();
+        boolean lz4 = magic.length == 4
+                      && ((magic[0] & 0xff) | (magic[1] & 0xff) << 8 | (magic[2] & 0xff) << 16 | (magic[3] & 0xff) << 24) == lz4Magic;
+        return lz4 ? new LZ4FrameInputStream(buffered) : new GZIPInputStream(buffered);
+    }
+
     private static void decompress(ArchiveInputStream archiveInputStream, File outputFile) throws IOException {
         int entries = 0;
         ArchiveEntry entry;
@@ -103,7 +148,7 @@ public class CompressedFileReference {
     }
 
     private static void createArchiveFile(ArchiveOutputStream archiveOutputStream, File baseDir, List<File> inputFiles) throws IOException {
-        inputFiles.forEach(file -> {
+        inputFiles.stream().sorted(Comparator.comparing(file -> baseDir.toPath().relativize(file.toPath()).toString())).forEach(file -> {
             try {
                 writeFileToTar(archiveOutputStream, baseDir, file);
             } catch (IOException e) {
@@ -115,8 +160,15 @@ public class CompressedFileReference {
 
     private static void writeFileToTar(ArchiveOutputStream taos, File baseDir, File file) throws IOException {
         log.log(LogLevel.DEBUG, () -> "Adding file to tar: " + baseDir.toPath().relativize(file.toPath()).toString());
-        taos.putArchiveEntry(taos.createArchiveEntry(file, baseDir.toPath().relativize(file.toPath()).toString()));
-        ByteStreams.copy(new FileInputStream(file), taos);
+        TarArchiveEntry entry = (TarArchiveEntry) taos.createArchiveEntry(file, baseDir.toPath().relativize(file.toPath()).toString());
+        // Modification times differ between servers, and are not kept when decompressing
+        entry.setModTime(0);
+        entry.setUserName("");
+        entry.setGroupName("");
+        taos.putArchiveEntry(entry);
+        try (FileInputStream in = new FileInputStream(file)) {
+            ByteStreams.copy(in, taos);
+        }
         taos.closeArchiveEntry();
     }
 }
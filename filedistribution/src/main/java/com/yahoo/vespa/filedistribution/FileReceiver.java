@@ -4,6 +4,7 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.DataValue;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Method;
 import com.yahoo.jrt.Request;
@@ -14,6 +15,7 @@ import net.jpountz.xxhash.XXHashFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.file.FileAlreadyExistsException;
 import java.nio.file.Files;
 import java.nio.file.StandardOpenOption;
@@ -37,6 +39,8 @@ public class FileReceiver {
     public final static String RECEIVE_META_METHOD = "filedistribution.receiveFileMeta";
     public final static String RECEIVE_PART_METHOD = "filedistribution.receiveFilePart";
     public final static String RECEIVE_EOF_METHOD = "filedistribution.receiveFileEof";
+    public final static String RECEIVE_CHUNKED_META_METHOD = "filedistribution.receiveFileChunkedMeta";
+    public final static String RECEIVE_CHUNK_METHOD = "filedistribution.receiveFileChunk";
 
     private final Supervisor supervisor;
     private final FileReferenceDownloader downloader;
@@ -46,6 +50,10 @@ public class FileReceiver {
     private final File tmpDirectory;
     private final AtomicInteger nextSessionId = new AtomicInteger(1);
     private final Map<Integer, Session> sessions = new HashMap<>();
+    // Sessions receiving chunks, and the files they write to. A file may receive chunks from several sessions at once.
+    // Both are guarded by sessions
+    private final Map<Integer, ChunkedFile> chunkedSessions = new HashMap<>();
+    private final Map<FileReference, ChunkedFile> chunkedFiles = new HashMap<>();
 
     final static class Session {
         private final StreamingXXHash64 hasher;
@@ -109,40 +117,7 @@ public class FileReceiver {
             if (hasher.getValue() != hash) {
                 throw new RuntimeException("xxhash from content (" + currentHash + ") is not equal to xxhash in request (" + hash + ")");
             }
-            File file = new File(fileReferenceDir, fileName);
-            try {
-                // Delete destination dir, in case a previous attempt at writing to disk failed and the directory
-                // exists, but has no or incomplete content
-                deleteFileOrDirectory(fileReferenceDir);
-                // Unpack if necessary
-                if (fileType == FileReferenceData.Type.compressed) {
-                    File decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
-                    log.log(LogLevel.DEBUG, () -> "Archived file, unpacking " + inprogressFile + " to " + decompressedDir);
-                    CompressedFileReference.decompress(inprogressFile, decompressedDir);
-                    moveFileToDestination(decompressedDir, fileReferenceDir);
-                } else {
-                    try {
-                        Files.createDirectories(fileReferenceDir.toPath());
-                    } catch (IOException e) {
-                        log.log(LogLevel.ERROR, "Failed creating directory (" + fileReferenceDir.toPath() + "): " + e.getMessage(), e);
-                        throw new RuntimeException("Failed creating directory (" + fileReferenceDir.toPath() + "): ", e);
-                    }
-                    log.log(LogLevel.DEBUG, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
-                    moveFileToDestination(inprogressFile, file);
-                }
-            } catch (IOException e) {
-                log.log(LogLevel.ERROR, "Failed writing file: " + e.getMessage(), e);
-                throw new RuntimeException("Failed writing file: ", e);
-            } finally {
-                try {
-                    if (inprogressFile.exists()) {
-                        Files.delete(inprogressFile.toPath());
-                    }
-                } catch (IOException e) {
-                    log.log(LogLevel.ERROR, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage(), e);
-                }
-            }
-            return file;
+            return install(inprogressFile, fileType, fileName, fileReferenceDir, tmpDir);
         }
 
         double percentageReceived() {
@@ -150,6 +125,57 @@ public class FileReceiver {
         }
     }
 
+    /** Returns the xxhash64 of a chunk sent by {@link #RECEIVE_CHUNK_METHOD} */
+    public static long chunkHash(byte[] data, int offset, int length) {
+        return ChunkedFile.hashOf(data, offset, length);
+    }
+
+    /** Returns the xxhash64 of a file with the given chunk hashes, to be sent by {@link #RECEIVE_EOF_METHOD} */
+    public static long chunkedFileHash(long[] chunkHashes) {
+        return ChunkedFile.hashOf(chunkHashes);
+    }
+
+    /**
+     * Moves a completely received file, or the content of a received archive, to its final location
+     * in the given file reference directory, and returns the final file.
+     */
+    static File install(File inprogressFile, FileReferenceData.Type fileType, String fileName, File fileReferenceDir, File tmpDir) {
+        File file = new File(fileReferenceDir, fileName);
+        try {
+            // Delete destination dir, in case a previous attempt at writing to disk failed and the directory
+            // exists, but has no or incomplete content
+            deleteFileOrDirectory(fileReferenceDir);
+            // Unpack if necessary
+            if (fileType == FileReferenceData.Type.compressed) {
+                File decompressedDir = Files.createTempDirectory(tmpDir.toPath(), "archive").toFile();
+                log.log(LogLevel.DEBUG, () -> "Archived file, unpacking " + inprogressFile + " to " + decompressedDir);
+                CompressedFileReference.decompress(inprogressFile, decompressedDir);
+                moveFileToDestination(decompressedDir, fileReferenceDir);
+            } else {
+                try {
+                    Files.createDirectories(fileReferenceDir.toPath());
+                } catch (IOException e) {
+                    log.log(LogLevel.ERROR, "Failed creating directory (" + fileReferenceDir.toPath() + "): " + e.getMessage(), e);
+                    throw new RuntimeException("Failed creating directory (" + fileReferenceDir.toPath() + "): ", e);
+                }
+                log.log(LogLevel.DEBUG, () -> "Uncompressed file, moving to " + file.getAbsolutePath());
+                moveFileToDestination(inprogressFile, file);
+            }
+        } catch (IOException e) {
+            log.log(LogLevel.ERROR, "Failed writing file: " + e.getMessage(), e);
+            throw new RuntimeException("Failed writing file: ", e);
+        } finally {
+            try {
+                if (inprogressFile.exists()) {
+                    Files.delete(inprogressFile.toPath());
+                }
+            } catch (IOException e) {
+                log.log(LogLevel.ERROR, "Failed deleting " + inprogressFile.getAbsolutePath() + ": " + e.getMessage(), e);
+            }
+        }
+        return file;
+    }
+
     FileReceiver(Supervisor supervisor, FileReferenceDownloader downloader, File downloadDirectory, File tmpDirectory) {
         this.supervisor = supervisor;
         this.downloader = downloader;
@@ -186,6 +212,24 @@ public class FileReceiver {
                 .paramDesc(3, "error-code", "Error code. 0 if none")
                 .paramDesc(4, "error-description", "Error description.")
                 .returnDesc(0, "ret", "0 if success, 1 if crc mismatch, 2 otherwise"));
+        methods.add(new Method(RECEIVE_CHUNKED_META_METHOD, "sssli", "iix", this::receiveFileChunkedMeta)
+                .methodDesc("Starts a session receiving chunks of a file, which may be sent in any order and from several sources. " +
+                            "The session is ended by " + RECEIVE_EOF_METHOD + ", with the xxhash64 of the hashes of all chunks")
+                .paramDesc(0, "filereference", "file reference to download")
+                .paramDesc(1, "filename", "filename")
+                .paramDesc(2, "type", "'file' or 'compressed'")
+                .paramDesc(3, "filelength", "length in bytes of file")
+                .paramDesc(4, "chunksize", "length in bytes of all chunks but the last")
+                .returnDesc(0, "ret", "0 if success, 1 otherwise")
+                .returnDesc(1, "session-id", "Session id to be used for this transfer")
+                .returnDesc(2, "received", "Bitset of the chunks already received, which need not be sent, little endian"));
+        methods.add(new Method(RECEIVE_CHUNK_METHOD, "siilx", "i", this::receiveFileChunk)
+                .paramDesc(0, "filereference", "file reference to download")
+                .paramDesc(1, "session-id", "Session id to be used for this transfer")
+                .paramDesc(2, "chunk", "index of this chunk, starting at zero")
+                .paramDesc(3, "xxhash", "xxhash64 of the bytes in this chunk")
+                .paramDesc(4, "data", "bytes in this chunk")
+                .returnDesc(0, "ret", "0 if success, 1 otherwise"));
         return methods;
     }
 
@@ -269,6 +313,14 @@ public class FileReceiver {
         FileReference reference = new FileReference(req.parameters().get(0).asString());
         int sessionId = req.parameters().get(1).asInt32();
         long xxhash = req.parameters().get(2).asInt64();
+        if (getChunkedSession(sessionId) != null) {
+            int errorCode = req.parameters().get(3).asInt32();
+            if (errorCode != 0)
+                log.log(LogLevel.WARNING, "Failed receiving '" + reference.value() + "' from " + req.target() + ": " +
+                                          req.parameters().get(4).asString());
+            req.returnValues().add(new Int32Value(endChunkedSession(sessionId, reference, xxhash)));
+            return;
+        }
         Session session = getSession(sessionId);
         int retval = verifySession(session, sessionId, reference);
         File file = session.close(xxhash);
@@ -279,6 +331,121 @@ public class FileReceiver {
         req.returnValues().add(new Int32Value(retval));
     }
 
+    private void receiveFileChunkedMeta(Request req) {
+        log.log(LogLevel.DEBUG, () -> "Received method call '" + req.methodName() + "' with parameters : " + req.parameters());
+        FileReference reference = new FileReference(req.parameters().get(0).asString());
+        String fileName = req.parameters().get(1).asString();
+        String type = req.parameters().get(2).asString();
+        long fileSize = req.parameters().get(3).asInt64();
+        int chunkSize = req.parameters().get(4).asInt32();
+        int sessionId = nextSessionId.getAndIncrement();
+        int retval = 0;
+        byte[] received = new byte[0];
+        try {
+            received = startChunkedSession(sessionId, reference, fileName, FileReferenceData.Type.valueOf(type), fileSize, chunkSize)
+                    .received().toByteArray();
+        } catch (Exception e) {
+            log.log(LogLevel.WARNING, "Failed starting to receive '" + reference.value() + "' from " + req.target() + ": " + e.getMessage());
+            retval = 1;
+        }
+        req.returnValues().add(new Int32Value(retval));
+        req.returnValues().add(new Int32Value(sessionId));
+        req.returnValues().add(new DataValue(received));
+    }
+
+    private void receiveFileChunk(Request req) {
+        FileReference reference = new FileReference(req.parameters().get(0).asString());
+        int sessionId = req.parameters().get(1).asInt32();
+        int index = req.parameters().get(2).asInt32();
+        long xxhash = req.parameters().get(3).asInt64();
+        ByteBuffer data = req.parameters().get(4).asDataBuffer();
+        int retval = 0;
+        try {
+            ChunkedFile file = getChunkedSession(sessionId);
+            if (file == null || ! file.reference().equals(reference))
+                throw new IllegalArgumentException("No session " + sessionId + " receiving reference '" + reference.value() + "'");
+            file.addChunk(index, xxhash, data);
+            downloader.setDownloadStatus(reference, file.fractionReceived());
+        } catch (Exception e) {
+            log.log(LogLevel.WARNING, "Failed receiving chunk " + index + " of '" + reference.value() + "' from " + req.target() + ": " + e.getMessage());
+            retval = 1;
+        }
+        req.returnValues().add(new Int32Value(retval));
+    }
+
+    /**
+     * Starts a session receiving chunks of the given file. The file is shared with other sessions receiving it,
+     * and is resumed from what was received earlier if this is the first session receiving it.
+     */
+    ChunkedFile startChunkedSession(int sessionId, FileReference reference, String fileName, FileReferenceData.Type type,
+                                    long fileSize, int chunkSize) {
+        synchronized (sessions) {
+            ChunkedFile file = chunkedFiles.get(reference);
+            if (file == null || ! file.matches(fileName, type, fileSize, chunkSize)) {
+                if (file != null)
+                    file.delete();
+                file = new ChunkedFile(tmpDirectory, reference, fileName, type, fileSize, chunkSize);
+                chunkedFiles.put(reference, file);
+            }
+            chunkedSessions.put(sessionId, file);
+            return file;
+        }
+    }
+
+    /**
+     * Ends a session receiving chunks. If the file is complete it is verified against the given hash, and completed
+     * by the first session ending. Otherwise what is received is kept, to be completed by other sessions, or resumed later.
+     *
+     * @return 0 if success, 1 if hash mismatch, 2 otherwise
+     */
+    int endChunkedSession(int sessionId, FileReference reference, long xxhash) {
+        ChunkedFile file;
+        synchronized (sessions) {
+            file = chunkedSessions.remove(sessionId);
+            if (file == null || ! file.reference().equals(reference)) return 2;
+            if ( ! file.finish()) return 0;
+            chunkedFiles.remove(reference);
+        }
+        if (file.hash() != xxhash) {
+            log.log(LogLevel.WARNING, "xxhash of the chunks of " + file + " (" + file.hash() +
+                                      ") is not equal to xxhash in request (" + xxhash + ")");
+            file.delete();
+            return 1;
+        }
+        try {
+            File installed = install(file.file(), file.type(), file.fileName(), new File(downloadDirectory, reference.value()), tmpDirectory);
+            downloader.completedDownloading(reference, installed);
+            return 0;
+        } catch (RuntimeException e) {
+            log.log(LogLevel.WARNING, "Failed completing " + file + ": " + e.getMessage());
+            return 2;
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Ends all sessions receiving chunks of the given reference and closes the file they write to, if any.
+     * This is called when the download is abandoned, e.g., because it timed out, as the sources may then never
+     * end their sessions. What is received is kept, such that a later download of the reference resumes from it.
+     */
+    void closeChunkedFile(FileReference reference) {
+        synchronized (sessions) {
+            ChunkedFile file = chunkedFiles.remove(reference);
+            if (file == null) return;
+            chunkedSessions.values().removeIf(sessionFile -> sessionFile == file);
+            file.close();
+            log.log(LogLevel.DEBUG, () -> "Closed " + file + " with " + file.received().cardinality() + " of " +
+                                          file.chunkCount() + " chunks received");
+        }
+    }
+
+    private ChunkedFile getChunkedSession(int sessionId) {
+        synchronized (sessions) {
+            return chunkedSessions.get(sessionId);
+        }
+    }
+
     private Session getSession(Integer sessionId) {
         synchronized (sessions) {
             return sessions.get(sessionId);
@@ -5,6 +5,7 @@ import com.google.common.collect.ImmutableMap;
 import com.google.common.util.concurrent.ListenableFuture;
 import com.yahoo.concurrent.DaemonThreadFactory;
 import com.yahoo.config.FileReference;
+import com.yahoo.jrt.ErrorCode;
 import com.yahoo.jrt.Int32Value;
 import com.yahoo.jrt.Request;
 import com.yahoo.jrt.StringValue;
@@ -14,8 +15,10 @@ import com.yahoo.vespa.config.ConnectionPool;
 
 import java.io.File;
 import java.time.Duration;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutorService;
@@ -36,9 +39,13 @@ public class FileReferenceDownloader {
     private final static Logger log = Logger.getLogger(FileReferenceDownloader.class.getName());
     private final static Duration rpcTimeout = Duration.ofSeconds(10);
 
+    /** Asks a source to serve the chunks of a file with index modulo a number of shares equal to a given share */
+    public final static String SERVE_FILE_CHUNKS_METHOD = "filedistribution.serveFileChunks";
+
     private final ExecutorService downloadExecutor =
             Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new DaemonThreadFactory("filereference downloader"));
     private final ConnectionPool connectionPool;
+    private final FileReceiver fileReceiver;
     private final Map<FileReference, FileReferenceDownload> downloads = new LinkedHashMap<>();
     private final Map<FileReference, Double> downloadStatus = new HashMap<>();  // between 0 and 1
     private final Duration downloadTimeout;
@@ -49,7 +56,7 @@ public class FileReferenceDownloader {
         this.downloadTimeout = timeout;
         this.sleepBetweenRetries = sleepBetweenRetries;
         // Needed to receive RPC calls receiveFile* from server after asking for files
-        new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory);
+        this.fileReceiver = new FileReceiver(connectionPool.getSupervisor(), this, downloadDirectory, tmpDirectory);
     }
 
     private void startDownload(Duration timeout, FileReferenceDownload fileReferenceDownload) {
@@ -74,6 +81,7 @@ public class FileReferenceDownloader {
             synchronized (downloads) {
                 downloads.remove(fileReference);
             }
+            fileReceiver.closeChunkedFile(fileReference);
         }
     }
 
@@ -105,9 +113,16 @@ public class FileReferenceDownloader {
             downloadStatus.put(fileReference, 0.0);
             downloads.remove(fileReference);
         }
+        fileReceiver.closeChunkedFile(fileReference);
     }
 
     private boolean startDownloadRpc(FileReferenceDownload fileReferenceDownload, int retryCount) {
+        List<? extends Connection> connections = connectionPool.getConnections();
+        if (connections.size() > 1) {
+            Optional<Boolean> started = startChunkedDownloadRpc(fileReferenceDownload, connections, retryCount);
+            if (started.isPresent()) return started.get();
+        }
+
         Connection connection = connectionPool.getCurrent();
         Request request = new Request("filedistribution.serveFile");
         String fileReference = fileReferenceDownload.fileReference().value();
@@ -134,6 +149,60 @@ public class FileReferenceDownloader {
         }
     }
 
+    /**
+     * Asks each of the given sources to serve a share of the chunks of a file, such that it is received from all
+     * of them in parallel. The share of a source which does not have the file, or which fails, is served by another.
+     *
+     * @return whether the download was started, or empty if no source supports serving chunks
+     */
+    private Optional<Boolean> startChunkedDownloadRpc(FileReferenceDownload fileReferenceDownload,
+                                                      List<? extends Connection> connections, int retryCount) {
+        String fileReference = fileReferenceDownload.fileReference().value();
+        Level logLevel = (retryCount > 0 ? LogLevel.INFO : LogLevel.DEBUG);
+        boolean supported = false;
+        List<Connection> serving = new ArrayList<>();
+        List<Integer> unservedShares = new ArrayList<>();
+        for (int share = 0; share < connections.size(); share++) {
+            Connection connection = connections.get(share);
+            Request request = serveFileChunksRequest(fileReferenceDownload, share, connections.size());
+            execute(request, connection);
+            if (request.errorCode() != ErrorCode.NO_SUCH_METHOD)
+                supported = true;
+            if (validateResponse(request) && request.returnValues().get(0).asInt32() == 0) {
+                serving.add(connection);
+                continue;
+            }
+            log.log(logLevel, () -> "File reference '" + fileReference + "' not served by " + connection.getAddress() +
+                                    (request.isError() ? ", error code: " + request.errorCode() : ""));
+            if (request.isError() && request.errorCode() != ErrorCode.NO_SUCH_METHOD)
+                connectionPool.setError(connection, request.errorCode());
+            unservedShares.add(share);
+        }
+        if ( ! supported) return Optional.empty();
+        if (serving.isEmpty()) return Optional.of(false);
+
+        for (int i = 0; i < unservedShares.size(); i++) {
+            Connection connection = serving.get(i % serving.size());
+            Request request = serveFileChunksRequest(fileReferenceDownload, unservedShares.get(i), connections.size());
+            execute(request, connection);
+            if ( ! validateResponse(request) || request.returnValues().get(0).asInt32() != 0) {
+                log.log(logLevel, () -> "Failed requesting chunks of file reference '" + fileReference + "' from " + connection.getAddress());
+                return Optional.of(false); // Chunks already received are kept, so the next attempt resumes from them
+            }
+        }
+        log.log(logLevel, () -> "Receiving file reference '" + fileReference + "' from " + serving.size() + " sources");
+        return Optional.of(true);
+    }
+
+    private static Request serveFileChunksRequest(FileReferenceDownload fileReferenceDownload, int share, int shares) {
+        Request request = new Request(SERVE_FILE_CHUNKS_METHOD);
+        request.parameters().add(new StringValue(fileReferenceDownload.fileReference().value()));
+        request.parameters().add(new Int32Value(fileReferenceDownload.downloadFromOtherSourceIfNotFound() ? 0 : 1));
+        request.parameters().add(new Int32Value(share));
+        request.parameters().add(new Int32Value(shares));
+        return request;
+    }
+
     boolean isDownloading(FileReference fileReference) {
         synchronized (downloads) {
             return downloads.containsKey(fileReference);
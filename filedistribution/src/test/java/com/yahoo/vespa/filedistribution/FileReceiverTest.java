@@ -3,6 +3,8 @@ package com.yahoo.vespa.filedistribution;
 
 import com.yahoo.config.FileReference;
 import com.yahoo.io.IOUtils;
+import com.yahoo.jrt.Supervisor;
+import com.yahoo.jrt.Transport;
 import com.yahoo.text.Utf8;
 import net.jpountz.xxhash.XXHash64;
 import net.jpountz.xxhash.XXHashFactory;
@@ -11,13 +13,29 @@ import org.junit.Rule;
 import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 import java.io.File;
 import java.io.FileWriter;
 import java.io.IOException;
+import java.io.RandomAccessFile;
 import java.nio.ByteBuffer;
 import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 public class FileReceiverTest {
     private File root;
@@ -66,6 +84,224 @@ public class FileReceiverTest {
         assertEquals("2", IOUtils.readFile(new File(downloadDir, "b")));
     }
 
+    @Test
+    public void receiveChunksOutOfOrder() throws IOException {
+        byte[] content = randomBytes(10 * 1000 + 17);
+        ChunkedFile file = new ChunkedFile(tempDir, new FileReference("ref"), "file", FileReferenceData.Type.file, content.length, 1000);
+        assertEquals(11, file.chunkCount());
+        List<Integer> order = IntStream.range(0, 11).boxed().collect(Collectors.toList());
+        Collections.shuffle(order, new Random(1));
+        for (int index : order) {
+            assertFalse(file.isComplete());
+            assertTrue(file.addChunk(index, chunkHash(content, index, 1000), chunk(content, index, 1000)));
+        }
+        assertFalse("Duplicates are ignored", file.addChunk(3, chunkHash(content, 3, 1000), chunk(content, 3, 1000)));
+        assertTrue(file.isComplete());
+        assertEquals(fileHash(content, 1000), file.hash());
+        assertTrue(file.finish());
+        assertFalse(file.finish());
+
+        File installed = FileReceiver.install(file.file(), file.type(), "file", new File(root, "ref"), tempDir);
+        assertArrayEquals(content, Files.readAllBytes(installed.toPath()));
+        file.delete();
+    }
+
+    @Test
+    public void chunksNotMatchingTheirHashAreRejected() {
+        byte[] content = randomBytes(2000);
+        ChunkedFile file = new ChunkedFile(tempDir, new FileReference("ref"), "file", FileReferenceData.Type.file, content.length, 1000);
+        byte[] corrupt = content.clone();
+        corrupt[1010]++;
+        try {
+            file.addChunk(1, chunkHash(content, 1, 1000), chunk(corrupt, 1, 1000));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("does not match its xxhash"));
+        }
+        try {
+            file.addChunk(0, chunkHash(content, 0, 500), chunk(content, 0, 500));
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertTrue(e.getMessage().contains("should have size 1000"));
+        }
+        assertEquals(0, file.received().cardinality());
+        file.delete();
+    }
+
+    @Test
+    public void receivingIsResumed() throws IOException {
+        byte[] content = randomBytes(5000);
+        FileReference reference = new FileReference("ref");
+        ChunkedFile file = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        for (int index : new int[] { 0, 2, 4 })
+            file.addChunk(index, chunkHash(content, index, 1000), chunk(content, index, 1000));
+
+        // Simulate that a chunk was recorded, but not written to disk before a crash
+        try (RandomAccessFile written = new RandomAccessFile(file.file(), "rw")) {
+            written.seek(4000);
+            written.write(new byte[10]);
+        }
+
+        ChunkedFile resumed = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        assertEquals(BitSet.valueOf(new byte[] { 0b101 }), resumed.received());
+        for (int index : new int[] { 1, 3, 4 })
+            assertTrue(resumed.addChunk(index, chunkHash(content, index, 1000), chunk(content, index, 1000)));
+        assertTrue(resumed.isComplete());
+        assertEquals(fileHash(content, 1000), resumed.hash());
+        assertArrayEquals(content, Files.readAllBytes(resumed.file().toPath()));
+
+        ChunkedFile changed = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 500);
+        assertEquals("A file with other parameters is not resumed", 0, changed.received().cardinality());
+        changed.delete();
+    }
+
+    @Test
+    public void partiallyRecordedChunkIsDroppedWhenResuming() throws IOException {
+        byte[] content = randomBytes(5000);
+        FileReference reference = new FileReference("ref");
+        ChunkedFile file = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        for (int index : new int[] { 0, 1 })
+            file.addChunk(index, chunkHash(content, index, 1000), chunk(content, index, 1000));
+        file.close();
+
+        // Simulate a crash while recording a chunk
+        File stateFile = new File(file.file().getParentFile(), "chunks");
+        try (RandomAccessFile state = new RandomAccessFile(stateFile, "rw")) {
+            state.seek(state.length());
+            state.writeInt(2);
+            state.writeShort(7);
+        }
+
+        ChunkedFile resumed = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        assertEquals(BitSet.valueOf(new byte[] { 0b11 }), resumed.received());
+        for (int index : new int[] { 2, 3 })
+            assertTrue(resumed.addChunk(index, chunkHash(content, index, 1000), chunk(content, index, 1000)));
+        resumed.close();
+
+        ChunkedFile resumedAgain = new ChunkedFile(tempDir, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        assertEquals(BitSet.valueOf(new byte[] { 0b1111 }), resumedAgain.received());
+        assertTrue(resumedAgain.addChunk(4, chunkHash(content, 4, 1000), chunk(content, 4, 1000)));
+        assertTrue(resumedAgain.isComplete());
+        assertEquals(fileHash(content, 1000), resumedAgain.hash());
+        assertArrayEquals(content, Files.readAllBytes(resumedAgain.file().toPath()));
+        resumedAgain.delete();
+    }
+
+    @Test
+    public void abandonedChunkedFileIsClosedAndResumedLater() {
+        byte[] content = randomBytes(3000);
+        FileReference reference = new FileReference("ref");
+        Supervisor supervisor = new Supervisor(new Transport());
+        FileReceiver receiver = new FileReceiver(supervisor, null, root, tempDir);
+        ChunkedFile file = receiver.startChunkedSession(1, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        file.addChunk(0, chunkHash(content, 0, 1000), chunk(content, 0, 1000));
+
+        receiver.closeChunkedFile(reference);
+        try {
+            file.addChunk(1, chunkHash(content, 1, 1000), chunk(content, 1, 1000));
+            fail("Expected exception");
+        }
+        catch (IllegalStateException e) {
+            assertTrue(e.getMessage().contains("already finished"));
+        }
+        assertEquals("The session is ended", 2, receiver.endChunkedSession(1, reference, fileHash(content, 1000)));
+
+        ChunkedFile resumed = receiver.startChunkedSession(2, reference, "file", FileReferenceData.Type.file, content.length, 1000);
+        assertNotSame(file, resumed);
+        assertEquals(BitSet.valueOf(new byte[] { 0b1 }), resumed.received());
+        resumed.delete();
+        supervisor.transport().shutdown().join();
+    }
+
+    @Test
+    public void receiveLz4CompressedChunksFromSeveralSources() throws Exception {
+        File dirWithFiles = temporaryFolder.newFolder("files");
+        for (int i = 0; i < 10; i++)
+            Files.write(new File(dirWithFiles, "file" + i).toPath(), randomBytes(100 * 1000));
+        byte[] data = CompressedFileReference.compress(dirWithFiles, CompressedFileReference.Format.lz4);
+        assertArrayEquals("Archives are identical", data, CompressedFileReference.compress(dirWithFiles, CompressedFileReference.Format.lz4));
+
+        ChunkedFile file = new ChunkedFile(tempDir, new FileReference("ref"), "files", FileReferenceData.Type.compressed, data.length, 4096);
+        sendInShares(data, 4096, 3, file);
+        assertTrue(file.finish());
+        assertEquals(fileHash(data, 4096), file.hash());
+        File downloadDir = new File(root, "ref");
+        FileReceiver.install(file.file(), file.type(), "files", downloadDir, tempDir);
+        for (int i = 0; i < 10; i++)
+            assertArrayEquals(Files.readAllBytes(new File(dirWithFiles, "file" + i).toPath()),
+                              Files.readAllBytes(new File(downloadDir, "file" + i).toPath()));
+        file.delete();
+    }
+
+    /** Receives a file in several receivers at once, each from several concurrent sources */
+    @Test
+    public void receiveInSeveralReceiversFromSeveralSources() throws Exception {
+        int receivers = 4, sources = 3, chunkSize = 0x10000;
+        byte[] content = randomBytes(32 * chunkSize + 1);
+        List<ChunkedFile> files = new ArrayList<>();
+        for (int i = 0; i < receivers; i++)
+            files.add(new ChunkedFile(temporaryFolder.newFolder("receiver" + i), new FileReference("ref"), "file",
+                                      FileReferenceData.Type.file, content.length, chunkSize));
+
+        ExecutorService executor = Executors.newFixedThreadPool(receivers);
+        List<Future<?>> futures = new ArrayList<>();
+        for (ChunkedFile file : files)
+            futures.add(executor.submit(() -> { sendInShares(content, chunkSize, sources, file); return null; }));
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+
+        for (ChunkedFile file : files) {
+            assertTrue(file.isComplete());
+            assertEquals(fileHash(content, chunkSize), file.hash());
+            assertArrayEquals(content, Files.readAllBytes(file.file().toPath()));
+            file.delete();
+        }
+    }
+
+    /** Sends the chunks of the given data to the given file from the given number of concurrent sources */
+    private static void sendInShares(byte[] data, int chunkSize, int sources, ChunkedFile file) throws Exception {
+        ExecutorService executor = Executors.newFixedThreadPool(sources);
+        List<Future<?>> futures = new ArrayList<>();
+        for (int source = 0; source < sources; source++) {
+            int share = source;
+            futures.add(executor.submit(() -> {
+                for (int index = file.chunkCount() - 1; index >= 0; index--) // Backwards, to receive out of order
+                    if (index % sources == share)
+                        file.addChunk(index, chunkHash(data, index, chunkSize), chunk(data, index, chunkSize));
+            }));
+        }
+        for (Future<?> future : futures)
+            future.get();
+        executor.shutdown();
+    }
+
+    /** Returns the given chunk as the remaining part of a buffer wrapping all the content */
+    private static ByteBuffer chunk(byte[] content, int index, int chunkSize) {
+        int start = index * chunkSize;
+        return ByteBuffer.wrap(content, start, Math.min(chunkSize, content.length - start));
+    }
+
+    private static long chunkHash(byte[] content, int index, int chunkSize) {
+        int start = index * chunkSize;
+        return FileReceiver.chunkHash(content, start, Math.min(chunkSize, content.length - start));
+    }
+
+    private static long fileHash(byte[] content, int chunkSize) {
+        long[] hashes = new long[(content.length + chunkSize - 1) / chunkSize];
+        for (int i = 0; i < hashes.length; i++)
+            hashes[i] = chunkHash(content, i, chunkSize);
+        return FileReceiver.chunkedFileHash(hashes);
+    }
+
+    private static byte[] randomBytes(int length) {
+        byte[] bytes = new byte[length];
+        new Random(length).nextBytes(bytes);
+        return bytes;
+    }
+
     private void transferPartsAndAssert(FileReference ref, String fileName, String all, int numParts) throws IOException {
         byte [] allContent = Utf8.toBytes(all);
 
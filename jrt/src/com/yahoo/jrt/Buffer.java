@@ -9,6 +9,7 @@ class Buffer {
 
     static final int MAX_IO = 65000;
 
+    private final int initialSize;
     private ByteBuffer buf;
     private int        readPos;
     private int        writePos;
@@ -69,6 +70,7 @@ class Buffer {
     }
 
     public Buffer(int size) {
+        this.initialSize = size;
         buf = ByteBuffer.allocate(size);
         readPos = 0;
         writePos = 0;
@@ -127,4 +129,36 @@ class Buffer {
         }
         return bb;
     }
+
+    /**
+     * Gives up ownership of the current storage of this buffer, such that data which has been read from it
+     * may be referenced after this without being overwritten. The unread data is moved to new storage.
+     */
+    public void detach() {
+        int rpos = readMode? buf.position() : readPos;
+        int wpos = readMode? writePos : buf.position();
+        int used = wpos - rpos;
+        ByteBuffer tmp = ByteBuffer.allocate(Math.max(used, initialSize));
+        tmp.order(buf.order());
+        ByteBuffer unread = buf.duplicate();
+        unread.position(rpos);
+        unread.limit(wpos);
+        tmp.put(unread);
+        buf = tmp;
+        readPos = 0;
+        writePos = used;
+        buf.position(readMode? readPos : writePos);
+        buf.limit(readMode? writePos : buf.capacity());
+    }
+
+    /**
+     * Drops the storage of this and discards any content.
+     * This buffer may still be used after this, but will then allocate new storage.
+     */
+    public void release() {
+        buf = ByteBuffer.allocate(0);
+        readPos = 0;
+        writePos = 0;
+        readMode = false;
+    }
 }
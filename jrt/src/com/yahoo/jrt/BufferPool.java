@@ -0,0 +1,112 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A pool of direct byte buffers used for connection output. Buffers are handed out in power of two
+ * sizes, and released buffers are kept for reuse as long as the total capacity of the pooled buffers
+ * stays within a fixed number of bytes. Direct buffers lets socket writes avoid the copy through a
+ * temporary direct buffer done by the JDK for heap buffers, while pooling avoids paying the cost of
+ * allocating and freeing them per use. Requests larger than the largest pooled size are served by
+ * (unpooled) heap buffers.
+ */
+class BufferPool {
+
+    static final int MIN_SIZE = 4 * 1024;
+    static final int MAX_SIZE = 128 * 1024;
+    private static final long MAX_POOLED_BYTES = 8 * 1024 * 1024;
+
+    private static final BufferPool shared = new BufferPool(MAX_POOLED_BYTES);
+
+    private final long maxPooledBytes;
+    private final AtomicLong pooledBytes = new AtomicLong(0);
+    private final SizeClass[] sizeClasses;
+    private final TransportMetrics metrics = TransportMetrics.getInstance();
+
+    /** Creates a pool which keeps released buffers with a total capacity of at most the given number of bytes */
+    BufferPool(long maxPooledBytes) {
+        this.maxPooledBytes = maxPooledBytes;
+        this.sizeClasses = new SizeClass[sizeClassOf(MAX_SIZE) + 1];
+        for (int i = 0; i < sizeClasses.length; i++) {
+            sizeClasses[i] = new SizeClass();
+        }
+    }
+
+    /** Returns the pool shared by all connections */
+    static BufferPool shared() { return shared; }
+
+    /**
+     * Returns a cleared buffer with at least the given capacity, in big endian byte order.
+     * The buffer is direct if the capacity is at most MAX_SIZE.
+     */
+    ByteBuffer allocate(int minCapacity) {
+        if (minCapacity > MAX_SIZE) {
+            return ByteBuffer.allocate(minCapacity);
+        }
+        SizeClass sizeClass = sizeClasses[sizeClassOf(minCapacity)];
+        ByteBuffer buffer = sizeClass.buffers.poll();
+        if (buffer != null) {
+            sizeClass.count.decrementAndGet();
+            pooledBytes.addAndGet(-buffer.capacity());
+            metrics.incrementBufferPoolHits();
+            return buffer;
+        }
+        metrics.incrementBufferPoolMisses();
+        return ByteBuffer.allocateDirect(sizeOf(sizeClassOf(minCapacity)));
+    }
+
+    /**
+     * Returns a buffer to this pool. The buffer must not be used by the caller after this.
+     * Buffers not allocated by a pool, and buffers which would make the pool exceed its size, are ignored.
+     */
+    void release(ByteBuffer buffer) {
+        if ( ! buffer.isDirect() || buffer.capacity() < MIN_SIZE || buffer.capacity() > MAX_SIZE
+             || Integer.bitCount(buffer.capacity()) != 1) {
+            return;
+        }
+        if (pooledBytes.addAndGet(buffer.capacity()) > maxPooledBytes) {
+            pooledBytes.addAndGet(-buffer.capacity());
+            return;
+        }
+        SizeClass sizeClass = sizeClasses[sizeClassOf(buffer.capacity())];
+        buffer.clear();
+        buffer.order(ByteOrder.BIG_ENDIAN);
+        sizeClass.count.incrementAndGet();
+        sizeClass.buffers.offer(buffer);
+    }
+
+    /** Returns the number of buffers currently available for reuse in this */
+    int pooled() {
+        int pooled = 0;
+        for (SizeClass sizeClass : sizeClasses) {
+            pooled += sizeClass.count.get();
+        }
+        return pooled;
+    }
+
+    /** Returns the total capacity of the buffers currently available for reuse in this */
+    long pooledBytes() { return pooledBytes.get(); }
+
+    /** Returns the index of the smallest size class holding buffers with the given capacity */
+    private static int sizeClassOf(int capacity) {
+        if (capacity <= MIN_SIZE) {
+            return 0;
+        }
+        return 32 - Integer.numberOfLeadingZeros(capacity - 1) - Integer.numberOfTrailingZeros(MIN_SIZE);
+    }
+
+    private static int sizeOf(int sizeClass) {
+        return MIN_SIZE << sizeClass;
+    }
+
+    private static class SizeClass {
+        final ConcurrentLinkedQueue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        final AtomicInteger count = new AtomicInteger(0);
+    }
+
+}
@@ -6,8 +6,11 @@ import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.atomic.AtomicLong;
@@ -23,6 +26,8 @@ class Connection extends Target {
     private static final int READ_REDO  = 10;
     private static final int WRITE_SIZE = 32768;
     private static final int WRITE_REDO = 10;
+    private static final int MAX_GATHER = 16;
+    private static final int REFERENCE_SIZE = READ_SIZE * 2;
 
     private static final int INITIAL    = 0;
     private static final int CONNECTING = 1;
@@ -32,10 +37,18 @@ class Connection extends Target {
     private int state = INITIAL;
     private final Queue  queue   = new Queue();
     private final Queue  myQueue = new Queue();
+    private final BufferPool bufferPool = BufferPool.shared();
+    /** Heap rather than direct, as every connection holds on to its input buffer for as long as it lives */
     private final Buffer input   = new Buffer(READ_SIZE * 2);
-    private final Buffer output  = new Buffer(WRITE_SIZE * 2);
+    /** Encoded packets not yet written, in write order and in read mode */
+    private final ArrayDeque<ByteBuffer> output = new ArrayDeque<>();
+    /** The last output segment, in write mode, which packets are currently appended to, or null */
+    private ByteBuffer outputTail = null;
+    /** The direct segments of the current gathering write, reused between writes */
+    private final ByteBuffer[] gatherSegments = new ByteBuffer[MAX_GATHER];
+    private int outputBytes = 0;
+    private int pendingPacketLength = 0;
     private int maxInputSize  = 64*1024;
-    private int maxOutputSize = 64*1024;
     private final Map<Integer, ReplyHandler> replyMap = new HashMap<>();
     private final Map<TargetWatcher, TargetWatcher> watchers = new IdentityHashMap<>();
     private int activeReqs = 0;
@@ -112,10 +125,6 @@ class Connection extends Target {
         maxInputSize = bytes;
     }
 
-    public void setMaxOutputSize(int bytes) {
-        maxOutputSize = bytes;
-    }
-
     public TransportThread transportThread() {
         return parent;
     }
@@ -269,16 +278,24 @@ class Connection extends Target {
         while (true) {
             PacketInfo info = PacketInfo.getPacketInfo(rb);
             if (info == null || info.packetLength() > rb.remaining()) {
+                pendingPacketLength = (info == null) ? 0 : info.packetLength();
                 break;
             }
             owner.readPacket(info);
+            // Large packets are read into storage which is discarded after use anyway,
+            // so instead of copying their data values we let them reference it, and detach it from the input
+            boolean referenceData = info.packetLength() >= REFERENCE_SIZE;
             Packet packet;
             try {
-                packet = info.decodePacket(rb);
+                packet = info.decodePacket(rb, referenceData);
             } catch (RuntimeException e) {
                 log.log(Level.WARNING, "got garbage; closing connection: " + toString());
                 throw new IOException("jrt: decode error", e);
             }
+            if (referenceData) {
+                input.detach();
+                rb = input.getReadable();
+            }
             ReplyHandler handler;
             synchronized (this) {
                 handler = replyMap.remove(packet.requestId());
@@ -294,7 +311,8 @@ class Connection extends Target {
     private void read() throws IOException {
         boolean doneRead = false;
         for (int i = 0; !doneRead && i < READ_REDO; i++) {
-            ByteBuffer wb = input.getChannelWritable(readSize);
+            // make room for all of a partially received packet at once, rather than growing the buffer gradually
+            ByteBuffer wb = input.getChannelWritable(Math.max(readSize, pendingPacketLength - input.bytes()));
             if (socket.read(wb) == -1) {
                 throw new IOException("jrt: Connection closed by peer");
             }
@@ -319,32 +337,96 @@ class Connection extends Target {
         }
     }
 
+    /** Encodes queued packets into output segments until there are at least WRITE_SIZE bytes to write */
+    private void encodePackets() {
+        while (outputBytes < WRITE_SIZE) {
+            Packet packet = (Packet) myQueue.dequeue();
+            if (packet == null) {
+                break;
+            }
+            PacketInfo info = packet.getPacketInfo();
+            int length = info.packetLength();
+            if (outputTail == null || outputTail.remaining() < length) {
+                flushOutputTail();
+                outputTail = bufferPool.allocate(Math.max(length, WRITE_SIZE));
+            }
+            owner.writePacket(info);
+            info.encodePacket(packet, outputTail);
+            outputBytes += length;
+        }
+    }
+
+    private void flushOutputTail() {
+        if (outputTail == null) {
+            return;
+        }
+        if (outputTail.position() == 0) {
+            bufferPool.release(outputTail);
+        } else {
+            outputTail.flip();
+            output.addLast(outputTail);
+        }
+        outputTail = null;
+    }
+
+    /**
+     * Writes as much of the pending output as the socket accepts. Consecutive direct segments are written
+     * with a single gathering write. Heap segments are written alone, at most MAX_IO bytes at a time,
+     * to bound the temporary direct buffers used by the channel. Completely written segments are returned
+     * to the buffer pool.
+     *
+     * @return whether all the bytes which were attempted written were accepted by the socket
+     */
+    private boolean writeOutput() throws IOException {
+        flushOutputTail();
+        long attempted;
+        long written;
+        ByteBuffer first = output.peekFirst();
+        if (first.isDirect()) {
+            int count = 0;
+            for (ByteBuffer segment : output) {
+                if (count == MAX_GATHER || ! segment.isDirect()) {
+                    break;
+                }
+                count++;
+            }
+            Iterator<ByteBuffer> i = output.iterator();
+            attempted = 0;
+            for (int j = 0; j < count; j++) {
+                gatherSegments[j] = i.next();
+                attempted += gatherSegments[j].remaining();
+            }
+            written = socket.write(gatherSegments, 0, count);
+            Arrays.fill(gatherSegments, 0, count, null);
+        } else {
+            int limit = first.limit();
+            first.limit(Math.min(limit, first.position() + Buffer.MAX_IO));
+            attempted = first.remaining();
+            written = socket.write(first);
+            first.limit(limit);
+        }
+        outputBytes -= written;
+        while ( ! output.isEmpty() && ! output.peekFirst().hasRemaining()) {
+            bufferPool.release(output.removeFirst());
+        }
+        return written == attempted;
+    }
+
     private void write() throws IOException {
         synchronized (this) {
             queue.flush(myQueue);
         }
         for (int i = 0; i < WRITE_REDO; i++) {
-            while (output.bytes() < WRITE_SIZE) {
-                Packet packet = (Packet) myQueue.dequeue();
-                if (packet == null) {
-                    break;
-                }
-                PacketInfo info = packet.getPacketInfo();
-                ByteBuffer wb = output.getWritable(info.packetLength());
-                owner.writePacket(info);
-                info.encodePacket(packet, wb);
-            }
-            ByteBuffer rb = output.getChannelReadable();
-            if (rb.remaining() == 0) {
+            encodePackets();
+            if (outputBytes == 0) {
                 break;
             }
-            socket.write(rb);
-            if (rb.remaining() > 0) {
+            if ( ! writeOutput()) {
                 break;
             }
         }
         int myWriteWork = 0;
-        if (output.bytes() > 0) {
+        if (outputBytes > 0) {
             myWriteWork++;
         }
         if (socket.flush() == CryptoSocket.FlushResult.NEED_WRITE) {
@@ -360,9 +442,6 @@ class Connection extends Target {
         if (disableWrite) {
             disableWrite();
         }
-        if (maxOutputSize > 0) {
-            output.shrink(maxOutputSize);
-        }
     }
 
     public void handleWriteEvent() throws IOException {
@@ -377,11 +456,22 @@ class Connection extends Target {
 
     public void fini() {
         setState(CLOSED);
+        releaseBuffers();
         if (selectionKey != null) {
             selectionKey.cancel();
         }
     }
 
+    private void releaseBuffers() {
+        input.release();
+        flushOutputTail();
+        for (ByteBuffer segment : output) {
+            bufferPool.release(segment);
+        }
+        output.clear();
+        outputBytes = 0;
+    }
+
     public boolean isClosed() {
         return (state == CLOSED);
     }
@@ -82,6 +82,24 @@ public interface CryptoSocket {
      **/
     public int write(ByteBuffer src) throws IOException;
 
+    /**
+     * Gathering variant of write, writing length buffers from the
+     * given array starting at offset, in order. The default implementation writes them one at a time,
+     * stopping at the first buffer which could not be fully
+     * written. Sockets which can write directly to the underlying
+     * channel should override this to do a single gathering write.
+     **/
+    default public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+        long written = 0;
+        for (int i = offset; i < offset + length; i++) {
+            written += write(srcs[i]);
+            if (srcs[i].hasRemaining()) {
+                break;
+            }
+        }
+        return written;
+    }
+
     public enum FlushResult { DONE, NEED_WRITE }
 
     /**
@@ -7,17 +7,27 @@ import java.nio.ByteBuffer;
 
 /**
  * Data value (a sequence of bytes)
+ *
+ * A data value decoded from a large packet may reference the
+ * receive buffer of the connection rather than holding a copy of its
+ * content. Use {@link #asDataBuffer} to access the content of such
+ * values without copying them; {@link #asData} copies the content
+ * on first access.
  **/
 public class DataValue extends Value
 {
-    private byte[] value;
+    private volatile byte[] value;
+    private final ByteBuffer buffer;
 
     /**
      * Create from a Java-type value
      *
      * @param value the value
      **/
-    public DataValue(byte[] value) { this.value = value; }
+    public DataValue(byte[] value) {
+        this.value = value;
+        this.buffer = null;
+    }
 
     /**
      * Create by decoding the value from the given buffer
@@ -25,9 +35,28 @@ public class DataValue extends Value
      * @param src buffer where the value is stored
      **/
     DataValue(ByteBuffer src) {
+        this(src, false);
+    }
+
+    /**
+     * Create by decoding the value from the given buffer
+     *
+     * @param src buffer where the value is stored
+     * @param reference whether to reference the content in src
+     *        rather than copy it
+     **/
+    DataValue(ByteBuffer src, boolean reference) {
         int size = src.getInt();
-        value = new byte[size];
-        src.get(value);
+        if (reference) {
+            ByteBuffer slice = src.slice();
+            slice.limit(size);
+            buffer = slice.asReadOnlyBuffer();
+            src.position(src.position() + size);
+        } else {
+            value = new byte[size];
+            src.get(value);
+            buffer = null;
+        }
     }
 
     /**
@@ -36,17 +65,38 @@ public class DataValue extends Value
     public byte type() { return DATA; }
     public int count() { return 1; }
 
-    int bytes() { return 4 + value.length; }
+    private int length() {
+        return (buffer != null) ? buffer.remaining() : value.length;
+    }
+
+    int bytes() { return 4 + length(); }
     void encode(ByteBuffer dst) {
-        dst.putInt(value.length);
-        dst.put(value);
+        dst.putInt(length());
+        if (buffer != null) {
+            dst.put(buffer.duplicate());
+        } else {
+            dst.put(value);
+        }
     }
 
-    public byte[] asData() { return value; }
+    public byte[] asData() {
+        byte[] data = value;
+        if (data == null) {
+            data = new byte[buffer.remaining()];
+            buffer.duplicate().get(data);
+            value = data;
+        }
+        return data;
+    }
+
+    @Override
+    public ByteBuffer asDataBuffer() {
+        return (buffer != null) ? buffer.duplicate() : ByteBuffer.wrap(value).asReadOnlyBuffer();
+    }
 
     @Override
     public String toString() {
-        return String.valueOf(value);
+        return String.valueOf(asData());
     }
 
 }
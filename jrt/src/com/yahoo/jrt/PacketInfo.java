@@ -59,6 +59,17 @@ class PacketInfo
     }
 
     public Packet decodePacket(ByteBuffer src) {
+        return decodePacket(src, false);
+    }
+
+    /**
+     * Decodes the packet described by this from the given buffer.
+     *
+     * @param referenceData whether the data values of the packet should reference the
+     *        given buffer rather than copy their content. If true, the caller must ensure
+     *        the decoded content of the buffer is not modified after this.
+     */
+    public Packet decodePacket(ByteBuffer src, boolean referenceData) {
         int pos = src.position();
         int end = pos + packetLength;
         int limit = src.limit();
@@ -70,9 +81,9 @@ class PacketInfo
             }
             switch (packetCode) {
             case Packet.PCODE_REQUEST:
-                return new RequestPacket(flags, requestId, src);
+                return new RequestPacket(flags, requestId, src, referenceData);
             case Packet.PCODE_REPLY:
-                return new ReplyPacket(flags, requestId, src);
+                return new ReplyPacket(flags, requestId, src, referenceData);
             case Packet.PCODE_ERROR:
                 return new ErrorPacket(flags, requestId, src);
             }
@@ -17,10 +17,10 @@ class ReplyPacket extends Packet
     }
 
     public ReplyPacket(int flags, int reqId,
-                       ByteBuffer src)
+                       ByteBuffer src, boolean referenceData)
     {
         super(flags, reqId);
-        returnValues = new Values(src);
+        returnValues = new Values(src, referenceData);
     }
 
     public int bytes() {
@@ -20,11 +20,11 @@ class RequestPacket extends Packet
     }
 
     public RequestPacket(int flags, int reqId,
-                         ByteBuffer src)
+                         ByteBuffer src, boolean referenceData)
     {
         super(flags, reqId);
         methodName = new StringValue(src);
-        parameters = new Values(src);
+        parameters = new Values(src, referenceData);
     }
 
     public int bytes() {
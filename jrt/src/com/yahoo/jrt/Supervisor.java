@@ -20,7 +20,6 @@ public class Supervisor {
     private final Object            methodMapLock = new Object();
     private final AtomicReference<HashMap<String, Method>> methodMap = new AtomicReference<>(new HashMap<>());
     private int                     maxInputBufferSize  = 0;
-    private int                     maxOutputBufferSize = 0;
 
     /**
      * Create a new Supervisor based on the given {@link Transport}
@@ -48,18 +47,15 @@ public class Supervisor {
     }
 
     /**
-     * Set maximum output buffer size. This value will only affect
-     * connections that use a common output buffer when encoding
-     * outgoing packets. Note that this value is not an absolute
-     * max. The buffer will still grow larger than this value if needed
-     * to encode big packets. However, when the buffer becomes larger
-     * than this value, it will be shrunk back when possible.
+     * This has no effect: Outgoing packets are encoded into pooled
+     * segments which are returned to the pool as soon as they are
+     * written, so there is no common output buffer to limit.
      *
-     * @param bytes buffer size in bytes. 0 means unlimited.
+     * @param bytes ignored
+     * @deprecated has no effect, will be removed on Vespa 8
      **/
-    public void setMaxOutputBufferSize(int bytes) {
-        maxOutputBufferSize = bytes;
-    }
+    @Deprecated // TODO: Remove on Vespa 8
+    public void setMaxOutputBufferSize(int bytes) { }
 
     /**
      * Obtain the method map for this Supervisor
@@ -180,7 +176,6 @@ public class Supervisor {
         if (target instanceof Connection) {
             Connection conn = (Connection) target;
             conn.setMaxInputSize(maxInputBufferSize);
-            conn.setMaxOutputSize(maxOutputBufferSize);
         }
         SessionHandler handler = sessionHandler;
         if (handler != null) {
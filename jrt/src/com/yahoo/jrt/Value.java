@@ -107,9 +107,11 @@ public abstract class Value
      * @return the decoded value
      * @param type value type identifier
      * @param src where the value is stored
+     * @param referenceData whether data values should reference src
+     *        rather than copy their content, see {@link DataValue}
      * @throws IllegalArgumentException if the given type identifier is illegal
      **/
-    static Value decode(byte type, ByteBuffer src) {
+    static Value decode(byte type, ByteBuffer src, boolean referenceData) {
         switch (type) {
         case INT8:         return new Int8Value(src);
         case INT8_ARRAY:   return new Int8Array(src);
@@ -125,7 +127,7 @@ public abstract class Value
         case DOUBLE_ARRAY: return new DoubleArray(src);
         case STRING:       return new StringValue(src);
         case STRING_ARRAY: return new StringArray(src);
-        case DATA:         return new DataValue(src);
+        case DATA:         return new DataValue(src, referenceData);
         case DATA_ARRAY:   return new DataArray(src);
         }
         throw new IllegalArgumentException();
@@ -275,6 +277,16 @@ public abstract class Value
      **/
     public byte[]   asData()        { throw new ClassCastException(); }
 
+    /**
+     * Interpret this value as a {@link DataValue} and return the
+     * contents as a read-only buffer, without copying them if
+     * possible
+     *
+     * @return the value contained in this object as a read-only buffer
+     * @throws ClassCastException if this is not a {@link DataValue}
+     **/
+    public ByteBuffer asDataBuffer() { throw new ClassCastException(); }
+
     /**
      * Interpret this value as a {@link DataArray} and return the
      * contents as an appropriate Java type
@@ -46,7 +46,19 @@ public class Values
      * @param src buffer containing a contained value sequence
      **/
     Values(ByteBuffer src) {
-        decode(src);
+        this(src, false);
+    }
+
+    /**
+     * Create a sequence of values by decoding them from the given
+     * buffer
+     *
+     * @param src buffer containing a contained value sequence
+     * @param referenceData whether data values should reference src
+     *        rather than copy their content, see {@link DataValue}
+     **/
+    Values(ByteBuffer src, boolean referenceData) {
+        decode(src, referenceData);
     }
 
     /**
@@ -116,12 +128,16 @@ public class Values
      * @param src where the value sequence is stored
      **/
     void decode(ByteBuffer src) {
+        decode(src, false);
+    }
+
+    private void decode(ByteBuffer src, boolean referenceData) {
         values.clear();
         int cnt = src.getInt();
         byte[] types = new byte[cnt];
         src.get(types);
         for (int i = 0; i < cnt; i++) {
-            values.add(Value.decode(types[i], src));
+            values.add(Value.decode(types[i], src, referenceData));
         }
     }
 
@@ -0,0 +1,71 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.jrt;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class BufferPoolTest {
+
+    @Test
+    public void testAllocateRoundsUpToPowerOfTwoDirectBuffers() {
+        BufferPool pool = new BufferPool(4 * BufferPool.MAX_SIZE);
+        assertEquals(BufferPool.MIN_SIZE, pool.allocate(1).capacity());
+        assertEquals(BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE).capacity());
+        assertEquals(2 * BufferPool.MIN_SIZE, pool.allocate(BufferPool.MIN_SIZE + 1).capacity());
+        assertEquals(BufferPool.MAX_SIZE, pool.allocate(BufferPool.MAX_SIZE).capacity());
+        assertTrue(pool.allocate(BufferPool.MAX_SIZE).isDirect());
+
+        ByteBuffer large = pool.allocate(BufferPool.MAX_SIZE + 1);
+        assertFalse(large.isDirect());
+        assertEquals(BufferPool.MAX_SIZE + 1, large.capacity());
+    }
+
+    @Test
+    public void testReleasedBuffersAreReusedAndCountedInMetrics() {
+        TransportMetrics.Snapshot before = TransportMetrics.getInstance().snapshot();
+        BufferPool pool = new BufferPool(4 * BufferPool.MAX_SIZE);
+        ByteBuffer buffer = pool.allocate(10000);
+        buffer.putInt(1);
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        pool.release(buffer);
+        assertEquals(1, pool.pooled());
+
+        ByteBuffer reused = pool.allocate(9000);
+        assertSame(buffer, reused);
+        assertEquals(0, reused.position());
+        assertEquals(reused.capacity(), reused.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, reused.order());
+        assertEquals(0, pool.pooled());
+
+        TransportMetrics.Snapshot changes = TransportMetrics.getInstance().snapshot().changesSince(before);
+        assertTrue(changes.bufferPoolHits() >= 1);
+        assertTrue(changes.bufferPoolMisses() >= 1);
+    }
+
+    @Test
+    public void testPoolIsBoundedByTotalSize() {
+        BufferPool pool = new BufferPool(3 * BufferPool.MIN_SIZE);
+        for (int i = 0; i < 5; i++) {
+            pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE));
+        }
+        assertEquals(3, pool.pooled());
+        assertEquals(3 * BufferPool.MIN_SIZE, pool.pooledBytes());
+        pool.release(ByteBuffer.allocate(BufferPool.MIN_SIZE));
+        pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE + 1));
+        assertEquals(3, pool.pooled());
+
+        pool.allocate(BufferPool.MIN_SIZE);
+        pool.release(ByteBuffer.allocateDirect(2 * BufferPool.MIN_SIZE)); // too large for the space left
+        assertEquals(2, pool.pooled());
+        pool.release(ByteBuffer.allocateDirect(BufferPool.MIN_SIZE));
+        assertEquals(3 * BufferPool.MIN_SIZE, pool.pooledBytes());
+    }
+
+}
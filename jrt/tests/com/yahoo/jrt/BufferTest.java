@@ -278,4 +278,33 @@ public class BufferTest {
         }
     }
 
+    @org.junit.Test
+    public void testDetachAndRelease() {
+        Buffer buf = new Buffer(64);
+        ByteBuffer b = buf.getWritable(128);
+        for (int i = 0; i < 128; i++) {
+            b.put((byte)i);
+        }
+
+        b = buf.getReadable();
+        for (int i = 0; i < 74; i++) {
+            assertEquals((byte)i, b.get());
+        }
+        ByteBuffer old = b;
+        buf.detach();
+        int i = 74;
+        b = buf.getReadable();
+        assertTrue(b != old);
+        assertEquals(54, b.remaining());
+        while (b.hasRemaining()) {
+            assertEquals((byte)i++, b.get());
+        }
+        assertEquals(74, old.position()); // the detached storage is left as it was
+        buf.release();
+        assertEquals(0, buf.bytes());
+        b = buf.getWritable(10);
+        b.put((byte)42);
+        assertEquals(42, buf.getReadable().get());
+    }
+
 }
@@ -171,4 +171,24 @@ public class EchoTest {
             assertNull(securityContext);
         }
     }
+
+    @org.junit.Test
+    public void testLargeEcho() {
+        byte[] large = new byte[3 * 1024 * 1024];
+        new java.util.Random(42).nextBytes(large);
+        server.addMethod(new Method("echoLarge", "*", "*", request -> {
+            for (int i = 0; i < request.parameters().size(); i++) {
+                request.returnValues().add(request.parameters().get(i));
+            }
+        }));
+        Request req = new Request("echoLarge");
+        req.parameters().add(new DataValue(large));
+        req.parameters().add(new StringValue("after"));
+        req.parameters().add(new DataValue(new byte[] { 1, 2, 3 }));
+        target.invokeSync(req, 60.0);
+        assertTrue(req.errorMessage(), req.checkReturnTypes("xsx"));
+        assertTrue(Test.equals(req.returnValues(), req.parameters()));
+        assertEquals(large.length, req.returnValues().get(0).asDataBuffer().remaining());
+        assertTrue(metrics.snapshot().changesSince(startSnapshot).bufferPoolHits() > 0);
+    }
 }
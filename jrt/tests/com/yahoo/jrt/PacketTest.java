@@ -122,4 +122,39 @@ public class PacketTest {
         assertEquals(errStr, ((ErrorPacket)packet2).errorMessage());
     }
 
+    @org.junit.Test
+    public void testReferencedDataValues() {
+        byte[] data = { 1, 2, 3, 4, 5 };
+        Values ret = new Values();
+        ret.add(new DataValue(data));
+        ret.add(new Int32Value(7));
+
+        Packet packet = new ReplyPacket(0, 42, ret);
+        PacketInfo info = packet.getPacketInfo();
+        ByteBuffer buf = ByteBuffer.allocate(info.packetLength());
+        info.encodePacket(packet, buf);
+        buf.flip();
+
+        Values copied = ((ReplyPacket)info.decodePacket(buf.duplicate(), false)).returnValues();
+        Values referenced = ((ReplyPacket)info.decodePacket(buf, true)).returnValues();
+        assertEquals(0, buf.remaining());
+        assertTrue(Test.equals(ret, copied));
+        assertTrue(Test.equals(ret, referenced));
+        assertEquals(7, referenced.get(1).asInt32());
+        assertTrue(referenced.get(0).asDataBuffer().isReadOnly());
+        assertEquals(ByteBuffer.wrap(data), referenced.get(0).asDataBuffer());
+
+        // Referenced values see the buffer content, while copied values do not
+        int dataOffset = Packet.headerLength + 4 + 2 + 4;
+        buf.put(dataOffset, (byte)9);
+        assertEquals(9, referenced.get(0).asDataBuffer().get(0));
+        assertEquals(1, copied.get(0).asData()[0]);
+
+        // Re-encoding a referenced value gives the same bytes
+        Values reencoded = new Values().add(referenced.get(0));
+        ByteBuffer dst = ByteBuffer.allocate(reencoded.bytes());
+        reencoded.encode(dst);
+        assertEquals(0, dst.remaining());
+    }
+
 }
@@ -9,7 +9,9 @@ import com.yahoo.logserver.handlers.AbstractLogHandler;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.text.SimpleDateFormat;
+import java.time.Instant;
 import java.util.Calendar;
 import java.util.GregorianCalendar;
 import java.util.Iterator;
@@ -76,6 +78,11 @@ public class ArchiverHandler extends AbstractLogHandler {
 
     private FilesArchived filesArchived;
 
+    /**
+     * Whether to write block compressed files
+     */
+    private boolean blockCompressed = false;
+
     /**
      * Creates an ArchiverHandler
      */
@@ -102,9 +109,18 @@ public class ArchiverHandler extends AbstractLogHandler {
      * the given root directory.
      */
     public ArchiverHandler(String rootDir, int maxFileSize) {
+        this(rootDir, maxFileSize, false);
+    }
+
+    /**
+     * Creates an ArchiverHandler which puts files under
+     * the given root directory, block compressed if blockCompressed is true.
+     */
+    public ArchiverHandler(String rootDir, int maxFileSize, boolean blockCompressed) {
         this();
         setRootDir(rootDir);
         this.maxFileSize = maxFileSize;
+        this.blockCompressed = blockCompressed;
     }
 
 
@@ -119,7 +135,7 @@ public class ArchiverHandler extends AbstractLogHandler {
         }
 
         // invariant: LogWriter we sought was not in the cache
-        logWriter = new LogWriter(getPrefix(m), maxFileSize, filesArchived);
+        logWriter = new LogWriter(getPrefix(m), maxFileSize, filesArchived, blockCompressed);
         logWriterLRUCache.put(slot, logWriter);
 
         return logWriter;
@@ -191,6 +207,27 @@ public class ArchiverHandler extends AbstractLogHandler {
         }
     }
 
+    private synchronized void flushAll() {
+        for (LogWriter l : logWriterLRUCache.values()) {
+            try {
+                l.flushAll();
+            } catch (IOException e) {
+                log.log(Level.WARNING, "Flushing failed", e);
+            }
+        }
+    }
+
+    /**
+     * Writes the archived messages with a timestamp after from and up to and including to,
+     * and optionally from the given host and service, to the given stream.
+     *
+     * @see LogArchiveReader#writeMatching
+     */
+    public void query(Instant from, Instant to, String hostname, String service, OutputStream out) {
+        flushAll();
+        new LogArchiveReader(root.toPath()).writeMatching(from, to, hostname, service, out);
+    }
+
     public synchronized void close() {
         Iterator<LogWriter> it = logWriterLRUCache.values().iterator();
         while (it.hasNext()) {
@@ -20,6 +20,11 @@ public class ArchiverPlugin implements Plugin {
      */
     private static final String DEFAULT_MAXFILESIZE = "20971520";
 
+    /**
+     * Default format of archived log files, "text" or "blocks" (block compressed and indexed).
+     */
+    private static final String DEFAULT_FORMAT = "text";
+
     private final Server server = Server.getInstance();
     private static final Logger log = Logger.getLogger(ArchiverPlugin.class.getName());
     private ArchiverHandler archiver;
@@ -39,6 +44,7 @@ public class ArchiverPlugin implements Plugin {
      * maxfilesize
      * dir            The root of the logarchive, make sure this does
      * <b>not</b> end with a '/' character.
+     * format         "text" or "blocks"
      */
     public void initPlugin(Config config) {
 
@@ -52,9 +58,10 @@ public class ArchiverPlugin implements Plugin {
         String rootDir = config.get("dir", DEFAULT_DIR);
         int maxFileSize = config.getInt("maxfilesize", DEFAULT_MAXFILESIZE);
         String threadName = config.get("thread", getPluginName());
+        boolean blockCompressed = "blocks".equals(config.get("format", DEFAULT_FORMAT));
 
         // register log handler and flusher
-        archiver = new ArchiverHandler(rootDir, maxFileSize);
+        archiver = new ArchiverHandler(rootDir, maxFileSize, blockCompressed);
         server.registerLogHandler(archiver, threadName);
         server.registerFlusher(archiver);
     }
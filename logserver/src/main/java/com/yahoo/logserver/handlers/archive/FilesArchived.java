@@ -2,6 +2,8 @@
 
 package com.yahoo.logserver.handlers.archive;
 
+import com.yahoo.compress.LogBlockWriter;
+
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.FileOutputStream;
@@ -237,6 +239,7 @@ public class FilesArchived {
         }
         private static boolean zSuffix(String name) {
             if (name.endsWith(".gz")) return true;
+            if (name.endsWith(LogBlockWriter.FILE_SUFFIX)) return true;
             // add other compression suffixes here
             return false;
         }
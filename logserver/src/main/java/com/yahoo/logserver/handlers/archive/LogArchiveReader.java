@@ -0,0 +1,113 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.logserver.handlers.archive;
+
+import com.yahoo.compress.LogBlockReader;
+import com.yahoo.compress.LogBlockWriter;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Optional;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the log messages matching a query from a log archive written by {@link ArchiverHandler}.
+ * Messages are archived in files by the hour of their timestamp, so only files for the hours in the queried
+ * time range are read. Of block compressed files, only the blocks which may have matching messages are read.
+ */
+public class LogArchiveReader {
+
+    private static final Pattern archivedFile =
+            Pattern.compile("([0-9]{4})/([0-9]{2})/([0-9]{2})/([0-9]{2})-([0-9]+)(\\.gz|" + Pattern.quote(LogBlockWriter.FILE_SUFFIX) + ")?");
+
+    private final Path root;
+
+    public LogArchiveReader(Path root) {
+        this.root = root;
+    }
+
+    /**
+     * Writes the archived log messages with a timestamp after from and up to and including to, and optionally
+     * from the given host and service, to the given stream, in the vespa log format. Messages are written
+     * ordered by the hour of their timestamp, and in the order they were archived within each hour.
+     *
+     * @param hostname the host of the messages to write, or null for all hosts
+     * @param service the service of the messages to write, or null for all services
+     */
+    public void writeMatching(Instant from, Instant to, String hostname, String service, OutputStream out) {
+        LogBlockReader.Query query = new LogBlockReader.Query(from, to, hostname, service);
+        try {
+            for (ArchivedFile file : filesInRange(from, to)) {
+                if (file.path.toString().endsWith(LogBlockWriter.FILE_SUFFIX)) {
+                    LogBlockReader.writeMatching(file.path, query, out);
+                }
+                else {
+                    try (InputStream in = file.path.toString().endsWith(".gz") ? new GZIPInputStream(Files.newInputStream(file.path))
+                                                                               : Files.newInputStream(file.path)) {
+                        LogBlockReader.writeMatching(in, query, out);
+                    }
+                }
+            }
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    /** Returns the archived files which may hold messages in the given time range, in order */
+    List<ArchivedFile> filesInRange(Instant from, Instant to) throws IOException {
+        if ( ! Files.isDirectory(root)) return List.of();
+
+        List<ArchivedFile> files = new ArrayList<>();
+        try (Stream<Path> paths = Files.walk(root)) {
+            for (Path path : paths.filter(Files::isRegularFile).collect(Collectors.toList())) {
+                ArchivedFile.of(root, path)
+                            .filter(file -> file.hourStart.isBefore(to) || file.hourStart.equals(to))
+                            .filter(file -> file.hourStart.plus(Duration.ofHours(1)).isAfter(from))
+                            .ifPresent(files::add);
+            }
+        }
+        files.sort(Comparator.comparing((ArchivedFile file) -> file.hourStart).thenComparing(file -> file.generation));
+        return files;
+    }
+
+    /** A file in the archive, holding messages with timestamps in the hour starting at hourStart */
+    static class ArchivedFile {
+
+        final Path path;
+        final Instant hourStart;
+        final int generation;
+
+        private ArchivedFile(Path path, Instant hourStart, int generation) {
+            this.path = path;
+            this.hourStart = hourStart;
+            this.generation = generation;
+        }
+
+        static Optional<ArchivedFile> of(Path root, Path path) {
+            Matcher matcher = archivedFile.matcher(root.relativize(path).toString());
+            if ( ! matcher.matches()) return Optional.empty();
+
+            Instant hourStart = LocalDateTime.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)),
+                                                 Integer.parseInt(matcher.group(3)), Integer.parseInt(matcher.group(4)), 0)
+                                             .toInstant(ZoneOffset.UTC);
+            return Optional.of(new ArchivedFile(path, hourStart, Integer.parseInt(matcher.group(5))));
+        }
+
+    }
+
+}
@@ -1,15 +1,24 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.logserver.handlers.archive;
 
+import java.io.BufferedOutputStream;
 import java.io.File;
+import java.io.FileOutputStream;
 import java.io.FileWriter;
 import java.io.IOException;
 import java.io.Writer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.util.logging.Logger;
 
+import com.yahoo.compress.LogBlockReader;
+import com.yahoo.compress.LogBlockWriter;
 import com.yahoo.log.LogLevel;
 
 /**
+ * Writes log messages to a sequence of files with the given prefix, each up to a max size.
+ * Files are either plain text, or block compressed and indexed by {@link LogBlockWriter}.
+ * <p>
  * This class is not thread-safe.
  *
  * @author Bjorn Borud
@@ -24,13 +33,24 @@ public class LogWriter {
     private final int resumeLimitSize = (maxSize * resumeLimit / 100);
     private File currentFile;
     private Writer writer;
+    private LogBlockWriter blockWriter;
+    private long blockWriterStartSize;
+    /** Flushing ends the current block if it is older than this, to bound what is lost in a crash */
+    private final long maxBlockAgeMillis = 60 * 1000;
+    private long blockStartMillis;
     private final String prefix;
     private final FilesArchived archive;
+    private final boolean blockCompressed;
 
     public LogWriter(String prefix, int maxSize, FilesArchived archive) throws IOException {
+        this(prefix, maxSize, archive, false);
+    }
+
+    public LogWriter(String prefix, int maxSize, FilesArchived archive, boolean blockCompressed) throws IOException {
         this.prefix = prefix;
         this.maxSize = maxSize;
         this.archive = archive;
+        this.blockCompressed = blockCompressed;
         this.generation = archive.highestGen(prefix);
         writer = nextWriter();
         archive.maintenance();
@@ -50,7 +70,7 @@ public class LogWriter {
         int maxAttempts = 1000;
         while (maxAttempts-- > 0) {
             String name = prefix + "-" + generation++;
-            File f = new File(name);
+            File f = new File(blockCompressed ? name + LogBlockWriter.FILE_SUFFIX : name);
 
             // make sure directory exists
             File dir = f.getParentFile();
@@ -64,12 +84,17 @@ public class LogWriter {
                 continue;
             }
 
+            // if a file in the other format exists we skip it
+            if (new File(blockCompressed ? name : name + LogBlockWriter.FILE_SUFFIX).exists()) {
+                continue;
+            }
+
             // if file does not exist we have a winner
             if (! f.exists()) {
-                log.log(LogLevel.DEBUG, "nextWriter, new file: " + name);
+                log.log(LogLevel.DEBUG, "nextWriter, new file: " + f);
                 currentFile = f;
                 bytesWritten = 0;
-                return new FileWriter(f, true);
+                return open(f);
             }
 
             // just skip over directories for now
@@ -78,12 +103,24 @@ public class LogWriter {
                 continue;
             }
 
+            // an incomplete last block must be removed before more blocks are appended
+            if (blockCompressed && f.length() < resumeLimitSize) {
+                long completeLength = LogBlockReader.completeLength(f.toPath());
+                if (completeLength < f.length()) {
+                    log.log(LogLevel.WARNING, "Truncating incomplete last block of " + f + " from " + f.length() +
+                                              " to " + completeLength + " bytes before resuming it");
+                    try (FileChannel channel = FileChannel.open(f.toPath(), StandardOpenOption.WRITE)) {
+                        channel.truncate(completeLength);
+                    }
+                }
+            }
+
             // if the size is < resumeSizeLimit then we open it
             if (f.length() < resumeLimitSize) {
-                log.fine("nextWriter, resuming " + name + ", length was " + f.length());
+                log.fine("nextWriter, resuming " + f + ", length was " + f.length());
                 currentFile = f;
                 bytesWritten = f.length();
-                return new FileWriter(f, true);
+                return open(f);
             } else {
 
                 log.fine("nextWriter, not resuming " + name
@@ -96,14 +133,34 @@ public class LogWriter {
         throw new RuntimeException("Unable to create next log file");
     }
 
+    /** Opens the given file for appending, and returns the writer to use for plain text files, or null */
+    private Writer open(File file) throws IOException {
+        if ( ! blockCompressed) return new FileWriter(file, true);
+
+        blockWriter = new LogBlockWriter(new BufferedOutputStream(new FileOutputStream(file, true)));
+        blockWriterStartSize = bytesWritten;
+        blockStartMillis = System.currentTimeMillis();
+        return null;
+    }
+
+    private boolean isOpen() {
+        return writer != null || blockWriter != null;
+    }
+
     public void write(String str) throws IOException {
-        if (writer == null) {
+        if ( ! isOpen()) {
             writer = nextWriter();
             archive.maintenance();
         }
 
-        bytesWritten += str.length();
-        writer.write(str, 0, str.length());
+        if (blockWriter != null) {
+            blockWriter.write(str);
+            bytesWritten = blockWriterStartSize + blockWriter.bytesWritten();
+        }
+        else {
+            bytesWritten += str.length();
+            writer.write(str, 0, str.length());
+        }
 
         if (bytesWritten >= maxSize) {
             log.fine("logfile '"
@@ -115,10 +172,33 @@ public class LogWriter {
     }
 
 
+    /**
+     * Flushes the written messages to the file. If block compressed, messages in the current block are only
+     * written when the block is full or older than a minute, to avoid writing many small blocks.
+     */
     public synchronized void flush() throws IOException {
+        flush(System.currentTimeMillis() - blockStartMillis >= maxBlockAgeMillis);
+    }
+
+    /** Flushes all written messages to the file, such that they can be read from it */
+    public synchronized void flushAll() throws IOException {
+        flush(true);
+    }
+
+    private void flush(boolean endBlock) throws IOException {
         if (writer != null) {
             writer.flush();
         }
+        if (blockWriter != null) {
+            if (endBlock) {
+                blockWriter.flush();
+                blockStartMillis = System.currentTimeMillis();
+            }
+            else {
+                blockWriter.flushBlocks();
+            }
+            bytesWritten = blockWriterStartSize + blockWriter.bytesWritten();
+        }
     }
 
     public synchronized void close() throws IOException {
@@ -127,5 +207,9 @@ public class LogWriter {
             writer.close();
             writer = null;
         }
+        if (blockWriter != null) {
+            blockWriter.close();
+            blockWriter = null;
+        }
     }
 }
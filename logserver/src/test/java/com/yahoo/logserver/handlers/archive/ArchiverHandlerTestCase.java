@@ -1,6 +1,7 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.logserver.handlers.archive;
 
+import com.yahoo.compress.LogBlockWriter;
 import com.yahoo.log.InvalidLogFormatException;
 import com.yahoo.log.LogMessage;
 import com.yahoo.plugin.SystemPropertyConfig;
@@ -9,15 +10,23 @@ import org.junit.Test;
 import org.junit.rules.TemporaryFolder;
 
 import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.FileReader;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
@@ -201,6 +210,67 @@ public class ArchiverHandlerTestCase {
 
     }
 
+    @Test
+    public void testBlockCompressedLoggingAndQuery() throws IOException, InvalidLogFormatException {
+        File tmpDir = temporaryFolder.newFolder();
+        ArchiverHandler a = new ArchiverHandler(tmpDir.getAbsolutePath(), 1024, true);
+        for (LogMessage m : msg) {
+            a.handle(m);
+        }
+        LogMessage other = LogMessage.parseNativeFormat("1095206400.500000\tother\t1/2\tservice\tcomponent\tinfo\tpayload5");
+        a.handle(other);
+
+        assertEquals(mStrings[0] + "\n" + mStrings[1] + "\n" + mStrings[2] + "\n" + mStrings[3] + "\n",
+                     query(a, Instant.EPOCH, Instant.ofEpochSecond(1095206401), "host", null));
+        assertEquals(mStrings[2] + "\n" + other,
+                     query(a, Instant.ofEpochSecond(1095206399), Instant.ofEpochSecond(1095206400, 500_000_000), null, "service"));
+        assertEquals(other.toString(),
+                     query(a, Instant.MIN, Instant.MAX, "other", null));
+        a.close();
+
+        assertTrue(new File(a.getPrefix(msg[0]) + "-0" + LogBlockWriter.FILE_SUFFIX).exists());
+        assertFalse(new File(a.getPrefix(msg[0]) + "-0").exists());
+        assertEquals(other.toString(),
+                     query(a, Instant.MIN, Instant.MAX, "other", null));
+    }
+
+    @Test
+    public void testResumingBlockCompressedFileWithIncompleteLastBlock() throws IOException {
+        File tmpDir = temporaryFolder.newFolder();
+        ArchiverHandler a = new ArchiverHandler(tmpDir.getAbsolutePath(), 1024, true);
+        a.handle(msg[0]);
+        a.close();
+
+        // Simulate a crash while writing the next block
+        Path file = new File(a.getPrefix(msg[0]) + "-0" + LogBlockWriter.FILE_SUFFIX).toPath();
+        byte[] complete = Files.readAllBytes(file);
+        Files.write(file, Arrays.copyOf(complete, 6), StandardOpenOption.APPEND);
+
+        ArchiverHandler resumed = new ArchiverHandler(tmpDir.getAbsolutePath(), 1024, true);
+        resumed.handle(msg[0]);
+        resumed.close();
+        assertEquals(mStrings[0] + "\n" + mStrings[0] + "\n",
+                     query(resumed, Instant.MIN, Instant.MAX, null, null));
+    }
+
+    @Test
+    public void testQueryPlainTextArchive() throws IOException {
+        File tmpDir = temporaryFolder.newFolder();
+        ArchiverHandler a = new ArchiverHandler(tmpDir.getAbsolutePath(), 1024);
+        for (LogMessage m : msg) {
+            a.handle(m);
+        }
+        assertEquals(mStrings[1] + "\n" + mStrings[2] + "\n",
+                     query(a, Instant.ofEpochSecond(1095206398), Instant.ofEpochSecond(1095206400), null, null));
+        a.close();
+    }
+
+    private static String query(ArchiverHandler archiver, Instant from, Instant to, String hostname, String service) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        archiver.query(from, to, hostname, service, out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+
     @Test
     public void testCacheEldestEntry() throws IOException {
         LogWriterLRUCache cache = new LogWriterLRUCache(5, (float) 0.75);
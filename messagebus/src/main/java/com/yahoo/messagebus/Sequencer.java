@@ -1,8 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.messagebus;
 
+import java.util.ArrayDeque;
 import java.util.HashMap;
-import java.util.LinkedList;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.atomic.AtomicBoolean;
@@ -13,13 +13,19 @@ import java.util.concurrent.atomic.AtomicBoolean;
  * id, and messages are only sent when they are at the front of their list. When a reply arrives, the current front of
  * the list is removed and the next message, if any, is sent.
  *
+ * The sequencing state is split into independently synchronized shards by sequence id, such that messages with
+ * different sequence ids do not contend for the same lock. All messages with the same sequence id belong to the
+ * same shard, so ordering is the same as with a single shard.
+ *
  * @author Simon Thoresen Hult
  */
 public class Sequencer implements MessageHandler, ReplyHandler {
 
+    private static final int defaultShardCount = 64;
+
     private final AtomicBoolean destroyed = new AtomicBoolean(false);
     private final MessageHandler sender;
-    private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+    private final Shard[] shards;
 
     /**
      * Constructs a new sequencer on top of the given async sender.
@@ -27,7 +33,22 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      * @param sender The underlying sender.
      */
     public Sequencer(MessageHandler sender) {
+        this(sender, defaultShardCount);
+    }
+
+    /**
+     * Constructs a new sequencer on top of the given async sender, with the given number of shards.
+     *
+     * @param sender     the underlying sender
+     * @param shardCount the number of shards, which must be a power of two
+     */
+    Sequencer(MessageHandler sender, int shardCount) {
+        if (shardCount < 1 || Integer.bitCount(shardCount) != 1)
+            throw new IllegalArgumentException("Shard count must be a positive power of two, not " + shardCount);
         this.sender = sender;
+        this.shards = new Shard[shardCount];
+        for (int i = 0; i < shardCount; i++)
+            shards[i] = new Shard();
     }
 
     /**
@@ -38,21 +59,18 @@ public class Sequencer implements MessageHandler, ReplyHandler {
      */
     public boolean destroy() {
         if (!destroyed.getAndSet(true)) {
-            synchronized (this) {
-                for (Queue<Message> queue : seqMap.values()) {
-                    if (queue != null) {
-                        for (Message msg : queue) {
-                            msg.discard();
-                        }
-                    }
-                }
-                seqMap.clear();
-            }
+            for (Shard shard : shards)
+                shard.destroy();
             return true;
         }
         return false;
     }
 
+    private Shard shardOf(long seqId) {
+        int hash = Long.hashCode(seqId);
+        return shards[(hash ^ (hash >>> 16)) & (shards.length - 1)];
+    }
+
     /**
      * Filter a message against the current sequencing state. If this method returns true, the message has been cleared
      * for sending and its sequencing information has been added to the state. If this method returns false, it has been
@@ -65,23 +83,7 @@ public class Sequencer implements MessageHandler, ReplyHandler {
     private boolean filter(Message msg) {
         long seqId = msg.getSequenceId();
         msg.setContext(seqId);
-        synchronized (this) {
-            if (seqMap.containsKey(seqId)) {
-                Queue<Message> queue = seqMap.get(seqId);
-                if (queue == null) {
-                    queue = new LinkedList<>();
-                    seqMap.put(seqId, queue);
-                }
-                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
-                    msg.getTrace().trace(TraceLevel.COMPONENT,
-                                         "Sequencer queued message with sequence id '" + seqId + "'.");
-                }
-                queue.add(msg);
-                return false;
-            }
-            seqMap.put(seqId, null);
-        }
-        return true;
+        return shardOf(seqId).filter(seqId, msg);
     }
 
     /**
@@ -137,19 +139,66 @@ public class Sequencer implements MessageHandler, ReplyHandler {
             reply.getTrace().trace(TraceLevel.COMPONENT,
                                    "Sequencer received reply with sequence id '" + seqId + "'.");
         }
-        Message msg = null;
-        synchronized (this) {
+        Message msg = shardOf(seqId).next(seqId);
+        if (msg != null) {
+            sequencedSend(msg);
+        }
+        ReplyHandler handler = reply.popHandler();
+        handler.handleReply(reply);
+    }
+
+    /** The sequencing state of the sequence ids which hash to one shard */
+    private static class Shard {
+
+        /** The maximum number of empty queues kept for reuse by a shard */
+        private static final int maxPooledQueues = 16;
+
+        /** The sequence ids with a message in flight, mapped to the messages waiting for it, or null if none */
+        private final Map<Long, Queue<Message>> seqMap = new HashMap<>();
+        private final ArrayDeque<Queue<Message>> queuePool = new ArrayDeque<>();
+
+        synchronized boolean filter(long seqId, Message msg) {
+            if (seqMap.containsKey(seqId)) {
+                Queue<Message> queue = seqMap.get(seqId);
+                if (queue == null) {
+                    queue = queuePool.isEmpty() ? new ArrayDeque<>() : queuePool.pop();
+                    seqMap.put(seqId, queue);
+                }
+                if (msg.getTrace().shouldTrace(TraceLevel.COMPONENT)) {
+                    msg.getTrace().trace(TraceLevel.COMPONENT,
+                                         "Sequencer queued message with sequence id '" + seqId + "'.");
+                }
+                queue.add(msg);
+                return false;
+            }
+            seqMap.put(seqId, null);
+            return true;
+        }
+
+        /** Returns the next message to send for the given sequence id, or null if there are none */
+        synchronized Message next(long seqId) {
             Queue<Message> queue = seqMap.get(seqId);
             if (queue == null || queue.isEmpty()) {
                 seqMap.remove(seqId);
-            } else {
-                msg = queue.remove();
+                if (queue != null && queuePool.size() < maxPooledQueues)
+                    queuePool.push(queue);
+                return null;
             }
+            return queue.remove();
         }
-        if (msg != null) {
-            sequencedSend(msg);
+
+        synchronized void destroy() {
+            for (Queue<Message> queue : seqMap.values()) {
+                if (queue != null) {
+                    for (Message msg : queue) {
+                        msg.discard();
+                    }
+                }
+            }
+            seqMap.clear();
+            queuePool.clear();
         }
-        ReplyHandler handler = reply.popHandler();
-        handler.handleReply(reply);
+
     }
+
 }
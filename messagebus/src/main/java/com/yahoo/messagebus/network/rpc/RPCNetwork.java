@@ -84,7 +84,6 @@ public class RPCNetwork implements Network, MethodHandler {
         identity = params.getIdentity();
         orb = new Supervisor(new Transport(2));
         orb.setMaxInputBufferSize(params.getMaxInputBufferSize());
-        orb.setMaxOutputBufferSize(params.getMaxOutputBufferSize());
         targetPool = new RPCTargetPool(params.getConnectionExpireSecs(), params.getNumTargetsPerSpec());
         servicePool = new RPCServicePool(this, 4096);
 
@@ -17,7 +17,6 @@ public class RPCNetworkParams {
     private SlobroksConfig slobroksConfig = null;
     private int listenPort = 0;
     private int maxInputBufferSize = 256 * 1024;
-    private int maxOutputBufferSize = 256 * 1024;
     private double connectionExpireSecs = 30;
     private int numTargetsPerSpec = 1;
 
@@ -40,7 +39,6 @@ public class RPCNetworkParams {
         listenPort = params.listenPort;
         connectionExpireSecs = params.connectionExpireSecs;
         maxInputBufferSize = params.maxInputBufferSize;
-        maxOutputBufferSize = params.maxOutputBufferSize;
         numTargetsPerSpec = params.numTargetsPerSpec;
     }
 
@@ -173,26 +171,4 @@ public class RPCNetworkParams {
         this.maxInputBufferSize = maxInputBufferSize;
         return this;
     }
-
-    /**
-     * Returns the maximum output buffer size allowed for the underlying FNET connection.
-     *
-     * @return The maximum number of bytes.
-     */
-    int getMaxOutputBufferSize() {
-        return maxOutputBufferSize;
-    }
-
-    /**
-     * Sets the maximum output buffer size allowed for the underlying FNET connection. Using the value 0 means that
-     * there is no limit; the connection will not free any allocated memory until it is cleaned up. This might
-     * potentially save alot of allocation time.
-     *
-     * @param maxOutputBufferSize The maximum number of bytes.
-     * @return This, to allow chaining.
-     */
-    RPCNetworkParams setMaxOutputBufferSize(int maxOutputBufferSize) {
-        this.maxOutputBufferSize = maxOutputBufferSize;
-        return this;
-    }
 }
@@ -0,0 +1,26 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.messagebus;
+
+import java.util.Locale;
+
+/**
+ * Measures the throughput of a sequencer sending and replying from several threads, with one and many shards.
+ */
+public class SequencerBenchmark {
+
+    private static final int messagesPerProducer = 25000;
+
+    private static double run(int shards) throws InterruptedException {
+        long startTime = System.nanoTime();
+        int messages = SequencerTestCase.runConcurrently(shards, messagesPerProducer);
+        return messages / ((System.nanoTime() - startTime) / 1e9);
+    }
+
+    public static void main(String[] args) throws InterruptedException {
+        run(1); // warmup
+        for (int shards : new int[] { 1, 64 })
+            System.out.println(String.format(Locale.ENGLISH, "Sequencer with %2d shard(s): %8.0f messages/s",
+                                             shards, run(shards)));
+    }
+
+}
@@ -4,11 +4,21 @@ package com.yahoo.messagebus;
 import com.yahoo.messagebus.test.SimpleMessage;
 import org.junit.Test;
 
+import java.util.ArrayList;
 import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
 import java.util.Queue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.junit.Assert.assertTrue;
 
 /**
@@ -104,6 +114,71 @@ public class SequencerTestCase {
         assertEquals(0, dst.size());
     }
 
+    @Test
+    public void testMultithreadedOrdering() throws InterruptedException {
+        runConcurrently(1, 1000);
+        runConcurrently(64, 1000);
+    }
+
+    /**
+     * Sends messages from several threads through a sequencer whose replies come from several other threads,
+     * verifies that messages with the same sequence id were sent in order, and returns the number of messages sent
+     */
+    static int runConcurrently(int shards, int messagesPerProducer) throws InterruptedException {
+        int producers = 4, repliers = 4, seqIdsPerProducer = 100;
+        int messageCount = producers * messagesPerProducer;
+        BlockingQueue<Message> sent = new LinkedBlockingQueue<>();
+        Map<Long, Integer> lastSentIndex = new ConcurrentHashMap<>();
+        AtomicReference<String> error = new AtomicReference<>();
+        CountDownLatch replies = new CountDownLatch(messageCount);
+        ReplyHandler source = reply -> replies.countDown();
+
+        Sequencer sequencer = new Sequencer(sent::add, shards);
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < repliers; r++) {
+            threads.add(new Thread(() -> {
+                try {
+                    while (true) {
+                        IndexedMessage msg = (IndexedMessage)sent.take();
+                        if (msg.index < 0) return;
+                        // Each message must be sent after the previous one with the same id got its reply
+                        Integer previous = lastSentIndex.put(msg.seqId, msg.index);
+                        if (previous != null && previous != msg.index - 1)
+                            error.compareAndSet(null, "Message " + msg.index + " with sequence id " + msg.seqId +
+                                                      " was sent after message " + previous);
+                        Reply reply = new EmptyReply();
+                        reply.swapState(msg);
+                        reply.setMessage(msg);
+                        reply.popHandler().handleReply(reply);
+                    }
+                } catch (InterruptedException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        }
+        for (int p = 0; p < producers; p++) {
+            long firstSeqId = (long)p * seqIdsPerProducer;
+            threads.add(new Thread(() -> {
+                int[] nextIndex = new int[seqIdsPerProducer];
+                for (int i = 0; i < messagesPerProducer; i++) {
+                    int id = i % seqIdsPerProducer;
+                    Message msg = new IndexedMessage(firstSeqId + id, nextIndex[id]++);
+                    msg.pushHandler(source);
+                    sequencer.handleMessage(msg);
+                }
+            }));
+        }
+        threads.forEach(Thread::start);
+        assertTrue(replies.await(120, TimeUnit.SECONDS));
+        for (int r = 0; r < repliers; r++)
+            sent.add(new IndexedMessage(0, -1));
+        for (Thread thread : threads)
+            thread.join();
+        assertNull(error.get());
+        assertEquals(producers * seqIdsPerProducer, lastSentIndex.size());
+        return messageCount;
+    }
+
     @SuppressWarnings("serial")
     private static class TestQueue extends LinkedList<Routable> implements ReplyHandler {
 
@@ -183,5 +258,15 @@ public class SequencerTestCase {
         }
     }
 
-}
+    private static class IndexedMessage extends MyMessage {
+
+        final int index;
+
+        IndexedMessage(long seqId, int index) {
+            super(true, seqId);
+            this.index = index;
+        }
 
+    }
+
+}
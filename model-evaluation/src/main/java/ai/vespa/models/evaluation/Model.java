@@ -9,6 +9,7 @@ import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
 import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
 import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization.ScalarOptimizer;
 import com.yahoo.tensor.TensorType;
 
 import java.util.Arrays;
@@ -50,14 +51,23 @@ public class Model {
         this(name,
              functions.stream().collect(Collectors.toMap(f -> FunctionReference.fromName(f.getName()), f -> f)),
              Collections.emptyMap(),
-             Collections.emptyList());
+             Collections.emptyList(),
+             false);
     }
 
+    /**
+     * Creates a model
+     *
+     * @param compileScalars whether the scalar parts of the functions should be compiled to primitive evaluators,
+     *                       see {@link ScalarOptimizer}
+     */
     Model(String name,
           Map<FunctionReference, ExpressionFunction> functions,
           Map<FunctionReference, ExpressionFunction> referencedFunctions,
-          List<Constant> constants) {
+          List<Constant> constants,
+          boolean compileScalars) {
         this.name = name;
+        expressionOptimizer.getOptimizer(ScalarOptimizer.class).setEnabled(compileScalars);
 
         // Build context and add missing function arguments (missing because it is legal to omit scalar type arguments)
         ImmutableMap.Builder<String, LazyArrayContext> contextBuilder = new ImmutableMap.Builder<>();
@@ -38,6 +38,9 @@ import java.util.regex.Pattern;
  */
 public class RankProfilesConfigImporter {
 
+    /** The rank property which enables compilation of scalar expressions when set to true */
+    static final String compileScalarsProperty = "vespa.java.compilescalars";
+
     private final FileAcquirer fileAcquirer;
 
     public RankProfilesConfigImporter(FileAcquirer fileAcquirer) {
@@ -72,6 +75,7 @@ public class RankProfilesConfigImporter {
         SmallConstantsInfo smallConstantsInfo = new SmallConstantsInfo();
         ExpressionFunction firstPhase = null;
         ExpressionFunction secondPhase = null;
+        boolean compileScalars = false;
         for (RankProfilesConfig.Rankprofile.Fef.Property property : profile.fef().property()) {
             Optional<FunctionReference> reference = FunctionReference.fromSerial(property.name());
             Optional<Pair<FunctionReference, String>> argumentType = FunctionReference.fromTypeArgumentSerial(property.name());
@@ -110,6 +114,9 @@ public class RankProfilesConfigImporter {
                 secondPhase = new ExpressionFunction("secondphase", new ArrayList<>(),
                                                      new RankingExpression("second-phase", property.value()));
             }
+            else if (property.name().equals(compileScalarsProperty)) {
+                compileScalars = Boolean.parseBoolean(property.value());
+            }
             else {
                 smallConstantsInfo.addIfSmallConstantInfo(property.name(), property.value());
             }
@@ -122,7 +129,7 @@ public class RankProfilesConfigImporter {
         constants.addAll(smallConstantsInfo.asConstants());
 
         try {
-            return new Model(profile.name(), functions, referencedFunctions, constants);
+            return new Model(profile.name(), functions, referencedFunctions, constants, compileScalars);
         }
         catch (RuntimeException e) {
             throw new IllegalArgumentException("Could not load model '" + profile.name() + "'", e);
@@ -7,6 +7,7 @@ import com.yahoo.filedistribution.fileacquirer.MockFileAcquirer;
 import com.yahoo.path.Path;
 import com.yahoo.searchlib.rankingexpression.ExpressionFunction;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization.CompiledScalarNode;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorType;
 import com.yahoo.vespa.config.search.RankProfilesConfig;
@@ -122,6 +123,29 @@ public class ModelsEvaluatorTest {
 
     }
 
+    @Test
+    public void testScalarCompilationIsEnabledByRankProperty() {
+        for (boolean compileScalars : new boolean[] { false, true }) {
+            RankProfilesConfig.Rankprofile.Builder profile = new RankProfilesConfig.Rankprofile.Builder().name("test");
+            profile.fef(new RankProfilesConfig.Rankprofile.Fef.Builder()
+                                .property(new RankProfilesConfig.Rankprofile.Fef.Property.Builder()
+                                                  .name("rankingExpression(fourtimessum).rankingScript")
+                                                  .value("4 * (var1 + var2)"))
+                                .property(new RankProfilesConfig.Rankprofile.Fef.Property.Builder()
+                                                  .name("vespa.java.compilescalars")
+                                                  .value(String.valueOf(compileScalars))));
+            RankProfilesConfig config = new RankProfilesConfig.Builder().rankprofile(profile).build();
+            ModelsEvaluator models = new ModelsEvaluator(config,
+                                                         new RankingConstantsConfig.Builder().build(),
+                                                         MockFileAcquirer.returnFile(null));
+
+            FunctionEvaluator function = models.evaluatorOf("test", "fourtimessum");
+            assertEquals(compileScalars, function.function().getBody().getRoot() instanceof CompiledScalarNode);
+            function.bind("var1", 1).bind("var2", 2);
+            assertEquals(12.0, function.evaluate().asDouble(), delta);
+        }
+    }
+
     // TODO: Test argument-less function
     // TODO: Test with nested functions
 
@@ -36,4 +36,9 @@ public class LockedNodeList extends NodeList {
                                                   (nodes) -> new LockedNodeList(nodes, lock)));
     }
 
+    @Override
+    protected LockedNodeList subset(List<Node> nodes) {
+        return new LockedNodeList(nodes, lock);
+    }
+
 }
@@ -7,12 +7,17 @@ import com.yahoo.config.provision.ClusterSpec;
 import com.yahoo.config.provision.NodeResources;
 import com.yahoo.config.provision.NodeType;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.EnumMap;
 import java.util.EnumSet;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.function.Predicate;
 import java.util.stream.Collectors;
@@ -23,14 +28,28 @@ import static java.util.stream.Collectors.collectingAndThen;
 /**
  * A filterable node list. The result of a filter operation is immutable.
  *
+ * Lists of at least {@link #minIndexedSize} nodes answer the most common queries, by state, owner, node type,
+ * hostname and parent hostname, from indexes built the second time such a query is made on the list,
+ * such that querying a list repeatedly (like the list of all nodes in the repository) does not scan it each time,
+ * while lists which are queried once (like most results of queries) are not indexed.
+ *
  * @author bratseth
  * @author mpolden
  */
 public class NodeList implements Iterable<Node> {
 
+    /** The smallest list for which we build indexes, rather than scanning it */
+    static final int minIndexedSize = 100;
+
     private final List<Node> nodes;
     private final boolean negate;
 
+    /** Whether an indexed query has been made on this */
+    private volatile boolean queried = false;
+
+    /** The indexes of this, or null if they are not built yet */
+    private volatile Index index = null;
+
     NodeList(List<Node> nodes) {
         this(nodes, true, false);
     }
@@ -107,12 +126,14 @@ public class NodeList implements Iterable<Node> {
 
     /** Returns the subset of nodes owned by the given application */
     public NodeList owner(ApplicationId application) {
+        if (useIndex()) return indexed(index().byOwner, List.of(application));
         return filter(node -> node.allocation().map(a -> a.owner().equals(application)).orElse(false));
     }
 
     /** Returns the subset of nodes matching the given node type(s) */
     public NodeList nodeType(NodeType first, NodeType... rest) {
         EnumSet<NodeType> nodeTypes = EnumSet.of(first, rest);
+        if (useIndex()) return indexed(index().byType, nodeTypes);
         return filter(node -> nodeTypes.contains(node.type()));
     }
 
@@ -123,6 +144,7 @@ public class NodeList implements Iterable<Node> {
 
     /** Returns the child nodes of the given parent node */
     public NodeList childrenOf(String hostname) {
+        if (useIndex()) return indexed(index().byParentHostname, List.of(hostname));
         return filter(n -> n.parentHostname().map(hostname::equals).orElse(false));
     }
 
@@ -137,6 +159,7 @@ public class NodeList implements Iterable<Node> {
 
     /** Returns the subset of nodes that are in any of the given state(s) */
     public NodeList state(Collection<Node.State> nodeStates) {
+        if (useIndex()) return indexed(index().byState, nodeStates);
         return filter(node -> nodeStates.contains(node.state()));
     }
 
@@ -151,6 +174,8 @@ public class NodeList implements Iterable<Node> {
 
     /** Returns the parent node of the given child node */
     public Optional<Node> parentOf(Node child) {
+        if (size() >= minIndexedSize && isQueriedBefore())
+            return child.parentHostname().map(parentHostname -> index().byHostname.get(parentHostname));
         return child.parentHostname()
                 .flatMap(parentHostname -> nodes.stream()
                         .filter(node -> node.hostname().equals(parentHostname))
@@ -182,11 +207,93 @@ public class NodeList implements Iterable<Node> {
         return nodes.iterator();
     }
 
+    /** Returns a list of the given nodes, which are a subset of the nodes in this. Subclasses may override this. */
+    protected NodeList subset(List<Node> nodes) {
+        return wrap(nodes);
+    }
+
     /** Create a new list containing the given nodes, without copying */
     private static NodeList wrap(List<Node> nodes) {
         return new NodeList(nodes, false, false);
     }
 
+    private boolean useIndex() {
+        return ! negate && size() >= minIndexedSize && isQueriedBefore();
+    }
+
+    /** Returns whether an indexed query has been made on this before, and records that one is made now */
+    private boolean isQueriedBefore() {
+        if (queried) return true;
+        queried = true;
+        return false;
+    }
+
+    private Index index() {
+        Index index = this.index;
+        if (index == null) // Racing threads may build identical indexes, which is harmless
+            this.index = index = new Index(nodes);
+        return index;
+    }
+
+    /** Returns the nodes having any of the given keys in the given index, in the order of this */
+    private <KEY> NodeList indexed(Map<KEY, int[]> index, Collection<KEY> keys) {
+        int[] positions;
+        if (keys.size() == 1) {
+            positions = index.getOrDefault(keys.iterator().next(), new int[0]);
+        }
+        else {
+            positions = keys.stream().distinct()
+                            .flatMapToInt(key -> Arrays.stream(index.getOrDefault(key, new int[0])))
+                            .sorted()
+                            .toArray();
+        }
+        List<Node> result = new ArrayList<>(positions.length);
+        for (int position : positions)
+            result.add(nodes.get(position));
+        return subset(result);
+    }
+
+    /** Indexes of the positions of the nodes in a list */
+    private static class Index {
+
+        private final Map<String, Node> byHostname = new HashMap<>();
+        private final Map<Node.State, int[]> byState;
+        private final Map<NodeType, int[]> byType;
+        private final Map<ApplicationId, int[]> byOwner;
+        private final Map<String, int[]> byParentHostname;
+
+        Index(List<Node> nodes) {
+            Map<Node.State, List<Integer>> byState = new EnumMap<>(Node.State.class);
+            Map<NodeType, List<Integer>> byType = new EnumMap<>(NodeType.class);
+            Map<ApplicationId, List<Integer>> byOwner = new HashMap<>();
+            Map<String, List<Integer>> byParentHostname = new HashMap<>();
+            for (int i = 0; i < nodes.size(); i++) {
+                Node node = nodes.get(i);
+                byHostname.putIfAbsent(node.hostname(), node);
+                add(i, node.state(), byState);
+                add(i, node.type(), byType);
+                if (node.allocation().isPresent())
+                    add(i, node.allocation().get().owner(), byOwner);
+                if (node.parentHostname().isPresent())
+                    add(i, node.parentHostname().get(), byParentHostname);
+            }
+            this.byState = toArrays(byState, new EnumMap<>(Node.State.class));
+            this.byType = toArrays(byType, new EnumMap<>(NodeType.class));
+            this.byOwner = toArrays(byOwner, new HashMap<>());
+            this.byParentHostname = toArrays(byParentHostname, new HashMap<>());
+        }
+
+        private static <KEY> void add(int position, KEY key, Map<KEY, List<Integer>> index) {
+            index.computeIfAbsent(key, __ -> new ArrayList<>()).add(position);
+        }
+
+        private static <KEY> Map<KEY, int[]> toArrays(Map<KEY, List<Integer>> lists, Map<KEY, int[]> arrays) {
+            lists.forEach((key, positions) -> arrays.put(key, positions.stream().mapToInt(Integer::intValue).toArray()));
+            return arrays;
+        }
+
+    }
+
     public static NodeList copyOf(List<Node> nodes) {
         return new NodeList(nodes, true, false);
     }
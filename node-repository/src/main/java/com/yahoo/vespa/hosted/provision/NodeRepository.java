@@ -188,7 +188,7 @@ public class NodeRepository extends AbstractComponent {
 
     /** Returns a filterable list of all nodes in this repository */
     public NodeList list() {
-        return NodeList.copyOf(getNodes());
+        return db.getNodeList();
     }
 
     /** Returns a locked list of all nodes in this repository */
@@ -0,0 +1,264 @@
+// Copyright Verizon Media. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.hosted.provision.autoscale;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.util.Arrays;
+
+/**
+ * An immutable, compressed sequence of measurements in a single time series.
+ *
+ * Measurements are compressed as in Facebook's Gorilla: Each timestamp is stored as the difference between its
+ * delta to the previous timestamp and the previous delta, which is zero (a single bit) for regular measurements.
+ * Each value is stored as the xor with the previous value, which is zero for unchanged values, and otherwise
+ * stored as its meaningful bits only.
+ *
+ * The time range, count and sum of the measurements are stored uncompressed, such that chunks entirely
+ * within or outside a window can be aggregated without being decompressed.
+ */
+final class MeasurementChunk {
+
+    /** The number of measurements in this */
+    final int size;
+
+    final long minTimestamp;
+    final long maxTimestamp;
+
+    /** The sum of the values in this */
+    final double sum;
+
+    private final byte[] data;
+
+    private MeasurementChunk(int size, long minTimestamp, long maxTimestamp, double sum, byte[] data) {
+        this.size = size;
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.sum = sum;
+        this.data = data;
+    }
+
+    /** Returns a chunk of the measurements in the given columns, in the range [0, size) */
+    static MeasurementChunk of(long[] timestamps, float[] values, int size) {
+        BitWriter writer = new BitWriter(size * 2 + 16);
+        long minTimestamp = Long.MAX_VALUE;
+        long maxTimestamp = Long.MIN_VALUE;
+        double sum = 0;
+
+        long previousTimestamp = 0;
+        long previousDelta = 0;
+        int previousValue = 0;
+        int previousLeading = -1;
+        int previousTrailing = 0;
+        for (int i = 0; i < size; i++) {
+            long timestamp = timestamps[i];
+            minTimestamp = Math.min(minTimestamp, timestamp);
+            maxTimestamp = Math.max(maxTimestamp, timestamp);
+            sum += values[i];
+
+            if (i == 0) {
+                writer.write(timestamp, 64);
+            }
+            else {
+                long delta = timestamp - previousTimestamp;
+                writeDeltaOfDelta(delta - previousDelta, writer);
+                previousDelta = delta;
+            }
+            previousTimestamp = timestamp;
+
+            int value = Float.floatToRawIntBits(values[i]);
+            int xor = value ^ previousValue;
+            if (xor == 0) {
+                writer.write(0, 1);
+            }
+            else {
+                int leading = Integer.numberOfLeadingZeros(xor);
+                int trailing = Integer.numberOfTrailingZeros(xor);
+                if (previousLeading >= 0 && leading >= previousLeading && trailing >= previousTrailing) {
+                    writer.write(0b10, 2);
+                    writer.write(xor >>> previousTrailing, 32 - previousLeading - previousTrailing);
+                }
+                else {
+                    int meaningful = 32 - leading - trailing;
+                    writer.write(0b11, 2);
+                    writer.write(leading, 5);
+                    writer.write(meaningful - 1, 5);
+                    writer.write(xor >>> trailing, meaningful);
+                    previousLeading = leading;
+                    previousTrailing = trailing;
+                }
+            }
+            previousValue = value;
+        }
+        return new MeasurementChunk(size, minTimestamp, maxTimestamp, sum, writer.toByteArray());
+    }
+
+    private static void writeDeltaOfDelta(long deltaOfDelta, BitWriter writer) {
+        if (deltaOfDelta == 0) {
+            writer.write(0, 1);
+        }
+        else if (fits(deltaOfDelta, 7)) {
+            writer.write(0b10, 2);
+            writer.write(deltaOfDelta, 7);
+        }
+        else if (fits(deltaOfDelta, 12)) {
+            writer.write(0b110, 3);
+            writer.write(deltaOfDelta, 12);
+        }
+        else if (fits(deltaOfDelta, 20)) {
+            writer.write(0b1110, 4);
+            writer.write(deltaOfDelta, 20);
+        }
+        else if (fits(deltaOfDelta, 32)) {
+            writer.write(0b11110, 5);
+            writer.write(deltaOfDelta, 32);
+        }
+        else {
+            writer.write(0b11111, 5);
+            writer.write(deltaOfDelta, 64);
+        }
+    }
+
+    private static long readDeltaOfDelta(BitReader reader) {
+        if (reader.read(1) == 0) return 0;
+        if (reader.read(1) == 0) return reader.readSigned(7);
+        if (reader.read(1) == 0) return reader.readSigned(12);
+        if (reader.read(1) == 0) return reader.readSigned(20);
+        if (reader.read(1) == 0) return reader.readSigned(32);
+        return reader.read(64);
+    }
+
+    /** Returns whether the given value can be represented as a two's complement number of the given number of bits */
+    private static boolean fits(long value, int bits) {
+        long limit = 1L << (bits - 1);
+        return value >= -limit && value < limit;
+    }
+
+    /** Calls the given consumer with each measurement in this, in the order they were added */
+    void forEach(MeasurementConsumer consumer) {
+        BitReader reader = new BitReader(data);
+        long timestamp = 0;
+        long delta = 0;
+        int value = 0;
+        int leading = 0;
+        int trailing = 0;
+        for (int i = 0; i < size; i++) {
+            if (i == 0) {
+                timestamp = reader.read(64);
+            }
+            else {
+                delta += readDeltaOfDelta(reader);
+                timestamp += delta;
+            }
+
+            if (reader.read(1) == 1) {
+                if (reader.read(1) == 1) {
+                    leading = (int) reader.read(5);
+                    int meaningful = (int) reader.read(5) + 1;
+                    trailing = 32 - leading - meaningful;
+                }
+                value ^= (int) reader.read(32 - leading - trailing) << trailing;
+            }
+            consumer.accept(timestamp, Float.intBitsToFloat(value));
+        }
+    }
+
+    /** Returns a chunk of the measurements in this which are at or after the given timestamp, or null if none are */
+    MeasurementChunk retainFrom(long oldestTimestamp) {
+        if (minTimestamp >= oldestTimestamp) return this;
+        if (maxTimestamp < oldestTimestamp) return null;
+
+        long[] timestamps = new long[size];
+        float[] values = new float[size];
+        int[] retained = new int[1];
+        forEach((timestamp, value) -> {
+            if (timestamp < oldestTimestamp) return;
+            timestamps[retained[0]] = timestamp;
+            values[retained[0]++] = value;
+        });
+        return of(timestamps, values, retained[0]);
+    }
+
+    /** Returns the number of bytes used by the compressed measurements in this */
+    int bytes() { return data.length; }
+
+    void writeTo(DataOutput out) throws IOException {
+        out.writeInt(size);
+        out.writeLong(minTimestamp);
+        out.writeLong(maxTimestamp);
+        out.writeDouble(sum);
+        out.writeInt(data.length);
+        out.write(data);
+    }
+
+    static MeasurementChunk readFrom(DataInput in) throws IOException {
+        int size = in.readInt();
+        long minTimestamp = in.readLong();
+        long maxTimestamp = in.readLong();
+        double sum = in.readDouble();
+        byte[] data = new byte[in.readInt()];
+        in.readFully(data);
+        return new MeasurementChunk(size, minTimestamp, maxTimestamp, sum, data);
+    }
+
+    interface MeasurementConsumer {
+
+        void accept(long timestamp, float value);
+
+    }
+
+    private static class BitWriter {
+
+        private byte[] bytes;
+        private long bits = 0;
+
+        BitWriter(int initialBytes) {
+            bytes = new byte[initialBytes];
+        }
+
+        /** Writes the given number of lowest bits of the given value, most significant first */
+        void write(long value, int count) {
+            for (int i = count - 1; i >= 0; i--) {
+                int index = (int) (bits >>> 3);
+                if (index == bytes.length)
+                    bytes = Arrays.copyOf(bytes, bytes.length * 2);
+                if (((value >>> i) & 1) != 0)
+                    bytes[index] |= (byte) (0x80 >>> (bits & 7));
+                bits++;
+            }
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(bytes, (int) ((bits + 7) >>> 3));
+        }
+
+    }
+
+    private static class BitReader {
+
+        private final byte[] bytes;
+        private long bits = 0;
+
+        BitReader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        /** Reads the given number of bits as an unsigned value */
+        long read(int count) {
+            long value = 0;
+            for (int i = 0; i < count; i++) {
+                int bit = (bytes[(int) (bits >>> 3)] >>> (7 - (bits & 7))) & 1;
+                value = (value << 1) | bit;
+                bits++;
+            }
+            return value;
+        }
+
+        /** Reads the given number of bits as a two's complement value */
+        long readSigned(int count) {
+            return read(count) << (64 - count) >> (64 - count);
+        }
+
+    }
+
+}
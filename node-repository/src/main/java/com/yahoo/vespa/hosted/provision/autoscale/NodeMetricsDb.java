@@ -1,66 +1,86 @@
 // Copyright Verizon Media. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.vespa.hosted.provision.autoscale;
 
+import com.google.inject.Inject;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
 import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 import java.util.stream.Collectors;
-import java.util.stream.Stream;
 
 /**
  * An in-memory time-series "database" of node metrics.
- * Thread model: One writer, many readers.
+ * Thread model: One writer, many readers. Neither writing nor reading takes locks.
+ *
+ * Each time series (host and resource) is stored as columns of timestamps and values, which are compressed into
+ * immutable chunks of {@link #chunkSize} measurements as they fill up, see {@link MeasurementChunk}.
+ * Readers work on an immutable snapshot of the chunks and the latest, uncompressed measurements of a series.
+ *
+ * If created with a directory, the db is stored to it on each {@link #gc}, and read from it when created,
+ * such that measurements survive restarts.
  *
  * @author bratseth
  */
 public class NodeMetricsDb {
 
+    private static final Logger log = Logger.getLogger(NodeMetricsDb.class.getName());
+
     private static final Duration dbWindow = Duration.ofHours(24);
 
-    /** Measurements by key. Each list of measurements is sorted by increasing timestamp */
-    private Map<MeasurementKey, List<Measurement>> db = new HashMap<>();
+    /** The number of measurements of a series to compress together */
+    static final int chunkSize = 128;
+
+    private static final String fileName = "node-metrics.db";
+    private static final int fileVersion = 1;
+
+    /** Measurements by key */
+    private final Map<MeasurementKey, Series> db = new ConcurrentHashMap<>();
+
+    private final Optional<Path> directory;
 
-    /** Lock all access for now since we modify lists inside a map */
-    private final Object lock = new Object();
+    @Inject
+    public NodeMetricsDb() {
+        this.directory = Optional.empty();
+    }
+
+    /** Creates a db which is stored in the given directory, and is read from it if it exists */
+    public NodeMetricsDb(Path directory) {
+        this.directory = Optional.of(directory);
+        read(directory.resolve(fileName));
+    }
 
     /** Add a measurement to this */
     public void add(Collection<NodeMetrics.MetricValue> metricValues) {
-        synchronized (lock) {
-            for (var value : metricValues) {
-                List<Measurement> measurements = db.computeIfAbsent(new MeasurementKey(value.hostname(),
-                                                                                       Resource.fromMetric(value.name())),
-                                                                    (__) -> new ArrayList<>());
-                measurements.add(new Measurement(value.timestamp(), value.value()));
-            }
+        for (var value : metricValues) {
+            db.computeIfAbsent(new MeasurementKey(value.hostname(), Resource.fromMetric(value.name())), __ -> new Series())
+              .add(value.timestamp(), value.value());
         }
     }
 
     /** Must be called intermittently (as long as add is called) to gc old measurements */
     public void gc(Clock clock) {
-        synchronized (lock) {
-            // TODO: We may need to do something more complicated to avoid spending too much memory to
-            // lower the measurement interval (see NodeRepositoryMaintenance)
-            // Each measurement is Object + long + float = 16 + 8 + 4 = 28 bytes
-            // 24 hours with 1k nodes and 3 resources and 1 measurement/sec is about 10Gb
-
-            long oldestTimestamp = clock.instant().minus(dbWindow).toEpochMilli();
-            for (Iterator<List<Measurement>> i = db.values().iterator(); i.hasNext(); ) {
-                List<Measurement> measurements = i.next();
-
-                while (!measurements.isEmpty() && measurements.get(0).timestamp < oldestTimestamp)
-                    measurements.remove(0);
-
-                if (measurements.isEmpty())
-                    i.remove();
-            }
-        }
+        long oldestTimestamp = clock.instant().minus(dbWindow).toEpochMilli();
+        db.entrySet().removeIf(entry -> ! entry.getValue().retainFrom(oldestTimestamp));
+        directory.ifPresent(directory -> write(directory.resolve(fileName)));
     }
 
     /** Returns a window within which we can ask for specific information from this db */
@@ -68,6 +88,11 @@ public class NodeMetricsDb {
         return new Window(startTime, resource, hostnames);
     }
 
+    /** Returns the number of bytes used by the compressed measurements in this, for diagnostics */
+    long compressedBytes() {
+        return db.values().stream().flatMap(series -> Arrays.stream(series.snapshot.chunks)).mapToLong(MeasurementChunk::bytes).sum();
+    }
+
     public class Window {
 
         private final long startTime;
@@ -79,47 +104,242 @@ public class NodeMetricsDb {
         }
 
         public int measurementCount() {
-            synchronized (lock) {
-                return (int) keys.stream()
-                                 .flatMap(key -> db.getOrDefault(key, List.of()).stream())
-                                 .filter(measurement -> measurement.timestamp >= startTime)
-                                 .count();
-            }
+            return (int) aggregate().count;
         }
 
         /** Returns the count of hostnames which have measurements in this window */
         public int hostnames() {
-            synchronized (lock) {
-                int count = 0;
-                for (MeasurementKey key : keys) {
-                    List<Measurement> measurements = db.get(key);
-                    if (measurements == null || measurements.isEmpty()) continue;
-
-                    if (measurements.get(measurements.size() - 1).timestamp >= startTime)
-                        count++;
-                }
-                return count;
+            int count = 0;
+            for (MeasurementKey key : keys) {
+                Series series = db.get(key);
+                if (series != null && series.snapshot.maxTimestamp >= startTime)
+                    count++;
             }
+            return count;
         }
 
         public double average() {
-            synchronized (lock) {
-                double sum = 0;
-                int count = 0;
-                for (MeasurementKey key : keys) {
-                    List<Measurement> measurements = db.get(key);
-                    if (measurements == null) continue;
-
-                    int index = measurements.size() - 1;
-                    while (index >= 0 && measurements.get(index).timestamp >= startTime) {
-                        sum += measurements.get(index).value;
-                        count++;
-
-                        index--;
-                    }
+            Aggregate aggregate = aggregate();
+            return aggregate.sum / aggregate.count;
+        }
+
+        private Aggregate aggregate() {
+            Aggregate aggregate = new Aggregate();
+            for (MeasurementKey key : keys) {
+                Series series = db.get(key);
+                if (series != null)
+                    series.snapshot.aggregateFrom(startTime, aggregate);
+            }
+            return aggregate;
+        }
+
+    }
+
+    private static class Aggregate {
+
+        long count = 0;
+        double sum = 0;
+
+        void add(double value) {
+            count++;
+            sum += value;
+        }
+
+    }
+
+    private void write(Path file) {
+        try {
+            Files.createDirectories(file.getParent());
+            Path tmpFile = file.resolveSibling(fileName + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(tmpFile)))) {
+                out.writeInt(fileVersion);
+                Map<MeasurementKey, Series> series = Map.copyOf(db);
+                out.writeInt(series.size());
+                for (var entry : series.entrySet()) {
+                    out.writeUTF(entry.getKey().hostname);
+                    out.writeUTF(entry.getKey().resource.name());
+                    entry.getValue().snapshot.writeTo(out);
                 }
-                return sum / count;
             }
+            Files.move(tmpFile, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        }
+        catch (IOException e) {
+            throw new UncheckedIOException("Could not write node metrics to " + file, e);
+        }
+    }
+
+    private void read(Path file) {
+        if ( ! Files.exists(file)) return;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != fileVersion) return;
+            int count = in.readInt();
+            for (int i = 0; i < count; i++) {
+                MeasurementKey key = new MeasurementKey(in.readUTF(), Resource.valueOf(in.readUTF()));
+                db.put(key, new Series(Snapshot.readFrom(in)));
+            }
+        }
+        catch (IOException | IllegalArgumentException e) {
+            log.log(Level.WARNING, "Could not read node metrics from " + file + ", starting from scratch", e);
+            db.clear();
+        }
+    }
+
+    /**
+     * The measurements of a single host and resource. Measurements are added to uncompressed columns, which are
+     * compressed to a chunk when full. Readers access the measurements through the current, immutable snapshot.
+     */
+    private static class Series {
+
+        private volatile Snapshot snapshot;
+
+        Series() {
+            this(new Snapshot(new MeasurementChunk[0], new Columns(chunkSize), Long.MIN_VALUE));
+        }
+
+        Series(Snapshot snapshot) {
+            this.snapshot = snapshot;
+        }
+
+        void add(long timestamp, float value) {
+            Snapshot current = snapshot;
+            if (current.latest.isFull()) {
+                MeasurementChunk[] chunks = Arrays.copyOf(current.chunks, current.chunks.length + 1);
+                chunks[chunks.length - 1] = current.latest.compress();
+                current = new Snapshot(chunks, new Columns(chunkSize), current.maxTimestamp);
+            }
+            current.latest.add(timestamp, value);
+            if (timestamp > current.maxTimestamp || current != snapshot)
+                snapshot = new Snapshot(current.chunks, current.latest, Math.max(timestamp, current.maxTimestamp));
+        }
+
+        /** Removes measurements before the given timestamp, and returns whether this still has measurements */
+        boolean retainFrom(long oldestTimestamp) {
+            Snapshot current = snapshot;
+            List<MeasurementChunk> chunks = new ArrayList<>();
+            boolean changed = false;
+            for (MeasurementChunk chunk : current.chunks) {
+                MeasurementChunk retained = chunk.retainFrom(oldestTimestamp);
+                if (retained != null && retained.size > 0)
+                    chunks.add(retained);
+                changed |= retained != chunk;
+            }
+            Columns latest = current.latest.retainFrom(oldestTimestamp);
+            if (changed || latest != current.latest)
+                snapshot = new Snapshot(chunks.toArray(new MeasurementChunk[0]), latest, current.maxTimestamp);
+            return ! chunks.isEmpty() || latest.size() > 0;
+        }
+
+    }
+
+    /** An immutable view of the measurements of a series */
+    private static class Snapshot {
+
+        private final MeasurementChunk[] chunks;
+
+        /** The latest measurements. These may be added to, but measurements visible to a reader are not changed */
+        private final Columns latest;
+
+        private final long maxTimestamp;
+
+        Snapshot(MeasurementChunk[] chunks, Columns latest, long maxTimestamp) {
+            this.chunks = chunks;
+            this.latest = latest;
+            this.maxTimestamp = maxTimestamp;
+        }
+
+        void aggregateFrom(long startTime, Aggregate aggregate) {
+            if (maxTimestamp < startTime) return;
+            for (MeasurementChunk chunk : chunks) {
+                if (chunk.maxTimestamp < startTime) continue;
+                if (chunk.minTimestamp >= startTime) {
+                    aggregate.count += chunk.size;
+                    aggregate.sum += chunk.sum;
+                }
+                else {
+                    chunk.forEach((timestamp, value) -> {
+                        if (timestamp >= startTime)
+                            aggregate.add(value);
+                    });
+                }
+            }
+            latest.aggregateFrom(startTime, aggregate);
+        }
+
+        void writeTo(DataOutputStream out) throws IOException {
+            out.writeLong(maxTimestamp);
+            boolean hasLatest = latest.size() > 0;
+            out.writeInt(chunks.length + (hasLatest ? 1 : 0));
+            for (MeasurementChunk chunk : chunks)
+                chunk.writeTo(out);
+            if (hasLatest)
+                latest.compress().writeTo(out);
+        }
+
+        static Snapshot readFrom(DataInputStream in) throws IOException {
+            long maxTimestamp = in.readLong();
+            int count = in.readInt();
+            MeasurementChunk[] chunks = new MeasurementChunk[count];
+            for (int i = 0; i < count; i++)
+                chunks[i] = MeasurementChunk.readFrom(in);
+            return new Snapshot(chunks, new Columns(chunkSize), maxTimestamp);
+        }
+
+    }
+
+    /**
+     * Uncompressed columns of measurements, which are added to by a single writer.
+     * The size is published after the measurement is written, such that readers see only complete measurements.
+     */
+    private static class Columns {
+
+        private final long[] timestamps;
+        private final float[] values;
+        private volatile int size = 0;
+
+        Columns(int capacity) {
+            timestamps = new long[capacity];
+            values = new float[capacity];
+        }
+
+        boolean isFull() { return size == timestamps.length; }
+
+        int size() { return size; }
+
+        void add(long timestamp, float value) {
+            int index = size;
+            timestamps[index] = timestamp;
+            values[index] = value;
+            size = index + 1;
+        }
+
+        MeasurementChunk compress() {
+            return MeasurementChunk.of(timestamps, values, size);
+        }
+
+        void aggregateFrom(long startTime, Aggregate aggregate) {
+            int size = this.size;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= startTime)
+                    aggregate.add(values[i]);
+            }
+        }
+
+        /** Returns this if it has no measurements before the given timestamp, or a copy of the rest of them otherwise */
+        Columns retainFrom(long oldestTimestamp) {
+            int size = this.size;
+            int retained = 0;
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= oldestTimestamp)
+                    retained++;
+            }
+            if (retained == size) return this;
+
+            Columns copy = new Columns(timestamps.length);
+            for (int i = 0; i < size; i++) {
+                if (timestamps[i] >= oldestTimestamp)
+                    copy.add(timestamps[i], values[i]);
+            }
+            return copy;
         }
 
     }
@@ -151,19 +371,4 @@ public class NodeMetricsDb {
 
     }
 
-    private static class Measurement {
-
-        /** The time of this measurement in epoch millis */
-        private final long timestamp;
-
-        /** The measured value */
-        private final float value;
-
-        public Measurement(long timestamp, float value) {
-            this.timestamp = timestamp;
-            this.value = value;
-        }
-
-    }
-
 }
@@ -20,6 +20,7 @@ import com.yahoo.vespa.curator.recipes.CuratorCounter;
 import com.yahoo.vespa.curator.transaction.CuratorOperations;
 import com.yahoo.vespa.curator.transaction.CuratorTransaction;
 import com.yahoo.vespa.hosted.provision.Node;
+import com.yahoo.vespa.hosted.provision.NodeList;
 import com.yahoo.vespa.hosted.provision.lb.LoadBalancer;
 import com.yahoo.vespa.hosted.provision.lb.LoadBalancerId;
 import com.yahoo.vespa.hosted.provision.node.Agent;
@@ -29,14 +30,17 @@ import java.time.Clock;
 import java.time.Duration;
 import java.time.Instant;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.Set;
 import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.function.Predicate;
 import java.util.logging.Level;
@@ -71,10 +75,15 @@ public class CuratorDatabaseClient {
     private final Clock clock;
     private final Zone zone;
     private final CuratorCounter provisionIndexCounter;
+    private final boolean useCache;
+
+    /** The nodes read in the latest session */
+    private final AtomicReference<NodeSnapshot> nodeSnapshot = new AtomicReference<>();
 
     public CuratorDatabaseClient(NodeFlavors flavors, Curator curator, Clock clock, Zone zone, boolean useCache) {
         this.nodeSerializer = new NodeSerializer(flavors);
         this.zone = zone;
+        this.useCache = useCache;
         this.curatorDatabase = new CuratorDatabase(curator, root, useCache);
         this.clock = clock;
         this.provisionIndexCounter = new CuratorCounter(curator, root.append("provisionIndexCounter").getAbsolute());
@@ -256,17 +265,7 @@ public class CuratorDatabaseClient {
      * If no states are given this returns all nodes.
      */
     public List<Node> getNodes(Node.State ... states) {
-        List<Node> nodes = new ArrayList<>();
-        if (states.length == 0)
-            states = Node.State.values();
-        CuratorDatabase.Session session = curatorDatabase.getSession();
-        for (Node.State state : states) {
-            for (String hostname : session.getChildren(toPath(state))) {
-                Optional<Node> node = getNode(session, hostname, state);
-                node.ifPresent(nodes::add); // node might disappear between getChildren and getNode
-            }
-        }
-        return nodes;
+        return inStates(getNodeList(), states);
     }
 
     /** 
@@ -274,9 +273,32 @@ public class CuratorDatabaseClient {
      * If no states are given this returns all nodes.
      */
     public List<Node> getNodes(ApplicationId applicationId, Node.State ... states) {
-        List<Node> nodes = getNodes(states);
-        nodes.removeIf(node -> ! node.allocation().isPresent() || ! node.allocation().get().owner().equals(applicationId));
-        return nodes;
+        return inStates(getNodeList().owner(applicationId), states);
+    }
+
+    /** Returns the nodes of the given list which are in one of the given states, ordered by state in the given order */
+    private List<Node> inStates(NodeList nodes, Node.State ... states) {
+        if (states.length == 0) return new ArrayList<>(nodes.asList());
+
+        List<Node> nodesInStates = new ArrayList<>();
+        for (Node.State state : states)
+            nodesInStates.addAll(nodes.state(state).asList());
+        return nodesInStates;
+    }
+
+    /**
+     * Returns an immutable list of all nodes, ordered by state. This is indexed for the queries of {@link NodeList},
+     * and is only read from ZooKeeper again when the database has changed, if the curator database cache is used.
+     * Nodes whose data has not changed since the previous read are not deserialized again.
+     */
+    public NodeList getNodeList() {
+        CuratorDatabase.Session session = curatorDatabase.getSession();
+        NodeSnapshot snapshot = nodeSnapshot.get();
+        if (useCache && snapshot != null && snapshot.session == session) return snapshot.nodes;
+
+        snapshot = new NodeSnapshot(session, snapshot);
+        nodeSnapshot.set(snapshot);
+        return snapshot.nodes;
     }
 
     /**
@@ -553,4 +575,48 @@ public class CuratorDatabaseClient {
                 .mapToObj(i -> firstProvisionIndex + i)
                 .collect(Collectors.toList());
     }
+    /** All the nodes in a curator database session, together with the data they were read from */
+    private class NodeSnapshot {
+
+        private final CuratorDatabase.Session session;
+        private final NodeList nodes;
+        private final Map<Path, NodeData> data;
+
+        /** Reads the nodes of the given session, reusing the nodes of the given previous snapshot whose data is unchanged */
+        NodeSnapshot(CuratorDatabase.Session session, NodeSnapshot previous) {
+            List<Node> nodes = new ArrayList<>();
+            Map<Path, NodeData> data = new HashMap<>();
+            for (Node.State state : Node.State.values()) {
+                for (String hostname : session.getChildren(toPath(state))) {
+                    Path path = toPath(state, hostname);
+                    Optional<byte[]> nodeData = session.getData(path);
+                    if (nodeData.isEmpty()) continue; // node might disappear between getChildren and getData
+
+                    NodeData previousData = previous == null ? null : previous.data.get(path);
+                    NodeData current = previousData != null && Arrays.equals(previousData.data, nodeData.get())
+                                       ? previousData
+                                       : new NodeData(nodeData.get(), nodeSerializer.fromJson(state, nodeData.get()));
+                    nodes.add(current.node);
+                    data.put(path, current);
+                }
+            }
+            this.session = session;
+            this.nodes = NodeList.copyOf(nodes);
+            this.data = data;
+        }
+
+    }
+
+    private static class NodeData {
+
+        private final byte[] data;
+        private final Node node;
+
+        NodeData(byte[] data, Node node) {
+            this.data = data;
+            this.node = node;
+        }
+
+    }
+
 }
@@ -0,0 +1,44 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.hosted.provision;
+
+import com.yahoo.config.provision.ApplicationId;
+
+import java.util.List;
+
+/**
+ * Prints the time used by queries in a large zone using the indexes of {@link NodeList}, and by filtering.
+ */
+public class NodeListBenchmark {
+
+    public static void main(String[] args) {
+        List<ApplicationId> applications = NodeListTest.applications;
+        NodeList nodes = NodeListTest.zone(1000, 15);
+        int rounds = 1000;
+        long found = 0;
+
+        long startTime = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            found += nodes.childrenOf("host" + (i % 1000)).size();
+            found += nodes.owner(applications.get(i % applications.size())).state(Node.State.active).size();
+            found += nodes.state(Node.State.ready).size();
+        }
+        long indexedMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        startTime = System.nanoTime();
+        for (int i = 0; i < rounds; i++) {
+            String hostname = "host" + (i % 1000);
+            ApplicationId application = applications.get(i % applications.size());
+            found -= nodes.filter(node -> node.parentHostname().map(hostname::equals).orElse(false)).size();
+            found -= nodes.filter(node -> node.allocation().isPresent() && node.allocation().get().owner().equals(application))
+                          .filter(node -> node.state() == Node.State.active).size();
+            found -= nodes.filter(node -> node.state() == Node.State.ready).size();
+        }
+        long filteredMillis = (System.nanoTime() - startTime) / 1_000_000;
+
+        if (found != 0)
+            throw new IllegalStateException("Indexed queries and filtering returned different nodes");
+        System.out.println(rounds + " rounds of queries in a zone of " + nodes.size() + " nodes took " +
+                           indexedMillis + " ms using indexes and " + filteredMillis + " ms filtering");
+    }
+
+}
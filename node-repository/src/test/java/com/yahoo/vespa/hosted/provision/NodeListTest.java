@@ -0,0 +1,99 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.vespa.hosted.provision;
+
+import com.yahoo.component.Vtag;
+import com.yahoo.config.provision.ApplicationId;
+import com.yahoo.config.provision.ClusterMembership;
+import com.yahoo.config.provision.Flavor;
+import com.yahoo.config.provision.NodeResources;
+import com.yahoo.config.provision.NodeType;
+import com.yahoo.vespa.hosted.provision.node.History;
+import com.yahoo.vespa.hosted.provision.node.IP;
+import com.yahoo.vespa.hosted.provision.node.Reports;
+import com.yahoo.vespa.hosted.provision.node.Status;
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class NodeListTest {
+
+    private static final NodeResources resources = new NodeResources(1, 4, 10, 1);
+    static final List<ApplicationId> applications = List.of(ApplicationId.from("t1", "a1", "default"),
+                                                            ApplicationId.from("t2", "a2", "default"),
+                                                            ApplicationId.from("t3", "a3", "default"));
+
+    @Test
+    public void indexed_queries_return_the_same_nodes_as_filtering() {
+        NodeList nodes = zone(20, 9);
+        assertTrue(nodes.size() >= NodeList.minIndexedSize);
+        NodeList small = NodeList.copyOf(nodes.asList().subList(0, NodeList.minIndexedSize - 1));
+
+        for (NodeList list : List.of(nodes, small)) {
+            for (Node.State state : Node.State.values())
+                assertEquals(list.filter(node -> node.state() == state).asList(), list.state(state).asList());
+            assertEquals(list.filter(node -> node.state() == Node.State.active || node.state() == Node.State.dirty).asList(),
+                         list.state(Node.State.dirty, Node.State.active).asList());
+            assertEquals(list.filter(node -> node.state() != Node.State.active).asList(),
+                         list.not().state(Node.State.active).asList());
+            for (ApplicationId application : applications)
+                assertEquals(list.filter(node -> node.allocation().isPresent() && node.allocation().get().owner().equals(application)).asList(),
+                             list.owner(application).asList());
+            assertEquals(list.filter(node -> node.type() == NodeType.host).asList(), list.nodeType(NodeType.host).asList());
+            assertEquals(list.asList(), list.nodeType(NodeType.tenant, NodeType.host).asList());
+            assertEquals(List.of(), list.nodeType(NodeType.proxy).asList());
+            assertEquals(list.filter(node -> node.parentHostname().equals(Optional.of("host3"))).asList(),
+                         list.childrenOf("host3").asList());
+            assertEquals(List.of(), list.childrenOf("unknown").asList());
+
+            List<Node> children = list.nodeType(NodeType.tenant).asList();
+            for (Node child : children)
+                assertEquals(child.parentHostname(), list.parentOf(child).map(Node::hostname));
+            assertEquals(children.stream().map(child -> child.parentHostname().get()).collect(Collectors.toList()),
+                         list.parentsOf(children).stream().map(Node::hostname).collect(Collectors.toList()));
+        }
+    }
+
+    @Test
+    public void indexed_queries_of_locked_lists_are_locked() {
+        NodeList nodes = new LockedNodeList(zone(20, 9).asList(), () -> {});
+        assertTrue(nodes.state(Node.State.active) instanceof LockedNodeList);
+        assertTrue(nodes.owner(applications.get(0)) instanceof LockedNodeList);
+        assertTrue(nodes.childrenOf("host1") instanceof LockedNodeList);
+    }
+
+    /** Returns the nodes of a synthetic zone with the given number of hosts with the given number of children each */
+    static NodeList zone(int hosts, int childrenPerHost) {
+        List<Node> nodes = new ArrayList<>();
+        Node.State[] childStates = { Node.State.active, Node.State.active, Node.State.ready, Node.State.dirty, Node.State.failed };
+        for (int host = 0; host < hosts; host++) {
+            String hostname = "host" + host;
+            nodes.add(node(hostname, Optional.empty(), NodeType.host, Node.State.active));
+            for (int child = 0; child < childrenPerHost; child++) {
+                Node.State state = childStates[(host + child) % childStates.length];
+                Node node = node(hostname + "-" + child, Optional.of(hostname), NodeType.tenant, state);
+                if (EnumSet.of(Node.State.active, Node.State.dirty).contains(state))
+                    node = node.allocate(applications.get((host + child) % applications.size()),
+                                         ClusterMembership.from("container/id1/0/" + child, Vtag.currentVersion),
+                                         resources, Instant.EPOCH);
+                nodes.add(node);
+            }
+        }
+        return NodeList.copyOf(nodes);
+    }
+
+    private static Node node(String hostname, Optional<String> parentHostname, NodeType type, Node.State state) {
+        return new Node("id-" + hostname, new IP.Config(Set.of("::1"), Set.of()), hostname, parentHostname,
+                        new Flavor(resources), Status.initial(), state, Optional.empty(), History.empty(), type,
+                        new Reports(), Optional.empty(), Optional.empty());
+    }
+
+}
@@ -2,16 +2,25 @@
 package com.yahoo.vespa.hosted.provision.autoscale;
 
 import com.yahoo.test.ManualClock;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 import java.time.Duration;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
+import java.util.Random;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
 
 public class NodeMetricsDbTest {
 
+    @Rule
+    public TemporaryFolder tmpFolder = new TemporaryFolder();
+
     @Test
     public void testNodeMetricsDb() {
         ManualClock clock = new ManualClock();
@@ -30,4 +39,106 @@ public class NodeMetricsDbTest {
         assertEquals( 0, db.getWindow(clock.instant().minus(Duration.ofHours(30)), Resource.memory, List.of("host0")).measurementCount());
     }
 
+    @Test
+    public void testWindowsOverCompressedMeasurements() {
+        ManualClock clock = new ManualClock();
+        NodeMetricsDb db = new NodeMetricsDb();
+        // 1000 minutes of measurements of two hosts, spanning several compressed chunks
+        for (int i = 0; i < 1000; i++) {
+            db.add(List.of(new NodeMetrics.MetricValue("host0", "cpu.util", clock.instant().toEpochMilli(), i % 10 / 10f),
+                           new NodeMetrics.MetricValue("host1", "cpu.util", clock.instant().toEpochMilli(), 0.5f)));
+            clock.advance(Duration.ofMinutes(1));
+        }
+
+        for (int minutes : List.of(1, 100, 128, 500, 999, 1000, 2000)) {
+            var window = db.getWindow(clock.instant().minus(Duration.ofMinutes(minutes)), Resource.cpu, List.of("host0", "host1"));
+            int count = Math.min(minutes, 1000);
+            double expectedSum = 0.5 * count;
+            for (int i = 1000 - count; i < 1000; i++)
+                expectedSum += i % 10 / 10f;
+            assertEquals(2 * count, window.measurementCount());
+            assertEquals(2, window.hostnames());
+            assertEquals(expectedSum / (2 * count), window.average(), 0.000001);
+        }
+        assertEquals(0, db.getWindow(clock.instant(), Resource.cpu, List.of("host0")).hostnames());
+
+        db.gc(clock);
+        assertEquals(2000, db.getWindow(clock.instant().minus(Duration.ofHours(24)), Resource.cpu, List.of("host0", "host1")).measurementCount());
+        clock.advance(Duration.ofHours(24).minusMinutes(500));
+        db.gc(clock);
+        assertEquals(1000, db.getWindow(clock.instant().minus(Duration.ofHours(48)), Resource.cpu, List.of("host0", "host1")).measurementCount());
+        clock.advance(Duration.ofHours(1));
+        db.gc(clock);
+        assertEquals(880, db.getWindow(clock.instant().minus(Duration.ofHours(48)), Resource.cpu, List.of("host0", "host1")).measurementCount());
+        clock.advance(Duration.ofHours(24));
+        db.gc(clock);
+        assertEquals(0, db.getWindow(clock.instant().minus(Duration.ofHours(48)), Resource.cpu, List.of("host0", "host1")).hostnames());
+    }
+
+    @Test
+    public void testCompression() {
+        Random random = new Random(42);
+        int size = NodeMetricsDb.chunkSize;
+        long[] timestamps = new long[size];
+        float[] values = new float[size];
+
+        // Regular measurements compress to a few bits each
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = 1600000000000L + i * 60_000;
+            values[i] = i % 8 == 0 ? 0.25f : 0.5f;
+        }
+        MeasurementChunk regular = assertRoundTrip(timestamps, values, size);
+        assertTrue("Compressed to " + regular.bytes() + " bytes", regular.bytes() < size);
+
+        // Irregular measurements are still stored exactly
+        for (int i = 0; i < size; i++) {
+            timestamps[i] = (i == 0 ? -1000 : timestamps[i - 1]) + random.nextInt(i % 3 == 0 ? 10 : 10_000_000) - (i % 17 == 0 ? 5_000_000 : 0);
+            values[i] = i % 5 == 0 ? Float.intBitsToFloat(random.nextInt()) : random.nextFloat();
+        }
+        timestamps[size / 2] = Long.MIN_VALUE / 3;
+        assertRoundTrip(timestamps, values, size);
+        assertRoundTrip(timestamps, values, 1);
+        assertRoundTrip(timestamps, values, 0);
+    }
+
+    @Test
+    public void testPersistence() {
+        ManualClock clock = new ManualClock();
+        NodeMetricsDb db = new NodeMetricsDb(tmpFolder.getRoot().toPath());
+        for (int i = 0; i < 300; i++) {
+            db.add(List.of(new NodeMetrics.MetricValue("host0", "cpu.util", clock.instant().toEpochMilli(), 0.25f),
+                           new NodeMetrics.MetricValue("host0", "memory.util", clock.instant().toEpochMilli(), 0.75f)));
+            clock.advance(Duration.ofMinutes(1));
+        }
+        db.gc(clock);
+        assertTrue(db.compressedBytes() > 0);
+
+        NodeMetricsDb restored = new NodeMetricsDb(tmpFolder.getRoot().toPath());
+        for (Resource resource : List.of(Resource.cpu, Resource.memory)) {
+            var window = restored.getWindow(clock.instant().minus(Duration.ofMinutes(200)), resource, List.of("host0"));
+            assertEquals(200, window.measurementCount());
+            assertEquals(1, window.hostnames());
+            assertEquals(resource == Resource.cpu ? 0.25 : 0.75, window.average(), 0.000001);
+        }
+        restored.add(List.of(new NodeMetrics.MetricValue("host0", "cpu.util", clock.instant().toEpochMilli(), 0.25f)));
+        assertEquals(301, restored.getWindow(clock.instant().minus(Duration.ofHours(1)).minus(Duration.ofHours(5)),
+                                             Resource.cpu, List.of("host0")).measurementCount());
+    }
+
+    private MeasurementChunk assertRoundTrip(long[] timestamps, float[] values, int size) {
+        MeasurementChunk chunk = MeasurementChunk.of(timestamps, values, size);
+        assertEquals(size, chunk.size);
+        long[] decodedTimestamps = new long[size];
+        float[] decodedValues = new float[size];
+        int[] index = new int[1];
+        chunk.forEach((timestamp, value) -> {
+            decodedTimestamps[index[0]] = timestamp;
+            decodedValues[index[0]++] = value;
+        });
+        assertArrayEquals(Arrays.copyOf(timestamps, size), decodedTimestamps);
+        for (int i = 0; i < size; i++)
+            assertEquals(Float.floatToRawIntBits(values[i]), Float.floatToRawIntBits(decodedValues[i]));
+        return chunk;
+    }
+
 }
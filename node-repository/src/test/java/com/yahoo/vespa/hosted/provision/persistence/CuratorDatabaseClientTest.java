@@ -3,7 +3,9 @@ package com.yahoo.vespa.hosted.provision.persistence;
 
 import com.yahoo.config.provision.ApplicationId;
 import com.yahoo.config.provision.ApplicationName;
+import com.yahoo.config.provision.Flavor;
 import com.yahoo.config.provision.InstanceName;
+import com.yahoo.config.provision.NodeResources;
 import com.yahoo.config.provision.NodeType;
 import com.yahoo.config.provision.TenantName;
 import com.yahoo.config.provision.Zone;
@@ -11,13 +13,21 @@ import com.yahoo.vespa.curator.Curator;
 import com.yahoo.vespa.curator.Lock;
 import com.yahoo.vespa.curator.mock.MockCurator;
 import com.yahoo.vespa.hosted.provision.Node;
+import com.yahoo.vespa.hosted.provision.NodeList;
+import com.yahoo.vespa.hosted.provision.node.Agent;
+import com.yahoo.vespa.hosted.provision.node.IP;
 import com.yahoo.vespa.hosted.provision.provisioning.FlavorConfigBuilder;
 import org.junit.Test;
 
 import java.time.Clock;
 import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
 
 /**
  * @author mpolden
@@ -38,6 +48,28 @@ public class CuratorDatabaseClientTest {
         assertEquals(NodeType.host, allocatedNodes.get(0).type());
     }
 
+    @Test
+    public void node_list_is_read_again_only_when_changed() {
+        List<Node> added = zkClient.addNodesInState(List.of(node("host1"), node("host2")), Node.State.provisioned);
+        NodeList nodes = zkClient.getNodeList();
+        assertEquals(2, nodes.size());
+        assertSame(nodes, zkClient.getNodeList());
+
+        zkClient.writeTo(Node.State.ready, added.get(0), Agent.system, Optional.empty());
+        NodeList changed = zkClient.getNodeList();
+        assertNotSame(nodes, changed);
+        assertEquals(List.of("host2"), changed.state(Node.State.provisioned).stream().map(Node::hostname).collect(Collectors.toList()));
+        assertEquals(List.of("host1"), changed.state(Node.State.ready).stream().map(Node::hostname).collect(Collectors.toList()));
+        assertSame("Unchanged nodes are reused", nodes.state(Node.State.provisioned).asList().get(1), changed.state(Node.State.provisioned).asList().get(0));
+        assertEquals(List.of(Node.State.ready, Node.State.provisioned),
+                     zkClient.getNodes(Node.State.ready, Node.State.provisioned).stream().map(Node::state).collect(Collectors.toList()));
+    }
+
+    private static Node node(String hostname) {
+        return Node.create("id-" + hostname, new IP.Config(Set.of("::1"), Set.of()), hostname, Optional.empty(), Optional.empty(),
+                           new Flavor(new NodeResources(1, 4, 10, 1)), Optional.empty(), NodeType.host);
+    }
+
     @Test
     public void locks_can_be_acquired_and_released() {
         ApplicationId app = ApplicationId.from(TenantName.from("testTenant"), ApplicationName.from("testApp"), InstanceName.from("testInstance"));
@@ -8,12 +8,25 @@ import com.yahoo.search.predicate.index.conjunction.ConjunctionHit;
 import com.yahoo.search.predicate.index.conjunction.ConjunctionIndex;
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 
+import java.io.BufferedInputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
 /**
@@ -28,9 +41,15 @@ import java.util.stream.Stream;
  * To perform a search, create a {@link Searcher} and call its {@link Searcher#search(PredicateQuery)}
  * method, which returns a stream of {@link Hit} objects,
  * each of which contains a document id and a 64-bit bitmap specifying which subqueries the hit is for.
+ * Large indexes may be searched in parallel partitions using {@link Searcher#search(PredicateQuery, ForkJoinPool)},
+ * and many queries may be evaluated together using {@link Searcher#searchBatch}.
  * </p><p>
  * Note that the {@link PredicateIndex} is thread-safe, but a {@link Searcher} is not.
  * Each thread <strong>must</strong> use its own searcher.
+ * </p><p>
+ * An index written by {@link #writeToMappableOutputStream} can be loaded with {@link #fromFile}, which memory maps
+ * the file rather than reading it: Posting lists, interval lists and conjunction id lists stay in the (shared)
+ * page cache, and posting lists are only copied to the heap when first used.
  * </p>
  * @author Magnar Nedland
  * @author bjorncs
@@ -39,6 +58,7 @@ import java.util.stream.Stream;
 public class PredicateIndex {
 
     private static final int SERIALIZATION_FORMAT_VERSION = 3;
+    private static final int MAPPABLE_SERIALIZATION_FORMAT_VERSION = 4;
 
     private final PredicateRangeTermExpander expander;
     private final int[] internalToExternalIdMapping;
@@ -51,6 +71,7 @@ public class PredicateIndex {
     private final PredicateIntervalStore intervalStore;
     private final ConjunctionIndex conjunctionIndex;
     private final int[] zeroConstraintDocuments;
+    private final IntBuffer zeroConstraintDocIds; // A single buffer, as posting lists are identified by it
     private final Config config;
     private final AtomicReference<CachedPostingListCounter> postingListCounter;
 
@@ -80,6 +101,7 @@ public class PredicateIndex {
         this.intervalStore = intervalStore;
         this.conjunctionIndex = conjunctionIndex;
         this.zeroConstraintDocuments = zeroConstraintDocuments;
+        this.zeroConstraintDocIds = IntBuffer.wrap(zeroConstraintDocuments);
         this.expander = new PredicateRangeTermExpander(config.arity, config.lowerBound, config.upperBound);
         this.config = config;
         this.postingListCounter = new AtomicReference<>(new CachedPostingListCounter(internalToExternalIdMapping.length));
@@ -143,8 +165,87 @@ public class PredicateIndex {
         );
     }
 
+    /**
+     * Writes this index in the memory mappable format read by {@link #fromFile} and {@link #fromMappedBuffer}.
+     * Index files are limited to 2Gb in this format.
+     */
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        out.writeInt(MAPPABLE_SERIALIZATION_FORMAT_VERSION);
+        config.writeToOutputStream(out);
+        SerializationHelper.writeIntArray(internalToExternalIdMapping, out);
+        SerializationHelper.writeByteArray(minFeatureIndex, out);
+        SerializationHelper.writeShortArray(intervalEnds, out);
+        out.writeInt(highestIntervalEnd);
+        SerializationHelper.writeIntArray(zeroConstraintDocuments, out);
+        intervalIndex.writeToMappableOutputStream(out);
+        boundsIndex.writeToMappableOutputStream(out);
+        conjunctionIntervalIndex.writeToMappableOutputStream(out);
+        intervalStore.writeToMappableOutputStream(out);
+        conjunctionIndex.writeToMappableOutputStream(out);
+    }
+
+    /**
+     * Reads an index written by {@link #writeToMappableOutputStream} from the given buffer.
+     * The returned index references the buffer, which must not be modified while the index is in use.
+     */
+    public static PredicateIndex fromMappedBuffer(ByteBuffer buffer) {
+        int version = buffer.getInt();
+        if (version != MAPPABLE_SERIALIZATION_FORMAT_VERSION) {
+            throw new IllegalArgumentException(String.format(
+                    "Invalid serialization format version. Expected %d, was %d.", MAPPABLE_SERIALIZATION_FORMAT_VERSION, version));
+        }
+        Config config = Config.fromBuffer(buffer);
+        int[] internalToExternalIdMapping = SerializationHelper.readIntArray(buffer);
+        byte[] minFeatureIndex = SerializationHelper.readByteArray(buffer);
+        short[] intervalEnds = SerializationHelper.readShortArray(buffer);
+        int highestIntervalEnd = buffer.getInt();
+        int[] zeroConstraintDocuments = SerializationHelper.readIntArray(buffer);
+        SimpleIndex intervalIndex = SimpleIndex.fromMappedBuffer(buffer);
+        SimpleIndex boundsIndex = SimpleIndex.fromMappedBuffer(buffer);
+        SimpleIndex conjunctionIntervalIndex = SimpleIndex.fromMappedBuffer(buffer);
+        PredicateIntervalStore intervalStore = PredicateIntervalStore.fromMappedBuffer(buffer);
+        ConjunctionIndex conjunctionIndex = ConjunctionIndex.fromMappedBuffer(buffer);
+        return new PredicateIndex(
+                config,
+                internalToExternalIdMapping,
+                minFeatureIndex,
+                intervalEnds,
+                highestIntervalEnd,
+                intervalIndex,
+                boundsIndex,
+                conjunctionIntervalIndex,
+                intervalStore,
+                conjunctionIndex,
+                zeroConstraintDocuments
+        );
+    }
+
+    /**
+     * Loads an index from the given file. Files written by {@link #writeToMappableOutputStream} are memory mapped,
+     * while files written by {@link #writeToOutputStream} are read into the heap.
+     */
+    public static PredicateIndex fromFile(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer version = ByteBuffer.allocate(Integer.BYTES);
+            while (version.hasRemaining() && channel.read(version) >= 0) { }
+            if ( ! version.hasRemaining() && version.getInt(0) == MAPPABLE_SERIALIZATION_FORMAT_VERSION)
+                return fromMappedBuffer(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            return fromInputStream(in);
+        }
+    }
+
     @Beta
     public class Searcher {
+
+        /** The number of partitions to search per thread, to even out the work between threads */
+        private static final int PARTITIONS_PER_THREAD = 4;
+        /** The minimum number of documents in each partition of a partitioned search */
+        private static final int MIN_DOCUMENTS_PER_PARTITION = 8192;
+        /** The max number of queries which can be evaluated together, one per subquery bit */
+        private static final int MAX_BATCH_SIZE = 64;
+
         private final byte[] nPostingListsForDocument;
         private final ConjunctionIndex.Searcher conjunctionIndexSearcher;
 
@@ -160,6 +261,129 @@ public class PredicateIndex {
          * @return A stream of hits.
          */
         public Stream<Hit> search(PredicateQuery query) {
+            List<PostingList> postingLists = createPostingLists(query, conjunctionIndexSearcher.search(query));
+            countPostingListsPerDocument(postingLists);
+            return toExternalHits(new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream());
+        }
+
+        /**
+         * Retrieves a stream of hits for the given query, by searching partitions of the documents in parallel
+         * in the given pool. The hits are ordered as with {@link #search(PredicateQuery)}, but are all found before
+         * this returns. Small indexes are searched by the calling thread only.
+         *
+         * @param query Specifies the boolean variables that are true.
+         * @param pool The pool used to search the partitions.
+         * @return A stream of hits.
+         */
+        public Stream<Hit> search(PredicateQuery query, ForkJoinPool pool) {
+            int nPartitions = Math.min(pool.getParallelism() * PARTITIONS_PER_THREAD,
+                                       nPostingListsForDocument.length / MIN_DOCUMENTS_PER_PARTITION);
+            return search(query, pool, nPartitions);
+        }
+
+        Stream<Hit> search(PredicateQuery query, ForkJoinPool pool, int nPartitions) {
+            if (nPartitions <= 1) return search(query);
+
+            List<ConjunctionHit> conjunctionHits = conjunctionIndexSearcher.search(query);
+            List<PostingList> postingLists = createPostingLists(query, conjunctionHits);
+            countPostingListsPerDocument(postingLists);
+            int nDocuments = nPostingListsForDocument.length;
+            List<ForkJoinTask<List<Hit>>> partitions = new ArrayList<>(nPartitions);
+            for (int i = 0; i < nPartitions; i++) {
+                // Posting lists are stateful, so each partition needs its own
+                List<PostingList> partitionPostingLists = (i == 0) ? postingLists : createPostingLists(query, conjunctionHits);
+                int beginDocId = (int) ((long) nDocuments * i / nPartitions);
+                int endDocId = (int) ((long) nDocuments * (i + 1) / nPartitions);
+                partitions.add(pool.submit(() -> new PredicateSearch(
+                        partitionPostingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd,
+                        beginDocId, endDocId).stream().collect(Collectors.toList())));
+            }
+            // Wait for all partitions before returning, as they use the posting list counts of this searcher
+            List<Hit> hits = new ArrayList<>();
+            for (ForkJoinTask<List<Hit>> partition : partitions) {
+                hits.addAll(partition.join());
+            }
+            return toExternalHits(hits.stream());
+        }
+
+        /**
+         * Retrieves the hits for each of the given queries. Queries which do not use subqueries are evaluated
+         * together, up to 64 at a time, as subqueries of a single query. This iterates each posting list once
+         * for all the queries using it, rather than once per query.
+         *
+         * @param queries The queries to search.
+         * @return The hits of each query, in the order of the given queries.
+         */
+        public List<List<Hit>> searchBatch(List<PredicateQuery> queries) {
+            List<List<Hit>> hits = new ArrayList<>(queries.size());
+            List<Integer> batch = new ArrayList<>(MAX_BATCH_SIZE);
+            for (int i = 0; i < queries.size(); i++) {
+                hits.add(new ArrayList<>());
+                if (usesSubqueries(queries.get(i))) {
+                    hits.set(i, search(queries.get(i)).collect(Collectors.toList()));
+                    continue;
+                }
+                batch.add(i);
+                if (batch.size() == MAX_BATCH_SIZE) {
+                    searchBatch(queries, batch, hits);
+                    batch.clear();
+                }
+            }
+            if ( ! batch.isEmpty())
+                searchBatch(queries, batch, hits);
+            return hits;
+        }
+
+        private void searchBatch(List<PredicateQuery> queries, List<Integer> batch, List<List<Hit>> hits) {
+            // Range features are expanded before they are merged, such that queries sharing a partition
+            // share a single posting list for it, as a feature may only be counted once per document
+            Map<List<String>, Long> features = new LinkedHashMap<>();
+            Map<Long, Long> intervalFeatures = new LinkedHashMap<>();
+            Map<List<Long>, Long> boundsFeatures = new LinkedHashMap<>();
+            for (int i = 0; i < batch.size(); i++) {
+                long subquery = 1L << i;
+                PredicateQuery query = queries.get(batch.get(i));
+                for (PredicateQuery.Feature feature : query.getFeatures()) {
+                    features.merge(Arrays.asList(feature.key, feature.value), subquery, (a, b) -> a | b);
+                    intervalFeatures.merge(feature.featureHash, subquery, (a, b) -> a | b);
+                }
+                for (PredicateQuery.RangeFeature feature : query.getRangeFeatures())
+                    expander.expand(
+                            feature.key,
+                            feature.value,
+                            featureHash -> intervalFeatures.merge(featureHash, subquery, (a, b) -> a | b),
+                            (featureHash, value) -> boundsFeatures.merge(Arrays.asList(featureHash, (long) value),
+                                                                         subquery, (a, b) -> a | b));
+            }
+            PredicateQuery combined = new PredicateQuery();
+            features.forEach((feature, subqueries) -> combined.addFeature(feature.get(0), feature.get(1), subqueries));
+
+            ArrayList<PostingList> postingLists = new ArrayList<>();
+            intervalFeatures.forEach((featureHash, subqueries) -> addIntervalPostingList(featureHash, subqueries, postingLists));
+            boundsFeatures.forEach((feature, subqueries) ->
+                    addBoundsPostingList(feature.get(0), feature.get(1).intValue(), subqueries, postingLists));
+            addCompressedZStarPostingList(postingLists);
+            addConjunctionPostingLists(conjunctionIndexSearcher.search(combined), postingLists);
+            addZeroConstraintPostingList(postingLists);
+            countPostingListsPerDocument(postingLists);
+            Stream<Hit> combinedHits = toExternalHits(new PredicateSearch(
+                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream());
+
+            long batchSubqueries = batch.size() == MAX_BATCH_SIZE ? SubqueryBitmap.ALL_SUBQUERIES : (1L << batch.size()) - 1;
+            combinedHits.forEach(hit -> {
+                for (long subqueries = hit.getSubquery() & batchSubqueries; subqueries != 0; subqueries &= subqueries - 1) {
+                    hits.get(batch.get(Long.numberOfTrailingZeros(subqueries))).add(new Hit(hit.getDocId()));
+                }
+            });
+        }
+
+        private boolean usesSubqueries(PredicateQuery query) {
+            return query.getFeatures().stream().anyMatch(f -> f.subqueryBitmap != SubqueryBitmap.ALL_SUBQUERIES)
+                   || query.getRangeFeatures().stream().anyMatch(f -> f.subqueryBitmap != SubqueryBitmap.ALL_SUBQUERIES);
+        }
+
+        private List<PostingList> createPostingLists(PredicateQuery query, List<ConjunctionHit> conjunctionHits) {
             ArrayList<PostingList> postingLists = new ArrayList<>();
             for (PredicateQuery.Feature feature : query.getFeatures()) {
                 addIntervalPostingList(feature.featureHash, feature.subqueryBitmap, postingLists);
@@ -172,16 +396,20 @@ public class PredicateIndex {
                         (featureHash, value) -> addBoundsPostingList(featureHash, value, feature.subqueryBitmap, postingLists));
             }
             addCompressedZStarPostingList(postingLists);
-            addConjunctionPostingLists(query, postingLists);
+            addConjunctionPostingLists(conjunctionHits, postingLists);
             addZeroConstraintPostingList(postingLists);
+            return postingLists;
+        }
 
+        private void countPostingListsPerDocument(List<PostingList> postingLists) {
             CachedPostingListCounter counter = postingListCounter.get();
             counter.registerUsage(postingLists);
             counter.countPostingListsPerDocument(postingLists, nPostingListsForDocument);
-            return new PredicateSearch(
-                    postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd).stream()
-                    // Map to external id. Note that internal id for first document is 1.
-                    .map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
+        }
+
+        private Stream<Hit> toExternalHits(Stream<Hit> internalHits) {
+            // Map to external id. Note that internal id for first document is 1.
+            return internalHits.map(hit -> new Hit(internalToExternalIdMapping[hit.getDocId()], hit.getSubquery()));
         }
 
         private void addCompressedZStarPostingList(List<PostingList> postingLists) {
@@ -206,9 +434,8 @@ public class PredicateIndex {
             }
         }
 
-        private void addConjunctionPostingLists(PredicateQuery query, List<PostingList> postingLists) {
-            List<ConjunctionHit> hits = conjunctionIndexSearcher.search(query);
-            for (ConjunctionHit hit : hits) {
+        private void addConjunctionPostingLists(List<ConjunctionHit> conjunctionHits, List<PostingList> postingLists) {
+            for (ConjunctionHit hit : conjunctionHits) {
                 SimpleIndex.Entry e = conjunctionIntervalIndex.getPostingList(hit.conjunctionId);
                 if (e != null) {
                     postingLists.add(new IntervalPostingList(intervalStore, e.docIds, e.dataRefs, hit.subqueryBitmap));
@@ -216,9 +443,9 @@ public class PredicateIndex {
             }
         }
 
-        private void addZeroConstraintPostingList(ArrayList<PostingList> postingLists) {
+        private void addZeroConstraintPostingList(List<PostingList> postingLists) {
             if (zeroConstraintDocuments.length > 0) {
-                postingLists.add(new ZeroConstraintPostingList(zeroConstraintDocuments));
+                postingLists.add(new ZeroConstraintPostingList(zeroConstraintDocIds));
             }
         }
 
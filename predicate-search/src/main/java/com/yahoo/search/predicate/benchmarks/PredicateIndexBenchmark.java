@@ -5,6 +5,7 @@ import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.SerializationFeature;
 import com.google.common.collect.Iterators;
 import com.yahoo.search.predicate.Config;
+import com.yahoo.search.predicate.Hit;
 import com.yahoo.search.predicate.PredicateIndex;
 import com.yahoo.search.predicate.PredicateIndexBuilder;
 import com.yahoo.search.predicate.PredicateQuery;
@@ -17,13 +18,11 @@ import io.airlift.airline.Option;
 import io.airlift.airline.SingleCommand;
 
 import javax.inject.Inject;
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
-import java.io.FileInputStream;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -37,6 +36,7 @@ import java.util.concurrent.Callable;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -68,7 +68,7 @@ public class PredicateIndexBenchmark {
                 .build();
         PredicateIndex index = getIndex(args, config);
         if (args.indexOutputFile != null) {
-            writeIndexToFile(index, args.indexOutputFile);
+            writeIndexToFile(index, args.indexOutputFile, args.mappableIndex);
         }
         if (args.queryFile != null) {
             runQueries(args, index);
@@ -106,19 +106,20 @@ public class PredicateIndexBenchmark {
             output.put("Time prepare index", System.currentTimeMillis() - start);
             return index;
         } else {
-            try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(args.indexFile)))) {
-                long start = System.currentTimeMillis();
-                PredicateIndex index = PredicateIndex.fromInputStream(in);
-                output.put("Time deserialize index", System.currentTimeMillis() - start);
-                return index;
-            }
+            long start = System.currentTimeMillis();
+            PredicateIndex index = PredicateIndex.fromFile(Paths.get(args.indexFile));
+            output.put("Time deserialize index", System.currentTimeMillis() - start);
+            return index;
         }
     }
 
-    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile) throws IOException {
+    private static void writeIndexToFile(PredicateIndex index, String indexOutputFile, boolean mappable) throws IOException {
         try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexOutputFile)))) {
             long start = System.currentTimeMillis();
-            index.writeToOutputStream(out);
+            if (mappable)
+                index.writeToMappableOutputStream(out);
+            else
+                index.writeToOutputStream(out);
             output.put("Time write index", System.currentTimeMillis() - start);
         }
     }
@@ -131,21 +132,29 @@ public class PredicateIndexBenchmark {
         output.put("Runtime", args.runtime);
         output.put("Algorithm", args.algorithm);
         output.put("Serialized index output file", args.indexOutputFile);
+        output.put("Mappable serialized index", args.mappableIndex);
         output.put("Feed file", args.feedFile);
         output.put("Query file", args.queryFile);
         output.put("Index file", args.indexFile);
         output.put("Query format", args.format);
         output.put("Warmup", args.warmup);
+        output.put("Partition threads", args.partitionThreads);
+        output.put("Batch size", args.batchSize);
     }
 
     private static void runQueries(BenchmarkArguments args, PredicateIndex index) throws IOException {
         List<PredicateQuery> queries = parseQueries(args.queryFile, args.maxQueries, args.format);
-        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        ForkJoinPool partitionPool = args.partitionThreads > 0 ? new ForkJoinPool(args.partitionThreads) : null;
+        QueryMode mode = new QueryMode(partitionPool, args.batchSize);
+        long warmup1 = warmup(queries, index, args.nThreads, args.warmup / 2, mode);
         output.put("Time warmup before building posting cache", warmup1);
         rebuildPostingListCache(index);
-        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2);
+        long warmup2 = warmup(queries, index, args.nThreads, args.warmup / 2, mode);
         output.put("Time warmup after building posting cache", warmup2);
-        searchIndex(queries, index, args.nThreads, args.runtime);
+        searchIndex(queries, index, args.nThreads, args.runtime, mode);
+        if (partitionPool != null) {
+            partitionPool.shutdown();
+        }
     }
 
     private static void rebuildPostingListCache(PredicateIndex index) {
@@ -164,27 +173,27 @@ public class PredicateIndexBenchmark {
         return queries;
     }
 
-    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup) {
+    private static long warmup(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int warmup, QueryMode mode) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            executor.submit(new QueryRunner(shuffledQueries, index.searcher()));
+            executor.submit(new QueryRunner(shuffledQueries, index.searcher(), mode));
         }
         long start = System.currentTimeMillis();
         waitAndShutdown(warmup, executor);
         return System.currentTimeMillis() - start;
     }
 
-    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime) {
+    private static void searchIndex(List<PredicateQuery> queries, PredicateIndex index, int nThreads, int runtime, QueryMode mode) {
         ExecutorService executor = Executors.newFixedThreadPool(nThreads);
         Random random = new Random(42);
         List<QueryRunner> runners = new ArrayList<>();
         for (int i = 0; i < nThreads; i++) {
             List<PredicateQuery> shuffledQueries = new ArrayList<>(queries);
             Collections.shuffle(shuffledQueries, random);
-            runners.add(new QueryRunner(shuffledQueries, index.searcher()));
+            runners.add(new QueryRunner(shuffledQueries, index.searcher(), mode));
         }
         long start = System.currentTimeMillis();
         List<Future<ResultMetrics>> futureResults = runners.stream().map(executor::submit).collect(toList());
@@ -215,24 +224,55 @@ public class PredicateIndexBenchmark {
         }
     }
 
+    /** How each query runner thread evaluates its queries */
+    private static class QueryMode {
+        /** The pool used to search document partitions in parallel, or null to search each query in a single thread */
+        final ForkJoinPool partitionPool;
+        /** The number of queries evaluated together */
+        final int batchSize;
+
+        QueryMode(ForkJoinPool partitionPool, int batchSize) {
+            this.partitionPool = partitionPool;
+            this.batchSize = batchSize;
+        }
+    }
+
     private static class QueryRunner implements Callable<ResultMetrics> {
         private final List<PredicateQuery> queries;
         private final PredicateIndex.Searcher searcher;
+        private final QueryMode mode;
 
-        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher) {
+        public QueryRunner(List<PredicateQuery> queries, PredicateIndex.Searcher seacher, QueryMode mode) {
             this.queries = queries;
             this.searcher = seacher;
+            this.mode = mode;
         }
 
         @Override
         public ResultMetrics call() throws Exception {
             Iterator<PredicateQuery> iterator = Iterators.cycle(queries);
             ResultMetrics result = new ResultMetrics();
+            List<PredicateQuery> batch = new ArrayList<>(mode.batchSize);
             while (!Thread.interrupted()) {
-                long start = System.nanoTime();
-                long hits = searcher.search(iterator.next()).count();
-                double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
-                result.registerResult(hits, latencyMilliseconds);
+                if (mode.batchSize > 1) {
+                    batch.clear();
+                    for (int i = 0; i < mode.batchSize; i++) {
+                        batch.add(iterator.next());
+                    }
+                    long start = System.nanoTime();
+                    List<List<Hit>> hits = searcher.searchBatch(batch);
+                    // Each query in the batch has the latency of the whole batch
+                    double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+                    for (List<Hit> queryHits : hits) {
+                        result.registerResult(queryHits.size(), latencyMilliseconds);
+                    }
+                } else {
+                    long start = System.nanoTime();
+                    long hits = mode.partitionPool != null ? searcher.search(iterator.next(), mode.partitionPool).count()
+                                                           : searcher.search(iterator.next()).count();
+                    double latencyMilliseconds = (System.nanoTime() - start) / 1_000_000d;
+                    result.registerResult(hits, latencyMilliseconds);
+                }
             }
             return result;
         }
@@ -256,6 +296,14 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-t", "--threads"}, description = "Number of search threads")
         public int nThreads = 1;
 
+        @Option(name = {"-pt", "--partition-threads"},
+                description = "Number of threads used to search document partitions of each query in parallel (0 to disable)")
+        public int partitionThreads = 0;
+
+        @Option(name = {"-bs", "--batch-size"},
+                description = "Number of queries evaluated together by each search thread (ignores partition threads)")
+        public int batchSize = 1;
+
         @Option(name = {"-a", "--arity"}, description = "Arity")
         public int arity = 2;
 
@@ -288,6 +336,10 @@ public class PredicateIndexBenchmark {
         @Option(name = {"-wi", "--write-index"}, description = "Serialize index to the given file")
         public String indexOutputFile;
 
+        @Option(name = {"-mi", "--mappable-index"},
+                description = "Serialize index in the memory mappable format (the format of the index file is detected)")
+        public boolean mappableIndex = false;
+
         @Option(name = {"-quf", "--query-file"}, description = "File path to a query file")
         public String queryFile;
 
@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
+
 /**
  * Implementation of PostingList for regular features that store
  * their intervals and nothing else.
@@ -11,18 +13,20 @@ package com.yahoo.search.predicate.index;
 public class IntervalPostingList extends MultiIntervalPostingList {
 
     private final PredicateIntervalStore store;
-    private int[] currentIntervals;
+    private int[] currentIntervals = new int[0];
+    private int currentIntervalsSize;
     private int currentIntervalIndex;
     private int currentInterval;
 
-    public IntervalPostingList(PredicateIntervalStore store, int[] docIds, int[] dataRefs, long subquery) {
+    public IntervalPostingList(PredicateIntervalStore store, IntBuffer docIds, IntBuffer dataRefs, long subquery) {
         super(docIds, dataRefs, subquery);
         this.store = store;
     }
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        currentIntervals = store.get(dataRef);
+        currentIntervals = store.get(dataRef, currentIntervals);
+        currentIntervalsSize = store.size(dataRef);
         currentIntervalIndex = 1;
         currentInterval = currentIntervals[0];
         return true;
@@ -30,7 +34,7 @@ public class IntervalPostingList extends MultiIntervalPostingList {
 
     @Override
     public boolean nextInterval() {
-        if (currentIntervalIndex < currentIntervals.length) {
+        if (currentIntervalIndex < currentIntervalsSize) {
             this.currentInterval = currentIntervals[currentIntervalIndex++];
             return true;
         }
@@ -13,6 +13,7 @@ public class IntervalWithBounds {
 
     private int[] intervalBoundsArray;
     private int arrayIndex;
+    private int arrayEnd;
 
     public IntervalWithBounds() {
         setIntervalArray(null, 0);
@@ -22,10 +23,15 @@ public class IntervalWithBounds {
     }
 
     public void setIntervalArray(int[] intervalBoundsArray, int arrayIndex) {
+        setIntervalArray(intervalBoundsArray, arrayIndex, intervalBoundsArray == null ? 0 : intervalBoundsArray.length);
+    }
+    /** Sets the array to read from, where only the elements before arrayEnd are used */
+    public void setIntervalArray(int[] intervalBoundsArray, int arrayIndex, int arrayEnd) {
         this.intervalBoundsArray = intervalBoundsArray;
         this.arrayIndex = arrayIndex;
+        this.arrayEnd = arrayEnd;
     }
-    public boolean hasValue() { return arrayIndex < intervalBoundsArray.length - 1; }
+    public boolean hasValue() { return arrayIndex < arrayEnd - 1; }
     public void nextValue() { arrayIndex += 2; }
 
     public Stream<Integer> stream() { return Stream.of(getInterval(), getBounds()); }
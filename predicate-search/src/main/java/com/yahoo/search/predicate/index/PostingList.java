@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index;
 
+import java.nio.IntBuffer;
+
 /**
  * Interface for posting lists to be used by the algorithm implemented in PredicateSearch.
  *
@@ -48,8 +50,8 @@ public interface PostingList {
     long getSubquery();
 
     /**
-     * @return The document ids
+     * @return The document ids. Posting lists of the same index entry return the same buffer.
      */
-    int[] getDocIds();
+    IntBuffer getDocIds();
 
 }
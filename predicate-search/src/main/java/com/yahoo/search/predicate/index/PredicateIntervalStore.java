@@ -7,6 +7,8 @@ import com.yahoo.search.predicate.serialization.SerializationHelper;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -14,25 +16,72 @@ import java.util.List;
 import java.util.Map;
 
 /**
+ * Stores the interval lists referenced from posting lists.
+ *
+ * A store read by {@link #fromMappedBuffer} keeps the interval lists in the given buffer,
+ * and copies out the interval list requested on each lookup. Searches should use {@link #get(int, int[])}
+ * to reuse the array copied into.
+ *
  * @author bjorncs
  */
 public class PredicateIntervalStore {
 
     private final int[][] intervalsList;
+    private final IntBuffer mappedOffsets;
+    private final IntBuffer mappedIntervals;
 
     public PredicateIntervalStore(int[][] intervalsList) {
         this.intervalsList = intervalsList;
+        this.mappedOffsets = null;
+        this.mappedIntervals = null;
+    }
+
+    private PredicateIntervalStore(IntBuffer mappedOffsets, IntBuffer mappedIntervals) {
+        this.intervalsList = null;
+        this.mappedOffsets = mappedOffsets;
+        this.mappedIntervals = mappedIntervals;
     }
 
     public int[] get(int intervalRef) {
-        assert intervalRef < intervalsList.length;
-        return intervalsList[intervalRef];
+        if (intervalsList != null) {
+            assert intervalRef < intervalsList.length;
+            return intervalsList[intervalRef];
+        }
+        return get(intervalRef, new int[size(intervalRef)]);
+    }
+
+    /**
+     * Returns the given interval list, where only the first {@link #size(int)} elements are valid.
+     * If this store is mapped, the intervals are copied into the given buffer, or into a new array
+     * if the buffer is too small. Otherwise, the stored array is returned and the buffer is not used.
+     */
+    public int[] get(int intervalRef, int[] buffer) {
+        if (intervalsList != null) return get(intervalRef);
+        assert intervalRef < size();
+        int offset = mappedOffsets.get(intervalRef);
+        int size = mappedOffsets.get(intervalRef + 1) - offset;
+        int[] intervals = buffer.length >= size ? buffer : new int[size];
+        for (int i = 0; i < size; i++) {
+            intervals[i] = mappedIntervals.get(offset + i);
+        }
+        return intervals;
+    }
+
+    /** Returns the number of intervals in the given interval list */
+    public int size(int intervalRef) {
+        if (intervalsList != null) return intervalsList[intervalRef].length;
+        return mappedOffsets.get(intervalRef + 1) - mappedOffsets.get(intervalRef);
+    }
+
+    private int size() {
+        return intervalsList != null ? intervalsList.length : mappedOffsets.limit() - 1;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(intervalsList.length);
-        for (int[] intervals : intervalsList) {
-            SerializationHelper.writeIntArray(intervals, out);
+        int size = size();
+        out.writeInt(size);
+        for (int i = 0; i < size; i++) {
+            SerializationHelper.writeIntArray(get(i), out);
         }
     }
 
@@ -45,6 +94,38 @@ public class PredicateIntervalStore {
         return new PredicateIntervalStore(intervalsList);
     }
 
+    /**
+     * Writes this in the format read by {@link #fromMappedBuffer}: The offset of each interval list,
+     * followed by all interval lists, concatenated.
+     */
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        int size = size();
+        out.writeInt(size + 1);
+        int offset = 0;
+        out.writeInt(offset);
+        for (int i = 0; i < size; i++) {
+            offset += get(i).length;
+            out.writeInt(offset);
+        }
+        out.writeInt(offset);
+        for (int i = 0; i < size; i++) {
+            for (int interval : get(i)) {
+                out.writeInt(interval);
+            }
+        }
+    }
+
+    /**
+     * Reads a store written by {@link #writeToMappableOutputStream} from the current position of the given
+     * buffer, and advances past it. The returned store references the buffer, which must not be modified
+     * while the store is in use.
+     */
+    public static PredicateIntervalStore fromMappedBuffer(ByteBuffer buffer) {
+        IntBuffer offsets = SerializationHelper.sliceIntArray(buffer);
+        IntBuffer intervals = SerializationHelper.sliceIntArray(buffer);
+        return new PredicateIntervalStore(offsets, intervals);
+    }
+
     public static class Builder {
         private final List<int[]> intervalsListBuilder = new ArrayList<>();
         private final Map<Entry, Integer> intervalsListIndexes = new HashMap<>();
@@ -31,6 +31,8 @@ public class PredicateSearch {
     private final long[] subqueryMarkers;
     private final boolean[] visited;
     private final short[] intervalEnds;
+    private final int beginDocId;
+    private final int endDocId;
 
     private short[] sortedIndexes;
     private short[] sortedIndexesMergeBuffer;
@@ -48,6 +50,20 @@ public class PredicateSearch {
     public PredicateSearch(
             List<PostingList> postingLists, byte[] nPostingListsForDocument,
             byte[] minFeatureIndex, short[] intervalEnds, int  highestIntervalEnd) {
+        this(postingLists, nPostingListsForDocument, minFeatureIndex, intervalEnds, highestIntervalEnd,
+             0, nPostingListsForDocument.length);
+    }
+
+    /**
+     * Creates a search for a set of posting lists, which only returns hits in the given range of doc ids.
+     * Searches over disjoint ranges may run concurrently if they use different posting list instances.
+     *
+     * @param beginDocId The first docId to search, inclusive.
+     * @param endDocId The last docId to search, exclusive.
+     */
+    public PredicateSearch(
+            List<PostingList> postingLists, byte[] nPostingListsForDocument,
+            byte[] minFeatureIndex, short[] intervalEnds, int  highestIntervalEnd, int beginDocId, int endDocId) {
         int size = postingLists.size();
         this.nPostingListsForDocument = nPostingListsForDocument;
         this.minFeatureIndex = minFeatureIndex;
@@ -61,6 +77,8 @@ public class PredicateSearch {
         this.subqueryMarkers = new long[highestIntervalEnd + 1];
         this.visited = new boolean[highestIntervalEnd + 1];
         this.intervalEnds = intervalEnds;
+        this.beginDocId = beginDocId;
+        this.endDocId = Math.min(endDocId, nPostingListsForDocument.length);
 
         // Sort posting list array based on the underlying number of documents (largest first).
         Arrays.sort(this.postingLists, (l, r) -> -Integer.compare(l.size(), r.size()));
@@ -85,7 +103,7 @@ public class PredicateSearch {
     }
 
     private class PredicateSpliterator implements java.util.Spliterator<Hit> {
-        private int lastHit = -1;
+        private int lastHit = beginDocId - 1;
 
         @Override
         public boolean tryAdvance(Consumer<? super Hit> action) {
@@ -122,6 +140,9 @@ public class PredicateSearch {
         boolean skippedToEnd = skipMinFeature(docId);
         while (nPostingLists > 0 && !skippedToEnd) {
             int docId0 = docIds[sortedIndexes[0]];
+            if (docId0 >= endDocId) {
+                break;
+            }
             int minFeature = minFeatureIndex[docId0];
             int k = minFeature > 0 ? minFeature - 1 : 0;
             int intervalEnd = Short.toUnsignedInt(intervalEnds[docId0]);
@@ -139,7 +160,7 @@ public class PredicateSearch {
     }
 
     private boolean skipMinFeature(int docId) {
-        int nDocuments = nPostingListsForDocument.length;
+        int nDocuments = endDocId;
         while (docId < nDocuments && minFeatureIndex[docId] > nPostingListsForDocument[docId]) {
             ++docId;
         }
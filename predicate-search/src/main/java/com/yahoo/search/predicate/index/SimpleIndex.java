@@ -3,30 +3,43 @@ package com.yahoo.search.predicate.index;
 
 import com.yahoo.search.predicate.serialization.SerializationHelper;
 import org.eclipse.collections.api.map.primitive.LongObjectMap;
-import org.eclipse.collections.api.tuple.primitive.LongObjectPair;
 import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
 /**
  * An index mapping keys of type Long to lists of postings of generic data.
  *
+ * An index read by {@link #fromMappedBuffer} keeps its posting lists in the given buffer, and its entries
+ * are views of the buffer, such that posting lists are read from the page cache rather than copied to the heap.
+ *
  * @author Magnar Nedland
  * @author bjorncs
  */
 public class SimpleIndex {
 
     private final LongObjectMap<Entry> dictionary;
+    private final MappedPostingLists mappedPostingLists;
 
     public SimpleIndex(LongObjectMap<Entry> dictionary) {
         this.dictionary = dictionary;
+        this.mappedPostingLists = null;
+    }
+
+    private SimpleIndex(MappedPostingLists mappedPostingLists) {
+        this.dictionary = null;
+        this.mappedPostingLists = mappedPostingLists;
     }
 
     /**
@@ -36,14 +49,19 @@ public class SimpleIndex {
      * @return list of postings
      */
     public Entry getPostingList(long key) {
-        return dictionary.get(key);
+        return dictionary != null ? dictionary.get(key) : mappedPostingLists.get(key);
+    }
+
+    private long[] sortedKeys() {
+        return dictionary != null ? dictionary.keySet().toSortedArray() : mappedPostingLists.keys;
     }
 
     public void writeToOutputStream(DataOutputStream out) throws IOException {
-        out.writeInt(dictionary.size());
-        for (LongObjectPair<Entry> pair : dictionary.keyValuesView()) {
-            out.writeLong(pair.getOne());
-            Entry entry = pair.getTwo();
+        long[] keys = sortedKeys();
+        out.writeInt(keys.length);
+        for (long key : keys) {
+            out.writeLong(key);
+            Entry entry = getPostingList(key);
             SerializationHelper.writeIntArray(entry.docIds, out);
             SerializationHelper.writeIntArray(entry.dataRefs, out);
         }
@@ -62,16 +80,101 @@ public class SimpleIndex {
         return new SimpleIndex(dictionary);
     }
 
+    /**
+     * Writes this in the format read by {@link #fromMappedBuffer}: The sorted keys and the offset of
+     * each key's postings, followed by the doc ids and data refs of all posting lists, concatenated.
+     */
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        long[] keys = sortedKeys();
+        Entry[] entries = new Entry[keys.length];
+        int[] offsets = new int[keys.length + 1];
+        for (int i = 0; i < keys.length; i++) {
+            entries[i] = getPostingList(keys[i]);
+            offsets[i + 1] = offsets[i] + entries[i].docIds.limit();
+        }
+        SerializationHelper.writeLongArray(keys, out);
+        SerializationHelper.writeIntArray(offsets, out);
+        out.writeInt(offsets[keys.length]);
+        for (Entry entry : entries) {
+            SerializationHelper.writeInts(entry.docIds, out);
+        }
+        out.writeInt(offsets[keys.length]);
+        for (Entry entry : entries) {
+            SerializationHelper.writeInts(entry.dataRefs, out);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeToMappableOutputStream} from the current position of the given
+     * buffer, and advances past it. The returned index references the posting lists in the buffer,
+     * which must not be modified while the index is in use.
+     */
+    public static SimpleIndex fromMappedBuffer(ByteBuffer buffer) {
+        long[] keys = SerializationHelper.readLongArray(buffer);
+        int[] offsets = SerializationHelper.readIntArray(buffer);
+        IntBuffer docIds = SerializationHelper.sliceIntArray(buffer);
+        IntBuffer dataRefs = SerializationHelper.sliceIntArray(buffer);
+        return new SimpleIndex(new MappedPostingLists(keys, offsets, docIds, dataRefs));
+    }
+
+    /** A posting list. Its buffers start at position 0 and end at their limit, and are read by absolute gets */
     public static class Entry {
-        public final int[] docIds;
-        public final int[] dataRefs;
+        public final IntBuffer docIds;
+        public final IntBuffer dataRefs;
 
         private Entry(int[] docIds, int[] dataRefs) {
+            this(IntBuffer.wrap(docIds), IntBuffer.wrap(dataRefs));
+        }
+
+        private Entry(IntBuffer docIds, IntBuffer dataRefs) {
             this.docIds = docIds;
             this.dataRefs = dataRefs;
         }
     }
 
+    /**
+     * Posting lists stored in a buffer. The entry of a posting list is created on first lookup, as a view of
+     * the buffer, and kept such that posting lists are identified by their doc id buffer as for heap indexes.
+     */
+    private static class MappedPostingLists {
+
+        private final long[] keys;
+        private final int[] offsets;
+        private final IntBuffer docIds;
+        private final IntBuffer dataRefs;
+        private final AtomicReferenceArray<Entry> entries;
+
+        MappedPostingLists(long[] keys, int[] offsets, IntBuffer docIds, IntBuffer dataRefs) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.docIds = docIds;
+            this.dataRefs = dataRefs;
+            this.entries = new AtomicReferenceArray<>(keys.length);
+        }
+
+        Entry get(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            return index < 0 ? null : get(index);
+        }
+
+        private Entry get(int index) {
+            Entry entry = entries.get(index);
+            if (entry != null) return entry;
+
+            // Entries must be unique, as posting lists are identified by their doc id buffer
+            entries.compareAndSet(index, null, new Entry(slice(docIds, index), slice(dataRefs, index)));
+            return entries.get(index);
+        }
+
+        private IntBuffer slice(IntBuffer source, int index) {
+            IntBuffer view = source.duplicate();
+            view.limit(offsets[index + 1]);
+            view.position(offsets[index]);
+            return view.slice();
+        }
+
+    }
+
     public static class Builder {
         private final HashMap<Long, List<Posting>> dictionaryBuilder = new HashMap<>();
         private int entryCount;
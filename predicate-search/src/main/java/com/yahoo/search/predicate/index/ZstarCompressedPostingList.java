@@ -3,6 +3,8 @@ package com.yahoo.search.predicate.index;
 
 import com.yahoo.search.predicate.SubqueryBitmap;
 
+import java.nio.IntBuffer;
+
 /**
  * Wraps a posting list of compressed NOT-features.
  * The compression works by implying an interval of size 1 after each
@@ -15,7 +17,8 @@ import com.yahoo.search.predicate.SubqueryBitmap;
 public class ZstarCompressedPostingList extends MultiIntervalPostingList {
 
     private final PredicateIntervalStore store;
-    private int[] currentIntervals;
+    private int[] currentIntervals = new int[0];
+    private int currentIntervalsSize;
     private int currentIntervalIndex;
     private int prevInterval;
     private int currentInterval;
@@ -24,14 +27,15 @@ public class ZstarCompressedPostingList extends MultiIntervalPostingList {
     /**
      * @param docIds Posting list as a stream.
      */
-    public ZstarCompressedPostingList(PredicateIntervalStore store, int[] docIds, int[] dataRefs) {
+    public ZstarCompressedPostingList(PredicateIntervalStore store, IntBuffer docIds, IntBuffer dataRefs) {
         super(docIds, dataRefs, SubqueryBitmap.ALL_SUBQUERIES);
         this.store = store;
     }
 
     @Override
     protected boolean prepareIntervals(int dataRef) {
-        currentIntervals = store.get(dataRef);
+        currentIntervals = store.get(dataRef, currentIntervals);
+        currentIntervalsSize = store.size(dataRef);
         currentIntervalIndex = 0;
         return nextInterval();
     }
@@ -39,7 +43,7 @@ public class ZstarCompressedPostingList extends MultiIntervalPostingList {
     @Override
     public boolean nextInterval() {
         int nextInterval = -1;
-        if (currentIntervalIndex < currentIntervals.length) {
+        if (currentIntervalIndex < currentIntervalsSize) {
             nextInterval = currentIntervals[currentIntervalIndex];
         }
         if (prevInterval != 0) {
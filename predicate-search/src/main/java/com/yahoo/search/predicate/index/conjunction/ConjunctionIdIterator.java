@@ -1,6 +1,8 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.search.predicate.index.conjunction;
 
+import java.nio.IntBuffer;
+
 /**
  * Conjunction id posting list iterator for a single feature/assignment (e.g. a=b).
  *
@@ -8,17 +10,21 @@ package com.yahoo.search.predicate.index.conjunction;
  */
 public class ConjunctionIdIterator {
 
-    private final int[] conjunctionIds;
+    private final IntBuffer conjunctionIds;
     private final long subqueryBitmap;
     private int currentConjunctionId;
     private int length;
     private int index;
 
     public ConjunctionIdIterator(long subqueryBitmap, int[] conjunctionIds) {
+        this(subqueryBitmap, IntBuffer.wrap(conjunctionIds));
+    }
+
+    public ConjunctionIdIterator(long subqueryBitmap, IntBuffer conjunctionIds) {
         this.subqueryBitmap = subqueryBitmap;
         this.conjunctionIds = conjunctionIds;
-        this.currentConjunctionId = conjunctionIds[0];
-        this.length = conjunctionIds.length;
+        this.currentConjunctionId = conjunctionIds.get(0);
+        this.length = conjunctionIds.limit();
         this.index = 0;
     }
 
@@ -27,7 +33,7 @@ public class ConjunctionIdIterator {
 
         int candidate = currentConjunctionId;
         while (ConjunctionId.compare(conjunctionId, candidate) > 0 && ++index < length) {
-            candidate = conjunctionIds[index];
+            candidate = conjunctionIds.get(index);
         }
         currentConjunctionId = candidate;
         return ConjunctionId.compare(conjunctionId, candidate) <= 0;
@@ -41,7 +47,7 @@ public class ConjunctionIdIterator {
         return currentConjunctionId;
     }
 
-    public int[] getConjunctionIds() {
+    public IntBuffer getConjunctionIds() {
         return conjunctionIds;
     }
 
@@ -9,13 +9,14 @@ import com.yahoo.search.predicate.utils.PrimitiveArraySorter;
 import org.eclipse.collections.api.map.primitive.IntObjectMap;
 import org.eclipse.collections.api.map.primitive.LongObjectMap;
 import org.eclipse.collections.api.tuple.primitive.IntObjectPair;
-import org.eclipse.collections.api.tuple.primitive.LongObjectPair;
 import org.eclipse.collections.impl.map.mutable.primitive.IntObjectHashMap;
 import org.eclipse.collections.impl.map.mutable.primitive.LongObjectHashMap;
 
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -69,23 +70,66 @@ public class ConjunctionIndex {
         return new ConjunctionIndex(kIndex, zList, idMapping);
     }
 
+    public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+        SerializationHelper.writeIntArray(zList, out);
+        SerializationHelper.writeLongArray(idMapping, out);
+        out.writeInt(kIndex.size());
+        for (IntObjectPair<FeatureIndex> p : kIndex.keyValuesView()) {
+            out.writeInt(p.getOne());
+            p.getTwo().writeToMappableOutputStream(out);
+        }
+    }
+
+    /**
+     * Reads an index written by {@link #writeToMappableOutputStream} from the current position of the given
+     * buffer, and advances past it. The conjunction id lists of the returned index reference the buffer,
+     * which must not be modified while the index is in use.
+     */
+    public static ConjunctionIndex fromMappedBuffer(ByteBuffer buffer) {
+        int[] zList = SerializationHelper.readIntArray(buffer);
+        long[] idMapping = SerializationHelper.readLongArray(buffer);
+        int kIndexSize = buffer.getInt();
+        IntObjectHashMap<FeatureIndex> kIndex = new IntObjectHashMap<>(kIndexSize);
+        for (int i = 0; i < kIndexSize; i++) {
+            int key = buffer.getInt();
+            kIndex.put(key, FeatureIndex.fromMappedBuffer(buffer));
+        }
+        kIndex.compact();
+        return new ConjunctionIndex(kIndex, zList, idMapping);
+    }
+
     public static class FeatureIndex {
         // Maps a feature id to conjunction id
         private final LongObjectMap<int[]> map;
+        private final MappedConjunctionIds mappedConjunctionIds;
 
         public FeatureIndex(LongObjectMap<int[]> map) {
             this.map = map;
+            this.mappedConjunctionIds = null;
+        }
+
+        private FeatureIndex(MappedConjunctionIds mappedConjunctionIds) {
+            this.map = null;
+            this.mappedConjunctionIds = mappedConjunctionIds;
         }
 
-        public Optional<int[]> getConjunctionIdsForFeature(long featureId) {
-            return Optional.ofNullable(map.get(featureId));
+        public Optional<IntBuffer> getConjunctionIdsForFeature(long featureId) {
+            if (map == null) return Optional.ofNullable(mappedConjunctionIds.get(featureId));
+
+            int[] conjunctionIds = map.get(featureId);
+            return conjunctionIds == null ? Optional.empty() : Optional.of(IntBuffer.wrap(conjunctionIds));
+        }
+
+        private long[] sortedKeys() {
+            return map != null ? map.keySet().toSortedArray() : mappedConjunctionIds.keys;
         }
 
         public void writeToOutputStream(DataOutputStream out) throws IOException {
-            out.writeInt(map.size());
-            for (LongObjectPair<int[]> p : map.keyValuesView()) {
-                out.writeLong(p.getOne());
-                SerializationHelper.writeIntArray(p.getTwo(), out);
+            long[] keys = sortedKeys();
+            out.writeInt(keys.length);
+            for (long key : keys) {
+                out.writeLong(key);
+                SerializationHelper.writeIntArray(getConjunctionIdsForFeature(key).get(), out);
             }
         }
 
@@ -99,6 +143,54 @@ public class ConjunctionIndex {
             map.compact();
             return new FeatureIndex(map);
         }
+
+        public void writeToMappableOutputStream(DataOutputStream out) throws IOException {
+            long[] keys = sortedKeys();
+            IntBuffer[] conjunctionIds = new IntBuffer[keys.length];
+            int[] offsets = new int[keys.length + 1];
+            for (int i = 0; i < keys.length; i++) {
+                conjunctionIds[i] = getConjunctionIdsForFeature(keys[i]).get();
+                offsets[i + 1] = offsets[i] + conjunctionIds[i].limit();
+            }
+            SerializationHelper.writeLongArray(keys, out);
+            SerializationHelper.writeIntArray(offsets, out);
+            out.writeInt(offsets[keys.length]);
+            for (IntBuffer ids : conjunctionIds) {
+                SerializationHelper.writeInts(ids, out);
+            }
+        }
+
+        public static FeatureIndex fromMappedBuffer(ByteBuffer buffer) {
+            long[] keys = SerializationHelper.readLongArray(buffer);
+            int[] offsets = SerializationHelper.readIntArray(buffer);
+            IntBuffer conjunctionIds = SerializationHelper.sliceIntArray(buffer);
+            return new FeatureIndex(new MappedConjunctionIds(keys, offsets, conjunctionIds));
+        }
+    }
+
+    /** Conjunction id lists stored in a buffer, which are returned as views of the buffer */
+    private static class MappedConjunctionIds {
+
+        private final long[] keys;
+        private final int[] offsets;
+        private final IntBuffer conjunctionIds;
+
+        MappedConjunctionIds(long[] keys, int[] offsets, IntBuffer conjunctionIds) {
+            this.keys = keys;
+            this.offsets = offsets;
+            this.conjunctionIds = conjunctionIds;
+        }
+
+        IntBuffer get(long key) {
+            int index = Arrays.binarySearch(keys, key);
+            if (index < 0) return null;
+
+            IntBuffer view = conjunctionIds.duplicate();
+            view.limit(offsets[index + 1]);
+            view.position(offsets[index]);
+            return view.slice();
+        }
+
     }
 
     public class Searcher {
@@ -135,7 +227,9 @@ public class ConjunctionIndex {
         private void calculateIteratorsPerConjunction(List<ConjunctionIdIterator> iterators) {
             Arrays.fill(iteratorsPerConjunction, (byte)0);
             for (ConjunctionIdIterator iterator : iterators) {
-                for (int id : iterator.getConjunctionIds()) {
+                IntBuffer conjunctionIds = iterator.getConjunctionIds();
+                for (int i = 0, length = conjunctionIds.limit(); i < length; i++) {
+                    int id = conjunctionIds.get(i);
                     if (ConjunctionId.isPositive(id)) {
                         ++iteratorsPerConjunction[id >>> 1];
                     }
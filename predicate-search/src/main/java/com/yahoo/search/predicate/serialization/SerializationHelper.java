@@ -6,9 +6,12 @@ import com.yahoo.search.predicate.PredicateIndex;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 /**
  * Misc utility functions to help serialization of {@link PredicateIndex}.
+ * The ByteBuffer variants read arrays written by the stream variants, from the buffer's current position.
  *
  * @author bjorncs
  */
@@ -21,6 +24,19 @@ public class SerializationHelper {
         }
     }
 
+    /** Writes the ints of the given buffer, from position 0 to its limit, in the format of {@link #writeIntArray(int[], DataOutputStream)} */
+    public static void writeIntArray(IntBuffer array, DataOutputStream out) throws IOException {
+        out.writeInt(array.limit());
+        writeInts(array, out);
+    }
+
+    /** Writes the ints of the given buffer, from position 0 to its limit, without a length */
+    public static void writeInts(IntBuffer array, DataOutputStream out) throws IOException {
+        for (int i = 0, length = array.limit(); i < length; i++) {
+            out.writeInt(array.get(i));
+        }
+    }
+
     public static int[] readIntArray(DataInputStream in) throws IOException {
         int length = in.readInt();
         int[] array = new int[length];
@@ -78,4 +94,40 @@ public class SerializationHelper {
         return array;
     }
 
+    public static int[] readIntArray(ByteBuffer buffer) {
+        int[] array = new int[buffer.getInt()];
+        buffer.asIntBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Integer.BYTES);
+        return array;
+    }
+
+    /** Returns a view of an int array in the given buffer, without copying it, and advances past it. */
+    public static IntBuffer sliceIntArray(ByteBuffer buffer) {
+        int length = buffer.getInt();
+        IntBuffer array = buffer.asIntBuffer();
+        array.limit(length);
+        buffer.position(buffer.position() + length * Integer.BYTES);
+        return array;
+    }
+
+    public static byte[] readByteArray(ByteBuffer buffer) {
+        byte[] array = new byte[buffer.getInt()];
+        buffer.get(array);
+        return array;
+    }
+
+    public static long[] readLongArray(ByteBuffer buffer) {
+        long[] array = new long[buffer.getInt()];
+        buffer.asLongBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Long.BYTES);
+        return array;
+    }
+
+    public static short[] readShortArray(ByteBuffer buffer) {
+        short[] array = new short[buffer.getInt()];
+        buffer.asShortBuffer().get(array);
+        buffer.position(buffer.position() + array.length * Short.BYTES);
+        return array;
+    }
+
 }
@@ -2,10 +2,19 @@
 package com.yahoo.search.predicate;
 
 import com.yahoo.document.predicate.Predicate;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
 
+import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertMappableSerializationMatches;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static java.util.stream.Collectors.toList;
 import static org.junit.Assert.assertEquals;
@@ -18,6 +27,9 @@ public class PredicateIndexTest {
 
     private static final int DOC_ID = 42;
 
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
     @Test
     public void requireThatPredicateIndexCanSearch() {
         PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
@@ -137,5 +149,151 @@ public class PredicateIndexTest {
         PredicateIndex index = builder.build();
         assertSerializationDeserializationMatches(
                 index, PredicateIndex::writeToOutputStream, PredicateIndex::fromInputStream);
+        assertMappableSerializationMatches(
+                index, PredicateIndex::writeToMappableOutputStream, PredicateIndex::fromMappedBuffer,
+                PredicateIndex::writeToOutputStream);
+    }
+
+    @Test
+    public void require_that_index_files_of_both_formats_can_be_searched() throws IOException {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        builder.indexDocument(1, Predicate.fromString("country in ['no', 'se'] and gender in ['male']"));
+        builder.indexDocument(2, Predicate.fromString("country in ['no'] and age in [20..40]"));
+        builder.indexDocument(3, Predicate.fromString("true"));
+        PredicateIndex index = builder.build();
+
+        File streamFile = tempFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(streamFile))) {
+            index.writeToOutputStream(out);
+        }
+        File mappableFile = tempFolder.newFile();
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(mappableFile))) {
+            index.writeToMappableOutputStream(out);
+        }
+
+        PredicateQuery query = new PredicateQuery();
+        query.addFeature("country", "no");
+        query.addFeature("gender", "male");
+        query.addRangeFeature("age", 30);
+        for (File file : new File[] { streamFile, mappableFile }) {
+            PredicateIndex.Searcher searcher = PredicateIndex.fromFile(file.toPath()).searcher();
+            assertEquals("[1, 2, 3]", searcher.search(query).collect(toList()).toString());
+            assertEquals("[1, 2, 3]", searcher.search(query).collect(toList()).toString());
+        }
+    }
+
+    @Test
+    public void require_that_partitioned_search_returns_same_hits_as_search() {
+        PredicateIndex index = createIndexForQueryComparison(new Config.Builder().setArity(10).build());
+        PredicateIndex.Searcher searcher = index.searcher();
+        ForkJoinPool pool = new ForkJoinPool(3);
+        try {
+            for (PredicateQuery query : createQueriesForComparison()) {
+                List<Hit> expected = searcher.search(query).collect(toList());
+                assertEquals(expected, searcher.search(query, pool, 7).collect(toList()));
+                assertEquals(expected, searcher.search(query, pool).collect(toList()));
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void require_that_batch_search_returns_same_hits_as_search() {
+        for (boolean useConjunctionAlgorithm : new boolean[] { false, true }) {
+            PredicateIndex index = createIndexForQueryComparison(
+                    new Config.Builder().setArity(10).setUseConjunctionAlgorithm(useConjunctionAlgorithm).build());
+            PredicateIndex.Searcher searcher = index.searcher();
+            List<PredicateQuery> queries = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                queries.addAll(createQueriesForComparison()); // More than a batch
+            }
+            List<List<Hit>> hits = searcher.searchBatch(queries);
+            assertEquals(queries.size(), hits.size());
+            for (int i = 0; i < queries.size(); i++) {
+                assertEquals(searcher.search(queries.get(i)).collect(toList()), hits.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void require_that_batch_search_shares_posting_lists_of_overlapping_ranges() {
+        // With arity 2, all the query values below share most partitions, and every value matches document 1
+        // through one partition of each of its three ranges. Counting a shared partition once per value would
+        // overflow the posting list count of document 1.
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(new Config.Builder().setArity(2).build());
+        builder.indexDocument(1, Predicate.fromString("age in [0..1000] or age in [1..1000] or age in [2..1000]"));
+        builder.indexDocument(2, Predicate.fromString("age in [10..20]"));
+        builder.indexDocument(3, Predicate.fromString("age in [30..40] and gender in ['male']"));
+        PredicateIndex.Searcher searcher = builder.build().searcher();
+        List<PredicateQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            PredicateQuery query = new PredicateQuery();
+            query.addRangeFeature("age", i);
+            if (i % 2 == 0) query.addFeature("gender", "male");
+            queries.add(query);
+        }
+        List<List<Hit>> hits = searcher.searchBatch(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(searcher.search(queries.get(i)).collect(toList()), hits.get(i));
+            assertEquals(1, hits.get(i).get(0).getDocId());
+        }
     }
+
+    @Test
+    public void require_that_batch_search_finds_documents_in_more_posting_lists_than_a_byte_can_count() {
+        // Each query matches document 1 through 3 features, and the batch through 192 features
+        List<String> values = new ArrayList<>();
+        for (int i = 0; i < 200; i++)
+            values.add("'v" + i + "'");
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(10);
+        builder.indexDocument(1, Predicate.fromString("key in [" + String.join(", ", values) + "]"));
+        builder.indexDocument(2, Predicate.fromString("key in ['other']"));
+        PredicateIndex.Searcher searcher = builder.build().searcher();
+        List<PredicateQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 64; i++) {
+            PredicateQuery query = new PredicateQuery();
+            query.addFeature("key", "v" + i);
+            query.addFeature("key", "v" + (i + 64));
+            query.addFeature("key", "v" + (i + 128));
+            queries.add(query);
+        }
+        List<List<Hit>> hits = searcher.searchBatch(queries);
+        for (int i = 0; i < queries.size(); i++) {
+            assertEquals(1, hits.get(i).size());
+            assertEquals(1, hits.get(i).get(0).getDocId());
+        }
+    }
+
+    private static PredicateIndex createIndexForQueryComparison(Config config) {
+        PredicateIndexBuilder builder = new PredicateIndexBuilder(config);
+        for (int i = 0; i < 2000; i++) {
+            switch (i % 5) {
+                case 0: builder.indexDocument(i, Predicate.fromString("country in ['no', 'se'] and gender in ['male']")); break;
+                case 1: builder.indexDocument(i, Predicate.fromString("country not in ['no'] and age in [20..40]")); break;
+                case 2: builder.indexDocument(i, Predicate.fromString("gender in ['female'] or age in [" + (i % 50) + "..60]")); break;
+                case 3: builder.indexDocument(i, Predicate.fromString("(a in ['b'] and c in ['d']) or country in ['dk']")); break;
+                case 4: builder.indexDocument(i, Predicate.fromString("true")); break;
+            }
+        }
+        return builder.build();
+    }
+
+    private static List<PredicateQuery> createQueriesForComparison() {
+        List<PredicateQuery> queries = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            PredicateQuery query = new PredicateQuery();
+            if (i % 2 == 0) query.addFeature("country", i % 4 == 0 ? "no" : "dk");
+            if (i % 3 == 0) query.addFeature("gender", i % 6 == 0 ? "male" : "female");
+            if (i % 5 != 0) query.addRangeFeature("age", i + 10);
+            if (i % 7 == 0) {
+                query.addFeature("a", "b");
+                query.addFeature("c", "d");
+            }
+            if (i % 11 == 0) query.addFeature("country", "se", 0x3);
+            queries.add(query);
+        }
+        return queries;
+    }
+
 }
@@ -4,6 +4,7 @@ package com.yahoo.search.predicate.index;
 import com.google.common.primitives.Ints;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.List;
 
@@ -43,7 +44,7 @@ public class BoundsPostingListTest {
 
         PredicateIntervalStore store = builder.build();
         BoundsPostingList postingList = new BoundsPostingList(
-                store, Ints.toArray(docIds), Ints.toArray(dataRefs), 0xffffffffffffffffL, 5);
+                store, IntBuffer.wrap(Ints.toArray(docIds)), IntBuffer.wrap(Ints.toArray(dataRefs)), 0xffffffffffffffffL, 5);
         assertEquals(-1, postingList.getDocId());
         assertEquals(0, postingList.getInterval());
         assertEquals(0xffffffffffffffffL, postingList.getSubquery());
@@ -58,7 +59,7 @@ public class BoundsPostingListTest {
 
         checkNext(postingList, 60, 61, 6);  // [0..10] .. [5..15]
 
-        postingList = new BoundsPostingList(store, Ints.toArray(docIds), Ints.toArray(dataRefs), 0xffffffffffffffffL, 40);
+        postingList = new BoundsPostingList(store, IntBuffer.wrap(Ints.toArray(docIds)), IntBuffer.wrap(Ints.toArray(dataRefs)), 0xffffffffffffffffL, 40);
         checkNext(postingList, 0, 1, 2);
         checkNext(postingList, 20, 21, 22);
 
@@ -2,12 +2,13 @@
 package com.yahoo.search.predicate.index;
 
 import com.google.common.primitives.Ints;
-import org.eclipse.collections.impl.map.mutable.primitive.ObjectIntHashMap;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -49,11 +50,11 @@ public class CachedPostingListCounterTest {
         }
         c.registerUsage(list);
         CachedPostingListCounter newC = c.rebuildCache();
-        ObjectIntHashMap<int[]> mapping = newC.getPostingListMapping();
-        assertEquals(0, mapping.getIfAbsent(p2.getDocIds(), -1));
-        assertEquals(1, mapping.getIfAbsent(p3.getDocIds(), -1));
-        assertEquals(2, mapping.getIfAbsent(p1.getDocIds(), -1));
-        assertEquals(3, mapping.getIfAbsent(p4.getDocIds(), -1));
+        Map<IntBuffer, Integer> mapping = newC.getPostingListMapping();
+        assertEquals(0, mapping.get(p2.getDocIds()).intValue());
+        assertEquals(1, mapping.get(p3.getDocIds()).intValue());
+        assertEquals(2, mapping.get(p1.getDocIds()).intValue());
+        assertEquals(3, mapping.get(p4.getDocIds()).intValue());
 
         int[] bitVector = newC.getBitVector();
         assertEquals(0b0001, bitVector[0] & 0b1111);
@@ -109,7 +110,7 @@ public class CachedPostingListCounterTest {
 
     private static PostingList postingList(Integer... docIds) {
         PostingList postingList = mock(PostingList.class);
-        when(postingList.getDocIds()).thenReturn(Ints.toArray(Arrays.asList((docIds))));
+        when(postingList.getDocIds()).thenReturn(IntBuffer.wrap(Ints.toArray(Arrays.asList((docIds)))));
         return postingList;
     }
 
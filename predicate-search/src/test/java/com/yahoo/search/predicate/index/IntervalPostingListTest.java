@@ -4,6 +4,7 @@ package com.yahoo.search.predicate.index;
 import com.yahoo.search.predicate.SubqueryBitmap;
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
@@ -19,7 +20,7 @@ public class IntervalPostingListTest {
         int ref2 = builder.insert(Arrays.asList(0x1ffff));
         int ref3 = builder.insert(Arrays.asList(0x10001, 0x2ffff));
         IntervalPostingList postingList = new IntervalPostingList(
-                builder.build(), new int[]{2, 4, 6}, new int[] {ref1, ref2, ref3}, SubqueryBitmap.ALL_SUBQUERIES);
+                builder.build(), IntBuffer.wrap(new int[]{2, 4, 6}), IntBuffer.wrap(new int[] {ref1, ref2, ref3}), SubqueryBitmap.ALL_SUBQUERIES);
         assertEquals(-1, postingList.getDocId());
         assertEquals(0, postingList.getInterval());
         assertEquals(0xffffffffffffffffL, postingList.getSubquery());
@@ -4,11 +4,15 @@ package com.yahoo.search.predicate.index;
 import com.google.common.primitives.Ints;
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertMappableSerializationMatches;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -55,6 +59,9 @@ public class PredicateIntervalStoreTest {
         PredicateIntervalStore store = builder.build();
         assertSerializationDeserializationMatches(
                 store, PredicateIntervalStore::writeToOutputStream, PredicateIntervalStore::fromInputStream);
+        assertMappableSerializationMatches(
+                store, PredicateIntervalStore::writeToMappableOutputStream, PredicateIntervalStore::fromMappedBuffer,
+                PredicateIntervalStore::writeToOutputStream);
     }
 
     @Test
@@ -70,6 +77,25 @@ public class PredicateIntervalStoreTest {
         assertTrue(a1 == a2);
     }
 
+    @Test
+    public void requireThatMappedStoreReusesBufferWhenLargeEnough() throws IOException {
+        PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
+        int ref1 = builder.insert(Arrays.asList(0x00010001, 0x00020002, 0x00030003));
+        int ref2 = builder.insert(Arrays.asList(0x00010001));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        builder.build().writeToMappableOutputStream(new DataOutputStream(bytes));
+        PredicateIntervalStore store = PredicateIntervalStore.fromMappedBuffer(ByteBuffer.wrap(bytes.toByteArray()));
+
+        int[] buffer = store.get(ref2, new int[0]);
+        assertEquals(1, store.size(ref2));
+        assertEquals(0x00010001, buffer[0]);
+        int[] larger = store.get(ref1, buffer);
+        assertEquals(3, store.size(ref1));
+        assertArrayEquals(new int[] {0x00010001, 0x00020002, 0x00030003}, larger);
+        assertTrue(larger == store.get(ref2, larger));
+        assertEquals(0x00010001, larger[0]);
+    }
+
     private static void testInsertAndRetrieve(int... intervals) {
         PredicateIntervalStore.Builder builder = new PredicateIntervalStore.Builder();
         int ref = builder.insert(Ints.asList(intervals));
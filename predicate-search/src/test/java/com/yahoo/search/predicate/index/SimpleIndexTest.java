@@ -3,11 +3,19 @@ package com.yahoo.search.predicate.index;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
+import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertMappableSerializationMatches;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
 
 /**
  * @author <a href="mailto:magnarn@yahoo-inc.com">Magnar Nedland</a>
@@ -25,16 +33,16 @@ public class SimpleIndexTest {
         SimpleIndex index = builder.build();
         SimpleIndex.Entry e = index.getPostingList(KEY);
         assertNotNull(e);
-        assertEquals(1, e.docIds.length);
+        assertEquals(1, e.docIds.limit());
 
         builder = new SimpleIndex.Builder();
         builder.insert(KEY, new Posting(DOC_ID, 10));
         builder.insert(KEY, new Posting(DOC_ID + 1, 20));
         index = builder.build();
         e = index.getPostingList(KEY);
-        assertEquals(2, e.docIds.length);
-        assertEquals(10, e.dataRefs[0]);
-        assertEquals(20, e.dataRefs[1]);
+        assertEquals(2, e.docIds.limit());
+        assertEquals(10, e.dataRefs.get(0));
+        assertEquals(20, e.dataRefs.get(1));
     }
 
     @Test
@@ -45,10 +53,10 @@ public class SimpleIndexTest {
         builder.insert(KEY, new Posting(DOC_ID + 1, 30));
         SimpleIndex index = builder.build();
         SimpleIndex.Entry entry = index.getPostingList(KEY);
-        assertEquals(3, entry.docIds.length);
-        assertEquals(DOC_ID - 1, entry.docIds[0]);
-        assertEquals(DOC_ID, entry.docIds[1]);
-        assertEquals(DOC_ID + 1, entry.docIds[2]);
+        assertEquals(3, entry.docIds.limit());
+        assertEquals(DOC_ID - 1, entry.docIds.get(0));
+        assertEquals(DOC_ID, entry.docIds.get(1));
+        assertEquals(DOC_ID + 1, entry.docIds.get(2));
     }
 
     @Test
@@ -61,5 +69,26 @@ public class SimpleIndexTest {
         builder.insert(KEY + 0xFFFFFF, new Posting(DOC_ID + 1, 200));
         SimpleIndex index = builder.build();
         assertSerializationDeserializationMatches(index, SimpleIndex::writeToOutputStream, SimpleIndex::fromInputStream);
+        assertMappableSerializationMatches(
+                index, SimpleIndex::writeToMappableOutputStream, SimpleIndex::fromMappedBuffer, SimpleIndex::writeToOutputStream);
+    }
+
+    @Test
+    public void requireThatMappedIndexReturnsSamePostingListViewOnEachLookup() throws IOException {
+        SimpleIndex.Builder builder = new SimpleIndex.Builder();
+        builder.insert(KEY, new Posting(DOC_ID, 10));
+        builder.insert(KEY, new Posting(DOC_ID + 1, 20));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        builder.build().writeToMappableOutputStream(new DataOutputStream(bytes));
+
+        ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.size());
+        buffer.put(bytes.toByteArray()).flip();
+        SimpleIndex index = SimpleIndex.fromMappedBuffer(buffer);
+        SimpleIndex.Entry entry = index.getPostingList(KEY);
+        assertTrue("Posting lists are read from the buffer", entry.docIds.isDirect() && entry.dataRefs.isDirect());
+        assertEquals(IntBuffer.wrap(new int[]{DOC_ID, DOC_ID + 1}), entry.docIds);
+        assertEquals(IntBuffer.wrap(new int[]{10, 20}), entry.dataRefs);
+        assertSame(entry, index.getPostingList(KEY));
+        assertNull(index.getPostingList(KEY + 1));
     }
 }
@@ -3,6 +3,7 @@ package com.yahoo.search.predicate.index;
 
 import org.junit.Test;
 
+import java.nio.IntBuffer;
 import java.util.Arrays;
 
 import static org.junit.Assert.assertEquals;
@@ -20,7 +21,7 @@ public class ZstarCompressedPostingListTest {
         int ref2 = builder.insert(Arrays.asList(0x10000, 0x0ffff));
         int ref3 = builder.insert(Arrays.asList(0x10000, 0x00003, 0x40003, 0x60005));
         ZstarCompressedPostingList postingList = new ZstarCompressedPostingList(
-                builder.build(), new int[]{2, 4, 6}, new int[]{ref1, ref2, ref3});
+                builder.build(), IntBuffer.wrap(new int[]{2, 4, 6}), IntBuffer.wrap(new int[]{ref1, ref2, ref3}));
         assertEquals(-1, postingList.getDocId());
         assertEquals(0, postingList.getInterval());
         assertEquals(0xffffffffffffffffL, postingList.getSubquery());
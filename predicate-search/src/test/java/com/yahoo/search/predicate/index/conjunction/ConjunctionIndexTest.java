@@ -13,6 +13,7 @@ import java.util.List;
 
 import static com.yahoo.document.predicate.Predicates.feature;
 import static com.yahoo.document.predicate.Predicates.not;
+import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertMappableSerializationMatches;
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.assertSerializationDeserializationMatches;
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
@@ -342,6 +343,9 @@ public class ConjunctionIndexTest {
         ConjunctionIndex index = builder.build();
         assertSerializationDeserializationMatches(
                 index, ConjunctionIndex::writeToOutputStream, ConjunctionIndex::fromInputStream);
+        assertMappableSerializationMatches(
+                index, ConjunctionIndex::writeToMappableOutputStream, ConjunctionIndex::fromMappedBuffer,
+                ConjunctionIndex::writeToOutputStream);
     }
 
     private static List<ConjunctionHit> matchingConjunctionList(ConjunctionHit... conjunctionHits) {
@@ -3,9 +3,15 @@ package com.yahoo.search.predicate.serialization;
 
 import org.junit.Test;
 
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.IntBuffer;
 
 import static com.yahoo.search.predicate.serialization.SerializationTestHelper.*;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author bjorncs
@@ -40,5 +46,28 @@ public class SerializationHelperTest {
                 shorts, SerializationHelper::writeShortArray, SerializationHelper::readShortArray);
     }
 
+    @Test
+    public void require_that_arrays_can_be_read_from_buffer() throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        SerializationHelper.writeIntArray(new int[]{1, 2, 3}, out);
+        SerializationHelper.writeLongArray(new long[]{4, 5}, out);
+        SerializationHelper.writeByteArray(new byte[]{6}, out);
+        SerializationHelper.writeShortArray(new short[]{7, 8}, out);
+        SerializationHelper.writeIntArray(new int[]{9, 10}, out);
+        out.writeInt(11);
+
+        ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+        assertArrayEquals(new int[]{1, 2, 3}, SerializationHelper.readIntArray(buffer));
+        assertArrayEquals(new long[]{4, 5}, SerializationHelper.readLongArray(buffer));
+        assertArrayEquals(new byte[]{6}, SerializationHelper.readByteArray(buffer));
+        assertArrayEquals(new short[]{7, 8}, SerializationHelper.readShortArray(buffer));
+        IntBuffer slice = SerializationHelper.sliceIntArray(buffer);
+        assertEquals(2, slice.remaining());
+        assertEquals(9, slice.get(0));
+        assertEquals(10, slice.get(1));
+        assertEquals(11, buffer.getInt());
+    }
+
 
 }
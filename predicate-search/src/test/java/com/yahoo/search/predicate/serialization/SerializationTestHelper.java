@@ -6,8 +6,10 @@ import java.io.ByteArrayOutputStream;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
 
 /**
  * @author bjorncs
@@ -35,6 +37,38 @@ public class SerializationTestHelper {
         assertArrayEquals(bytes, newBytes);
     }
 
+    /**
+     * Asserts that an object read from its mappable serialization has the same (regular) serialization as the original.
+     */
+    public static <T> void assertMappableSerializationMatches
+            (T object, Serializer<T> mappableSerializer, BufferDeserializer<T> deserializer, Serializer<T> serializer) throws IOException {
+
+        ByteArrayOutputStream byteArrayOut = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(byteArrayOut);
+        mappableSerializer.serialize(object, out);
+        out.flush();
+
+        byte[] mappableBytes = byteArrayOut.toByteArray();
+        ByteBuffer buffer = ByteBuffer.allocateDirect(mappableBytes.length);
+        buffer.put(mappableBytes).flip();
+        T newObject = deserializer.deserialize(buffer);
+        assertEquals(0, buffer.remaining());
+        assertArrayEquals(serialize(object, serializer), serialize(newObject, serializer));
+    }
+
+    private static <T> byte[] serialize(T object, Serializer<T> serializer) throws IOException {
+        ByteArrayOutputStream byteArrayOut = new ByteArrayOutputStream(4096);
+        DataOutputStream out = new DataOutputStream(byteArrayOut);
+        serializer.serialize(object, out);
+        out.flush();
+        return byteArrayOut.toByteArray();
+    }
+
+    @FunctionalInterface
+    public interface BufferDeserializer<T> {
+        T deserialize(ByteBuffer buffer) throws IOException;
+    }
+
     @FunctionalInterface
     public interface Serializer<T> {
         void serialize(T object, DataOutputStream out) throws IOException;
@@ -4,6 +4,7 @@ package com.yahoo.searchlib.rankingexpression.evaluation;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization.ScalarOptimizer;
 import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.TensorOptimizer;
 
 /**
@@ -26,6 +27,9 @@ import com.yahoo.searchlib.rankingexpression.evaluation.tensoroptimization.Tenso
  * // contextForOtherThread = context.clone();
  * </code>
  * <p>
+ * Scalar compilation is disabled by default, and is enabled by
+ * <code>getOptimizer(ScalarOptimizer.class).setEnabled(true)</code>.
+ * <p>
  * Instances of this class are not multithread safe.
  *
  * @author bratseth
@@ -35,6 +39,7 @@ public class ExpressionOptimizer {
     private GBDTOptimizer gbdtOptimizer = new GBDTOptimizer();
     private GBDTForestOptimizer gbdtForestOptimizer = new GBDTForestOptimizer();
     private TensorOptimizer tensorOptimizer = new TensorOptimizer();
+    private ScalarOptimizer scalarOptimizer = new ScalarOptimizer();
 
     /** Gets an optimizer instance used by this by class name, or null if the optimizer is not known */
     public Optimizer getOptimizer(Class<?> clazz) {
@@ -44,6 +49,8 @@ public class ExpressionOptimizer {
             return gbdtForestOptimizer;
         if (clazz == tensorOptimizer.getClass())
             return tensorOptimizer;
+        if (clazz == scalarOptimizer.getClass())
+            return scalarOptimizer;
         return null;
     }
 
@@ -53,6 +60,7 @@ public class ExpressionOptimizer {
         gbdtOptimizer.optimize(expression, contextIndex, report);
         gbdtForestOptimizer.optimize(expression, contextIndex, report);
         tensorOptimizer.optimize(expression, contextIndex, report);
+        scalarOptimizer.optimize(expression, contextIndex, report);
         return report;
     }
 
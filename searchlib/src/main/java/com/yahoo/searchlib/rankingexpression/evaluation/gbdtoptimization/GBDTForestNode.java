@@ -31,6 +31,11 @@ public class GBDTForestNode extends ExpressionNode {
 
     @Override
     public final Value evaluate(Context context) {
+        return new DoubleValue(evaluateDouble(context));
+    }
+
+    /** Evaluates this forest to a primitive double */
+    public final double evaluateDouble(Context context) {
         int pc = 0;
         double treeSum = 0;
         while (pc < values.length) {
@@ -38,7 +43,7 @@ public class GBDTForestNode extends ExpressionNode {
             treeSum += GBDTNode.evaluate(values, pc, context);
             pc += nextTree;
         }
-        return new DoubleValue(treeSum);
+        return treeSum;
     }
 
     /** Returns (optimized sum of condition trees) */
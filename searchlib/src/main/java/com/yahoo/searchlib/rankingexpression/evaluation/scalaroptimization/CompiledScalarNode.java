@@ -0,0 +1,69 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization;
+
+import com.yahoo.searchlib.rankingexpression.Reference;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.SerializationContext;
+import com.yahoo.tensor.TensorType;
+import com.yahoo.tensor.evaluation.TypeContext;
+
+import java.util.Deque;
+
+/**
+ * A scalar sub-expression compiled to a primitive evaluator, which does not create any values
+ * while evaluating. If the context is not indexed, or binds a variable referenced by this to a value
+ * which is not a scalar, the original expression is interpreted instead.
+ */
+public final class CompiledScalarNode extends ExpressionNode {
+
+    private final ScalarEvaluator evaluator;
+    private final boolean isBoolean;
+    private final ExpressionNode original;
+
+    /** The context indexes of the variables referenced by this */
+    private final int[] references;
+
+    CompiledScalarNode(ScalarEvaluator evaluator, boolean isBoolean, ExpressionNode original, int[] references) {
+        this.evaluator = evaluator;
+        this.isBoolean = isBoolean;
+        this.original = original;
+        this.references = references;
+    }
+
+    /** Returns the expression this was compiled from */
+    public ExpressionNode original() { return original; }
+
+    @Override
+    public TensorType type(TypeContext<Reference> context) { return original.type(context); }
+
+    @Override
+    public Value evaluate(Context context) {
+        if ( ! bindsScalars(context)) return original.evaluate(context);
+        double value = evaluator.evaluate(context);
+        return isBoolean ? new BooleanValue(value != 0) : new DoubleValue(value);
+    }
+
+    /** Returns whether the given context binds all the variables referenced by this to scalars */
+    private boolean bindsScalars(Context context) {
+        if ( ! (context instanceof ContextIndex)) return false;
+        if (context instanceof DoubleOnlyArrayContext) return true;
+        for (int index : references) {
+            if ( ! context.get(index).hasDouble()) return false;
+        }
+        return true;
+    }
+
+    /** Returns the original expression, as this has no expression syntax of its own */
+    @Override
+    public StringBuilder toString(StringBuilder string, SerializationContext context, Deque<String> path, CompositeNode parent) {
+        return original.toString(string, context, path, parent);
+    }
+
+}
@@ -0,0 +1,15 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization;
+
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+
+/**
+ * A compiled scalar expression evaluating directly to a primitive double.
+ */
+@FunctionalInterface
+interface ScalarEvaluator {
+
+    /** Evaluates this in the given context, which must bind all the variables this refers to to scalars */
+    double evaluate(Context context);
+
+}
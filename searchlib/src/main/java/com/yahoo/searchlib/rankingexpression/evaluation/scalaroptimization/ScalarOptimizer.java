@@ -0,0 +1,293 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.Context;
+import com.yahoo.searchlib.rankingexpression.evaluation.ContextIndex;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleCompatibleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.Optimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestNode;
+import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticNode;
+import com.yahoo.searchlib.rankingexpression.rule.ArithmeticOperator;
+import com.yahoo.searchlib.rankingexpression.rule.ComparisonNode;
+import com.yahoo.searchlib.rankingexpression.rule.CompositeNode;
+import com.yahoo.searchlib.rankingexpression.rule.ConstantNode;
+import com.yahoo.searchlib.rankingexpression.rule.EmbracedNode;
+import com.yahoo.searchlib.rankingexpression.rule.ExpressionNode;
+import com.yahoo.searchlib.rankingexpression.rule.Function;
+import com.yahoo.searchlib.rankingexpression.rule.FunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.GeneratorLambdaFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.IfNode;
+import com.yahoo.searchlib.rankingexpression.rule.LambdaFunctionNode;
+import com.yahoo.searchlib.rankingexpression.rule.NegativeNode;
+import com.yahoo.searchlib.rankingexpression.rule.NotNode;
+import com.yahoo.searchlib.rankingexpression.rule.ReferenceNode;
+import com.yahoo.searchlib.rankingexpression.rule.TruthOperator;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Compiles the scalar sub-expressions of an expression into evaluators which work on primitive doubles
+ * and read variables by index from the context. This avoids creating a Value for each node
+ * and each evaluation, and lets the JIT inline the resulting code.
+ * Nodes which cannot be compiled (tensor functions, set membership, references not known to the context etc.)
+ * are left as-is, while their children are still compiled.
+ *
+ * This is disabled by default. It is enabled by
+ * <code>expressionOptimizer.getOptimizer(ScalarOptimizer.class).setEnabled(true)</code>,
+ * and must be used with one of the indexed contexts as GBDT optimization. Model evaluation enables it for a
+ * rank profile by setting the rank property <code>vespa.java.compilescalars</code> to true.
+ */
+public class ScalarOptimizer extends Optimizer {
+
+    public ScalarOptimizer() {
+        setEnabled(false);
+    }
+
+    @Override
+    public void optimize(RankingExpression expression, ContextIndex context, OptimizationReport report) {
+        if ( ! isEnabled()) return;
+        if ( ! (context instanceof Context)) {
+            report.note("Scalar compilation skipped: " + context + " does not list its names");
+            return;
+        }
+
+        expression.setRoot(findAndCompile(expression.getRoot(), new Compilation(context), report));
+        report.note("Scalar compilation done");
+    }
+
+    /**
+     * Recursively descends and compiles the largest possible scalar sub-expressions.
+     *
+     * @return the resulting node, which may be the input node if nothing could be compiled
+     */
+    private ExpressionNode findAndCompile(ExpressionNode node, Compilation context, OptimizationReport report) {
+        if (isWorthCompiling(node)) {
+            context.references.clear();
+            ScalarEvaluator evaluator = compile(node, context);
+            if (evaluator != null) {
+                report.incMetric("Scalar expressions compiled", 1);
+                return new CompiledScalarNode(evaluator, isBoolean(node), node, context.referenceIndexes());
+            }
+        }
+
+        if ( ! (node instanceof CompositeNode)) return node;
+        if (node instanceof ReferenceNode) return node; // arguments are part of the reference
+        if (node instanceof LambdaFunctionNode || node instanceof GeneratorLambdaFunctionNode) return node; // other context
+        CompositeNode composite = (CompositeNode)node;
+        List<ExpressionNode> newChildren = new ArrayList<>();
+        for (ExpressionNode child : composite.children())
+            newChildren.add(findAndCompile(child, context, report));
+        return composite.setChildren(newChildren);
+    }
+
+    /** Single leaf nodes and nodes which are already optimized gain nothing from being compiled */
+    private boolean isWorthCompiling(ExpressionNode node) {
+        return node instanceof CompositeNode && ! (node instanceof ReferenceNode);
+    }
+
+    private boolean isBoolean(ExpressionNode node) {
+        if (node instanceof EmbracedNode) return isBoolean(((EmbracedNode)node).getValue());
+        if (node instanceof ComparisonNode || node instanceof NotNode) return true;
+        if (node instanceof ArithmeticNode) {
+            List<ArithmeticOperator> operators = ((ArithmeticNode)node).operators();
+            return operators.contains(ArithmeticOperator.OR) || operators.contains(ArithmeticOperator.AND);
+        }
+        return false;
+    }
+
+    /** Returns an evaluator of the given node, or null if this node (or any node below it) cannot be compiled */
+    private ScalarEvaluator compile(ExpressionNode node, Compilation context) {
+        if (node instanceof ConstantNode)
+            return compileConstant((ConstantNode)node);
+        if (node instanceof ReferenceNode)
+            return compileReference((ReferenceNode)node, context);
+        if (node instanceof EmbracedNode)
+            return compile(((EmbracedNode)node).getValue(), context);
+        if (node instanceof NegativeNode)
+            return compileNegative((NegativeNode)node, context);
+        if (node instanceof NotNode)
+            return compileNot((NotNode)node, context);
+        if (node instanceof ArithmeticNode)
+            return compileArithmetic((ArithmeticNode)node, context);
+        if (node instanceof ComparisonNode)
+            return compileComparison((ComparisonNode)node, context);
+        if (node instanceof IfNode)
+            return compileIf((IfNode)node, context);
+        if (node instanceof FunctionNode)
+            return compileFunction((FunctionNode)node, context);
+        if (node instanceof GBDTForestNode) {
+            GBDTForestNode forest = (GBDTForestNode)node;
+            return forest::evaluateDouble;
+        }
+        if (node instanceof GBDTNode) {
+            double[] tree = ((GBDTNode)node).values();
+            return c -> GBDTNode.evaluate(tree, 0, c);
+        }
+        return null;
+    }
+
+    private ScalarEvaluator compileConstant(ConstantNode node) {
+        Value value = node.getValue();
+        if ( ! (value instanceof DoubleCompatibleValue)) return null;
+        double constant = value.asDouble();
+        return c -> constant;
+    }
+
+    private ScalarEvaluator compileReference(ReferenceNode node, Compilation context) {
+        String name = node.toString();
+        if ( ! context.names.contains(name)) return null;
+        int index = context.index.getIndex(name);
+        context.references.add(index);
+        return c -> c.getDouble(index);
+    }
+
+    private ScalarEvaluator compileNegative(NegativeNode node, Compilation context) {
+        ScalarEvaluator value = compile(node.getValue(), context);
+        if (value == null) return null;
+        return c -> - value.evaluate(c);
+    }
+
+    private ScalarEvaluator compileNot(NotNode node, Compilation context) {
+        ScalarEvaluator value = compile(node.getValue(), context);
+        if (value == null) return null;
+        return c -> value.evaluate(c) != 0 ? 0 : 1;
+    }
+
+    private ScalarEvaluator compileComparison(ComparisonNode node, Compilation context) {
+        ScalarEvaluator left = compile(node.getLeftCondition(), context);
+        ScalarEvaluator right = compile(node.getRightCondition(), context);
+        if (left == null || right == null) return null;
+        TruthOperator operator = node.getOperator();
+        switch (operator) {
+            case SMALLER: return c -> left.evaluate(c) < right.evaluate(c) ? 1 : 0;
+            case SMALLEREQUAL: return c -> left.evaluate(c) <= right.evaluate(c) ? 1 : 0;
+            case EQUAL: return c -> left.evaluate(c) == right.evaluate(c) ? 1 : 0;
+            case LARGER: return c -> left.evaluate(c) > right.evaluate(c) ? 1 : 0;
+            case LARGEREQUAL: return c -> left.evaluate(c) >= right.evaluate(c) ? 1 : 0;
+            case NOTEQUAL: return c -> left.evaluate(c) != right.evaluate(c) ? 1 : 0;
+            default: return c -> operator.evaluate(left.evaluate(c), right.evaluate(c)) ? 1 : 0;
+        }
+    }
+
+    private ScalarEvaluator compileIf(IfNode node, Compilation context) {
+        ScalarEvaluator condition = compile(node.getCondition(), context);
+        ScalarEvaluator trueExpression = compile(node.getTrueExpression(), context);
+        ScalarEvaluator falseExpression = compile(node.getFalseExpression(), context);
+        if (condition == null || trueExpression == null || falseExpression == null) return null;
+        return c -> condition.evaluate(c) != 0 ? trueExpression.evaluate(c) : falseExpression.evaluate(c);
+    }
+
+    private ScalarEvaluator compileFunction(FunctionNode node, Compilation context) {
+        List<ExpressionNode> arguments = node.children();
+        Function function = node.getFunction();
+        if (arguments.size() == 0)
+            return c -> function.evaluate(0, 0);
+
+        ScalarEvaluator x = compile(arguments.get(0), context);
+        if (x == null) return null;
+        if (arguments.size() == 1) {
+            switch (function) {
+                case exp: return c -> Math.exp(x.evaluate(c));
+                case log: return c -> Math.log(x.evaluate(c));
+                case sqrt: return c -> Math.sqrt(x.evaluate(c));
+                case sigmoid: return c -> 1.0 / (1.0 + Math.exp(-1.0 * x.evaluate(c)));
+                default: return c -> function.evaluate(x.evaluate(c), 0);
+            }
+        }
+
+        ScalarEvaluator y = compile(arguments.get(1), context);
+        if (y == null) return null;
+        switch (function) {
+            case max: return c -> Math.max(x.evaluate(c), y.evaluate(c));
+            case min: return c -> Math.min(x.evaluate(c), y.evaluate(c));
+            case pow: return c -> Math.pow(x.evaluate(c), y.evaluate(c));
+            default: return c -> function.evaluate(x.evaluate(c), y.evaluate(c));
+        }
+    }
+
+    /** Compiles an arithmetic node by applying operators in precedence order, in the same way as ArithmeticNode */
+    private ScalarEvaluator compileArithmetic(ArithmeticNode node, Compilation context) {
+        List<ScalarEvaluator> children = new ArrayList<>();
+        for (ExpressionNode child : node.children()) {
+            ScalarEvaluator compiledChild = compile(child, context);
+            if (compiledChild == null) return null;
+            children.add(compiledChild);
+        }
+
+        Iterator<ScalarEvaluator> child = children.iterator();
+        Deque<Item> stack = new ArrayDeque<>();
+        stack.push(new Item(ArithmeticOperator.OR, child.next()));
+        for (Iterator<ArithmeticOperator> it = node.operators().iterator(); it.hasNext() && child.hasNext();) {
+            ArithmeticOperator op = it.next();
+            while (stack.peek().op.hasPrecedenceOver(op))
+                popStack(stack);
+            stack.push(new Item(op, child.next()));
+        }
+        while (stack.size() > 1)
+            popStack(stack);
+        return stack.getFirst().evaluator;
+    }
+
+    private void popStack(Deque<Item> stack) {
+        Item rhs = stack.pop();
+        Item lhs = stack.peek();
+        lhs.evaluator = combine(lhs.evaluator, rhs.op, rhs.evaluator);
+    }
+
+    private ScalarEvaluator combine(ScalarEvaluator x, ArithmeticOperator op, ScalarEvaluator y) {
+        switch (op) {
+            case OR: return c -> (x.evaluate(c) != 0 || y.evaluate(c) != 0) ? 1 : 0;
+            case AND: return c -> (x.evaluate(c) != 0 && y.evaluate(c) != 0) ? 1 : 0;
+            case PLUS: return c -> x.evaluate(c) + y.evaluate(c);
+            case MINUS: return c -> x.evaluate(c) - y.evaluate(c);
+            case MULTIPLY: return c -> x.evaluate(c) * y.evaluate(c);
+            case DIVIDE: return c -> x.evaluate(c) / y.evaluate(c);
+            case MODULO: return c -> x.evaluate(c) % y.evaluate(c);
+            case POWER: return c -> Math.pow(x.evaluate(c), y.evaluate(c));
+            default: throw new IllegalArgumentException("Unknown operator " + op);
+        }
+    }
+
+    private static class Item {
+
+        final ArithmeticOperator op;
+        ScalarEvaluator evaluator;
+
+        Item(ArithmeticOperator op, ScalarEvaluator evaluator) {
+            this.op = op;
+            this.evaluator = evaluator;
+        }
+
+    }
+
+    /** The context of compiling a single expression */
+    private static class Compilation {
+
+        final ContextIndex index;
+        final Set<String> names;
+
+        /** The indexes referenced by the sub-expression currently being compiled */
+        final Set<Integer> references = new TreeSet<>();
+
+        Compilation(ContextIndex index) {
+            this.index = index;
+            this.names = ((Context)index).names();
+        }
+
+        int[] referenceIndexes() {
+            return references.stream().mapToInt(Integer::intValue).toArray();
+        }
+
+    }
+
+}
@@ -4,6 +4,7 @@ package com.yahoo.searchlib.rankingexpression.evaluation;
 import com.yahoo.io.IOUtils;
 import com.yahoo.searchlib.rankingexpression.RankingExpression;
 import com.yahoo.searchlib.rankingexpression.evaluation.gbdtoptimization.GBDTForestOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization.ScalarOptimizer;
 import com.yahoo.searchlib.rankingexpression.parser.ParseException;
 
 import java.io.BufferedReader;
@@ -22,7 +23,7 @@ public class EvaluationBenchmark {
         try {
             //runNativeComparison(100*1000*1000);
 
-            // benchmark with a large gbdt: Expected tree and forest speedup: 2x, 4x
+            // benchmark with a large gbdt: Expected tree and forest speedup: 2x, 4x, compiled speedup over forest: ~1.2x
             runGBDT(1000*1000, gbdt);
 
             // benchmark with a large gbdt using set membership tests (on integers) extensively
@@ -152,6 +153,19 @@ public class EvaluationBenchmark {
         double forestTotal=benchmark(forestOptimized,forestContext,iterations,"Forest optimized");
         assertEqualish(total,forestTotal);
         System.out.println("-----------------------------------------------------------------------------------------------------");
+
+        // Forest optimized and scalar compiled...................
+        RankingExpression compiled = new RankingExpression(gbdtString);
+        DoubleOnlyArrayContext compiledContext = new DoubleOnlyArrayContext(compiled, true);
+        ExpressionOptimizer compilingOptimizer = new ExpressionOptimizer();
+        compilingOptimizer.getOptimizer(ScalarOptimizer.class).setEnabled(true);
+        System.out.print("Forest optimizing and compiling ... ");
+        OptimizationReport compiledOptimizationReport = compilingOptimizer.optimize(compiled, compiledContext);
+        System.out.println("done");
+        System.out.println(compiledOptimizationReport);
+        double compiledTotal = benchmark(compiled, compiledContext, iterations, "Scalar compiled");
+        assertEqualish(total, compiledTotal);
+        System.out.println("-----------------------------------------------------------------------------------------------------");
     }
 
     private double benchmark(RankingExpression gbdt, Context context, int iterations, String description) {
@@ -0,0 +1,113 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.searchlib.rankingexpression.evaluation.scalaroptimization;
+
+import com.yahoo.searchlib.rankingexpression.RankingExpression;
+import com.yahoo.searchlib.rankingexpression.evaluation.AbstractArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.ArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.BooleanValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleOnlyArrayContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.DoubleValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.ExpressionOptimizer;
+import com.yahoo.searchlib.rankingexpression.evaluation.MapContext;
+import com.yahoo.searchlib.rankingexpression.evaluation.OptimizationReport;
+import com.yahoo.searchlib.rankingexpression.evaluation.TensorValue;
+import com.yahoo.searchlib.rankingexpression.evaluation.Value;
+import com.yahoo.searchlib.rankingexpression.parser.ParseException;
+import com.yahoo.tensor.Tensor;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ScalarOptimizerTestCase {
+
+    @Test
+    public void testCompiledEvaluationEqualsInterpretedEvaluation() throws ParseException {
+        assertCompiled("a + b * c - a / b % c");
+        assertCompiled("a ^ 2 + -b");
+        assertCompiled("if (a < b, a * 2, if (b >= c, b, c + 1))");
+        assertCompiled("if (a == 1 && b != 2 || !(c > 3), 10, 20)");
+        assertCompiled("max(a, b) + min(b, c) + pow(a, 2) + sqrt(b) + exp(-c) + log(b) + sigmoid(a)");
+        assertCompiled("atan2(a, b) + fmod(c, 2) + ldexp(a, 3) + relu(-a) + elu(-b) + isNan(c) + sign(-c) + fabs(-a)");
+        assertCompiled("d * 2 + a * d");
+        assertCompiled("0.5 * (if (a < 1.5, 1, if (b < 2.5, 2, 3)) + if (c < 3.5, 4, 5))");
+    }
+
+    @Test
+    public void testBooleanExpressionsProduceBooleanValues() throws ParseException {
+        RankingExpression expression = new RankingExpression("a < b && b < c");
+        ArrayContext context = new ArrayContext(expression);
+        assertEquals(1, optimize(expression, context).getMetric("Scalar expressions compiled"));
+        context.put("a", 1);
+        context.put("b", 2);
+        context.put("c", 3);
+        Value result = expression.evaluate(context);
+        assertTrue(result instanceof BooleanValue);
+        assertTrue(result.asBoolean());
+    }
+
+    @Test
+    public void testFallbackToInterpretationWhenBoundToTensor() throws ParseException {
+        RankingExpression expression = new RankingExpression("a * 2 + b");
+        ArrayContext context = new ArrayContext(expression);
+        optimize(expression, context);
+        context.put("a", new TensorValue(Tensor.from("{{x:0}:1.0,{x:1}:2.0}")));
+        context.put("b", 1);
+        assertEquals(Tensor.from("{{x:0}:3.0,{x:1}:5.0}"), expression.evaluate(context).asTensor());
+    }
+
+    @Test
+    public void testTensorFunctionsAreNotCompiledButTheirArgumentsAre() throws ParseException {
+        RankingExpression expression = new RankingExpression("reduce(t * (a + b), sum)");
+        ArrayContext context = new ArrayContext(expression);
+        assertEquals(1, optimize(expression, context).getMetric("Scalar expressions compiled"));
+        context.put("t", new TensorValue(Tensor.from("{{x:0}:1.0,{x:1}:2.0}")));
+        context.put("a", 1);
+        context.put("b", 2);
+        assertEquals(9.0, expression.evaluate(context).asDouble(), 0.0);
+    }
+
+    @Test
+    public void testIsDisabledByDefault() throws ParseException {
+        RankingExpression expression = new RankingExpression("a + b");
+        ArrayContext context = new ArrayContext(expression);
+        new ExpressionOptimizer().optimize(expression, context);
+        assertFalse(expression.getRoot() instanceof CompiledScalarNode);
+    }
+
+    private void assertCompiled(String expressionString) throws ParseException {
+        double[][] bindings = { { 1, 2, 3, 4 }, { 1.5, 2.5, 3.5, -1 }, { 7, 1, 0, 0.25 }, { -2, 0.5, 9, 100 } };
+        RankingExpression interpreted = new RankingExpression(expressionString);
+        for (boolean doubleOnly : new boolean[] { false, true }) {
+            RankingExpression compiled = new RankingExpression(expressionString);
+            AbstractArrayContext context = doubleOnly ? new DoubleOnlyArrayContext(compiled, false, DoubleValue.NaN)
+                                                      : new ArrayContext(compiled, false, DoubleValue.NaN);
+            assertTrue(optimize(compiled, context).getMetric("Scalar expressions compiled") > 0);
+            assertEquals("The compiled expression has the same string form",
+                         interpreted.getRoot().toString(), compiled.getRoot().toString());
+            for (double[] values : bindings) {
+                MapContext mapContext = new MapContext();
+                bind("a", values[0], mapContext, context);
+                bind("b", values[1], mapContext, context);
+                bind("c", values[2], mapContext, context);
+                bind("d", values[3], mapContext, context);
+                assertEquals(expressionString,
+                             interpreted.evaluate(mapContext).asDouble(), compiled.evaluate(context).asDouble(), 1e-12);
+            }
+        }
+    }
+
+    private void bind(String name, double value, MapContext mapContext, AbstractArrayContext arrayContext) {
+        mapContext.put(name, value);
+        if (arrayContext.names().contains(name))
+            arrayContext.put(name, value);
+    }
+
+    private OptimizationReport optimize(RankingExpression expression, AbstractArrayContext context) {
+        ExpressionOptimizer optimizer = new ExpressionOptimizer();
+        optimizer.getOptimizer(ScalarOptimizer.class).setEnabled(true);
+        return optimizer.optimize(expression, context);
+    }
+
+}
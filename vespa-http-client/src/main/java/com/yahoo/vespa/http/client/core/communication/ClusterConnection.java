@@ -26,6 +26,7 @@ public class ClusterConnection implements AutoCloseable {
 
     private final List<IOThread> ioThreads = new ArrayList<>();
     private final int clusterId;
+    private final DocumentQueue documentQueue;
     private static JsonFactory jsonFactory = new JsonFactory();
     private static ObjectMapper objectMapper = new ObjectMapper();
 
@@ -40,13 +41,13 @@ public class ClusterConnection implements AutoCloseable {
             throw new IllegalArgumentException("Cannot feed to empty cluster.");
 
         this.clusterId = clusterId;
+        this.documentQueue = new DocumentQueue(clientQueueSizePerCluster);
         int totalNumberOfEndpointsInThisCluster = cluster.getEndpoints().size() * connectionParams.getNumPersistentConnectionsPerEndpoint();
         if (totalNumberOfEndpointsInThisCluster == 0) return;
 
         // Lower than 1 does not make any sense.
         int maxInFlightPerSession = Math.max(1, feedParams.getMaxInFlightRequests() / totalNumberOfEndpointsInThisCluster);
 
-        DocumentQueue documentQueue = null;
         for (Endpoint endpoint : cluster.getEndpoints()) {
             EndpointResultQueue endpointResultQueue = new EndpointResultQueue(operationProcessor,
                                                                               endpoint,
@@ -67,9 +68,6 @@ public class ClusterConnection implements AutoCloseable {
                             operationProcessor.getClientId()
                     );
                 }
-                if (documentQueue == null) {
-                    documentQueue = new DocumentQueue(clientQueueSizePerCluster);
-                }
                 IOThread ioThread = new IOThread(operationProcessor.getIoThreadGroup(),
                                                  endpointResultQueue,
                                                  gatewayConnection,
@@ -88,6 +86,14 @@ public class ClusterConnection implements AutoCloseable {
         return clusterId;
     }
 
+    /**
+     * Returns the time in milliseconds recently fed documents have waited in the queue of this cluster
+     * before being sent, at the given percentile in the range [0, 100].
+     */
+    public long getQueueWaitTimeMillis(double percentile) {
+        return documentQueue.waitTimeMillis(percentile);
+    }
+
     public void post(Document document) throws EndpointIOException {
         String documentIdStr = document.getDocumentId();
         // The same document ID must always go to the same destination
@@ -5,21 +5,36 @@ import com.yahoo.vespa.http.client.core.Document;
 
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.List;
 import java.util.Optional;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * Document queue that only gives you document operations on documents for which there are no
  * already in flight operations for.
  *
+ * Producers and consumers wait on separate conditions, and each insert or removal wakes a single waiter
+ * on the opposite side, such that many feeding and I/O threads do not all wake up on every document.
+ * The time each document spent in the queue is sampled, see {@link #waitTimeMillis}.
+ *
  * @author dybis
  */
 class DocumentQueue {
 
+    /** The number of most recent queue wait times used to compute wait time percentiles */
+    private static final int waitTimeSamples = 1024;
+
     private final Deque<Document> queue;
     private final int maxSize;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+    private final long[] waitTimes = new long[waitTimeSamples];
+    private long waitTimeCount = 0;
     private boolean closed = false;
 
     DocumentQueue(int maxSize) {
@@ -28,95 +43,161 @@ class DocumentQueue {
     }
 
     List<Document> removeAllDocuments() {
-        synchronized (queue) {
-            List<Document> allDocs = new ArrayList<>();
-            while (!queue.isEmpty()) {
-                allDocs.add(queue.poll());
-            }
-            queue.notifyAll();
+        lock.lock();
+        try {
+            List<Document> allDocs = new ArrayList<>(queue);
+            queue.clear();
+            notFull.signalAll();
             return allDocs;
+        } finally {
+            lock.unlock();
         }
     }
 
     void put(Document document, boolean calledFromIoThreadGroup) throws InterruptedException {
         document.resetQueueTime();
-        synchronized (queue) {
+        lock.lockInterruptibly();
+        try {
             while (!closed && (queue.size() >= maxSize) && !calledFromIoThreadGroup) {
-                queue.wait();
+                notFull.await();
             }
             if (closed) {
                 throw new IllegalStateException("Cannot add elements to closed queue.");
             }
             queue.add(document);
-            queue.notifyAll();
+            notEmpty.signal();
+        } finally {
+            lock.unlock();
         }
     }
 
     Document poll(long timeout, TimeUnit unit) throws InterruptedException {
-        synchronized (queue) {
-            long remainingToWait = unit.toMillis(timeout);
-            while (queue.isEmpty()) {
-                long startTime = System.currentTimeMillis();
-                queue.wait(remainingToWait);
-                remainingToWait -= (System.currentTimeMillis() - startTime);
-                if (remainingToWait <= 0) {
-                    break;
-                }
+        long remainingNanos = unit.toNanos(timeout);
+        lock.lockInterruptibly();
+        try {
+            while (queue.isEmpty() && remainingNanos > 0) {
+                remainingNanos = notEmpty.awaitNanos(remainingNanos);
             }
-            Document document = queue.poll();
-            queue.notifyAll();
-            return document;
+            return take();
+        } finally {
+            lock.unlock();
         }
     }
 
     Document poll() {
-        synchronized (queue) {
-            Document document = queue.poll();
-            queue.notifyAll();
-            return document;
+        lock.lock();
+        try {
+            return take();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Moves documents from this queue to the given list without blocking, until this is empty,
+     * maxDocuments have been added, or the total size of the added documents reaches maxBytes.
+     *
+     * @return the total size in bytes of the documents added to the list
+     */
+    int drainTo(List<Document> documents, int maxDocuments, int maxBytes) {
+        lock.lock();
+        try {
+            int bytes = 0;
+            for (int count = 0; count < maxDocuments && bytes < maxBytes; count++) {
+                Document document = take();
+                if (document == null) break;
+                documents.add(document);
+                bytes += document.size();
+            }
+            return bytes;
+        } finally {
+            lock.unlock();
         }
     }
 
     boolean isEmpty() {
-        synchronized (queue) {
+        lock.lock();
+        try {
             return queue.isEmpty();
+        } finally {
+            lock.unlock();
         }
     }
 
     int size() {
-        synchronized (queue) {
+        lock.lock();
+        try {
             return queue.size();
+        } finally {
+            lock.unlock();
         }
     }
 
     void clear() {
-        synchronized (queue) {
+        lock.lock();
+        try {
             queue.clear();
-            queue.notifyAll();
+            notFull.signalAll();
+        } finally {
+            lock.unlock();
         }
     }
 
     boolean close() {
-        boolean previousState;
-        synchronized (queue) {
-            previousState = closed;
+        lock.lock();
+        try {
+            boolean previousState = closed;
             closed = true;
-            queue.notifyAll();
+            notFull.signalAll();
+            notEmpty.signalAll();
+            return previousState;
+        } finally {
+            lock.unlock();
         }
-        return previousState;
     }
 
     Optional<Document> pollDocumentIfTimedoutInQueue(long localQueueTimeOut) {
-        synchronized (queue) {
-            if (queue.isEmpty()) {
-                return Optional.empty();
-            }
+        lock.lock();
+        try {
             Document document = queue.peek();
-            if (document.timeInQueueMillis() > localQueueTimeOut) {
-                return Optional.of(queue.poll());
+            if (document != null && document.timeInQueueMillis() > localQueueTimeOut) {
+                return Optional.of(take());
             }
             return Optional.empty();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the time in milliseconds documents have spent in this queue at the given percentile,
+     * among the most recently removed documents, or 0 if no documents have been removed.
+     *
+     * @param percentile the percentile to return, in the range [0, 100]
+     */
+    long waitTimeMillis(double percentile) {
+        long[] sortedWaitTimes;
+        lock.lock();
+        try {
+            sortedWaitTimes = Arrays.copyOf(waitTimes, (int)Math.min(waitTimeCount, waitTimes.length));
+        } finally {
+            lock.unlock();
         }
+        if (sortedWaitTimes.length == 0) return 0;
+
+        Arrays.sort(sortedWaitTimes);
+        int index = (int)Math.ceil(percentile / 100 * sortedWaitTimes.length) - 1;
+        return sortedWaitTimes[Math.max(0, Math.min(index, sortedWaitTimes.length - 1))];
+    }
+
+    /** Removes the first document, if any, and wakes one waiting producer. Must be called while holding the lock. */
+    private Document take() {
+        Document document = queue.poll();
+        if (document == null) return null;
+
+        waitTimes[(int)(waitTimeCount++ % waitTimes.length)] = document.timeInQueueMillis();
+        notFull.signal();
+        return document;
     }
 
 }
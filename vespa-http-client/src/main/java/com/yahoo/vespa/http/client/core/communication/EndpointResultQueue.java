@@ -7,21 +7,25 @@ import com.yahoo.vespa.http.client.core.operationProcessor.EndPointResultFactory
 import com.yahoo.vespa.http.client.core.EndpointResult;
 import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 
-import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.logging.Logger;
 
 /**
+ * Tracks the operations sent to an endpoint which have not yet received a result.
+ * This is lock-free: Each pending operation is owned by whichever of the result, the timeout and the failure
+ * paths removes it from the map first.
+ *
  * @author Einar M R Rosenvinge
  */
 class EndpointResultQueue {
 
     private static Logger log = Logger.getLogger(EndpointResultQueue.class.getName());
     private final OperationProcessor operationProcessor;
-    private final Map<String, TimerFuture> futureByOperation = new HashMap<>();
+    private final Map<String, TimerFuture> futureByOperation = new ConcurrentHashMap<>();
     private final Endpoint endpoint;
     private final int clusterId;
     private final ScheduledThreadPoolExecutor timer;
@@ -40,17 +44,23 @@ class EndpointResultQueue {
         this.totalTimeoutMs = totalTimeoutMs;
     }
 
-    public synchronized void operationSent(String operationId) {
-        DocumentTimerTask task = new DocumentTimerTask(operationId);
-        ScheduledFuture<?> future = timer.schedule(task, totalTimeoutMs, TimeUnit.MILLISECONDS);
-        futureByOperation.put(operationId, new TimerFuture(future));
+    public void operationSent(String operationId) {
+        // Register before scheduling, such that the timeout cannot run before the operation is known
+        TimerFuture timerFuture = new TimerFuture();
+        futureByOperation.put(operationId, timerFuture);
+        timerFuture.setFuture(timer.schedule(new DocumentTimerTask(operationId), totalTimeoutMs, TimeUnit.MILLISECONDS));
     }
 
-    public synchronized void failOperation(EndpointResult result, int clusterId) {
+    public void failOperation(EndpointResult result, int clusterId) {
         resultReceived(result, clusterId, false);
     }
 
-    public synchronized void resultReceived(EndpointResult result, int clusterId) {
+    /** Reports the result of an operation which was never sent, and therefore is not tracked here */
+    public void failUnsentOperation(EndpointResult result, int clusterId) {
+        operationProcessor.resultReceived(result, clusterId);
+    }
+
+    public void resultReceived(EndpointResult result, int clusterId) {
         resultReceived(result, clusterId, true);
     }
 
@@ -58,9 +68,7 @@ class EndpointResultQueue {
         operationProcessor.onEndpointError(e);
     }
 
-    private synchronized void resultReceived(EndpointResult result, int clusterId, boolean duplicateGivesWarning) {
-        operationProcessor.resultReceived(result, clusterId);
-
+    private void resultReceived(EndpointResult result, int clusterId, boolean duplicateGivesWarning) {
         TimerFuture timerFuture = futureByOperation.remove(result.getOperationId());
         if (timerFuture == null) {
             if (duplicateGivesWarning) {
@@ -72,11 +80,12 @@ class EndpointResultQueue {
             }
             return;
         }
-        timerFuture.getFuture().cancel(false);
+        timerFuture.cancel();
+        operationProcessor.resultReceived(result, clusterId);
     }
 
     //Called only from ScheduledThreadPoolExecutor thread in DocumentTimerTask.run(), see below
-    private synchronized void timeout(String operationId) {
+    private void timeout(String operationId) {
         TimerFuture timerFuture = futureByOperation.remove(operationId);
         if (timerFuture == null) {
             log.finer(
@@ -90,19 +99,20 @@ class EndpointResultQueue {
         operationProcessor.resultReceived(endpointResult, clusterId);
     }
 
-    public synchronized int getPendingSize() {
-        return futureByOperation.values().size();
+    public int getPendingSize() {
+        return futureByOperation.size();
     }
 
-    public synchronized void failPending(Exception exception) {
-        for (Map.Entry<String, TimerFuture> timerFutureEntry : futureByOperation.entrySet()) {
-            timerFutureEntry.getValue().getFuture().cancel(false);
-            failedOperationId(timerFutureEntry.getKey(), exception);
+    public void failPending(Exception exception) {
+        for (String operationId : futureByOperation.keySet()) {
+            TimerFuture timerFuture = futureByOperation.remove(operationId);
+            if (timerFuture == null) continue; // result or timeout received concurrently
+            timerFuture.cancel();
+            failedOperationId(operationId, exception);
         }
-        futureByOperation.clear();
     }
 
-    private synchronized void failedOperationId(String operationId, Exception exception) {
+    private void failedOperationId(String operationId, Exception exception) {
         EndpointResult endpointResult = EndPointResultFactory.createError(endpoint, operationId, exception);
         operationProcessor.resultReceived(endpointResult, clusterId);
     }
@@ -120,15 +130,22 @@ class EndpointResultQueue {
         }
     }
 
-    private class TimerFuture {
-        private final ScheduledFuture<?> future;
+    private static class TimerFuture {
+
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled = false;
 
-        public TimerFuture(ScheduledFuture<?> future) {
+        private void setFuture(ScheduledFuture<?> future) {
             this.future = future;
+            if (cancelled) future.cancel(false);
         }
-        private ScheduledFuture<?> getFuture() {
-            return future;
+
+        private void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> future = this.future;
+            if (future != null) future.cancel(false);
         }
+
     }
 
 }
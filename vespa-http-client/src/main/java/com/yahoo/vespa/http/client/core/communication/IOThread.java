@@ -191,15 +191,11 @@ class IOThread implements Runnable, AutoCloseable {
         }
         int pendingSize = 1 + resultQueue.getPendingSize();
         // see if we can get more documents without blocking
-        while (chunkSizeBytes < maxChunkSizeBytes && pendingSize < maxInFlightRequests) {
+        if (chunkSizeBytes < maxChunkSizeBytes && pendingSize < maxInFlightRequests) {
             drainFirstDocumentsInQueueIfOld();
-            Document d = documentQueue.poll();
-            if (d == null) {
-                break;
-            }
-            docsForSendChunk.add(d);
-            chunkSizeBytes += d.size();
-            pendingSize++;
+            chunkSizeBytes += documentQueue.drainTo(docsForSendChunk,
+                                                    maxInFlightRequests - pendingSize,
+                                                    maxChunkSizeBytes - chunkSizeBytes);
         }
         log.finest("Chunk has " + docsForSendChunk.size() + " docs with a size " + chunkSizeBytes + " bytes.");
         docsReceivedCounter.addAndGet(docsForSendChunk.size());
@@ -401,7 +397,7 @@ class IOThread implements Runnable, AutoCloseable {
                     endpoint, document.get().getOperationId(),
                     new Exception("Not sending document operation, timed out in queue after "
                                   + document.get().timeInQueueMillis() + " ms."));
-            resultQueue.failOperation(endpointResult, clusterId);
+            resultQueue.failUnsentOperation(endpointResult, clusterId);
         }
     }
 
@@ -412,7 +408,7 @@ class IOThread implements Runnable, AutoCloseable {
         for (Document document : documentQueue.removeAllDocuments()) {
             EndpointResult endpointResult=
                     EndPointResultFactory.createError(endpoint, document.getOperationId(), exception);
-            resultQueue.failOperation(endpointResult, clusterId);
+            resultQueue.failUnsentOperation(endpointResult, clusterId);
         }
     }
 
@@ -14,6 +14,7 @@ import java.util.List;
 public class OperationStats {
 
     private static JsonFactory jsonFactory = new JsonFactory();
+    private static final double[] queueWaitTimePercentiles = { 50, 90, 99 };
     private final String sessionParamsAsXmlString;
     private List<ClusterConnection> clusters;
     private IncompleteResultsThrottler throttler;
@@ -50,6 +51,11 @@ public class OperationStats {
                 jsonGenerator.writeNumberField("clusterid", cluster.getClusterId());
                 jsonGenerator.writeFieldName("stats");
                 jsonGenerator.writeRawValue(cluster.getStatsAsJSon());
+                jsonGenerator.writeObjectFieldStart("queueWaitTimeMillis");
+                for (double percentile : queueWaitTimePercentiles)
+                    jsonGenerator.writeNumberField("p" + (int)percentile, cluster.getQueueWaitTimeMillis(percentile));
+                jsonGenerator.writeNumberField("max", cluster.getQueueWaitTimeMillis(100));
+                jsonGenerator.writeEndObject();
                 jsonGenerator.writeEndObject();
             }
             jsonGenerator.writeEndArray();
@@ -4,7 +4,13 @@ package com.yahoo.vespa.http.client.core.communication;
 import com.yahoo.vespa.http.client.core.Document;
 import org.junit.Test;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
 import static org.junit.Assert.fail;
 
 public class CloseableQTestCase {
@@ -45,4 +51,54 @@ public class CloseableQTestCase {
         q.put(new Document("3", null, "data", null), true);
         assertEquals(3, q.size());
     }
+
+    @Test
+    public void requireThatDrainToRespectsDocumentAndByteLimits() throws InterruptedException {
+        DocumentQueue q = new DocumentQueue(10);
+        for (int i = 0; i < 5; i++)
+            q.put(new Document("id" + i, null, "data", null), false);
+
+        List<Document> documents = new ArrayList<>();
+        assertEquals(8, q.drainTo(documents, 2, 100));
+        assertEquals(2, documents.size());
+        assertEquals("id0", documents.get(0).getDocumentId());
+
+        assertEquals(4, q.drainTo(documents, 10, 3));
+        assertEquals(3, documents.size());
+
+        assertEquals(8, q.drainTo(documents, 10, 100));
+        assertEquals(5, documents.size());
+        assertEquals(0, q.drainTo(documents, 10, 100));
+        assertTrue(q.isEmpty());
+    }
+
+    @Test
+    public void requireThatBlockedPutIsReleasedByDrain() throws InterruptedException {
+        DocumentQueue q = new DocumentQueue(1);
+        q.put(new Document("1", null, "data", null), false);
+        Thread producer = new Thread(() -> {
+            try {
+                q.put(new Document("2", null, "data", null), false);
+            } catch (InterruptedException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        producer.start();
+        assertEquals(4, q.drainTo(new ArrayList<>(), 1, 100));
+        producer.join(60000);
+        assertEquals("2", q.poll(60, TimeUnit.SECONDS).getDocumentId());
+        assertNull(q.poll(1, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void requireThatQueueWaitTimeIsSampled() throws InterruptedException {
+        DocumentQueue q = new DocumentQueue(10);
+        assertEquals(0, q.waitTimeMillis(50));
+        q.put(new Document("1", null, "data", null), false);
+        Thread.sleep(20);
+        q.poll();
+        assertTrue(q.waitTimeMillis(50) >= 20);
+        assertEquals(q.waitTimeMillis(50), q.waitTimeMillis(100));
+    }
+
 }
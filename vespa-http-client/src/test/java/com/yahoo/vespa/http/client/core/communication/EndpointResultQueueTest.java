@@ -7,6 +7,9 @@ import com.yahoo.vespa.http.client.core.EndpointResult;
 import com.yahoo.vespa.http.client.core.operationProcessor.OperationProcessor;
 import org.junit.Test;
 
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
@@ -57,7 +60,7 @@ public class EndpointResultQueueTest {
         q.resultReceived(new EndpointResult("abc", new Result.Detail(endpoint)), 0);
         assertThat(q.getPendingSize(), is(0));
 
-        assertThat(resultCount.get(), is(5));
+        assertThat("Duplicate and unknown results are not reported", resultCount.get(), is(3));
 
         q.operationSent("op4");
         assertThat(q.getPendingSize(), is(1));
@@ -66,7 +69,7 @@ public class EndpointResultQueueTest {
 
         q.failPending(new RuntimeException());
 
-        assertThat(resultCount.get(), is(7));
+        assertThat(resultCount.get(), is(5));
     }
 
 
@@ -86,4 +89,24 @@ public class EndpointResultQueueTest {
         assert(latch.await(120, TimeUnit.SECONDS));
     }
 
+    @Test
+    public void testResultAfterTimeoutIsNotReported() throws InterruptedException {
+        Endpoint endpoint = Endpoint.create("a");
+
+        OperationProcessor mockAggregator = mock(OperationProcessor.class);
+        List<Result.ResultType> resultTypes = new CopyOnWriteArrayList<>();
+        CountDownLatch latch = new CountDownLatch(1);
+        doAnswer(invocationOnMock -> {
+            resultTypes.add(((EndpointResult)invocationOnMock.getArguments()[0]).getDetail().getResultType());
+            latch.countDown();
+            return null;
+        }).when(mockAggregator).resultReceived(any(), eq(0));
+        EndpointResultQueue q = new EndpointResultQueue(
+                mockAggregator, endpoint, 0, new ScheduledThreadPoolExecutor(1), 1L);
+        q.operationSent("op1");
+        assert(latch.await(120, TimeUnit.SECONDS));
+        q.resultReceived(new EndpointResult("op1", new Result.Detail(endpoint)), 0);
+        assertThat(resultTypes, is(Collections.singletonList(Result.ResultType.TRANSITIVE_ERROR)));
+    }
+
 }
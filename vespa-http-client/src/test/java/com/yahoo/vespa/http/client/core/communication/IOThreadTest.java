@@ -11,6 +11,7 @@ import com.yahoo.vespa.http.client.core.Document;
 import com.yahoo.vespa.http.client.core.EndpointResult;
 import com.yahoo.vespa.http.client.core.ServerResponseException;
 import org.junit.Test;
+import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
 import java.io.IOException;
@@ -64,7 +65,7 @@ public class IOThreadTest {
      */
     void setupEndpointResultQueueMock(String expectedDocIdFail, String expectedDocIdOk,boolean isTransient, String expectedException) {
 
-        doAnswer(invocation -> {
+        Answer<Void> failure = invocation -> {
             EndpointResult endpointResult = (EndpointResult) invocation.getArguments()[0];
             assertThat(endpointResult.getOperationId(), is(expectedDocIdFail));
             assertThat(endpointResult.getDetail().getException().toString(),
@@ -74,7 +75,9 @@ public class IOThreadTest {
 
             latch.countDown();
             return null;
-        }).when(endpointResultQueue).failOperation(any(), eq(0));
+        };
+        doAnswer(failure).when(endpointResultQueue).failOperation(any(), eq(0));
+        doAnswer(failure).when(endpointResultQueue).failUnsentOperation(any(), eq(0));
 
         doAnswer(invocation -> {
             EndpointResult endpointResult = (EndpointResult) invocation.getArguments()[0];
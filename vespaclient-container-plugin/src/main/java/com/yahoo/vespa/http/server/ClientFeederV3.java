@@ -24,9 +24,16 @@ import java.io.IOException;
 import java.io.InputStream;
 import java.time.Duration;
 import java.time.Instant;
+import java.util.ArrayDeque;
+import java.util.Deque;
 import java.util.Optional;
 import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
 
@@ -60,6 +67,12 @@ class ClientFeederV3 {
     private String hostName;
     private AtomicInteger threadsAvailableForFeeding;
 
+    /** The executor parsing operations, or null to parse them in the request thread */
+    private final Executor parserExecutor;
+
+    /** The max number of operations to read ahead of the one being sent, when parsing with the parser executor */
+    private final int maxPendingOperations;
+
     ClientFeederV3(
             ReferencedResource<SharedSourceSession> sourceSession,
             FeedReaderFactory feedReaderFactory,
@@ -68,6 +81,19 @@ class ClientFeederV3 {
             Metric metric,
             ReplyHandler feedReplyHandler,
             AtomicInteger threadsAvailableForFeeding) {
+        this(sourceSession, feedReaderFactory, docTypeManager, clientId, metric, feedReplyHandler, threadsAvailableForFeeding, null, 0);
+    }
+
+    ClientFeederV3(
+            ReferencedResource<SharedSourceSession> sourceSession,
+            FeedReaderFactory feedReaderFactory,
+            DocumentTypeManager docTypeManager,
+            String clientId,
+            Metric metric,
+            ReplyHandler feedReplyHandler,
+            AtomicInteger threadsAvailableForFeeding,
+            Executor parserExecutor,
+            int maxPendingOperations) {
         this.sourceSession = sourceSession;
         this.clientId = clientId;
         this.feedReplyHandler = feedReplyHandler;
@@ -75,6 +101,8 @@ class ClientFeederV3 {
         this.threadsAvailableForFeeding = threadsAvailableForFeeding;
         this.streamReaderV3 = new StreamReaderV3(feedReaderFactory, docTypeManager);
         this.hostName = HostName.getLocalhost();
+        this.parserExecutor = parserExecutor;
+        this.maxPendingOperations = maxPendingOperations;
     }
 
     public boolean timedOut() {
@@ -183,14 +211,7 @@ class ClientFeederV3 {
             try {
                 message = getNextMessage(operationId.get(), requestInputStream, settings);
             } catch (Exception e) {
-                if (log.isLoggable(LogLevel.WARNING)) {
-                    log.log(LogLevel.WARNING, Exceptions.toMessageString(e));
-                }
-                metric.add(MetricNames.PARSE_ERROR, 1, null);
-
-                repliesFromOldMessages.add(new OperationStatus(
-                        Exceptions.toMessageString(e), operationId.get(), ErrorCode.ERROR, false, ""));
-
+                parseFailed(operationId.get(), e, repliesFromOldMessages);
                 continue;
             }
             if (message != null)
@@ -223,49 +244,151 @@ class ClientFeederV3 {
                       InputStream requestInputStream,
                       BlockingQueue<OperationStatus> repliesFromOldMessages,
                       AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        if (parserExecutor != null) {
+            feedPipelined(settings, requestInputStream, repliesFromOldMessages, threadsAvailableForFeeding);
+            return;
+        }
         while (true) {
             Optional<DocumentOperationMessageV3> msg = pullMessageFromRequest(settings, requestInputStream, repliesFromOldMessages);
 
             if (! msg.isPresent()) {
                 break;
             }
-            setMessageParameters(msg.get(), settings);
+            send(settings, msg.get(), repliesFromOldMessages, threadsAvailableForFeeding);
+        }
+    }
 
-            Result result;
-            try {
-                result = sendMessage(settings, msg.get(), threadsAvailableForFeeding);
-
-            } catch  (RuntimeException e) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 Exceptions.toMessageString(e),
-                                                                 ErrorCode.ERROR,
-                                                                 false,
-                                                                 msg.get().getMessage()));
-                continue;
+    /**
+     * Feeds the operations in the given stream by reading up to maxPendingOperations operations ahead of the one
+     * being sent, and parsing these in the parser executor. Operations are sent in the order they are read.
+     */
+    private void feedPipelined(FeederSettings settings,
+                               InputStream requestInputStream,
+                               BlockingQueue<OperationStatus> repliesFromOldMessages,
+                               AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        Deque<PendingOperation> pending = new ArrayDeque<>();
+        boolean endOfStream = false;
+        try {
+            while (true) {
+                while ( ! endOfStream && pending.size() < maxPendingOperations) {
+                    Optional<PendingOperation> operation = readOperation(settings, requestInputStream);
+                    if (operation.isPresent())
+                        pending.add(operation.get());
+                    else
+                        endOfStream = true;
+                }
+                PendingOperation operation = pending.poll();
+                if (operation == null) break;
+
+                DocumentOperationMessageV3 msg;
+                try {
+                    msg = operation.message.get();
+                } catch (ExecutionException e) {
+                    parseFailed(operation.operationId, e.getCause(), repliesFromOldMessages);
+                    continue;
+                }
+                if (msg == null) break; // typical end of feed
+
+                setRoute(msg, settings);
+                send(settings, msg, repliesFromOldMessages, threadsAvailableForFeeding);
             }
+        } finally {
+            pending.forEach(operation -> operation.message.cancel(false));
+        }
+    }
 
-            if (result.isAccepted()) {
-                outstandingOperations.incrementAndGet();
-                updateOpsPerSec();
-                log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.get().getOperationId());
-            } else if (!result.getError().isFatal()) {
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 result.getError().getMessage(),
-                                                                 ErrorCode.TRANSIENT_ERROR,
-                                                                 false,
-                                                                 msg.get().getMessage()));
-                continue;
-            } else {
-                // should probably not happen, but everybody knows stuff that
-                // shouldn't happen, happens all the time
-                boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
-                repliesFromOldMessages.add(createOperationStatus(msg.get().getOperationId(),
-                                                                 result.getError().getMessage(),
-                                                                 ErrorCode.ERROR,
-                                                                 isConditionNotMet,
-                                                                 msg.get().getMessage()));
-                continue;
+    /** Reads the next operation in the given stream and starts parsing it, or returns empty at the end of the stream */
+    private Optional<PendingOperation> readOperation(FeederSettings settings, InputStream requestInputStream) {
+        Optional<String> operationId;
+        try {
+            operationId = streamReaderV3.getNextOperationId(requestInputStream);
+        } catch (IOException ioe) {
+            if (log.isLoggable(LogLevel.DEBUG)) {
+                log.log(LogLevel.DEBUG, Exceptions.toMessageString(ioe), ioe);
             }
+            return Optional.empty();
+        }
+        if (! operationId.isPresent()) {
+            return Optional.empty();
+        }
+
+        byte[] operation;
+        try {
+            operation = streamReaderV3.getNextOperationBytes(requestInputStream);
+        } catch (Exception e) {
+            return Optional.of(new PendingOperation(operationId.get(), CompletableFuture.failedFuture(e)));
+        }
+        try {
+            return Optional.of(new PendingOperation(operationId.get(),
+                                                    CompletableFuture.supplyAsync(() -> parseMessage(operationId.get(), operation, settings),
+                                                                                  parserExecutor)));
+        } catch (RejectedExecutionException e) { // The executor is full or shut down: Parse in this thread instead
+            CompletableFuture<DocumentOperationMessageV3> message = new CompletableFuture<>();
+            try {
+                message.complete(parseMessage(operationId.get(), operation, settings));
+            } catch (CompletionException parseException) {
+                message.completeExceptionally(parseException.getCause());
+            }
+            return Optional.of(new PendingOperation(operationId.get(), message));
+        }
+    }
+
+    private DocumentOperationMessageV3 parseMessage(String operationId, byte[] operation, FeederSettings settings) {
+        try {
+            return createMessage(streamReaderV3.parseOperation(operation, settings), operationId);
+        } catch (Exception e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private void parseFailed(String operationId, Throwable e, BlockingQueue<OperationStatus> repliesFromOldMessages) {
+        if (log.isLoggable(LogLevel.WARNING)) {
+            log.log(LogLevel.WARNING, Exceptions.toMessageString(e));
+        }
+        metric.add(MetricNames.PARSE_ERROR, 1, null);
+
+        repliesFromOldMessages.add(new OperationStatus(
+                Exceptions.toMessageString(e), operationId, ErrorCode.ERROR, false, ""));
+    }
+
+    private void send(FeederSettings settings,
+                      DocumentOperationMessageV3 msg,
+                      BlockingQueue<OperationStatus> repliesFromOldMessages,
+                      AtomicInteger threadsAvailableForFeeding) throws InterruptedException {
+        setMessageParameters(msg, settings);
+
+        Result result;
+        try {
+            result = sendMessage(settings, msg, threadsAvailableForFeeding);
+
+        } catch  (RuntimeException e) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(),
+                                                             Exceptions.toMessageString(e),
+                                                             ErrorCode.ERROR,
+                                                             false,
+                                                             msg.getMessage()));
+            return;
+        }
+
+        if (result.isAccepted()) {
+            outstandingOperations.incrementAndGet();
+            updateOpsPerSec();
+            log(LogLevel.DEBUG, "Sent message successfully, document id: ", msg.getOperationId());
+        } else if (!result.getError().isFatal()) {
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(),
+                                                             result.getError().getMessage(),
+                                                             ErrorCode.TRANSIENT_ERROR,
+                                                             false,
+                                                             msg.getMessage()));
+        } else {
+            // should probably not happen, but everybody knows stuff that
+            // shouldn't happen, happens all the time
+            boolean isConditionNotMet = result.getError().getCode() == DocumentProtocol.ERROR_TEST_AND_SET_CONDITION_FAILED;
+            repliesFromOldMessages.add(createOperationStatus(msg.getOperationId(),
+                                                             result.getError().getMessage(),
+                                                             ErrorCode.ERROR,
+                                                             isConditionNotMet,
+                                                             msg.getMessage()));
         }
     }
 
@@ -282,8 +405,11 @@ class ClientFeederV3 {
     protected DocumentOperationMessageV3 getNextMessage(String operationId,
                                                         InputStream requestInputStream,
                                                         FeederSettings settings) throws Exception {
-        FeedOperation operation = streamReaderV3.getNextOperation(requestInputStream, settings);
+        return createMessage(streamReaderV3.getNextOperation(requestInputStream, settings), operationId);
+    }
 
+    /** Returns the message of the given operation, or null if none */
+    private DocumentOperationMessageV3 createMessage(FeedOperation operation, String operationId) {
         // This is a bit hard to set up while testing, so we accept that things are not perfect.
         if (sourceSession.getResource().session() != null) {
             metric.set(
@@ -356,4 +482,19 @@ class ClientFeederV3 {
         }
     }
 
+    /** An operation read from the stream, which may still be being parsed */
+    private static class PendingOperation {
+
+        final String operationId;
+
+        /** The message of this operation, which is null at the end of the feed */
+        final CompletableFuture<DocumentOperationMessageV3> message;
+
+        PendingOperation(String operationId, CompletableFuture<DocumentOperationMessageV3> message) {
+            this.operationId = operationId;
+            this.message = message;
+        }
+
+    }
+
 }
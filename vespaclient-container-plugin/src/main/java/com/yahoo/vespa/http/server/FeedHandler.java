@@ -43,10 +43,12 @@ public class FeedHandler extends LoggingRequestHandler {
                        DocumentmanagerConfig documentManagerConfig,
                        SessionCache sessionCache,
                        ThreadpoolConfig threadpoolConfig,
+                       FeedHandlerConfig feedHandlerConfig,
                        MetricReceiver metricReceiver) throws Exception {
         super(parentCtx);
         metricsHelper = new DocumentApiMetrics(metricReceiver, "vespa.http.server");
-        feedHandlerV3 = new FeedHandlerV3(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, metricsHelper);
+        feedHandlerV3 = new FeedHandlerV3(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, metricsHelper,
+                                          feedHandlerConfig.parserthreads());
         feedReplyHandler = new FeedReplyReader(parentCtx.getMetric(), metricsHelper);
     }
 
@@ -22,7 +22,10 @@ import com.yahoo.yolean.Exceptions;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.logging.Logger;
@@ -32,6 +35,9 @@ import java.util.logging.Logger;
  * The new API has more logic for shutting down cleanly as the server is more likely to be upgraded.
  * The code is restructured a bit.
  *
+ * Operations may be parsed by a pool of parser threads shared by all clients, while each request thread
+ * sends the operations of its stream in order. This allows a single feed stream to use multiple cores.
+ *
  * @author dybis
  */
 public class FeedHandlerV3 extends LoggingRequestHandler {
@@ -44,6 +50,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
     private final Metric metric;
     private final Object monitor = new Object();
     private final AtomicInteger threadsAvailableForFeeding;
+    private final ExecutorService parserExecutor;
+    private final int maxPendingOperations;
     private static final Logger log = Logger.getLogger(FeedHandlerV3.class.getName());
 
     public FeedHandlerV3(LoggingRequestHandler.Context parentCtx,
@@ -51,6 +59,20 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                          SessionCache sessionCache,
                          ThreadpoolConfig threadpoolConfig,
                          DocumentApiMetrics metricsHelper) {
+        this(parentCtx, documentManagerConfig, sessionCache, threadpoolConfig, metricsHelper, 0);
+    }
+
+    /**
+     * Creates a feed handler which parses operations in the given number of parser threads,
+     * or in the request threads if this is 0. Parsing tasks beyond what the parser threads
+     * can queue up are run in the request thread instead.
+     */
+    public FeedHandlerV3(LoggingRequestHandler.Context parentCtx,
+                         DocumentmanagerConfig documentManagerConfig,
+                         SessionCache sessionCache,
+                         ThreadpoolConfig threadpoolConfig,
+                         DocumentApiMetrics metricsHelper,
+                         int parserThreads) {
         super(parentCtx);
         docTypeManager = new DocumentTypeManager(documentManagerConfig);
         this.sessionCache = sessionCache;
@@ -65,6 +87,13 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
             log.warning("No config for threadpool, using 200 for max blocking threads for feeding.");
             threadsAvailableForFeeding = new AtomicInteger(200);
         }
+        // Read enough operations ahead of the one being sent to keep all parser threads busy with a single stream
+        maxPendingOperations = 4 * parserThreads;
+        parserExecutor = parserThreads > 0
+                         ? new ThreadPoolExecutor(parserThreads, parserThreads, 0, TimeUnit.SECONDS,
+                                                  new ArrayBlockingQueue<>(maxPendingOperations),
+                                                  ThreadFactoryFactory.getDaemonThreadFactory("feedhandlerv3.parser"))
+                         : null;
     }
 
     public void injectDocumentManangerForTests(DocumentTypeManager docTypeManager) {
@@ -87,7 +116,9 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
                                                               clientId,
                                                               metric,
                                                               feedReplyHandler,
-                                                              threadsAvailableForFeeding));
+                                                              threadsAvailableForFeeding,
+                                                              parserExecutor,
+                                                              maxPendingOperations));
             }
             clientFeederV3 = clientFeederByClientId.get(clientId);
         }
@@ -117,6 +148,8 @@ public class FeedHandlerV3 extends LoggingRequestHandler {
         Thread destroyer = new Thread(() -> {
             super.destroy();
             cron.shutdown();
+            if (parserExecutor != null)
+                parserExecutor.shutdown();
             synchronized (monitor) {
                 for (ClientFeederV3 client : clientFeederByClientId.values()) {
                     client.kill();
@@ -8,6 +8,7 @@ import com.yahoo.vespa.http.server.util.ByteLimitedInputStream;
 import com.yahoo.vespaxmlparser.FeedOperation;
 import com.yahoo.vespaxmlparser.FeedReader;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.util.Optional;
@@ -42,6 +43,21 @@ public class StreamReaderV3 {
         return op;
     }
 
+    /**
+     * Returns the bytes of the next operation in the given stream, such that it can be parsed later,
+     * or on another thread, by {@link #parseOperation}
+     */
+    public byte[] getNextOperationBytes(InputStream requestInputStream) throws IOException {
+        int length = readByteLength(requestInputStream);
+        return requestInputStream.readNBytes(length);
+    }
+
+    /** Parses an operation returned by {@link #getNextOperationBytes}. This is thread safe. */
+    public FeedOperation parseOperation(byte[] operation, FeederSettings settings) throws Exception {
+        FeedReader reader = feedReaderFactory.createReader(new ByteArrayInputStream(operation), docTypeManager, settings.dataFormat);
+        return reader.read();
+    }
+
     public Optional<String> getNextOperationId(InputStream requestInputStream) throws IOException {
         StringBuilder idBuf = new StringBuilder(100);
         int c;
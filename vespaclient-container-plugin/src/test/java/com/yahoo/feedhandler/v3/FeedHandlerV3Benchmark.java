@@ -0,0 +1,48 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.feedhandler.v3;
+
+import com.yahoo.container.jdisc.HttpRequest;
+import com.yahoo.vespa.http.server.FeedHandlerV3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * Measures the throughput of feeding a single stream with various numbers of parser threads.
+ */
+public class FeedHandlerV3Benchmark {
+
+    private static final int documents = 20000;
+
+    private static double feed(int parserThreads, ExecutorService requestExecutor) throws IOException {
+        FeedHandlerV3 feedHandler = FeedHandlerV3Test.createFeedHandler(parserThreads, new ArrayList<>(),
+                                                                          new CollectingMetric(), requestExecutor);
+        try {
+            HttpRequest request = FeedHandlerV3Test.createRequest(documents);
+            long startTime = System.nanoTime();
+            feedHandler.handle(request).render(new ByteArrayOutputStream());
+            return documents / ((System.nanoTime() - startTime) / 1e9);
+        }
+        finally {
+            feedHandler.release();
+        }
+    }
+
+    public static void main(String[] args) throws IOException {
+        ExecutorService requestExecutor = Executors.newCachedThreadPool();
+        try {
+            feed(0, requestExecutor); // warmup
+            for (int parserThreads : new int[] { 0, 1, 2, 4, 8 })
+                System.out.println(String.format(Locale.ENGLISH, "%d parser threads: %.0f documents/s",
+                                                 parserThreads, feed(parserThreads, requestExecutor)));
+        }
+        finally {
+            requestExecutor.shutdown();
+        }
+    }
+
+}
@@ -12,6 +12,7 @@ import com.yahoo.document.DocumentTypeManager;
 import com.yahoo.document.config.DocumentmanagerConfig;
 import com.yahoo.documentapi.messagebus.protocol.PutDocumentMessage;
 import com.yahoo.documentapi.metrics.DocumentApiMetrics;
+import com.yahoo.jdisc.Metric;
 import com.yahoo.jdisc.ReferencedResource;
 import com.yahoo.messagebus.Result;
 import com.yahoo.messagebus.SourceSessionParams;
@@ -25,15 +26,21 @@ import com.yahoo.vespa.http.client.core.OperationStatus;
 import com.yahoo.vespa.http.server.FeedHandlerV3;
 import com.yahoo.vespa.http.server.MetricNames;
 import com.yahoo.vespa.http.server.ReplyContext;
+import org.junit.After;
 import org.junit.Test;
 import org.mockito.stubbing.Answer;
 
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
 import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 
+import static org.hamcrest.CoreMatchers.containsString;
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.CoreMatchers.startsWith;
 import static org.junit.Assert.assertThat;
@@ -41,8 +48,17 @@ import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
-public class FeedTesterV3 {
-    final CollectingMetric metric = new CollectingMetric();
+public class FeedHandlerV3Test {
+
+    private final CollectingMetric metric = new CollectingMetric();
+    private final List<FeedHandlerV3> feedHandlers = new ArrayList<>();
+    private final List<ExecutorService> requestExecutors = new ArrayList<>();
+
+    @After
+    public void destroyFeedHandlers() {
+        feedHandlers.forEach(FeedHandlerV3::release);
+        requestExecutors.forEach(ExecutorService::shutdown);
+    }
 
     @Test
     public void feedOneDocument() throws Exception {
@@ -76,6 +92,35 @@ public class FeedTesterV3 {
         assertThat(Splitter.on("\n").splitToList(result).size(), is(101));
     }
 
+    @Test
+    public void documentsAreSentInOrderWhenParsedInParallel() throws Exception {
+        List<String> sent = Collections.synchronizedList(new ArrayList<>());
+        FeedHandlerV3 feedHandlerV3 = setupFeederHandler(4, sent);
+        HttpResponse httpResponse = feedHandlerV3.handle(createRequest(1000));
+        httpResponse.render(new ByteArrayOutputStream());
+        assertThat(sent.size(), is(1000));
+        for (int i = 0; i < sent.size(); i++)
+            assertThat(sent.get(i), is("123" + i));
+    }
+
+    @Test
+    public void feedBrokenDocumentsWhenParsedInParallel() throws Exception {
+        FeedHandlerV3 feedHandlerV3 = setupFeederHandler(4, new ArrayList<>());
+        String docData = "[{\"put\": \"id:testdocument:testdocument::c\", \"fields\": { \"title\": \"fooKey\", \"body\": \"value\"}}]";
+        String brokenDocData = "[{\"put oops I broke it]";
+        String wireData = "1 " + Integer.toHexString(docData.length()) + "\n" + docData +
+                          "2 " + Integer.toHexString(brokenDocData.length()) + "\n" + brokenDocData +
+                          "3 " + Integer.toHexString(docData.length()) + "\n" + docData;
+        HttpResponse httpResponse = feedHandlerV3.handle(createRequestWithPayload(wireData));
+        ByteArrayOutputStream outStream = new ByteArrayOutputStream();
+        httpResponse.render(outStream);
+        String result = Utf8.toString(outStream.toByteArray());
+        assertThat(result, containsString("1 OK message trace\n"));
+        assertThat(result, containsString("2 ERROR "));
+        assertThat(result, containsString("3 OK message trace\n"));
+        assertThat(metric.get(MetricNames.PARSE_ERROR), is(1L));
+    }
+
     private static DocumentTypeManager createDoctypeManager() {
         DocumentTypeManager docTypeManager = new DocumentTypeManager();
         DocumentType documentType = new DocumentType("testdocument");
@@ -85,7 +130,7 @@ public class FeedTesterV3 {
         return docTypeManager;
     }
 
-    private static HttpRequest createRequest(int numberOfDocs) {
+    static HttpRequest createRequest(int numberOfDocs) {
         StringBuilder wireData = new StringBuilder();
         for (int x = 0; x < numberOfDocs; x++) {
             String docData = "[{\"put\": \"id:testdocument:testdocument::c\", \"fields\": { \"title\": \"fooKey\", \"body\": \"value\"}}]";
@@ -115,15 +160,32 @@ public class FeedTesterV3 {
         return request;
     }
 
-    private FeedHandlerV3 setupFeederHandler() throws Exception {
-        Executor threadPool = Executors.newCachedThreadPool();
+    private FeedHandlerV3 setupFeederHandler() {
+        return setupFeederHandler(0, new ArrayList<>());
+    }
+
+    private FeedHandlerV3 setupFeederHandler(int parserThreads, List<String> sentOperationIds) {
+        ExecutorService requestExecutor = Executors.newCachedThreadPool();
+        requestExecutors.add(requestExecutor);
+        FeedHandlerV3 feedHandlerV3 = createFeedHandler(parserThreads, sentOperationIds, metric, requestExecutor);
+        feedHandlers.add(feedHandlerV3);
+        return feedHandlerV3;
+    }
+
+    /**
+     * Returns a feed handler which sends to a mock session, recording the ids of the operations sent.
+     * The returned handler must be released by the caller.
+     */
+    static FeedHandlerV3 createFeedHandler(int parserThreads, List<String> sentOperationIds, Metric metric,
+                                           Executor requestExecutor) {
         DocumentmanagerConfig docMan = new DocumentmanagerConfig(new DocumentmanagerConfig.Builder().enablecompression(true));
         FeedHandlerV3 feedHandlerV3 = new FeedHandlerV3(
-                new FeedHandlerV3.Context(threadPool, AccessLog.voidAccessLog(), metric),
+                new FeedHandlerV3.Context(requestExecutor, AccessLog.voidAccessLog(), metric),
                 docMan,
                 null /* session cache */,
                 null /* thread pool config */,
-                new DocumentApiMetrics(MetricReceiver.nullImplementation, "test")) {
+                new DocumentApiMetrics(MetricReceiver.nullImplementation, "test"),
+                parserThreads) {
             @Override
             protected ReferencedResource<SharedSourceSession> retainSource(
                     SessionCache sessionCache, SourceSessionParams sessionParams)  {
@@ -134,6 +196,7 @@ public class FeedTesterV3 {
                         Object[] args = invocation.getArguments();
                         PutDocumentMessage putDocumentMessage = (PutDocumentMessage) args[0];
                         ReplyContext replyContext = (ReplyContext)putDocumentMessage.getContext();
+                        sentOperationIds.add(replyContext.docId);
                         replyContext.feedReplies.add(new OperationStatus("message", replyContext.docId, ErrorCode.OK, false, "trace"));
                         Result result = mock(Result.class);
                         when(result.isAccepted()).thenReturn(true);
@@ -0,0 +1,146 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.compress;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * The header of a block of log lines written by {@link LogBlockWriter}, which acts as the index of the block:
+ * It holds the range of timestamps, and the hosts and services of the lines in the block.
+ * Hosts or services are null when there are more distinct values in the block than are worth indexing.
+ *
+ * On disk a block is the magic number, the size of the header, the header and then the compressed lines.
+ */
+final class LogBlockHeader {
+
+    static final int MAGIC = 0x564c4231; // "VLB1"
+
+    /** The size of the magic number and header size which precede each header */
+    static final int PREFIX_SIZE = 8;
+
+    /** The max number of distinct hosts or services to index in a block */
+    static final int MAX_INDEXED_VALUES = 32;
+
+    final long minTimestamp;
+    final long maxTimestamp;
+    final int lineCount;
+    final int uncompressedSize;
+    final int compressedSize;
+    final Set<String> hosts;
+    final Set<String> services;
+
+    LogBlockHeader(long minTimestamp, long maxTimestamp, int lineCount, int uncompressedSize, int compressedSize,
+                   Set<String> hosts, Set<String> services) {
+        this.minTimestamp = minTimestamp;
+        this.maxTimestamp = maxTimestamp;
+        this.lineCount = lineCount;
+        this.uncompressedSize = uncompressedSize;
+        this.compressedSize = compressedSize;
+        this.hosts = hosts;
+        this.services = services;
+    }
+
+    /** Returns whether this block may contain lines matching the given query */
+    boolean mayMatch(LogBlockReader.Query query) {
+        if (maxTimestamp <= query.fromMicros || minTimestamp > query.toMicros) return false;
+        if (query.hostname != null && hosts != null && ! hosts.contains(query.hostname)) return false;
+        if (query.service != null && services != null && ! services.contains(query.service)) return false;
+        return true;
+    }
+
+    /** Returns whether all lines in this block matches the given query */
+    boolean allMatch(LogBlockReader.Query query) {
+        if (minTimestamp <= query.fromMicros || maxTimestamp > query.toMicros) return false;
+        if (query.hostname != null && ! Collections.singleton(query.hostname).equals(hosts)) return false;
+        if (query.service != null && ! Collections.singleton(query.service).equals(services)) return false;
+        return true;
+    }
+
+    void writeTo(DataOutputStream out) throws IOException {
+        out.writeLong(minTimestamp);
+        out.writeLong(maxTimestamp);
+        out.writeInt(lineCount);
+        out.writeInt(uncompressedSize);
+        out.writeInt(compressedSize);
+        writeValues(hosts, out);
+        writeValues(services, out);
+    }
+
+    static LogBlockHeader readFrom(DataInputStream in) throws IOException {
+        return new LogBlockHeader(in.readLong(), in.readLong(), in.readInt(), in.readInt(), in.readInt(),
+                                  readValues(in), readValues(in));
+    }
+
+    private static void writeValues(Set<String> values, DataOutputStream out) throws IOException {
+        if (values == null) {
+            out.writeShort(-1);
+            return;
+        }
+        out.writeShort(values.size());
+        for (String value : values)
+            out.writeUTF(value);
+    }
+
+    private static Set<String> readValues(DataInputStream in) throws IOException {
+        int count = in.readShort();
+        if (count < 0) return null;
+        Set<String> values = new LinkedHashSet<>(count * 2);
+        for (int i = 0; i < count; i++)
+            values.add(in.readUTF());
+        return values;
+    }
+
+    /**
+     * Returns the timestamp in microseconds of the log line starting at the given offset,
+     * or -1 if it does not start with a valid timestamp.
+     */
+    static long timestampMicros(byte[] line, int offset, int end) {
+        long seconds = 0;
+        long micros = 0;
+        int i = offset;
+        for (; i < end && line[i] != '.' && line[i] != '\t'; i++) {
+            if (line[i] < '0' || line[i] > '9') return -1;
+            seconds = seconds * 10 + (line[i] - '0');
+        }
+        if (i == offset) return -1;
+        if (i < end && line[i] == '.') {
+            int digits = 0;
+            for (i++; i < end && line[i] != '\t'; i++) {
+                if (line[i] < '0' || line[i] > '9') return -1;
+                if (digits++ < 6)
+                    micros = micros * 10 + (line[i] - '0');
+            }
+            for (; digits < 6; digits++)
+                micros *= 10;
+        }
+        return seconds * 1_000_000 + micros;
+    }
+
+    /** Returns the offset of the start of the given tab separated field in the line at the given offset, or -1 */
+    static int fieldStart(byte[] line, int offset, int end, int field) {
+        for (int i = offset; field > 0 && i < end; i++) {
+            if (line[i] == '\t' && --field == 0)
+                return i + 1;
+        }
+        return field == 0 ? offset : -1;
+    }
+
+    /** Returns the end of the field starting at the given offset */
+    static int fieldEnd(byte[] line, int start, int end) {
+        int i = start;
+        while (i < end && line[i] != '\t' && line[i] != '\n')
+            i++;
+        return i;
+    }
+
+    /** Returns the field starting at the given offset */
+    static String field(byte[] line, int start, int end) {
+        return new String(line, start, fieldEnd(line, start, end) - start, StandardCharsets.UTF_8);
+    }
+
+}
@@ -0,0 +1,203 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.compress;
+
+import net.jpountz.lz4.LZ4Factory;
+import net.jpountz.lz4.LZ4FastDecompressor;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.Arrays;
+
+/**
+ * Reads the lines matching a query from log files written by {@link LogBlockWriter}, reading and
+ * decompressing only the blocks which may contain matching lines according to their header.
+ * Plain log streams may also be filtered by the same query, see {@link #writeMatching(InputStream, Query, OutputStream)}.
+ */
+public class LogBlockReader {
+
+    private static final LZ4FastDecompressor decompressor = LZ4Factory.fastestInstance().fastDecompressor();
+
+    private LogBlockReader() { }
+
+    /**
+     * Writes the lines of the given file written by {@link LogBlockWriter} which match the given query to the given
+     * stream, in the order they were written. An incomplete last block, e.g., due to a crash while writing, is ignored.
+     *
+     * @return the number of blocks which were read
+     */
+    public static int writeMatching(Path file, Query query, OutputStream out) throws IOException {
+        int blocksRead = 0;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(LogBlockHeader.PREFIX_SIZE);
+            long size = channel.size();
+            long position = 0;
+            while (position + LogBlockHeader.PREFIX_SIZE <= size) {
+                prefix.clear();
+                readFully(channel, prefix, position);
+                if (prefix.getInt(0) != LogBlockHeader.MAGIC)
+                    throw new IOException("Corrupt log block file " + file + ": No block at position " + position);
+                int headerSize = prefix.getInt(4);
+                long headerPosition = position + LogBlockHeader.PREFIX_SIZE;
+                if (headerPosition + headerSize > size) break;
+
+                ByteBuffer headerBytes = ByteBuffer.allocate(headerSize);
+                readFully(channel, headerBytes, headerPosition);
+                LogBlockHeader header = LogBlockHeader.readFrom(new DataInputStream(new ByteArrayInputStream(headerBytes.array())));
+                long blockPosition = headerPosition + headerSize;
+                if (blockPosition + header.compressedSize > size) break;
+
+                if (header.mayMatch(query)) {
+                    ByteBuffer compressed = ByteBuffer.allocate(header.compressedSize);
+                    readFully(channel, compressed, blockPosition);
+                    byte[] lines = new byte[header.uncompressedSize];
+                    decompressor.decompress(compressed.array(), 0, lines, 0, header.uncompressedSize);
+                    if (header.allMatch(query))
+                        out.write(lines);
+                    else
+                        writeMatching(lines, 0, lines.length, query, out);
+                    blocksRead++;
+                }
+                position = blockPosition + header.compressedSize;
+            }
+        }
+        return blocksRead;
+    }
+
+    /**
+     * Returns the length of the given file written by {@link LogBlockWriter} up to the end of its last complete
+     * block. This is less than the file size if the file ends in an incomplete block, e.g., due to a crash while
+     * writing, and the file must then be truncated to this length before more blocks are appended to it.
+     */
+    public static long completeLength(Path file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer prefix = ByteBuffer.allocate(LogBlockHeader.PREFIX_SIZE);
+            long size = channel.size();
+            long position = 0;
+            while (position + LogBlockHeader.PREFIX_SIZE <= size) {
+                prefix.clear();
+                readFully(channel, prefix, position);
+                if (prefix.getInt(0) != LogBlockHeader.MAGIC) break;
+                int headerSize = prefix.getInt(4);
+                long headerPosition = position + LogBlockHeader.PREFIX_SIZE;
+                if (headerSize < 0 || headerPosition + headerSize > size) break;
+
+                ByteBuffer headerBytes = ByteBuffer.allocate(headerSize);
+                readFully(channel, headerBytes, headerPosition);
+                LogBlockHeader header = LogBlockHeader.readFrom(new DataInputStream(new ByteArrayInputStream(headerBytes.array())));
+                long blockPosition = headerPosition + headerSize;
+                if (blockPosition + header.compressedSize > size) break;
+                position = blockPosition + header.compressedSize;
+            }
+            return position;
+        }
+    }
+
+    /** Writes the lines of the given plain (uncompressed) log stream which match the given query to the given stream */
+    public static void writeMatching(InputStream in, Query query, OutputStream out) throws IOException {
+        byte[] buffer = new byte[64 * 1024];
+        int size = 0;
+        for (int read; (read = in.read(buffer, size, buffer.length - size)) != -1; ) {
+            size += read;
+            int consumed = writeMatching(buffer, 0, size, query, out);
+            System.arraycopy(buffer, consumed, buffer, 0, size - consumed);
+            size -= consumed;
+            if (size == buffer.length) { // A line longer than the buffer
+                byte[] grown = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, grown, 0, size);
+                buffer = grown;
+            }
+        }
+        if (size > 0) { // Last line without newline
+            buffer = Arrays.copyOf(buffer, size + 1);
+            buffer[size] = '\n';
+            writeMatching(buffer, 0, size + 1, query, out);
+        }
+    }
+
+    /** Writes the complete lines in the given range which matches the query, and returns the end of the last complete line */
+    private static int writeMatching(byte[] lines, int offset, int end, Query query, OutputStream out) throws IOException {
+        int start = offset;
+        for (int i = offset; i < end; i++) {
+            if (lines[i] != '\n') continue;
+            if (query.matches(lines, start, i + 1))
+                out.write(lines, start, i + 1 - start);
+            start = i + 1;
+        }
+        return start;
+    }
+
+    private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            int read = channel.read(buffer, position + buffer.position());
+            if (read < 0) throw new EOFException();
+        }
+    }
+
+    /**
+     * A query for log lines with timestamps after from and up to and including to,
+     * and optionally from a given host and service.
+     */
+    public static class Query {
+
+        final long fromMicros;
+        final long toMicros;
+        final String hostname;
+        final String service;
+        private final byte[] hostnameBytes;
+        private final byte[] serviceBytes;
+
+        /**
+         * Creates a query
+         *
+         * @param from lines must have a timestamp after this
+         * @param to lines must have a timestamp no later than this
+         * @param hostname the host lines must be from, or null for any host
+         * @param service the service lines must be from, or null for any service
+         */
+        public Query(Instant from, Instant to, String hostname, String service) {
+            this.fromMicros = toMicros(from);
+            this.toMicros = toMicros(to);
+            this.hostname = hostname;
+            this.service = service;
+            this.hostnameBytes = hostname == null ? null : hostname.getBytes(StandardCharsets.UTF_8);
+            this.serviceBytes = service == null ? null : service.getBytes(StandardCharsets.UTF_8);
+        }
+
+        /** Returns whether the line in the given range matches this */
+        boolean matches(byte[] line, int start, int end) {
+            long timestamp = LogBlockHeader.timestampMicros(line, start, end);
+            if (timestamp < 0 || timestamp <= fromMicros || timestamp > toMicros) return false;
+            if (hostnameBytes != null && ! fieldEquals(line, start, end, 1, hostnameBytes)) return false;
+            if (serviceBytes != null && ! fieldEquals(line, start, end, 3, serviceBytes)) return false;
+            return true;
+        }
+
+        private static boolean fieldEquals(byte[] line, int start, int end, int field, byte[] value) {
+            int fieldStart = LogBlockHeader.fieldStart(line, start, end, field);
+            if (fieldStart < 0) return false;
+            int fieldEnd = LogBlockHeader.fieldEnd(line, fieldStart, end);
+            if (fieldEnd - fieldStart != value.length) return false;
+            for (int i = 0; i < value.length; i++)
+                if (line[fieldStart + i] != value[i]) return false;
+            return true;
+        }
+
+        private static long toMicros(Instant instant) {
+            if (instant.getEpochSecond() >= Long.MAX_VALUE / 1_000_000) return Long.MAX_VALUE;
+            if (instant.getEpochSecond() <= Long.MIN_VALUE / 1_000_000) return Long.MIN_VALUE;
+            return instant.getEpochSecond() * 1_000_000 + instant.getNano() / 1000;
+        }
+
+    }
+
+}
@@ -0,0 +1,154 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.compress;
+
+import net.jpountz.lz4.LZ4Compressor;
+import net.jpountz.lz4.LZ4Factory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * Writes lines in the Vespa log format (tab separated, starting with a timestamp in seconds, then
+ * the host, pid and service) as a sequence of LZ4 compressed blocks. Each block is preceded by a header
+ * holding the time range, hosts and services of its lines, such that blocks which cannot match a query
+ * can be skipped by {@link LogBlockReader} without being read or decompressed.
+ *
+ * Blocks are appended independently, so a file may be appended to after being closed, once any incomplete
+ * last block is truncated away, see {@link LogBlockReader#completeLength}.
+ * This class is not thread safe.
+ */
+public class LogBlockWriter implements Closeable {
+
+    /** The file name suffix of files written by this */
+    public static final String FILE_SUFFIX = ".lzb";
+
+    public static final int DEFAULT_BLOCK_SIZE = 128 * 1024;
+
+    private static final LZ4Compressor compressor = LZ4Factory.fastestInstance().fastCompressor();
+
+    private final DataOutputStream out;
+    private final int blockSize;
+
+    private byte[] buffer;
+    private int size = 0;
+    private int lineCount = 0;
+    private long minTimestamp = Long.MAX_VALUE;
+    private long maxTimestamp = Long.MIN_VALUE;
+    private Set<String> hosts = new LinkedHashSet<>();
+    private Set<String> services = new LinkedHashSet<>();
+    private byte[] compressed = new byte[0];
+    private long bytesWritten = 0;
+
+    public LogBlockWriter(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /** Creates a writer which writes a block when the given number of uncompressed bytes are buffered */
+    public LogBlockWriter(OutputStream out, int blockSize) {
+        this.out = new DataOutputStream(out);
+        this.blockSize = blockSize;
+        this.buffer = new byte[blockSize];
+    }
+
+    /** Adds a log line, with or without a trailing newline */
+    public void write(String line) throws IOException {
+        byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+        boolean terminated = bytes.length > 0 && bytes[bytes.length - 1] == '\n';
+        ensureCapacity(size + bytes.length + 1);
+        int start = size;
+        System.arraycopy(bytes, 0, buffer, size, bytes.length);
+        size += bytes.length;
+        if ( ! terminated)
+            buffer[size++] = '\n';
+        index(start, size);
+
+        if (size >= blockSize)
+            writeBlock();
+    }
+
+    private void index(int start, int end) {
+        lineCount++;
+        long timestamp = LogBlockHeader.timestampMicros(buffer, start, end);
+        if (timestamp < 0) { // Not a valid log line: It must be filtered with all other lines in this block
+            minTimestamp = Long.MIN_VALUE;
+            hosts = null;
+            services = null;
+            return;
+        }
+        minTimestamp = Math.min(minTimestamp, timestamp);
+        maxTimestamp = Math.max(maxTimestamp, timestamp);
+        hosts = index(hosts, start, end, 1);
+        services = index(services, start, end, 3);
+    }
+
+    private Set<String> index(Set<String> values, int start, int end, int field) {
+        if (values == null) return null;
+
+        int fieldStart = LogBlockHeader.fieldStart(buffer, start, end, field);
+        if (fieldStart < 0) return null;
+        values.add(LogBlockHeader.field(buffer, fieldStart, end));
+        return values.size() > LogBlockHeader.MAX_INDEXED_VALUES ? null : values;
+    }
+
+    private void ensureCapacity(int capacity) {
+        if (capacity <= buffer.length) return;
+        byte[] grown = new byte[Math.max(capacity, buffer.length * 2)];
+        System.arraycopy(buffer, 0, grown, 0, size);
+        buffer = grown;
+    }
+
+    /** Writes any buffered lines as a block, and flushes the underlying stream */
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    /** Flushes the blocks written so far to the underlying stream, while buffered lines stay in the current block */
+    public void flushBlocks() throws IOException {
+        out.flush();
+    }
+
+    /** Writes any buffered lines as a block, and closes the underlying stream */
+    @Override
+    public void close() throws IOException {
+        writeBlock();
+        out.close();
+    }
+
+    /** Returns the number of bytes written to the underlying stream by this */
+    public long bytesWritten() { return bytesWritten; }
+
+    private void writeBlock() throws IOException {
+        if (lineCount == 0) return;
+
+        int maxCompressedSize = compressor.maxCompressedLength(size);
+        if (compressed.length < maxCompressedSize)
+            compressed = new byte[maxCompressedSize];
+        int compressedSize = compressor.compress(buffer, 0, size, compressed, 0, maxCompressedSize);
+
+        ByteArrayOutputStream headerBytes = new ByteArrayOutputStream();
+        new LogBlockHeader(minTimestamp, maxTimestamp, lineCount, size, compressedSize, hosts, services)
+                .writeTo(new DataOutputStream(headerBytes));
+        out.writeInt(LogBlockHeader.MAGIC);
+        out.writeInt(headerBytes.size());
+        headerBytes.writeTo(out);
+        out.write(compressed, 0, compressedSize);
+        bytesWritten += LogBlockHeader.PREFIX_SIZE + headerBytes.size() + compressedSize;
+
+        if (buffer.length > blockSize * 2)
+            buffer = new byte[blockSize];
+        size = 0;
+        lineCount = 0;
+        minTimestamp = Long.MAX_VALUE;
+        maxTimestamp = Long.MIN_VALUE;
+        hosts = new LinkedHashSet<>();
+        services = new LinkedHashSet<>();
+    }
+
+}
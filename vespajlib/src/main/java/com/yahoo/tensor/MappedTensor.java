@@ -3,13 +3,20 @@ package com.yahoo.tensor;
 
 import com.google.common.collect.ImmutableMap;
 
+import java.util.Arrays;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
-import java.util.function.DoubleBinaryOperator;
 
 /**
- * A sparse implementation of a tensor backed by a Map of cells to values.
+ * A sparse implementation of a tensor.
+ *
+ * Cells are stored compactly in arrays: Each distinct label is stored once in a label dictionary,
+ * the address of each cell is a sequence of indexes into this dictionary, one per dimension, and
+ * the values are stored unboxed. Lookup by address is done through an open addressing hash table
+ * over the cells. No TensorAddress or Double is retained per cell.
  *
  * @author bratseth
  */
@@ -17,31 +24,52 @@ public class MappedTensor implements Tensor {
 
     private final TensorType type;
 
-    private final ImmutableMap<TensorAddress, Double> cells;
+    /** The distinct labels of this tensor */
+    private final String[] labels;
+
+    /** The label indexes of cell i are found at [i * rank, (i + 1) * rank> */
+    private final int[] labelIndexes;
+
+    /** The value of each cell */
+    private final double[] values;
+
+    /** Open addressing hash table containing cell index + 1 of each cell, where 0 denotes an empty slot */
+    private final int[] hashTable;
 
     /** Creates a sparse tensor. The cell addresses must match the type. */
-    private MappedTensor(TensorType type, Map<TensorAddress, Double> cells) {
+    private MappedTensor(TensorType type, String[] labels, int[] labelIndexes, double[] values, int[] hashTable) {
         this.type = type;
-        this.cells = ImmutableMap.copyOf(cells);
+        this.labels = labels;
+        this.labelIndexes = labelIndexes;
+        this.values = values;
+        this.hashTable = hashTable;
     }
 
     @Override
     public TensorType type() { return type; }
 
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     @Override
-    public double get(TensorAddress address) { return cells.getOrDefault(address, Double.NaN); }
+    public double get(TensorAddress address) {
+        int cellIndex = indexOf(address);
+        return cellIndex < 0 ? Double.NaN : values[cellIndex];
+    }
 
     @Override
-    public Iterator<Cell> cellIterator() { return new CellIteratorAdaptor(cells.entrySet().iterator()); }
+    public Iterator<Cell> cellIterator() { return new CellIterator(); }
 
     @Override
-    public Iterator<Double> valueIterator() { return cells.values().iterator(); }
+    public Iterator<Double> valueIterator() { return new ValueIterator(); }
 
     @Override
-    public Map<TensorAddress, Double> cells() { return cells; }
+    public Map<TensorAddress, Double> cells() {
+        ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
+        for (int i = 0; i < values.length; i++)
+            builder.put(addressOf(i), values[i]);
+        return builder.build();
+    }
 
     @Override
     public Tensor withType(TensorType other) {
@@ -49,7 +77,7 @@ public class MappedTensor implements Tensor {
             throw new IllegalArgumentException("MappedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MappedTensor(other, cells);
+        return new MappedTensor(other, labels, labelIndexes, values, hashTable);
     }
 
     @Override
@@ -65,8 +93,14 @@ public class MappedTensor implements Tensor {
         return builder.build();
     }
 
+    /** Returns the same hash code as the map returned by {@link #cells} */
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 0;
+        for (int i = 0; i < values.length; i++)
+            hashCode += hashOf(labels, labelIndexes, rank(), i) ^ Double.hashCode(values[i]);
+        return hashCode;
+    }
 
     @Override
     public String toString() { return Tensor.toStandardString(this); }
@@ -77,15 +111,62 @@ public class MappedTensor implements Tensor {
         return Tensor.equals(this, ((Tensor)other));
     }
 
+    private int rank() { return type.rank(); }
+
+    /** Returns the index of the cell having the given address, or -1 if it is not present */
+    private int indexOf(TensorAddress address) {
+        if (address.size() != rank()) return -1;
+        int mask = hashTable.length - 1;
+        for (int slot = address.hashCode() & mask; hashTable[slot] != 0; slot = (slot + 1) & mask) {
+            int cellIndex = hashTable[slot] - 1;
+            if (addressEquals(cellIndex, address))
+                return cellIndex;
+        }
+        return -1;
+    }
+
+    private boolean addressEquals(int cellIndex, TensorAddress address) {
+        int offset = cellIndex * rank();
+        for (int i = 0; i < rank(); i++)
+            if ( ! labels[labelIndexes[offset + i]].equals(address.label(i)))
+                return false;
+        return true;
+    }
+
+    private TensorAddress addressOf(int cellIndex) {
+        String[] cellLabels = new String[rank()];
+        int offset = cellIndex * rank();
+        for (int i = 0; i < cellLabels.length; i++)
+            cellLabels[i] = labels[labelIndexes[offset + i]];
+        return TensorAddress.of(cellLabels);
+    }
+
+    /** Returns the hash code of the address of the given cell, which is the same as the hash code of its TensorAddress */
+    private static int hashOf(String[] labels, int[] labelIndexes, int rank, int cellIndex) {
+        int result = 1;
+        int offset = cellIndex * rank;
+        for (int i = 0; i < rank; i++)
+            result = 31 * result + labels[labelIndexes[offset + i]].hashCode();
+        return result;
+    }
+
     public static class Builder implements Tensor.Builder {
 
         private final TensorType type;
-        private final ImmutableMap.Builder<TensorAddress, Double> cells = new ImmutableMap.Builder<>();
+        private final int rank;
+
+        private final Map<String, Integer> labelDictionary = new HashMap<>();
+        private String[] labels = new String[16];
+        private int[] labelIndexes;
+        private double[] values = new double[16];
+        private int size = 0;
 
         public static Builder of(TensorType type) { return new Builder(type); }
 
         private Builder(TensorType type) {
             this.type = type;
+            this.rank = type.rank();
+            this.labelIndexes = new int[16 * rank];
         }
 
         public CellBuilder cell() {
@@ -102,7 +183,12 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(TensorAddress address, double value) {
-            cells.put(address, value);
+            verifyRank(address.size());
+            ensureCapacity();
+            int offset = size * rank;
+            for (int i = 0; i < address.size(); i++)
+                labelIndexes[offset + i] = labelIndex(address.label(i));
+            values[size++] = value;
             return this;
         }
 
@@ -113,32 +199,124 @@ public class MappedTensor implements Tensor {
 
         @Override
         public Builder cell(double value, long... labels) {
-            cells.put(TensorAddress.of(labels), value);
+            verifyRank(labels.length);
+            ensureCapacity();
+            int offset = size * rank;
+            for (int i = 0; i < labels.length; i++)
+                labelIndexes[offset + i] = labelIndex(String.valueOf(labels[i]));
+            values[size++] = value;
+            return this;
+        }
+
+        /**
+         * Adds a cell given by its labels in dimension order.
+         * This avoids creating a TensorAddress for the cell.
+         */
+        public Builder cell(String[] labels, double value) {
+            verifyRank(labels.length);
+            ensureCapacity();
+            int offset = size * rank;
+            for (int i = 0; i < labels.length; i++)
+                labelIndexes[offset + i] = labelIndex(labels[i]);
+            values[size++] = value;
             return this;
         }
 
         @Override
         public MappedTensor build() {
-            return new MappedTensor(type, cells.build());
+            String[] labels = Arrays.copyOf(this.labels, labelDictionary.size());
+            int[] labelIndexes = Arrays.copyOf(this.labelIndexes, size * rank);
+            double[] values = Arrays.copyOf(this.values, size);
+            int[] hashTable = new int[hashTableSize(size)];
+            int mask = hashTable.length - 1;
+            for (int cellIndex = 0; cellIndex < size; cellIndex++) {
+                int slot = hashOf(labels, labelIndexes, rank, cellIndex) & mask;
+                for (; hashTable[slot] != 0; slot = (slot + 1) & mask) {
+                    if (sameAddress(labelIndexes, hashTable[slot] - 1, cellIndex))
+                        throw new IllegalArgumentException("Multiple entries with same key: " +
+                                                           addressToString(labels, labelIndexes, cellIndex));
+                }
+                hashTable[slot] = cellIndex + 1;
+            }
+            return new MappedTensor(type, labels, labelIndexes, values, hashTable);
         }
 
-    }
+        private int labelIndex(String label) {
+            Integer index = labelDictionary.get(label);
+            if (index != null) return index;
+
+            index = labelDictionary.size();
+            if (index == labels.length)
+                labels = Arrays.copyOf(labels, labels.length * 2);
+            labels[index] = label;
+            labelDictionary.put(label, index);
+            return index;
+        }
 
-    private static class CellIteratorAdaptor implements Iterator<Cell> {
+        private void verifyRank(int labelCount) {
+            if (labelCount != rank)
+                throw new IllegalArgumentException("Expected " + rank + " labels for a cell in " + type +
+                                                   " but got " + labelCount);
+        }
 
-        private final Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator;
+        private void ensureCapacity() {
+            if (size < values.length) return;
+            values = Arrays.copyOf(values, values.length * 2);
+            labelIndexes = Arrays.copyOf(labelIndexes, values.length * rank);
+        }
 
-        private CellIteratorAdaptor(Iterator<Map.Entry<TensorAddress, Double>> adaptedIterator) {
-            this.adaptedIterator = adaptedIterator;
+        private boolean sameAddress(int[] labelIndexes, int cellA, int cellB) {
+            for (int i = 0; i < rank; i++)
+                if (labelIndexes[cellA * rank + i] != labelIndexes[cellB * rank + i])
+                    return false;
+            return true;
         }
 
+        private String addressToString(String[] labels, int[] labelIndexes, int cellIndex) {
+            String[] cellLabels = new String[rank];
+            for (int i = 0; i < rank; i++)
+                cellLabels[i] = labels[labelIndexes[cellIndex * rank + i]];
+            return TensorAddress.of(cellLabels).toString(type);
+        }
+
+        /** Returns a power of two which keeps the load factor of the hash table at or below 0.5 */
+        private static int hashTableSize(int cells) {
+            int size = 2;
+            while (size < cells * 2)
+                size *= 2;
+            return size;
+        }
+
+    }
+
+    private class CellIterator implements Iterator<Cell> {
+
+        private int index = 0;
+
         @Override
-        public boolean hasNext() { return adaptedIterator.hasNext(); }
+        public boolean hasNext() { return index < values.length; }
 
         @Override
         public Cell next() {
-            Map.Entry<TensorAddress, Double> entry = adaptedIterator.next();
-            return new Cell(entry.getKey(), entry.getValue());
+            if ( ! hasNext()) throw new NoSuchElementException();
+            Cell cell = new Cell(addressOf(index), values[index]);
+            index++;
+            return cell;
+        }
+
+    }
+
+    private class ValueIterator implements Iterator<Double> {
+
+        private int index = 0;
+
+        @Override
+        public boolean hasNext() { return index < values.length; }
+
+        @Override
+        public Double next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            return values[index++];
         }
 
     }
@@ -2,13 +2,13 @@
 
 package com.yahoo.tensor;
 
-import com.google.common.collect.ImmutableList;
 import com.google.common.collect.ImmutableMap;
 
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
 import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 import java.util.stream.Collectors;
@@ -29,15 +29,15 @@ public class MixedTensor implements Tensor {
     /** The dimension specification for this tensor */
     private final TensorType type;
 
-    /** The list of cells in the tensor */
-    private final ImmutableList<Cell> cells;
+    /** The cell values of the tensor, one dense subspace after another */
+    private final double[] values;
 
-    /** An index structure over the cell list */
+    /** An index structure over the cell values */
     private final Index index;
 
-    private MixedTensor(TensorType type, ImmutableList<Cell> cells, Index index) {
+    private MixedTensor(TensorType type, double[] values, Index index) {
         this.type = type;
-        this.cells = ImmutableList.copyOf(cells);
+        this.values = values;
         this.index = index;
     }
 
@@ -47,7 +47,7 @@ public class MixedTensor implements Tensor {
 
     /** Returns the size of the tensor measured in number of cells */
     @Override
-    public long size() { return cells.size(); }
+    public long size() { return values.length; }
 
     /** Returns the value at the given address */
     @Override
@@ -55,10 +55,7 @@ public class MixedTensor implements Tensor {
         long cellIndex = index.indexOf(address);
         if (cellIndex < 0)
             return Double.NaN;
-        Cell cell = cells.get((int)cellIndex);
-        if ( ! address.equals(cell.getKey()))
-            return Double.NaN;
-        return cell.getValue();
+        return values[(int)cellIndex];
     }
 
     /**
@@ -70,7 +67,7 @@ public class MixedTensor implements Tensor {
      */
     @Override
     public Iterator<Cell> cellIterator() {
-        return cells.iterator();
+        return new CellIterator();
     }
 
     /**
@@ -80,14 +77,15 @@ public class MixedTensor implements Tensor {
     @Override
     public Iterator<Double> valueIterator() {
         return new Iterator<>() {
-            Iterator<Cell> cellIterator = cellIterator();
+            int cellIndex = 0;
             @Override
             public boolean hasNext() {
-                return cellIterator.hasNext();
+                return cellIndex < values.length;
             }
             @Override
             public Double next() {
-                return cellIterator.next().getValue();
+                if ( ! hasNext()) throw new NoSuchElementException();
+                return values[cellIndex++];
             }
         };
     }
@@ -95,7 +93,8 @@ public class MixedTensor implements Tensor {
     @Override
     public Map<TensorAddress, Double> cells() {
         ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
-        for (Cell cell : cells) {
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); ) {
+            Cell cell = i.next();
             builder.put(cell.getKey(), cell.getValue());
         }
         return builder.build();
@@ -107,7 +106,7 @@ public class MixedTensor implements Tensor {
             throw new IllegalArgumentException("MixedTensor.withType: types are not compatible. Current type: '" +
                     this.type.toString() + "', requested type: '" + type.toString() + "'");
         }
-        return new MixedTensor(other, cells, index);
+        return new MixedTensor(other, values, index);
     }
 
     @Override
@@ -120,8 +119,7 @@ public class MixedTensor implements Tensor {
             if ( ! addresses.contains(sparsePartialAddress)) {  // assumption: addresses only contain the sparse part
                 long offset = entry.getValue();
                 for (int i = 0; i < index.denseSubspaceSize; ++i) {
-                    Cell cell = cells.get((int)offset + i);
-                    builder.cell(cell.getKey(), cell.getValue());
+                    builder.cell(index.addressOf(sparsePartialAddress, i), values[(int)offset + i]);
                 }
             }
         }
@@ -129,7 +127,12 @@ public class MixedTensor implements Tensor {
     }
 
     @Override
-    public int hashCode() { return cells.hashCode(); }
+    public int hashCode() {
+        int hashCode = 1;
+        for (Iterator<Cell> i = cellIterator(); i.hasNext(); )
+            hashCode = 31 * hashCode + i.next().hashCode();
+        return hashCode;
+    }
 
     @Override
     public String toString() {
@@ -152,6 +155,35 @@ public class MixedTensor implements Tensor {
         return index.denseSubspaceSize();
     }
 
+    /** Iterates over the cells of this, creating cell addresses on the fly */
+    private class CellIterator implements Iterator<Cell> {
+
+        private final Iterator<Map.Entry<TensorAddress, Long>> subspaces = index.sparseMap.entrySet().iterator();
+        private TensorAddress sparsePart = null;
+        private long subspaceStart = 0;
+        private long denseOffset = 0;
+
+        @Override
+        public boolean hasNext() {
+            return subspaceStart + denseOffset < values.length;
+        }
+
+        @Override
+        public Cell next() {
+            if ( ! hasNext()) throw new NoSuchElementException();
+            if (sparsePart == null || denseOffset == index.denseSubspaceSize()) {
+                Map.Entry<TensorAddress, Long> subspace = subspaces.next();
+                sparsePart = subspace.getKey();
+                subspaceStart = subspace.getValue();
+                denseOffset = 0;
+            }
+            Cell cell = new Cell(index.addressOf(sparsePart, denseOffset), values[(int)(subspaceStart + denseOffset)]);
+            denseOffset++;
+            return cell;
+        }
+
+    }
+
 
     /**
      * Base class for building mixed tensors.
@@ -264,22 +296,18 @@ public class MixedTensor implements Tensor {
 
         @Override
         public MixedTensor build() {
-            long count = 0;
-            ImmutableList.Builder<Cell> builder = new ImmutableList.Builder<>();
+            int count = 0;
+            double[] values = new double[denseSubspaceMap.size() * (int)denseSubspaceSize()];
 
             for (Map.Entry<TensorAddress, double[]> entry : denseSubspaceMap.entrySet()) {
                 TensorAddress sparsePart = entry.getKey();
                 indexBuilder.put(sparsePart, count);
 
                 double[] denseSubspace = entry.getValue();
-                for (long offset = 0; offset < denseSubspace.length; ++offset) {
-                    TensorAddress cellAddress = index.addressOf(sparsePart, offset);
-                    double value = denseSubspace[(int)offset];
-                    builder.add(new Cell(cellAddress, value));
-                    count++;
-                }
+                System.arraycopy(denseSubspace, 0, values, count, denseSubspace.length);
+                count += denseSubspace.length;
             }
-            return new MixedTensor(type, builder.build(), indexBuilder.build());
+            return new MixedTensor(type, values, indexBuilder.build());
         }
 
     }
@@ -378,13 +406,27 @@ public class MixedTensor implements Tensor {
         /** Returns the index of the given address, or -1 if it is not present */
         public long indexOf(TensorAddress address) {
             TensorAddress sparsePart = sparsePartialAddress(address);
-            if ( ! sparseMap.containsKey(sparsePart))
+            Long base = sparseMap.get(sparsePart);
+            if (base == null)
+                return -1;
+            if ( ! isWithinDenseBounds(address))
                 return -1;
-            long base = sparseMap.get(sparsePart);
             long offset = denseOffset(address);
             return base + offset;
         }
 
+        private boolean isWithinDenseBounds(TensorAddress address) {
+            for (int i = 0; i < type.dimensions().size(); ++i) {
+                TensorType.Dimension dimension = type.dimensions().get(i);
+                if (dimension.isIndexed()) {
+                    long label = address.numericLabel(i);
+                    if (label < 0 || label >= dimension.size().get())
+                        return false;
+                }
+            }
+            return true;
+        }
+
         public static class Builder {
 
             private final Index index;
@@ -546,7 +588,7 @@ public class MixedTensor implements Tensor {
         }
 
         private double getDouble(long indexedSubspaceIndex, long indexInIndexedSubspace, MixedTensor tensor) {
-            return tensor.cells.get((int)(indexedSubspaceIndex + indexInIndexedSubspace)).getDoubleValue();
+            return tensor.values[(int)(indexedSubspaceIndex + indexInIndexedSubspace)];
         }
 
     }
@@ -2,10 +2,8 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Sets;
 import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
-import com.yahoo.tensor.PartialAddress;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -16,13 +14,11 @@ import com.yahoo.tensor.evaluation.TypeContext;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
-import java.util.Set;
 import java.util.function.DoubleBinaryOperator;
 
 /**
@@ -93,31 +89,69 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
 
     static Tensor evaluate(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
         // Choose join algorithm
-        if (hasSingleIndexedDimension(a) && hasSingleIndexedDimension(b) && a.type().dimensions().get(0).name().equals(b.type().dimensions().get(0).name()))
-            return indexedVectorJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
+        if (a instanceof IndexedTensor && b instanceof IndexedTensor)
+            return indexedJoin((IndexedTensor)a, (IndexedTensor)b, joinedType, combinator);
         else if (joinedType.dimensions().size() == a.type().dimensions().size() && joinedType.dimensions().size() == b.type().dimensions().size())
             return singleSpaceJoin(a, b, joinedType, combinator);
         else if (a.type().dimensions().containsAll(b.type().dimensions()))
-            return subspaceJoin(b, a, joinedType, true, combinator);
+            return generalSubspaceJoin(b, a, joinedType, true, combinator);
         else if (b.type().dimensions().containsAll(a.type().dimensions()))
-            return subspaceJoin(a, b, joinedType, false, combinator);
+            return generalSubspaceJoin(a, b, joinedType, false, combinator);
         else
-            return generalJoin(a, b, joinedType, combinator);
-
+            return mappedHashJoin(a, b, joinedType, combinator);
     }
 
-    private static boolean hasSingleIndexedDimension(Tensor tensor) {
-        return tensor.type().dimensions().size() == 1 && tensor.type().dimensions().get(0).isIndexed();
+    /**
+     * Joins two indexed tensors by iterating over the joined space in standard value order, keeping track of
+     * the value index of the matching cell in each argument by strides. A dimension which is not present in
+     * an argument has stride 0 in it, which broadcasts the argument over that dimension.
+     * The result values are written to an array which becomes the value array of the result,
+     * so no cell or address objects are created.
+     */
+    private static Tensor indexedJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
+        DimensionSizes joinedSizes = joinedSize(joinedType, a, b);
+        long[] aStrides = stridesInJoined(a, joinedType);
+        long[] bStrides = stridesInJoined(b, joinedType);
+        double[] values = new double[(int)joinedSizes.totalSize()];
+
+        int rank = joinedSizes.dimensions();
+        long innerSize = rank == 0 ? 1 : joinedSizes.size(rank - 1);
+        long aInnerStride = rank == 0 ? 0 : aStrides[rank - 1];
+        long bInnerStride = rank == 0 ? 0 : bStrides[rank - 1];
+        long[] indexes = new long[rank];
+        long aIndex = 0;
+        long bIndex = 0;
+        for (int i = 0; i < values.length; ) {
+            for (long inner = 0; inner < innerSize; inner++)
+                values[i++] = combinator.applyAsDouble(a.get(aIndex + inner * aInnerStride),
+                                                       b.get(bIndex + inner * bInnerStride));
+
+            // Step to the start of the next innermost run
+            for (int d = rank - 2; d >= 0; d--) {
+                aIndex += aStrides[d];
+                bIndex += bStrides[d];
+                if (++indexes[d] < joinedSizes.size(d)) break;
+                aIndex -= aStrides[d] * indexes[d];
+                bIndex -= bStrides[d] * indexes[d];
+                indexes[d] = 0;
+            }
+        }
+        return IndexedTensor.Builder.of(joinedType, joinedSizes, values).build();
     }
 
-    private static Tensor indexedVectorJoin(IndexedTensor a, IndexedTensor b, TensorType type, DoubleBinaryOperator combinator) {
-        long joinedRank = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
-        Iterator<Double> aIterator = a.valueIterator();
-        Iterator<Double> bIterator = b.valueIterator();
-        IndexedTensor.Builder builder = IndexedTensor.Builder.of(type, new DimensionSizes.Builder(1).set(0, joinedRank).build());
-        for (int i = 0; i < joinedRank; i++)
-            builder.cell(combinator.applyAsDouble(aIterator.next(), bIterator.next()), i);
-        return builder.build();
+    /**
+     * Returns the stride in the given tensor of each dimension of the joined type,
+     * or 0 for the dimensions not present in the tensor.
+     */
+    private static long[] stridesInJoined(IndexedTensor tensor, TensorType joinedType) {
+        long[] strides = new long[joinedType.dimensions().size()];
+        int[] toJoined = mapIndexes(tensor.type(), joinedType);
+        long stride = 1;
+        for (int i = toJoined.length - 1; i >= 0; i--) {
+            strides[toJoined[i]] = stride;
+            stride *= tensor.dimensionSizes().size(i);
+        }
+        return strides;
     }
 
     /** When both tensors have the same dimensions, at most one cell matches a cell in the other tensor */
@@ -132,54 +166,6 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return builder.build();
     }
 
-    /** Join a tensor into a superspace */
-    private static Tensor subspaceJoin(Tensor subspace, Tensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
-        if (subspace instanceof IndexedTensor && superspace instanceof IndexedTensor)
-            return indexedSubspaceJoin((IndexedTensor) subspace, (IndexedTensor) superspace, joinedType, reversedArgumentOrder, combinator);
-        else
-            return generalSubspaceJoin(subspace, superspace, joinedType, reversedArgumentOrder, combinator);
-    }
-
-    private static Tensor indexedSubspaceJoin(IndexedTensor subspace, IndexedTensor superspace, TensorType joinedType, boolean reversedArgumentOrder, DoubleBinaryOperator combinator) {
-        if (subspace.size() == 0 || superspace.size() == 0) // special case empty here to avoid doing it when finding sizes
-            return Tensor.Builder.of(joinedType, new DimensionSizes.Builder(joinedType.dimensions().size()).build()).build();
-
-        DimensionSizes joinedSizes = joinedSize(joinedType, subspace, superspace);
-
-        IndexedTensor.Builder builder = (IndexedTensor.Builder)Tensor.Builder.of(joinedType, joinedSizes);
-
-        // Find dimensions which are only in the supertype
-        Set<String> superDimensionNames = new HashSet<>(superspace.type().dimensionNames());
-        superDimensionNames.removeAll(subspace.type().dimensionNames());
-
-        for (Iterator<IndexedTensor.SubspaceIterator> i = superspace.subspaceIterator(superDimensionNames, joinedSizes); i.hasNext(); ) {
-            IndexedTensor.SubspaceIterator subspaceInSuper = i.next();
-            joinSubspaces(subspace.valueIterator(), subspace.size(),
-                    subspaceInSuper, subspaceInSuper.size(),
-                    reversedArgumentOrder, builder, combinator);
-        }
-
-        return builder.build();
-    }
-
-    private static void joinSubspaces(Iterator<Double> subspace, long subspaceSize,
-                                      Iterator<Tensor.Cell> superspace, long superspaceSize,
-                                      boolean reversedArgumentOrder, IndexedTensor.Builder builder,
-                                      DoubleBinaryOperator combinator) {
-        long joinedLength = Math.min(subspaceSize, superspaceSize);
-        if (reversedArgumentOrder) {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(supercell.getValue(), subspace.next()));
-            }
-        } else {
-            for (int i = 0; i < joinedLength; i++) {
-                Tensor.Cell supercell = superspace.next();
-                builder.cell(supercell, combinator.applyAsDouble(subspace.next(), supercell.getValue()));
-            }
-        }
-    }
-
     private static DimensionSizes joinedSize(TensorType joinedType, IndexedTensor a, IndexedTensor b) {
         DimensionSizes.Builder builder = new DimensionSizes.Builder(joinedType.dimensions().size());
         for (int i = 0; i < builder.dimensions(); i++) {
@@ -226,69 +212,6 @@ public class Join<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMETYP
         return TensorAddress.of(subspaceLabels);
     }
 
-    /** Slow join which works for any two tensors */
-    private static Tensor generalJoin(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
-        if (a instanceof IndexedTensor && b instanceof IndexedTensor)
-            return indexedGeneralJoin((IndexedTensor) a, (IndexedTensor) b, joinedType, combinator);
-        else
-            return mappedHashJoin(a, b, joinedType, combinator);
-    }
-
-    private static Tensor indexedGeneralJoin(IndexedTensor a, IndexedTensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
-        DimensionSizes joinedSize = joinedSize(joinedType, a, b);
-        Tensor.Builder builder = Tensor.Builder.of(joinedType, joinedSize);
-        int[] aToIndexes = mapIndexes(a.type(), joinedType);
-        int[] bToIndexes = mapIndexes(b.type(), joinedType);
-        joinTo(a, b, joinedType, joinedSize, aToIndexes, bToIndexes, builder, combinator);
-        return builder.build();
-    }
-
-    private static void joinTo(IndexedTensor a, IndexedTensor b, TensorType joinedType, DimensionSizes joinedSize,
-                               int[] aToIndexes, int[] bToIndexes, Tensor.Builder builder,
-                               DoubleBinaryOperator combinator) {
-        Set<String> sharedDimensions = Sets.intersection(a.type().dimensionNames(), b.type().dimensionNames());
-        Set<String> dimensionsOnlyInA = Sets.difference(a.type().dimensionNames(), b.type().dimensionNames());
-
-        DimensionSizes aIterateSize = joinedSizeOf(a.type(), joinedType, joinedSize);
-        DimensionSizes bIterateSize = joinedSizeOf(b.type(), joinedType, joinedSize);
-
-        // for each combination of dimensions only in a
-        for (Iterator<IndexedTensor.SubspaceIterator> ia = a.subspaceIterator(dimensionsOnlyInA, aIterateSize); ia.hasNext(); ) {
-            IndexedTensor.SubspaceIterator aSubspace = ia.next();
-            // for each combination of dimensions in a which is also in b
-            while (aSubspace.hasNext()) {
-                Tensor.Cell aCell = aSubspace.next();
-                PartialAddress matchingBCells = partialAddress(a.type(), aSubspace.address(), sharedDimensions);
-                // for each matching combination of dimensions ony in b
-                for (IndexedTensor.SubspaceIterator bSubspace = b.cellIterator(matchingBCells, bIterateSize); bSubspace.hasNext(); ) {
-                    Tensor.Cell bCell = bSubspace.next();
-                    TensorAddress joinedAddress = joinAddresses(aCell.getKey(), aToIndexes, bCell.getKey(), bToIndexes, joinedType);
-                    double joinedValue = combinator.applyAsDouble(aCell.getValue(), bCell.getValue());
-                    builder.cell(joinedAddress, joinedValue);
-                }
-            }
-        }
-    }
-
-    private static PartialAddress partialAddress(TensorType addressType, TensorAddress address, Set<String> retainDimensions) {
-        PartialAddress.Builder builder = new PartialAddress.Builder(retainDimensions.size());
-        for (int i = 0; i < addressType.dimensions().size(); i++)
-            if (retainDimensions.contains(addressType.dimensions().get(i).name()))
-                builder.add(addressType.dimensions().get(i).name(), address.numericLabel(i));
-        return builder.build();
-    }
-
-    /** Returns the sizes from the joined sizes which are present in the type argument */
-    private static DimensionSizes joinedSizeOf(TensorType type, TensorType joinedType, DimensionSizes joinedSizes) {
-        DimensionSizes.Builder builder = new DimensionSizes.Builder(type.dimensions().size());
-        int dimensionIndex = 0;
-        for (int i = 0; i < joinedType.dimensions().size(); i++) {
-            if (type.dimensionNames().contains(joinedType.dimensions().get(i).name()))
-                builder.set(dimensionIndex++, joinedSizes.size(i));
-        }
-        return builder.build();
-    }
-
     private static Tensor mappedGeneralJoin(Tensor a, Tensor b, TensorType joinedType, DoubleBinaryOperator combinator) {
         int[] aToIndexes = mapIndexes(a.type(), joinedType);
         int[] bToIndexes = mapIndexes(b.type(), joinedType);
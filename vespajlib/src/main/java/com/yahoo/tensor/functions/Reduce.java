@@ -2,6 +2,7 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.DimensionSizes;
 import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
@@ -10,6 +11,7 @@ import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 import com.yahoo.tensor.evaluation.TypeContext;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -18,6 +20,7 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.function.DoubleBinaryOperator;
 
 /**
  * The <i>reduce</i> tensor operation returns a tensor produced from the argument tensor where some dimensions
@@ -128,12 +131,12 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
             throw new IllegalArgumentException("Cannot reduce " + argument + " over dimensions " +
                                                dimensions + ": Not all those dimensions are present in this tensor");
 
+        if (argument instanceof IndexedTensor && argument.size() > 0)
+            return reduceIndexed((IndexedTensor)argument, dimensions, aggregator);
+
         // Special case: Reduce all
         if (dimensions.isEmpty() || dimensions.size() == argument.type().dimensions().size())
-            if (argument.type().dimensions().size() == 1 && argument instanceof IndexedTensor)
-                return reduceIndexedVector((IndexedTensor)argument, aggregator);
-            else
-                return reduceAllGeneral(argument, aggregator);
+            return reduceAllGeneral(argument, aggregator);
 
         TensorType reducedType = type(argument.type(), dimensions);
 
@@ -173,11 +176,77 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
     }
 
-    private static Tensor reduceIndexedVector(IndexedTensor argument, Aggregator aggregator) {
-        ValueAggregator valueAggregator = ValueAggregator.ofType(aggregator);
-        for (int i = 0; i < argument.dimensionSizes().size(0); i++)
-            valueAggregator.aggregate(argument.get(i));
-        return Tensor.Builder.of(TensorType.empty).cell((valueAggregator.aggregatedValue())).build();
+    /**
+     * Reduces an indexed tensor by iterating over its values in standard value order while keeping track of the
+     * index of the reduced cell each value belongs to, using strides which are 0 for the reduced dimensions.
+     * Values are aggregated into an array which becomes the value array of the result.
+     */
+    private static Tensor reduceIndexed(IndexedTensor argument, List<String> dimensions, Aggregator aggregator) {
+        TensorType argumentType = argument.type();
+        boolean reduceAll = dimensions.isEmpty() || dimensions.size() == argumentType.dimensions().size();
+        TensorType reducedType = reduceAll ? TensorType.empty : type(argumentType, dimensions);
+
+        // Find the sizes of the reduced tensor and the stride in it of each argument dimension
+        int rank = argumentType.dimensions().size();
+        DimensionSizes argumentSizes = argument.dimensionSizes();
+        int[] toReduced = Join.mapIndexes(argumentType, reducedType);
+        DimensionSizes.Builder reducedSizesBuilder = new DimensionSizes.Builder(reducedType.dimensions().size());
+        for (int i = 0; i < rank; i++)
+            if (toReduced[i] >= 0)
+                reducedSizesBuilder.set(toReduced[i], argumentSizes.size(i));
+        DimensionSizes reducedSizes = reducedSizesBuilder.build();
+        long[] strides = new long[rank];
+        long stride = 1;
+        for (int i = rank - 1; i >= 0; i--) {
+            if (toReduced[i] < 0) continue;
+            strides[i] = stride;
+            stride *= argumentSizes.size(i);
+        }
+
+        double[] values = new double[(int)reducedSizes.totalSize()];
+        long valuesPerReducedCell = argument.size() / values.length;
+        switch (aggregator) {
+            case count :
+                Arrays.fill(values, valuesPerReducedCell);
+                break;
+            case avg :
+                aggregateIndexed(argument, strides, values, 0, Double::sum);
+                for (int i = 0; i < values.length; i++)
+                    values[i] /= valuesPerReducedCell;
+                break;
+            case sum :
+                aggregateIndexed(argument, strides, values, 0, Double::sum);
+                break;
+            case prod :
+                aggregateIndexed(argument, strides, values, 1, (x, y) -> x * y);
+                break;
+            case max :
+                aggregateIndexed(argument, strides, values, Double.NEGATIVE_INFINITY, Math::max);
+                break;
+            case min :
+                aggregateIndexed(argument, strides, values, Double.POSITIVE_INFINITY, Math::min);
+                break;
+            default: throw new UnsupportedOperationException("Aggregator " + aggregator + " is not implemented");
+        }
+        return IndexedTensor.Builder.of(reducedType, reducedSizes, values).build();
+    }
+
+    private static void aggregateIndexed(IndexedTensor argument, long[] strides, double[] values,
+                                         double initialValue, DoubleBinaryOperator aggregator) {
+        Arrays.fill(values, initialValue);
+        DimensionSizes sizes = argument.dimensionSizes();
+        int rank = strides.length;
+        long[] indexes = new long[rank];
+        long reducedIndex = 0;
+        for (long i = 0; i < argument.size(); i++) {
+            values[(int)reducedIndex] = aggregator.applyAsDouble(values[(int)reducedIndex], argument.get(i));
+            for (int d = rank - 1; d >= 0; d--) {
+                reducedIndex += strides[d];
+                if (++indexes[d] < sizes.size(d)) break;
+                reducedIndex -= strides[d] * indexes[d];
+                indexes[d] = 0;
+            }
+        }
     }
 
     static abstract class ValueAggregator {
@@ -289,14 +358,14 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
         }
     }
 
+    /** Aggregates to the largest value, or NaN if any value is NaN, as Math.max */
     private static class MaxAggregator extends ValueAggregator {
 
-        private double maxValue = Double.MIN_VALUE;
+        private double maxValue = Double.NEGATIVE_INFINITY;
 
         @Override
         public void aggregate(double value) {
-            if (value > maxValue)
-                maxValue = value;
+            maxValue = Math.max(maxValue, value);
         }
 
         @Override
@@ -306,18 +375,18 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
         @Override
         public void reset() {
-            maxValue = Double.MIN_VALUE;
+            maxValue = Double.NEGATIVE_INFINITY;
         }
     }
 
+    /** Aggregates to the smallest value, or NaN if any value is NaN, as Math.min */
     private static class MinAggregator extends ValueAggregator {
 
-        private double minValue = Double.MAX_VALUE;
+        private double minValue = Double.POSITIVE_INFINITY;
 
         @Override
         public void aggregate(double value) {
-            if (value < minValue)
-                minValue = value;
+            minValue = Math.min(minValue, value);
         }
 
         @Override
@@ -327,7 +396,7 @@ public class Reduce<NAMETYPE extends Name> extends PrimitiveTensorFunction<NAMET
 
         @Override
         public void reset() {
-            minValue = Double.MAX_VALUE;
+            minValue = Double.POSITIVE_INFINITY;
         }
 
     }
@@ -146,6 +146,11 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         long commonSize = Math.min(a.dimensionSizes().size(0), b.dimensionSizes().size(0));
 
+        if (isDotProduct()) {
+            builder.cellByDirectIndex(0, dotProduct(a, 0, b, 0, commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ic = 0; ic < commonSize; ++ic) {
             double va = a.get(ic);
@@ -164,10 +169,18 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         DimensionSizes sizesA = a.dimensionSizes();
         DimensionSizes sizesB = b.dimensionSizes();
 
+        long commonSize = Math.min(sizesA.size(0), sizesB.size(1));
+
+        if (isDotProduct()) {
+            for (int ib = 0; ib < sizesB.size(0); ++ib)
+                builder.cellByDirectIndex(ib, dotProduct(a, 0, b, ib * sizesB.size(1), commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ib = 0; ib < sizesB.size(0); ++ib) {
             agg.reset();
-            for (int ic = 0; ic < Math.min(sizesA.size(0), sizesB.size(1)); ++ic) {
+            for (int ic = 0; ic < commonSize; ++ic) {
                 double va = a.get(ic);
                 double vb = b.get(ib * sizesB.size(1) + ic);
                 double result = swapped ? combinator.applyAsDouble(vb, va) : combinator.applyAsDouble(va, vb);
@@ -190,11 +203,21 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         long strideA = iaToReduced < ibToReduced ? sizesB.size(0) : 1;
         long strideB = ibToReduced < iaToReduced ? sizesA.size(0) : 1;
 
+        long commonSize = Math.min(sizesA.size(1), sizesB.size(1));
+
+        if (isDotProduct()) {
+            for (int ia = 0; ia < sizesA.size(0); ++ia)
+                for (int ib = 0; ib < sizesB.size(0); ++ib)
+                    builder.cellByDirectIndex(ia * strideA + ib * strideB,
+                                              dotProduct(a, ia * sizesA.size(1), b, ib * sizesB.size(1), commonSize));
+            return builder.build();
+        }
+
         Reduce.ValueAggregator agg = Reduce.ValueAggregator.ofType(aggregator);
         for (int ia = 0; ia < sizesA.size(0); ++ia) {
             for (int ib = 0; ib < sizesB.size(0); ++ib) {
                 agg.reset();
-                for (int ic = 0; ic < Math.min(sizesA.size(1), sizesB.size(1)); ++ic) {
+                for (int ic = 0; ic < commonSize; ++ic) {
                     double va = a.get(ia * sizesA.size(1) + ic);
                     double vb = b.get(ib * sizesB.size(1) + ic);
                     agg.aggregate(combinator.applyAsDouble(va, vb));
@@ -205,6 +228,19 @@ public class ReduceJoin<NAMETYPE extends Name> extends CompositeTensorFunction<N
         return builder.build();
     }
 
+    /** Returns whether this is a sum of products, which is computed without going through the aggregator and combinator */
+    private boolean isDotProduct() {
+        return aggregator == Reduce.Aggregator.sum && combinator instanceof ScalarFunctions.Multiply;
+    }
+
+    /** Returns the sum of the products of length values starting at the given offsets in a and b */
+    private static double dotProduct(IndexedTensor a, long aOffset, IndexedTensor b, long bOffset, long length) {
+        double sum = 0;
+        for (long i = 0; i < length; i++)
+            sum += a.get(aOffset + i) * b.get(bOffset + i);
+        return sum;
+    }
+
     private Tensor evaluateGeneral(IndexedTensor a, IndexedTensor b, TensorType reducedType) {
         IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)IndexedTensor.Builder.of(reducedType);
         TensorType onlyInA = Reduce.outputType(a.type(), dimensions);
@@ -2,8 +2,11 @@
 package com.yahoo.tensor.functions;
 
 import com.google.common.collect.ImmutableList;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.evaluation.EvaluationContext;
 import com.yahoo.tensor.evaluation.Name;
 
+import java.util.Collections;
 import java.util.List;
 
 /**
@@ -43,6 +46,15 @@ public class XwPlusB<NAMETYPE extends Name> extends CompositeTensorFunction<NAME
                           ScalarFunctions.add());
     }
 
+    /** Evaluates this using a reduce-join, which has specialized implementations for dense vectors and matrices */
+    @Override
+    public Tensor evaluate(EvaluationContext<NAMETYPE> context) {
+        Tensor xw = new ReduceJoin<>(x, w, ScalarFunctions.multiply(), Reduce.Aggregator.sum,
+                                     Collections.singletonList(dimension)).evaluate(context);
+        Tensor bTensor = b.evaluate(context);
+        return Join.evaluate(xw, bTensor, Join.outputType(xw.type(), bTensor.type()), ScalarFunctions.add());
+    }
+
     @Override
     public String toString(ToStringContext context) {
         return "xw_plus_b(" + x.toString(context) + ", " +
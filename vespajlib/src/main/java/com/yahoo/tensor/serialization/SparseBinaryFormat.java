@@ -2,6 +2,7 @@
 package com.yahoo.tensor.serialization;
 
 import com.yahoo.io.GrowableByteBuffer;
+import com.yahoo.tensor.MappedTensor;
 import com.yahoo.tensor.Tensor;
 import com.yahoo.tensor.TensorAddress;
 import com.yahoo.tensor.TensorType;
@@ -107,6 +108,10 @@ class SparseBinaryFormat implements BinaryFormat {
 
     private void decodeCells(GrowableByteBuffer buffer, Tensor.Builder builder, TensorType type, Supplier<Double> supplier) {
         long numCells = buffer.getInt1_4Bytes(); // XXX: Size truncation
+        if (builder instanceof MappedTensor.Builder) {
+            decodeMappedCells(numCells, buffer, (MappedTensor.Builder)builder, type, supplier);
+            return;
+        }
         for (long i = 0; i < numCells; ++i) {
             Tensor.Builder.CellBuilder cellBuilder = builder.cell();
             decodeAddress(buffer, cellBuilder, type);
@@ -114,6 +119,21 @@ class SparseBinaryFormat implements BinaryFormat {
         }
     }
 
+    /** Decodes cells directly into the labels and values of a mapped tensor without creating addresses */
+    private void decodeMappedCells(long numCells, GrowableByteBuffer buffer, MappedTensor.Builder builder,
+                                   TensorType type, Supplier<Double> supplier) {
+        String[] labels = new String[type.dimensions().size()];
+        for (long i = 0; i < numCells; ++i) {
+            for (int j = 0; j < labels.length; ++j) {
+                labels[j] = buffer.getUtf8String();
+                if (labels[j].isEmpty())
+                    throw new IllegalArgumentException("Missing a label for dimension " +
+                                                       type.dimensions().get(j).name() + " for " + type);
+            }
+            builder.cell(labels, supplier.get());
+        }
+    }
+
     private void decodeAddress(GrowableByteBuffer buffer, Tensor.Builder.CellBuilder builder, TensorType type) {
         for (TensorType.Dimension dimension : type.dimensions()) {
             String label = buffer.getUtf8String();
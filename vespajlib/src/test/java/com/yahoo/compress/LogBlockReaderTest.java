@@ -0,0 +1,167 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.compress;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class LogBlockReaderTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void lines_are_read_back_in_order() throws IOException {
+        Path file = writeLines(1000, 4096);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(file, new LogBlockReader.Query(Instant.MIN, Instant.MAX, null, null), out);
+        assertEquals(lines(0, 1000, null, null), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void only_blocks_in_the_time_range_are_read() throws IOException {
+        Path file = writeLines(1000, 4096);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int blocksRead = LogBlockReader.writeMatching(file, query(500, 510, null, null), out);
+        assertEquals(lines(501, 511, null, null), out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, blocksRead);
+    }
+
+    @Test
+    public void lines_are_filtered_on_host_and_service() throws IOException {
+        Path file = writeLines(1000, 4096);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(file, query(100, 200, "host1", "service2"), out);
+        assertEquals(lines(101, 201, "host1", "service2"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void blocks_without_the_queried_service_are_skipped() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file), 1024)) {
+            for (int i = 0; i < 100; i++)
+                writer.write(line(i, "host", "container"));
+            writer.flush();
+            writer.write(line(100, "host", "searchnode"));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int blocksRead = LogBlockReader.writeMatching(file, new LogBlockReader.Query(Instant.MIN, Instant.MAX, null, "searchnode"), out);
+        assertEquals(line(100, "host", "searchnode"), out.toString(StandardCharsets.UTF_8));
+        assertEquals(1, blocksRead);
+    }
+
+    @Test
+    public void incomplete_last_block_is_ignored() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file), 1024)) {
+            writer.write(line(1, "host", "service"));
+            writer.flush();
+            writer.write(line(2, "host", "service"));
+        }
+        try (RandomAccessFile truncated = new RandomAccessFile(file.toFile(), "rw")) {
+            truncated.setLength(truncated.length() - 3);
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(file, new LogBlockReader.Query(Instant.MIN, Instant.MAX, null, null), out);
+        assertEquals(line(1, "host", "service"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void complete_length_of_complete_file_is_its_size() throws IOException {
+        Path file = writeLines(1000, 4096);
+        assertEquals(Files.size(file), LogBlockReader.completeLength(file));
+    }
+
+    @Test
+    public void file_with_incomplete_last_block_can_be_appended_to_after_truncation() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file), 1024)) {
+            writer.write(line(1, "host", "service"));
+            writer.flush();
+            writer.write(line(2, "host", "service"));
+        }
+        try (RandomAccessFile truncated = new RandomAccessFile(file.toFile(), "rw")) {
+            truncated.setLength(truncated.length() - 3);
+        }
+        long lengthOfFirstBlock = LogBlockReader.completeLength(file);
+        assertTrue(lengthOfFirstBlock < Files.size(file));
+        try (RandomAccessFile truncated = new RandomAccessFile(file.toFile(), "rw")) {
+            truncated.setLength(lengthOfFirstBlock);
+        }
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file, StandardOpenOption.APPEND), 1024)) {
+            writer.write(line(3, "host", "service"));
+        }
+        assertEquals(Files.size(file), LogBlockReader.completeLength(file));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(file, new LogBlockReader.Query(Instant.MIN, Instant.MAX, null, null), out);
+        assertEquals(line(1, "host", "service") + line(3, "host", "service"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void invalid_lines_do_not_match() throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file))) {
+            writer.write("not a log line");
+            writer.write(line(1, "host", "service"));
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(file, new LogBlockReader.Query(Instant.MIN, Instant.MAX, null, null), out);
+        assertEquals(line(1, "host", "service"), out.toString(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void plain_streams_are_filtered() throws IOException {
+        String plain = lines(0, 1000, null, null);
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        LogBlockReader.writeMatching(new ByteArrayInputStream(plain.getBytes(StandardCharsets.UTF_8)),
+                                     query(10, 20, "host0", null), out);
+        assertEquals(lines(11, 21, "host0", null), out.toString(StandardCharsets.UTF_8));
+    }
+
+    private Path writeLines(int count, int blockSize) throws IOException {
+        Path file = temporaryFolder.newFile().toPath();
+        try (LogBlockWriter writer = new LogBlockWriter(Files.newOutputStream(file), blockSize)) {
+            for (int i = 0; i < count; i++)
+                writer.write(line(i, host(i), service(i)));
+        }
+        return file;
+    }
+
+    /** Returns the lines with index in [from, to) with the given host and service, or all if null */
+    private static String lines(int from, int to, String host, String service) {
+        StringBuilder lines = new StringBuilder();
+        for (int i = from; i < to; i++) {
+            if (host != null && ! host.equals(host(i))) continue;
+            if (service != null && ! service.equals(service(i))) continue;
+            lines.append(line(i, host(i), service(i)));
+        }
+        return lines.toString();
+    }
+
+    private static String host(int i) { return "host" + i % 2; }
+
+    private static String service(int i) { return "service" + i % 3; }
+
+    /** Returns a log line with a timestamp of i seconds */
+    private static String line(int i, String host, String service) {
+        return i + ".000000\t" + host + "\t1/2\t" + service + "\tcomponent\tinfo\tmessage number " + i + "\n";
+    }
+
+    private static LogBlockReader.Query query(int fromSeconds, int toSeconds, String host, String service) {
+        return new LogBlockReader.Query(Instant.ofEpochSecond(fromSeconds), Instant.ofEpochSecond(toSeconds), host, service);
+    }
+
+}
@@ -0,0 +1,90 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor;
+
+import com.google.common.collect.ImmutableMap;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Measures the retained memory and the build and lookup time of mapped tensors,
+ * compared to storing the cells in a map from address to value as was done previously.
+ */
+public class MappedTensorBenchmark {
+
+    private static final TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+    private static final int tensorCount = 50;
+    private static final int cellsPerTensor = 20000;
+
+    private static List<Object> buildTensors() {
+        List<Object> tensors = new ArrayList<>();
+        for (int t = 0; t < tensorCount; t++) {
+            Tensor.Builder builder = Tensor.Builder.of(type);
+            for (int i = 0; i < cellsPerTensor; i++)
+                builder.cell().label("x", "term" + (i % 1000)).label("y", "field" + (i / 1000)).value(i);
+            tensors.add(builder.build());
+        }
+        return tensors;
+    }
+
+    private static List<Object> buildMaps() {
+        List<Object> maps = new ArrayList<>();
+        for (int t = 0; t < tensorCount; t++) {
+            ImmutableMap.Builder<TensorAddress, Double> builder = new ImmutableMap.Builder<>();
+            for (int i = 0; i < cellsPerTensor; i++)
+                builder.put(new TensorAddress.Builder(type).add("x", "term" + (i % 1000))
+                                                           .add("y", "field" + (i / 1000)).build(),
+                            (double)i);
+            maps.add(builder.build());
+        }
+        return maps;
+    }
+
+    @SuppressWarnings("unchecked")
+    private static double lookup(Object tensorOrMap, List<TensorAddress> addresses) {
+        double sum = 0;
+        for (TensorAddress address : addresses) {
+            if (tensorOrMap instanceof Tensor)
+                sum += ((Tensor)tensorOrMap).get(address);
+            else
+                sum += ((Map<TensorAddress, Double>)tensorOrMap).get(address);
+        }
+        return sum;
+    }
+
+    private static long usedMemory() {
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return Runtime.getRuntime().totalMemory() - Runtime.getRuntime().freeMemory();
+    }
+
+    private static void run(String name, boolean mapped) {
+        long memoryBefore = usedMemory();
+        long startTime = System.currentTimeMillis();
+        List<Object> tensors = mapped ? buildTensors() : buildMaps();
+        long buildTime = System.currentTimeMillis() - startTime;
+        long retainedBytes = usedMemory() - memoryBefore;
+
+        List<TensorAddress> addresses = new ArrayList<>();
+        for (int i = 0; i < cellsPerTensor; i += 7)
+            addresses.add(TensorAddress.ofLabels("term" + (i % 1000), "field" + (i / 1000)));
+        double sum = 0;
+        startTime = System.currentTimeMillis();
+        for (Object tensor : tensors)
+            sum += lookup(tensor, addresses);
+        long lookupTime = System.currentTimeMillis() - startTime;
+
+        System.out.printf("%1$-14s retained bytes per cell: %2$6.1f  build: %3$6d ms  lookup: %4$6d ms  (%5$f)\n",
+                          name, (double)retainedBytes / (tensorCount * cellsPerTensor), buildTime, lookupTime, sum);
+        if (tensors.isEmpty()) throw new IllegalStateException(); // keep tensors reachable until measured
+    }
+
+    public static void main(String[] args) {
+        for (int i = 0; i < 3; i++) { // first rounds are warmup
+            run("Map of cells", false);
+            run("MappedTensor", true);
+        }
+    }
+
+}
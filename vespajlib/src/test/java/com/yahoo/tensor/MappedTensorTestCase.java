@@ -4,8 +4,11 @@ package com.yahoo.tensor;
 import com.google.common.collect.Sets;
 import org.junit.Test;
 
+import java.util.Map;
+
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * Basic tensor tests. Tensor operations are tested in EvaluationTestCase
@@ -48,4 +51,53 @@ public class MappedTensorTestCase {
         assertEquals("tensor(x{},y{}):{{x:0,y:0}:1.0,{x:1,y:0}:2.0}", tensor.toString());
     }
 
+    @Test
+    public void testLookupInLargeTensor() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        Tensor.Builder builder = Tensor.Builder.of(type);
+        for (int x = 0; x < 100; x++)
+            for (int y = 0; y < 100; y++)
+                builder.cell(x * 100 + y, x, y);
+        Tensor tensor = builder.build();
+        assertEquals(10000, tensor.size());
+        for (int x = 0; x < 100; x++)
+            for (int y = 0; y < 100; y++)
+                assertEquals(x * 100 + y, tensor.get(TensorAddress.ofLabels(String.valueOf(x), String.valueOf(y))), 0.0);
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.ofLabels("100", "0"))));
+        assertTrue(Double.isNaN(tensor.get(TensorAddress.ofLabels("0"))));
+    }
+
+    @Test
+    public void testCellsAndHashCodeAreConsistent() {
+        Tensor tensor = Tensor.from("tensor(x{},y{}):{{x:a,y:b}:1.0,{x:b,y:a}:2.0,{x:a,y:a}:3.0}");
+        Map<TensorAddress, Double> cells = tensor.cells();
+        assertEquals(3, cells.size());
+        assertEquals(3.0, cells.get(TensorAddress.ofLabels("a", "a")), 0.0);
+        assertEquals(cells.hashCode(), tensor.hashCode());
+        assertEquals(tensor, Tensor.from("tensor(x{},y{}):{{x:a,y:a}:3.0,{x:b,y:a}:2.0,{x:a,y:b}:1.0}"));
+        assertEquals(tensor.hashCode(), Tensor.from("tensor(x{},y{}):{{x:a,y:a}:3.0,{x:b,y:a}:2.0,{x:a,y:b}:1.0}").hashCode());
+    }
+
+    @Test
+    public void testBuildingFromLabels() {
+        TensorType type = new TensorType.Builder().mapped("x").mapped("y").build();
+        MappedTensor tensor = MappedTensor.Builder.of(type)
+                                                  .cell(new String[] { "a", "b" }, 1.0)
+                                                  .cell(new String[] { "b", "b" }, 2.0)
+                                                  .build();
+        assertEquals("tensor(x{},y{}):{{x:a,y:b}:1.0,{x:b,y:b}:2.0}", tensor.toString());
+    }
+
+    @Test
+    public void testDuplicateAddressesAreRejected() {
+        TensorType type = new TensorType.Builder().mapped("x").build();
+        try {
+            Tensor.Builder.of(type).cell(1.0, 0).cell(2.0, 0).build();
+            fail("Expected exception");
+        }
+        catch (IllegalArgumentException e) {
+            assertEquals("Multiple entries with same key: {x:0}", e.getMessage());
+        }
+    }
+
 }
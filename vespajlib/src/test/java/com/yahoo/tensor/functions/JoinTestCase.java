@@ -1,9 +1,14 @@
 // Copyright 2017 Yahoo Holdings. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
 package com.yahoo.tensor.functions;
 
+import com.yahoo.tensor.IndexedTensor;
 import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
 import org.junit.Test;
 
+import java.util.Iterator;
+import java.util.Random;
+
 import static org.junit.Assert.assertEquals;
 
 /**
@@ -46,4 +51,52 @@ public class JoinTestCase {
                              .divide(Tensor.from("tensor(y[],z[]):{ {y:0,z:0}:2, {y:1,z:0}:4, {y:2,z:0}:6 }")));
     }
 
+    /** Test that the dense join kernel produces the same results as joining the equivalent mapped tensors */
+    @Test
+    public void testIndexedJoinEqualsMappedJoin() {
+        assertIndexedJoinEqualsMappedJoin("tensor(x[3])", "tensor(x[3])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[3])", "tensor(y[2])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[2],y[3])", "tensor(y[3])");
+        assertIndexedJoinEqualsMappedJoin("tensor(y[3])", "tensor(x[2],y[3])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[2],y[3])", "tensor(x[2])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[2],y[3])", "tensor(y[3],z[4])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[2],z[4])", "tensor(y[3])");
+        assertIndexedJoinEqualsMappedJoin("tensor(x[2],y[3],z[4])", "tensor(x[2],z[4])");
+        assertIndexedJoinEqualsMappedJoin("tensor<float>(x[2],y[3])", "tensor<float>(y[3],z[2])");
+        assertIndexedJoinEqualsMappedJoin("tensor()", "tensor(x[3])");
+    }
+
+    private final Random random = new Random(13);
+
+    private void assertIndexedJoinEqualsMappedJoin(String aType, String bType) {
+        Tensor a = randomIndexed(aType);
+        Tensor b = randomIndexed(bType);
+        Tensor indexedResult = a.join(b, (x, y) -> x - 2 * y);
+        Tensor mappedResult = toMapped(a).join(toMapped(b), (x, y) -> x - 2 * y);
+        assertEquals(a + " join " + b, mappedResult.cells(), indexedResult.cells());
+    }
+
+    private Tensor randomIndexed(String typeSpec) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(type);
+        long size = 1;
+        for (TensorType.Dimension dimension : type.dimensions())
+            size *= dimension.size().get();
+        for (long i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, (double)random.nextInt(100) - 50);
+        return builder.build();
+    }
+
+    private Tensor toMapped(Tensor tensor) {
+        TensorType.Builder typeBuilder = new TensorType.Builder(tensor.type().valueType());
+        for (TensorType.Dimension dimension : tensor.type().dimensions())
+            typeBuilder.mapped(dimension.name());
+        Tensor.Builder builder = Tensor.Builder.of(typeBuilder.build());
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            builder.cell(cell.getKey(), cell.getValue());
+        }
+        return builder.build();
+    }
+
 }
@@ -0,0 +1,107 @@
+// Copyright 2020 Oath Inc. Licensed under the terms of the Apache 2.0 license. See LICENSE in the project root.
+package com.yahoo.tensor.functions;
+
+import com.yahoo.tensor.IndexedTensor;
+import com.yahoo.tensor.Tensor;
+import com.yahoo.tensor.TensorType;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+
+public class ReduceTestCase {
+
+    private final Random random = new Random(17);
+
+    @Test
+    public void testReduceIndexed() {
+        Tensor t = Tensor.from("tensor(x[2],y[3]):[[1,2,3],[4,5,6]]");
+        assertEquals(Tensor.from("tensor(y[3]):[5,7,9]"), t.reduce(Reduce.Aggregator.sum, "x"));
+        assertEquals(Tensor.from("tensor(x[2]):[6,15]"), t.reduce(Reduce.Aggregator.sum, "y"));
+        assertEquals(Tensor.from("tensor(x[2]):[2,5]"), t.reduce(Reduce.Aggregator.avg, "y"));
+        assertEquals(Tensor.from("tensor(x[2]):[3,3]"), t.reduce(Reduce.Aggregator.count, "y"));
+        assertEquals(Tensor.from("tensor(y[3]):[4,10,18]"), t.reduce(Reduce.Aggregator.prod, "x"));
+        assertEquals(21.0, t.reduce(Reduce.Aggregator.sum).asDouble(), 0.0);
+        assertEquals(-1.0, Tensor.from("tensor(x[2]):[-3,-1]").reduce(Reduce.Aggregator.max).asDouble(), 0.0);
+    }
+
+    @Test
+    public void testReduceInfinityAndNaN() {
+        for (String type : new String[] { "tensor(x[3])", "tensor(x{})" }) {
+            assertReduced(Double.NEGATIVE_INFINITY, type, Reduce.Aggregator.max,
+                          Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY, Double.NEGATIVE_INFINITY);
+            assertReduced(Double.POSITIVE_INFINITY, type, Reduce.Aggregator.min,
+                          Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY, Double.POSITIVE_INFINITY);
+            assertReduced(Double.POSITIVE_INFINITY, type, Reduce.Aggregator.max, 1, Double.POSITIVE_INFINITY, -1);
+            assertReduced(Double.NEGATIVE_INFINITY, type, Reduce.Aggregator.min, 1, Double.NEGATIVE_INFINITY, -1);
+            for (Reduce.Aggregator aggregator : new Reduce.Aggregator[] { Reduce.Aggregator.max, Reduce.Aggregator.min,
+                                                                          Reduce.Aggregator.sum, Reduce.Aggregator.avg }) {
+                assertReduced(Double.NaN, type, aggregator, Double.NaN, 1, 2);
+                assertReduced(Double.NaN, type, aggregator, 1, Double.NaN, 2);
+                assertReduced(Double.NaN, type, aggregator, 1, 2, Double.NaN);
+            }
+        }
+    }
+
+    private void assertReduced(double expected, String typeSpec, Reduce.Aggregator aggregator, double ... values) {
+        Tensor.Builder builder = Tensor.Builder.of(TensorType.fromSpec(typeSpec));
+        for (int i = 0; i < values.length; i++)
+            builder.cell(values[i], i);
+        Tensor tensor = builder.build();
+        assertEquals(aggregator + " of " + tensor, expected, tensor.reduce(aggregator).asDouble(), 0.0);
+        assertEquals(aggregator + " over x of " + tensor, expected,
+                     Reduce.evaluate(tensor, List.of("x"), aggregator).asDouble(), 0.0);
+    }
+
+    /** Test that the dense reduce kernel produces the same results as reducing the equivalent mapped tensor */
+    @Test
+    public void testIndexedReduceEqualsMappedReduce() {
+        for (Reduce.Aggregator aggregator : Reduce.Aggregator.values()) {
+            assertIndexedReduceEqualsMappedReduce("tensor(x[5])", aggregator);
+            assertIndexedReduceEqualsMappedReduce("tensor(x[5])", aggregator, "x");
+            assertIndexedReduceEqualsMappedReduce("tensor(x[2],y[3])", aggregator);
+            assertIndexedReduceEqualsMappedReduce("tensor(x[2],y[3])", aggregator, "x");
+            assertIndexedReduceEqualsMappedReduce("tensor(x[2],y[3])", aggregator, "y");
+            assertIndexedReduceEqualsMappedReduce("tensor(x[2],y[3],z[4])", aggregator, "y");
+            assertIndexedReduceEqualsMappedReduce("tensor(x[2],y[3],z[4])", aggregator, "x", "z");
+            assertIndexedReduceEqualsMappedReduce("tensor<float>(x[2],y[3],z[4])", aggregator, "z");
+        }
+    }
+
+    private void assertIndexedReduceEqualsMappedReduce(String typeSpec, Reduce.Aggregator aggregator, String ... dimensions) {
+        Tensor indexed = randomIndexed(typeSpec);
+        List<String> dimensionList = Arrays.asList(dimensions);
+        Tensor indexedResult = Reduce.evaluate(indexed, dimensionList, aggregator);
+        Tensor mappedResult = Reduce.evaluate(toMapped(indexed), dimensionList, aggregator);
+        assertEquals("reduce(" + indexed + ", " + aggregator + ", " + dimensionList + ")",
+                     mappedResult.cells(), indexedResult.cells());
+    }
+
+    private Tensor randomIndexed(String typeSpec) {
+        TensorType type = TensorType.fromSpec(typeSpec);
+        IndexedTensor.BoundBuilder builder = (IndexedTensor.BoundBuilder)Tensor.Builder.of(type);
+        long size = 1;
+        for (TensorType.Dimension dimension : type.dimensions())
+            size *= dimension.size().get();
+        for (long i = 0; i < size; i++)
+            builder.cellByDirectIndex(i, (double)random.nextInt(100) - 50);
+        return builder.build();
+    }
+
+    private Tensor toMapped(Tensor tensor) {
+        TensorType.Builder typeBuilder = new TensorType.Builder(tensor.type().valueType());
+        for (TensorType.Dimension dimension : tensor.type().dimensions())
+            typeBuilder.mapped(dimension.name());
+        Tensor.Builder builder = Tensor.Builder.of(typeBuilder.build());
+        for (Iterator<Tensor.Cell> i = tensor.cellIterator(); i.hasNext(); ) {
+            Tensor.Cell cell = i.next();
+            builder.cell(cell.getKey(), cell.getValue());
+        }
+        return builder.build();
+    }
+
+}